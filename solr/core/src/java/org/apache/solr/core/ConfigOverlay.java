@@ -193,7 +193,7 @@ public class ConfigOverlay implements MapSerializable{
   private static Map editable_prop_map ;
   public static final String MAPPING = "{ updateHandler : {" +
       "                 autoCommit : { maxDocs:1, maxTime:1, openSearcher:1 }," +
-      "                 autoSoftCommit : { maxDocs:1, maxTime :1}," +
+      "                 autoSoftCommit : { maxDocs:1, maxTime :1, adaptive:1}," +
       "                 commitWithin : {softCommit:1}," +
       "                 commitIntervalLowerBound:1," +
       "                 indexWriter : {closeWaitsForMerges:1}" +
@@ -381,6 +381,7 @@ public class SolrConfig extends Config implements MapSerializable{
             getInt("updateHandler/commitIntervalLowerBound",-1),
             getInt("updateHandler/autoSoftCommit/maxDocs",-1),
             getInt("updateHandler/autoSoftCommit/maxTime",-1),
+            getBool("updateHandler/autoSoftCommit/adaptive",false),
             getBool("updateHandler/commitWithin/softCommit",true));
   }
 
@@ -578,6 +579,7 @@ public class SolrConfig extends Config implements MapSerializable{
     public final boolean indexWriterCloseWaitsForMerges;
     public final boolean openSearcher;  // is opening a new searcher part of hard autocommit?
     public final boolean commitWithinSoftCommit;
+    public final boolean autoSoftCommitAdaptive;
 
     /**
      * @param autoCommmitMaxDocs set -1 as default
@@ -586,6 +588,16 @@ public class SolrConfig extends Config implements MapSerializable{
      */
     public UpdateHandlerInfo(String className, int autoCommmitMaxDocs, int autoCommmitMaxTime, boolean indexWriterCloseWaitsForMerges, boolean openSearcher, int commitIntervalLowerBound,
         int autoSoftCommmitMaxDocs, int autoSoftCommmitMaxTime, boolean commitWithinSoftCommit) {
+      this(className, autoCommmitMaxDocs, autoCommmitMaxTime, indexWriterCloseWaitsForMerges, openSearcher, commitIntervalLowerBound,
+          autoSoftCommmitMaxDocs, autoSoftCommmitMaxTime, false, commitWithinSoftCommit);
+    }
+
+    /**
+     * @param autoSoftCommitAdaptive whether the soft autocommits adapt to the time taken to open the searchers
+     * @see org.apache.solr.update.CommitTracker
+     */
+    public UpdateHandlerInfo(String className, int autoCommmitMaxDocs, int autoCommmitMaxTime, boolean indexWriterCloseWaitsForMerges, boolean openSearcher, int commitIntervalLowerBound,
+        int autoSoftCommmitMaxDocs, int autoSoftCommmitMaxTime, boolean autoSoftCommitAdaptive, boolean commitWithinSoftCommit) {
       this.className = className;
       this.autoCommmitMaxDocs = autoCommmitMaxDocs;
       this.autoCommmitMaxTime = autoCommmitMaxTime;
@@ -595,6 +607,7 @@ public class SolrConfig extends Config implements MapSerializable{
       
       this.autoSoftCommmitMaxDocs = autoSoftCommmitMaxDocs;
       this.autoSoftCommmitMaxTime = autoSoftCommmitMaxTime;
+      this.autoSoftCommitAdaptive = autoSoftCommitAdaptive;
       
       this.commitWithinSoftCommit = commitWithinSoftCommit;
     }
@@ -617,7 +630,8 @@ public class SolrConfig extends Config implements MapSerializable{
       ));
       result.put("autoSoftCommit" ,
           ZkNodeProps.makeMap("maxDocs", autoSoftCommmitMaxDocs,
-              "maxTime",autoSoftCommmitMaxTime));
+              "maxTime",autoSoftCommmitMaxTime,
+              "adaptive",autoSoftCommitAdaptive));
       return result;
     }
   }
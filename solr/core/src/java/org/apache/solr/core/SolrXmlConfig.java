@@ -269,6 +269,8 @@ public class SolrXmlConfig {
     int maxUpdateConnectionsPerHost = UpdateShardHandlerConfig.DEFAULT_MAXUPDATECONNECTIONSPERHOST;
     int distributedSocketTimeout = UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATESOTIMEOUT;
     int distributedConnectionTimeout = UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATECONNTIMEOUT;
+    int distributedUpdateBatchSize = UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATEBATCHSIZE;
+    int distributedUpdateThreads = UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATETHREADS;
 
     Object muc = nl.remove("maxUpdateConnections");
     if (muc != null) {
@@ -294,10 +296,23 @@ public class SolrXmlConfig {
       defined = true;
     }
 
+    Object dbs = nl.remove("distribUpdateBatchSize");
+    if (dbs != null) {
+      distributedUpdateBatchSize = parseInt("distribUpdateBatchSize", dbs.toString());
+      defined = true;
+    }
+
+    Object dt = nl.remove("distribUpdateThreads");
+    if (dt != null) {
+      distributedUpdateThreads = parseInt("distribUpdateThreads", dt.toString());
+      defined = true;
+    }
+
     if (!defined && !alwaysDefine)
       return null;
 
-    return new UpdateShardHandlerConfig(maxUpdateConnections, maxUpdateConnectionsPerHost, distributedSocketTimeout, distributedConnectionTimeout);
+    return new UpdateShardHandlerConfig(maxUpdateConnections, maxUpdateConnectionsPerHost, distributedSocketTimeout, distributedConnectionTimeout,
+                                        distributedUpdateBatchSize, distributedUpdateThreads);
 
   }
 
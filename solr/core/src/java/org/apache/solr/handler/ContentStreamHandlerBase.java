@@ -24,6 +24,7 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.handler.loader.ContentStreamLoader;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.processor.ParallelUpdateProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessor;
 import org.apache.solr.update.processor.UpdateRequestProcessorChain;
 import org.slf4j.Logger;
@@ -37,6 +38,11 @@ import org.slf4j.LoggerFactory;
 public abstract class ContentStreamHandlerBase extends RequestHandlerBase {
   public static Logger log = LoggerFactory.getLogger(ContentStreamHandlerBase.class);
 
+  /** The init arg bounding the update.threads parameter, the number of CPUs by default */
+  public static final String MAX_UPDATE_THREADS = "maxUpdateThreads";
+
+  protected int maxUpdateThreads = Runtime.getRuntime().availableProcessors();
+
   @Override
   public void init(NamedList args) {
     super.init(args);
@@ -48,6 +54,10 @@ public abstract class ContentStreamHandlerBase extends RequestHandlerBase {
       if(caching!=null) {
         httpCaching = Boolean.parseBoolean(caching.toString());
       }
+      Object maxThreads = args.get(MAX_UPDATE_THREADS);
+      if (maxThreads != null) {
+        maxUpdateThreads = Integer.parseInt(maxThreads.toString());
+      }
     }
   }
   
@@ -57,7 +67,10 @@ public abstract class ContentStreamHandlerBase extends RequestHandlerBase {
     UpdateRequestProcessorChain processorChain =
             req.getCore().getUpdateProcessingChain(params.get(UpdateParams.UPDATE_CHAIN));
 
-    UpdateRequestProcessor processor = processorChain.createProcessor(req, rsp);
+    int threads = Math.min(params.getInt(UpdateParams.UPDATE_THREADS, 1), maxUpdateThreads);
+    UpdateRequestProcessor processor = threads > 1
+        ? new ParallelUpdateProcessor(processorChain, req, rsp, threads, ParallelUpdateProcessor.DEFAULT_QUEUE_SIZE)
+        : processorChain.createProcessor(req, rsp);
 
     try {
       ContentStreamLoader documentLoader = newLoader(req, processor);
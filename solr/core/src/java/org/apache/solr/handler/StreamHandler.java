@@ -20,10 +20,16 @@ package org.apache.solr.handler;
 import java.io.ByteArrayInputStream;
 import java.io.ObjectInputStream;
 import java.net.URLDecoder;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.solr.client.solrj.io.Expressible;
 import org.apache.solr.client.solrj.io.SolrClientCache;
+import org.apache.solr.client.solrj.io.StreamExpression;
+import org.apache.solr.client.solrj.io.StreamFactory;
 import org.apache.solr.client.solrj.io.TupleStream;
 import org.apache.solr.client.solrj.io.StreamContext;
 import org.apache.solr.common.cloud.ZkStateReader;
@@ -34,14 +40,38 @@ import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import org.apache.solr.common.util.Base64;
+import org.apache.solr.common.util.NamedList;
 
 
 public class StreamHandler extends RequestHandlerBase implements SolrCoreAware {
 
+  // the number of parsed expressions kept, so that the workers of a parallel stream, which are
+  // all sent the same expression, and repeated requests don't parse it again
+  private static final int EXPRESSION_CACHE_SIZE = 100;
+
   private SolrClientCache clientCache = new SolrClientCache();
+  private StreamFactory streamFactory = new StreamFactory();
+  private final Map<String, StreamExpression> expressionCache = Collections.synchronizedMap(
+      new LinkedHashMap<String, StreamExpression>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StreamExpression> eldest) {
+          return size() > EXPRESSION_CACHE_SIZE;
+        }
+      });
 
   public void inform(SolrCore core) {
 
+    // custom functions: <lst name="streamFunctions"><str name="name">class</str></lst>
+    if(initArgs != null) {
+      NamedList functions = (NamedList)initArgs.get("streamFunctions");
+      if(functions != null) {
+        for(int i=0; i<functions.size(); i++) {
+          Class<? extends Expressible> clazz = core.getResourceLoader().findClass((String)functions.getVal(i), Expressible.class);
+          streamFactory.withFunctionName(functions.getName(i), clazz);
+        }
+      }
+    }
+
     core.addCloseHook( new CloseHook() {
       @Override
       public void preClose(SolrCore core) {
@@ -57,12 +87,24 @@ public class StreamHandler extends RequestHandlerBase implements SolrCoreAware {
 
   public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
     SolrParams params = req.getParams();
-    String encodedStream = params.get("stream");
-    encodedStream = URLDecoder.decode(encodedStream, "UTF-8");
-    byte[] bytes = Base64.base64ToByteArray(encodedStream);
-    ByteArrayInputStream byteStream = new ByteArrayInputStream(bytes);
-    ObjectInputStream objectInputStream = new ObjectInputStream(byteStream);
-    TupleStream tupleStream = (TupleStream)objectInputStream.readObject();
+    TupleStream tupleStream;
+    String expr = params.get("expr");
+    if(expr != null) {
+      // streams hold the state of a request, so only the parsed expression is cached
+      StreamExpression expression = expressionCache.get(expr);
+      if(expression == null) {
+        expression = StreamExpression.parse(expr);
+        expressionCache.put(expr, expression);
+      }
+      tupleStream = streamFactory.constructStream(expression);
+    } else {
+      String encodedStream = params.get("stream");
+      encodedStream = URLDecoder.decode(encodedStream, "UTF-8");
+      byte[] bytes = Base64.base64ToByteArray(encodedStream);
+      ByteArrayInputStream byteStream = new ByteArrayInputStream(bytes);
+      ObjectInputStream objectInputStream = new ObjectInputStream(byteStream);
+      tupleStream = (TupleStream)objectInputStream.readObject();
+    }
 
     int worker = params.getInt("workerID");
     int numWorkers = params.getInt("numWorkers");
@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
@@ -40,6 +42,7 @@ import org.apache.solr.common.params.FacetParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.Base64;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.common.util.StrUtils;
@@ -47,6 +50,7 @@ import org.apache.solr.request.SimpleFacets;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.search.QueryParsing;
 import org.apache.solr.search.SyntaxError;
+import org.apache.solr.util.CountMinSketch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -523,8 +527,16 @@ public class FacetComponent extends SearchComponent {
       NamedList facet_fields = (NamedList) facet_counts.get("facet_fields");
       
       if (facet_fields != null) {
+        NamedList facet_sketches = (NamedList) facet_counts.get("facet_sketches");
+        NamedList facet_sampling = (NamedList) facet_counts.get("facet_sampling");
         for (DistribFieldFacet dff : fi.facets.values()) {
           dff.add(shardNum, (NamedList) facet_fields.get(dff.getKey()), dff.initialLimit);
+          if (facet_sketches != null) {
+            dff.addSketch(shardNum, facet_sketches.get(dff.getKey()));
+          }
+          if (facet_sampling != null) {
+            dff.addSampling((NamedList) facet_sampling.get(dff.getKey()));
+          }
         }
       }
 
@@ -591,7 +603,7 @@ public class FacetComponent extends SearchComponent {
             // fbs can be null if a shard request failed
             if (fbs != null && (sfc.termNum >= fbs.length() || !fbs.get(sfc.termNum))) {
               // if missing from this shard, add the max it could be
-              maxCount += dff.maxPossible(shardNum);
+              maxCount += dff.maxPossible(shardNum, sfc);
             }
           }
           if (maxCount >= smallestCount) {
@@ -607,7 +619,7 @@ public class FacetComponent extends SearchComponent {
             // fbs can be null if a shard request failed
             if (fbs != null &&
                 (sfc.termNum >= fbs.length() || !fbs.get(sfc.termNum)) &&
-                dff.maxPossible(shardNum) > 0) {
+                dff.maxPossible(shardNum, sfc) > 0) {
 
               dff.needRefinements = true;
               List<String> lst = dff._toRefine[shardNum];
@@ -1037,6 +1049,20 @@ public class FacetComponent extends SearchComponent {
       }
     }
 
+    NamedList<Object> facet_sampling = new SimpleOrderedMap<>();
+    for (DistribFieldFacet dff : fi.facets.values()) {
+      if (dff.sampledShards > 0) {
+        NamedList<Object> info = new SimpleOrderedMap<>();
+        info.add("numDocs", num(dff.sampledNumDocs));
+        info.add("sampleSize", num(dff.sampleSize));
+        info.add("error", num((long) Math.ceil(Math.sqrt(dff.sampleErrorVariance))));
+        facet_sampling.add(dff.getKey(), info);
+      }
+    }
+    if (facet_sampling.size() > 0) {
+      facet_counts.add("facet_sampling", facet_sampling);
+    }
+
     facet_counts.add("facet_dates", fi.dateFacets);
     facet_counts.add("facet_ranges", fi.rangeFacets);
     facet_counts.add("facet_intervals", fi.intervalFacets);
@@ -1266,6 +1292,16 @@ public class FacetComponent extends SearchComponent {
     public int initialMincount; // mincount param sent to each shard
     public double overrequestRatio;
     public int overrequestCount;
+    // if shards are asked for sketches of their counts, see FacetParams.FACET_SKETCH
+    public boolean sketch;
+    // the sketch of the counts of each shard (indexed by shardNum), null if the
+    // shard did not return one
+    public CountMinSketch[] shardSketches;
+    // the facet_sampling info of the shards that estimated their counts from a sample
+    public int sampledShards;
+    public long sampledNumDocs;
+    public long sampleSize;
+    public double sampleErrorVariance;
     public boolean needRefinements;
     public ShardFacetCount[] countSorted;
     
@@ -1274,12 +1310,17 @@ public class FacetComponent extends SearchComponent {
       // sf = rb.req.getSchema().getField(field);
       missingMax = new long[rb.shards.length];
       counted = new FixedBitSet[rb.shards.length];
+      shardSketches = new CountMinSketch[rb.shards.length];
     }
     
     protected void fillParams(ResponseBuilder rb, SolrParams params, String field) {
       super.fillParams(rb, params, field);
+      // sketches need the indexed form of the terms
+      this.sketch = ftype != null && params.getFieldBool(field, FacetParams.FACET_SKETCH, false);
+      // the sketches bound the counts of the terms a shard did not return, which is what
+      // the overrequest ratio is mostly for, while the overrequest count still finds candidates
       this.overrequestRatio
-        = params.getFieldDouble(field, FacetParams.FACET_OVERREQUEST_RATIO, 1.5);
+        = params.getFieldDouble(field, FacetParams.FACET_OVERREQUEST_RATIO, sketch ? 1.0 : 1.5);
       this.overrequestCount 
         = params.getFieldInt(field, FacetParams.FACET_OVERREQUEST_COUNT, 10);
                              
@@ -1361,6 +1402,46 @@ public class FacetComponent extends SearchComponent {
       // comes before or after it. If it comes before, we could subtract 1
     }
 
+    // like maxPossible(shardNum), but bounded by the sketch of the shard if there is one
+    long maxPossible(int shardNum, ShardFacetCount sfc) {
+      long max = maxPossible(shardNum);
+      CountMinSketch shardSketch = shardSketches[shardNum];
+      if (shardSketch != null && max > 0) {
+        if (sfc.indexedBytes == null) {
+          BytesRefBuilder indexed = new BytesRefBuilder();
+          ftype.readableToIndexed(sfc.name, indexed);
+          sfc.indexedBytes = indexed.get();
+        }
+        max = Math.min(max, shardSketch.estimate(sfc.indexedBytes));
+      }
+      return max;
+    }
+
+    // shardSampling is the facet_sampling info of a shard that estimated its counts from a
+    // sample, or null.  The estimates of the shards are independent, so their errors add up
+    // as their variances do.
+    void addSampling(NamedList shardSampling) {
+      if (shardSampling == null) {
+        return;
+      }
+      sampledShards++;
+      sampledNumDocs += ((Number) shardSampling.get("numDocs")).longValue();
+      sampleSize += ((Number) shardSampling.get("sampleSize")).longValue();
+      double error = ((Number) shardSampling.get("error")).doubleValue();
+      sampleErrorVariance += error * error;
+    }
+
+    // shardSketch is the serialized sketch returned by a shard, or null
+    void addSketch(int shardNum, Object shardSketch) {
+      if (!sketch || shardSketch == null) {
+        return;
+      }
+      // the sketch is base64 encoded by text response writers
+      byte[] bytes = shardSketch instanceof String
+          ? Base64.base64ToByteArray((String) shardSketch) : (byte[]) shardSketch;
+      shardSketches[shardNum] = CountMinSketch.fromBytes(bytes);
+    }
+
     public void respectMinCount(long minCount) {
       HashMap<String, ShardFacetCount> newOne = new HashMap<>();
       boolean replace = false;
@@ -1387,6 +1468,7 @@ public class FacetComponent extends SearchComponent {
     public String indexed; 
     public long count;
     public int termNum; // term number starting at 0 (used in bit arrays)
+    BytesRef indexedBytes; // the indexed bytes of the name, to look it up in sketches
     
     @Override
     public String toString() {
@@ -203,6 +203,7 @@ public class HttpShardHandler extends ShardHandler {
           // use generic request to avoid extra processing of queries
           QueryRequest req = new QueryRequest(params);
           req.setMethod(SolrRequest.METHOD.POST);
+          req.setResponseParser(sreq.responseParser != null ? sreq.responseParser : httpShardHandlerFactory.getResponseParser());
 
           // no need to set the response parser as binary is the default
           // req.setResponseParser(new BinaryResponseParser());
@@ -221,7 +222,7 @@ public class HttpShardHandler extends ShardHandler {
               ssr.nl = client.request(req);
             }
           } else {
-            LBHttpSolrClient.Rsp rsp = httpShardHandlerFactory.makeLoadBalancedRequest(req, urls);
+            LBHttpSolrClient.Rsp rsp = httpShardHandlerFactory.makeLoadBalancedRequest(req, urls, shard);
             ssr.nl = rsp.getResponse();
             srsp.setShardAddress(rsp.getServer());
           }
@@ -18,14 +18,21 @@ package org.apache.solr.handler.component;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
 import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.common.util.URLUtil;
@@ -36,13 +43,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -51,6 +64,11 @@ import java.util.concurrent.TimeUnit;
 public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.apache.solr.util.plugin.PluginInfoInitialized {
   protected static Logger log = LoggerFactory.getLogger(HttpShardHandlerFactory.class);
   private static final String DEFAULT_SCHEME = "http";
+
+  // the names and short values of shard responses, such as facet terms, which
+  // tend to repeat from one response to the other
+  static final JavaBinCodec.StringCache SHARD_RESPONSE_STRINGS = new JavaBinCodec.StringCache(10000, 32);
+  private static final BinaryResponseParser RESPONSE_PARSER = new BinaryResponseParser(SHARD_RESPONSE_STRINGS);
   
   // We want an executor that doesn't take up any resources if
   // it's not used, so it could be created statically for
@@ -79,6 +97,18 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   int queueSize = -1;
   boolean accessPolicy = false;
   boolean useRetries = false;
+  String replicaSelection = REPLICA_SELECTION_RANDOM;
+  float hedgeQuantile = 0f;
+  int hedgeMinSamples = 100;
+  int hedgeMinDelay = 10;
+
+  // tracks the latencies of the replicas, if replicas are picked by latency or requests are hedged
+  private ReplicaLatencyTracker latencyTracker;
+  // sends the hedged requests once their delay elapsed, if requests are hedged
+  private ScheduledThreadPoolExecutor hedgeTimer;
+
+  // the status codes after which the request is sent to the next replica, as LBHttpSolrClient does
+  private static final Set<Integer> RETRY_CODES = new HashSet<>(Arrays.asList(404, 403, 503, 500));
 
   private String scheme = null;
 
@@ -106,6 +136,24 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   // due to connection pooling limitations / races
   static final String USE_RETRIES = "useRetries";
 
+  // How to pick the replica of a shard to send a request to: "random" shuffles them,
+  // "latency" prefers the replicas with the lowest moving average of their latency,
+  // weighted by the number of requests they are serving
+  static final String INIT_REPLICA_SELECTION = "replicaSelection";
+  static final String REPLICA_SELECTION_RANDOM = "random";
+  static final String REPLICA_SELECTION_LATENCY = "latency";
+
+  // If the response of a replica takes longer than this quantile of the latencies of its
+  // shard, the request is also sent to another replica and the first response is used
+  // (0 to disable)
+  static final String INIT_HEDGE_QUANTILE = "hedgeQuantile";
+
+  // The number of latencies to record for a shard before its requests can be hedged
+  static final String INIT_HEDGE_MIN_SAMPLES = "hedgeMinSamples";
+
+  // The minimum time in ms to wait for a response before hedging a request
+  static final String INIT_HEDGE_MIN_DELAY = "hedgeMinDelay";
+
   /**
    * Get {@link ShardHandler} that uses the default http client.
    */
@@ -138,6 +186,21 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     this.queueSize = getParameter(args, INIT_SIZE_OF_QUEUE, queueSize);
     this.accessPolicy = getParameter(args, INIT_FAIRNESS_POLICY, accessPolicy);
     this.useRetries = getParameter(args, USE_RETRIES, useRetries);
+    this.replicaSelection = getParameter(args, INIT_REPLICA_SELECTION, replicaSelection);
+    this.hedgeQuantile = getParameter(args, INIT_HEDGE_QUANTILE, hedgeQuantile);
+    this.hedgeMinSamples = getParameter(args, INIT_HEDGE_MIN_SAMPLES, hedgeMinSamples);
+    this.hedgeMinDelay = getParameter(args, INIT_HEDGE_MIN_DELAY, hedgeMinDelay);
+    if (!REPLICA_SELECTION_RANDOM.equals(replicaSelection) && !REPLICA_SELECTION_LATENCY.equals(replicaSelection)) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+          "Unknown " + INIT_REPLICA_SELECTION + ": " + replicaSelection);
+    }
+    if (REPLICA_SELECTION_LATENCY.equals(replicaSelection) || hedgeQuantile > 0) {
+      this.latencyTracker = new ReplicaLatencyTracker(hedgeQuantile, hedgeMinSamples, hedgeMinDelay);
+    }
+    if (hedgeQuantile > 0) {
+      this.hedgeTimer = new ScheduledThreadPoolExecutor(1, new DefaultSolrThreadFactory("httpShardHedgeTimer"));
+      this.hedgeTimer.setRemoveOnCancelPolicy(true);
+    }
     
     // magic sysprop to make tests reproducible: set by SolrTestCaseJ4.
     String v = System.getProperty("tests.shardhandler.randomSeed");
@@ -177,6 +240,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     this.loadbalancer = createLoadbalancer(defaultClient);
   }
 
+  /**
+   * The parser of the shard responses, for the requests that don't specify one.
+   */
+  public ResponseParser getResponseParser() {
+    return RESPONSE_PARSER;
+  }
+
   protected ThreadPoolExecutor getThreadPoolExecutor(){
     return this.commExecutor;
   }
@@ -199,6 +269,9 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   @Override
   public void close() {
     try {
+      if (hedgeTimer != null) {
+        ExecutorUtil.shutdownNowAndAwaitTermination(hedgeTimer);
+      }
       ExecutorUtil.shutdownNowAndAwaitTermination(commExecutor);
     } finally {
       try {
@@ -226,6 +299,290 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     return loadbalancer.request(new LBHttpSolrClient.Req(req, urls));
   }
 
+  /**
+   * Makes a request to one or more of the given urls of a shard, trying them in order until
+   * one of them answers, and recording the latency of each replica tried.  If hedging is
+   * enabled and the first replica takes longer to respond than the configured quantile of the
+   * latencies of the shard, the request is also sent to the next replica from another thread,
+   * the first successful response is returned and the other request is aborted.
+   *
+   * @param req The solr search request that should be sent through the load balancer
+   * @param urls The list of solr server urls to load balance across
+   * @param shard The shard the urls are the replicas of
+   * @return The response from the request
+   */
+  public LBHttpSolrClient.Rsp makeLoadBalancedRequest(final QueryRequest req, final List<String> urls, final String shard)
+    throws SolrServerException, IOException {
+    if (latencyTracker == null) {
+      return makeLoadBalancedRequest(req, urls);
+    }
+    long hedgeDelay = urls.size() > 1 ? latencyTracker.getHedgeDelay(shard) : -1;
+    if (hedgeDelay < 0) {
+      return makeTrackedRequest(req, urls, shard, null);
+    }
+
+    final HedgedRequest hedge = new HedgedRequest(req, urls.get(1), shard);
+    ScheduledFuture<?> timer;
+    try {
+      timer = hedgeTimer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            commExecutor.execute(hedge);
+          } catch (RejectedExecutionException e) {
+            log.debug("No thread available to hedge request to {}", shard);
+          }
+        }
+      }, hedgeDelay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // closing
+      return makeTrackedRequest(req, urls, shard, null);
+    }
+
+    LBHttpSolrClient.Rsp rsp = null;
+    Exception failure = null;
+    try {
+      rsp = makeTrackedRequest(req, urls, shard, hedge);
+    } catch (SolrServerException | IOException | RuntimeException e) {
+      failure = e;
+    } finally {
+      timer.cancel(false);
+    }
+    return hedge.finish(rsp, failure);
+  }
+
+  private LBHttpSolrClient.Rsp makeTrackedRequest(QueryRequest req, List<String> urls, String shard, HedgedRequest hedge)
+    throws SolrServerException, IOException {
+    Exception ex = null;
+    for (int i = 0; i < urls.size(); i++) {
+      ReplicaRequest replica = new ReplicaRequest(urls.get(i));
+      if (hedge != null) {
+        if (!hedge.startPrimary(replica, i)) {
+          break; // the hedged request answered already
+        }
+        if (hedge.isSentTo(replica.getUrl())) {
+          continue;
+        }
+      }
+      try {
+        return makeTrackedRequest(req, replica, shard);
+      } catch (SolrServerException | IOException | SolrException e) {
+        if (!isRetryable(e)) {
+          throw e;
+        }
+        ex = e;
+      }
+    }
+    throw new SolrServerException("No live SolrServers available to handle this request", ex);
+  }
+
+  private LBHttpSolrClient.Rsp makeTrackedRequest(QueryRequest req, ReplicaRequest replica, String shard)
+    throws SolrServerException, IOException {
+    String url = replica.getUrl();
+    latencyTracker.requestStarted(url);
+    long startTime = System.nanoTime();
+    try {
+      NamedList<Object> rsp = makeReplicaRequest(req, replica);
+      latencyTracker.requestEnded(url, shard, elapsedMillis(startTime));
+      return new ReplicaRsp(url, rsp);
+    } catch (SolrServerException | IOException | RuntimeException e) {
+      long elapsed = elapsedMillis(startTime);
+      if (replica.isAborted()) {
+        latencyTracker.requestAborted(url, elapsed);
+      } else if (isRetryable(e)) {
+        latencyTracker.requestFailed(url, elapsed);
+      } else {
+        // the replica answered, the request itself was wrong
+        latencyTracker.requestEnded(url, shard, elapsed);
+      }
+      throw e;
+    }
+  }
+
+  private static long elapsedMillis(long startTime) {
+    return TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+  }
+
+  // whether the next replica should be tried after this failure, as LBHttpSolrClient does
+  private static boolean isRetryable(Exception e) {
+    if (e instanceof SolrException) {
+      return RETRY_CODES.contains(((SolrException) e).code());
+    }
+    if (e instanceof SolrServerException) {
+      return ((SolrServerException) e).getRootCause() instanceof IOException;
+    }
+    return e instanceof IOException;
+  }
+
+  /**
+   * Sends a request to a single replica of a shard, registering the HTTP request it sends
+   * with the given {@link ReplicaRequest} so that it can be aborted.
+   *
+   * @param req The solr search request to send
+   * @param replica The replica to send it to
+   * @return The response from the replica
+   */
+  protected NamedList<Object> makeReplicaRequest(QueryRequest req, final ReplicaRequest replica)
+    throws SolrServerException, IOException {
+    try (HttpSolrClient client = new HttpSolrClient(replica.getUrl(), defaultClient) {
+      @Override
+      protected NamedList<Object> executeMethod(HttpRequestBase method, ResponseParser processor)
+        throws SolrServerException {
+        replica.setMethod(method);
+        return super.executeMethod(method, processor);
+      }
+    }) {
+      return client.request(req);
+    }
+  }
+
+  /**
+   * A request to a single replica of a shard, which is aborted if the hedged request to
+   * another replica of the shard answers first.
+   */
+  protected static class ReplicaRequest {
+    private final String url;
+    private HttpUriRequest method;
+    private boolean aborted;
+
+    ReplicaRequest(String url) {
+      this.url = url;
+    }
+
+    /** The url of the replica */
+    public String getUrl() {
+      return url;
+    }
+
+    /** Sets the HTTP request sent to the replica, which is aborted right away if this request was. */
+    public synchronized void setMethod(HttpUriRequest method) {
+      this.method = method;
+      if (aborted) {
+        method.abort();
+      }
+    }
+
+    /** Whether this request was aborted because another replica answered first */
+    public synchronized boolean isAborted() {
+      return aborted;
+    }
+
+    synchronized void abort() {
+      aborted = true;
+      if (method != null) {
+        method.abort();
+      }
+    }
+  }
+
+  private static class ReplicaRsp extends LBHttpSolrClient.Rsp {
+    ReplicaRsp(String server, NamedList<Object> rsp) {
+      this.server = server;
+      this.rsp = rsp;
+    }
+  }
+
+  /**
+   * The second request of a hedged shard request, sent to the next replica on a pool thread
+   * once the first replica has been slow to answer.  The requests are not retried on other
+   * replicas once one of them answered, and the request that answers first aborts the other
+   * one.  The calling thread only waits for the hedged request if it is running already, not
+   * if it is still queued, so that a bounded pool cannot deadlock.
+   */
+  private class HedgedRequest implements Runnable {
+    private final QueryRequest req;
+    private final ReplicaRequest replica;
+    private final String shard;
+
+    // the request to the replicas in order, made on the calling thread
+    private ReplicaRequest primary;
+    private int primaryIndex;
+    private boolean primaryDone;
+
+    private boolean started;
+    private boolean done;
+    private LBHttpSolrClient.Rsp rsp;
+
+    HedgedRequest(QueryRequest req, String url, String shard) {
+      this.req = req;
+      this.replica = new ReplicaRequest(url);
+      this.shard = shard;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        // no point if the first replica answered or failed meanwhile
+        if (primaryDone || primaryIndex > 0) {
+          return;
+        }
+        started = true;
+      }
+      log.debug("Hedging request to {} with {}", shard, replica.getUrl());
+      LBHttpSolrClient.Rsp hedgeRsp = null;
+      try {
+        hedgeRsp = makeTrackedRequest(req, replica, shard);
+      } catch (Exception e) {
+        log.debug("Hedged request to {} failed", replica.getUrl(), e);
+      }
+      synchronized (this) {
+        done = true;
+        if (hedgeRsp != null && rsp == null) {
+          rsp = hedgeRsp;
+          if (!primaryDone && primary != null) {
+            primary.abort();
+          }
+        }
+        notifyAll();
+      }
+    }
+
+    /** Returns false if the hedged request answered already and no other replica should be tried. */
+    synchronized boolean startPrimary(ReplicaRequest request, int index) {
+      if (rsp != null) {
+        return false;
+      }
+      primary = request;
+      primaryIndex = index;
+      return true;
+    }
+
+    synchronized boolean isSentTo(String url) {
+      return started && !done && replica.getUrl().equals(url);
+    }
+
+    /**
+     * Returns the first successful response, given the outcome of the requests made on the
+     * calling thread.
+     */
+    synchronized LBHttpSolrClient.Rsp finish(LBHttpSolrClient.Rsp primaryRsp, Exception failure)
+      throws SolrServerException, IOException {
+      primaryDone = true;
+      if (primaryRsp != null && rsp == null) {
+        rsp = primaryRsp;
+        if (started && !done) {
+          replica.abort();
+        }
+      }
+      while (rsp == null && started && !done) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          replica.abort();
+          Thread.currentThread().interrupt();
+          throw new SolrServerException(e);
+        }
+      }
+      if (rsp != null) {
+        return rsp;
+      }
+      if (failure instanceof SolrServerException) throw (SolrServerException) failure;
+      if (failure instanceof IOException) throw (IOException) failure;
+      if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+      throw new SolrServerException("No live SolrServers available to handle this request", failure);
+    }
+  }
+
   /**
    * Creates a randomized list of urls for the given shard.
    *
@@ -245,8 +602,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     // This prevents accidental synchronization where multiple shards could get in sync
     // and query the same replica at the same time.
     //
-    if (urls.size() > 1)
+    if (urls.size() > 1) {
       Collections.shuffle(urls, r);
+      // stable, so the replicas that are equally fast stay shuffled
+      if (REPLICA_SELECTION_LATENCY.equals(replicaSelection)) {
+        latencyTracker.sort(urls);
+      }
+    }
 
     return urls;
   }
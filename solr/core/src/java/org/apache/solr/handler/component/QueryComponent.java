@@ -918,6 +918,12 @@ public class QueryComponent extends SearchComponent
 
     if (additionalAdded) sreq.params.add(CommonParams.FL, additionalFL.toString());
 
+    // only the ids and scores are needed to merge the responses, unless they also
+    // hold the returned fields or some merge strategy needs the documents
+    if (!rb.onePassDistributedQuery && rb.getMergeStrategies() == null) {
+      sreq.responseParser = new ShardIdsResponseParser(keyFieldName, HttpShardHandlerFactory.SHARD_RESPONSE_STRINGS);
+    }
+
     rb.addRequest(this, sreq);
   }
   
@@ -1029,11 +1035,16 @@ public class QueryComponent extends SearchComponent
         NamedList sortFieldValues = (NamedList)(srsp.getSolrResponse().getResponse().get("sort_values"));
         NamedList unmarshalledSortFieldValues = unmarshalSortValues(ss, sortFieldValues, schema);
 
+        // the ids and scores, if the documents weren't built when parsing the response
+        ShardIdsResponseParser.IdList idList =
+            docs instanceof ShardIdsResponseParser.IdList ? (ShardIdsResponseParser.IdList) docs : null;
+        int numDocs = idList != null ? idList.getIds().size() : docs.size();
+
         // go through every doc in this response, construct a ShardDoc, and
         // put it in the priority queue so it can be ordered.
-        for (int i=0; i<docs.size(); i++) {
-          SolrDocument doc = docs.get(i);
-          Object id = doc.getFieldValue(uniqueKeyField.getName());
+        for (int i=0; i<numDocs; i++) {
+          SolrDocument doc = idList != null ? null : docs.get(i);
+          Object id = idList != null ? idList.getIds().get(i) : doc.getFieldValue(uniqueKeyField.getName());
 
           String prevShard = uniqueDoc.put(id, srsp.getShard());
           if (prevShard != null) {
@@ -1055,7 +1066,7 @@ public class QueryComponent extends SearchComponent
           shardDoc.id = id;
           shardDoc.shard = srsp.getShard();
           shardDoc.orderInShard = i;
-          Object scoreObj = doc.getFieldValue("score");
+          Object scoreObj = idList != null ? idList.getScores().get(i) : doc.getFieldValue("score");
           if (scoreObj != null) {
             if (scoreObj instanceof String) {
               shardDoc.score = Float.parseFloat((String)scoreObj);
@@ -20,17 +20,27 @@ package org.apache.solr.handler.component;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.StorableField;
 import org.apache.lucene.index.StoredDocument;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.solr.client.solrj.SolrResponse;
 import org.apache.solr.cloud.CloudDescriptor;
 import org.apache.solr.cloud.ZkController;
@@ -38,6 +48,7 @@ import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 import org.apache.solr.common.cloud.ClusterState;
 import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.cloud.Slice;
@@ -61,6 +72,7 @@ import org.apache.solr.search.SolrReturnFields;
 import org.apache.solr.update.DocumentBuilder;
 import org.apache.solr.update.PeerSync;
 import org.apache.solr.update.UpdateLog;
+import org.apache.solr.update.VersionInfo;
 import org.apache.solr.util.RefCounted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -143,6 +155,7 @@ public class RealTimeGetComponent extends SearchComponent
      BytesRefBuilder idBytes = new BytesRefBuilder();
      for (String idStr : allIds) {
        fieldType.readableToIndexed(idStr, idBytes);
+       long inPlaceVersion = 0;
        if (ulog != null) {
          Object o = ulog.lookup(idBytes.get());
          if (o != null) {
@@ -160,10 +173,14 @@ public class RealTimeGetComponent extends SearchComponent
               break;
              case UpdateLog.DELETE:
               break;
+             case UpdateLog.UPDATE_INPLACE:
+               // only docValues were updated since the document was indexed, so its stored fields are read from the index
+               inPlaceVersion = (Long)entry.get(1);
+               break;
              default:
                throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,  "Unknown Operation! " + oper);
            }
-           continue;
+           if (inPlaceVersion == 0) continue;
          }
        }
 
@@ -179,6 +196,10 @@ public class RealTimeGetComponent extends SearchComponent
        if (docid < 0) continue;
        StoredDocument luceneDocument = searcher.doc(docid, rsp.getReturnFields().getLuceneFieldNames());
        SolrDocument doc = toSolrDoc(luceneDocument,  core.getLatestSchema());
+       long version = inPlaceVersion != 0 ? inPlaceVersion : getDocValuesVersion(searcher, docid);
+       if (version != 0 && doc.getFieldValue(VersionInfo.VERSION_FIELD) != null) {
+         doc.setField(VersionInfo.VERSION_FIELD, version);
+       }
        if( transformer != null ) {
          transformer.transform(doc, docid);
        }
@@ -210,7 +231,8 @@ public class RealTimeGetComponent extends SearchComponent
 
   /** returns the SolrInputDocument from the current tlog, or DELETED if it has been deleted, or
    * null if there is no record of it in the current update log.  If null is returned, it could
-   * still be in the latest index.
+   * still be in the latest index.  A document last updated in place is read from the latest index,
+   * with the values of the update log.
    */
   public static SolrInputDocument getInputDocumentFromTlog(SolrCore core, BytesRef idBytes) {
 
@@ -228,6 +250,8 @@ public class RealTimeGetComponent extends SearchComponent
             return (SolrInputDocument)entry.get(entry.size()-1);
           case UpdateLog.DELETE:
             return DELETED;
+          case UpdateLog.UPDATE_INPLACE:
+            return getInPlaceUpdatedDocument(core, idBytes, (SolrInputDocument)entry.get(entry.size()-1));
           default:
             throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,  "Unknown Operation! " + oper);
         }
@@ -261,6 +285,10 @@ public class RealTimeGetComponent extends SearchComponent
         if (docid < 0) return null;
         StoredDocument luceneDocument = searcher.doc(docid);
         sid = toSolrInputDocument(luceneDocument, core.getLatestSchema());
+        long version = getDocValuesVersion(searcher, docid);
+        if (version != 0 && sid.getFieldValue(VersionInfo.VERSION_FIELD) != null) {
+          sid.setField(VersionInfo.VERSION_FIELD, version);
+        }
       }
     } finally {
       if (searcherHolder != null) {
@@ -271,6 +299,110 @@ public class RealTimeGetComponent extends SearchComponent
     return sid;
   }
 
+  /** Returns the stored fields of an indexed document, with the values it was updated in place with since. */
+  private static SolrInputDocument getInPlaceUpdatedDocument(SolrCore core, BytesRef idBytes, SolrInputDocument partialDoc) {
+    RefCounted<SolrIndexSearcher> searcherHolder = core.getRealtimeSearcher();
+    try {
+      SolrIndexSearcher searcher = searcherHolder.get();
+      SchemaField idField = core.getLatestSchema().getUniqueKeyField();
+
+      int docid = searcher.getFirstMatch(new Term(idField.getName(), idBytes));
+      if (docid < 0) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Document updated in place is missing from the index: " + partialDoc);
+      }
+      SolrInputDocument sid = toSolrInputDocument(searcher.doc(docid), core.getLatestSchema());
+      for (SolrInputField sif : partialDoc) {
+        sid.setField(sif.getName(), sif.getValue(), sif.getBoost());
+      }
+      return sid;
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error reading document updated in place", e);
+    } finally {
+      searcherHolder.decref();
+    }
+  }
+
+  /**
+   * Returns the current values of the docValues fields of a document, to update them in place: the values
+   * of its last update in place in the current update log, or else the values of the latest index.
+   *
+   * @return a document with the uniqueKey and the values of the fields, or null if the document was added or
+   * deleted in the current update log, or is not in the latest index, or if one of the fields isn't a numeric
+   * docValues field of the latest index
+   */
+  public static SolrInputDocument getInPlaceUpdatableValues(SolrCore core, BytesRef idBytes, Collection<String> fieldNames) throws IOException {
+    IndexSchema schema = core.getLatestSchema();
+    SolrInputDocument values = null;
+    UpdateLog ulog = core.getUpdateHandler().getUpdateLog();
+    if (ulog != null) {
+      Object o = ulog.lookup(idBytes);
+      if (o != null) {
+        List entry = (List)o;
+        if (((Integer)entry.get(0) & UpdateLog.OPERATION_MASK) != UpdateLog.UPDATE_INPLACE) {
+          return null;
+        }
+        values = ((SolrInputDocument)entry.get(entry.size()-1)).deepCopy();
+      }
+    }
+
+    RefCounted<SolrIndexSearcher> searcherHolder = core.getRealtimeSearcher();
+    try {
+      SolrIndexSearcher searcher = searcherHolder.get();
+      long lookup = searcher.lookupId(idBytes);
+      if (lookup < 0) return null;
+
+      SchemaField idField = schema.getUniqueKeyField();
+      if (values == null) {
+        values = new SolrInputDocument();
+        values.setField(idField.getName(), idField.getType().indexedToReadable(idBytes, new CharsRefBuilder()).toString());
+      }
+      FieldInfos fieldInfos = searcher.getLeafReader().getFieldInfos();
+      if (!hasNumericDocValues(fieldInfos, VersionInfo.VERSION_FIELD)) {
+        return null;
+      }
+      for (String fieldName : fieldNames) {
+        if (fieldName.equals(idField.getName()) || fieldName.equals(VersionInfo.VERSION_FIELD)) continue;
+        if (!hasNumericDocValues(fieldInfos, fieldName)) {
+          // the docValues of a field can only be updated once some document of the index has them
+          return null;
+        }
+        if (values.containsKey(fieldName)) continue;
+
+        SchemaField sf = schema.getField(fieldName);
+        ValueSource vs = sf.getType().getValueSource(sf, null);
+        Map context = ValueSource.newContext(searcher);
+        vs.createWeight(context, searcher);
+        FunctionValues fv = vs.getValues(context, searcher.getTopReaderContext().leaves().get((int)(lookup>>32)));
+        Object value = fv.objectVal((int)lookup);
+        if (value != null) {
+          values.setField(fieldName, value);
+        }
+      }
+      return values;
+    } finally {
+      searcherHolder.decref();
+    }
+  }
+
+  private static boolean hasNumericDocValues(FieldInfos fieldInfos, String fieldName) {
+    FieldInfo fieldInfo = fieldInfos.fieldInfo(fieldName);
+    return fieldInfo != null && fieldInfo.getDocValuesType() == DocValuesType.NUMERIC;
+  }
+
+  /**
+   * Returns the version of an indexed document, which is newer than its stored version once the document was
+   * updated in place, or 0 if the version field has no docValues.
+   */
+  private static long getDocValuesVersion(SolrIndexSearcher searcher, int docid) throws IOException {
+    SchemaField sf = searcher.getSchema().getFieldOrNull(VersionInfo.VERSION_FIELD);
+    if (sf == null || !sf.hasDocValues()) return 0;
+
+    List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docid, leaves));
+    NumericDocValues versions = leaf.reader().getNumericDocValues(sf.getName());
+    return versions == null ? 0 : versions.get(docid - leaf.docBase);
+  }
+
   private static SolrInputDocument toSolrInputDocument(StoredDocument doc, IndexSchema schema) {
     SolrInputDocument out = new SolrInputDocument();
     for( StorableField f : doc.getFields() ) {
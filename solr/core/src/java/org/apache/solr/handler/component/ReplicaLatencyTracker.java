@@ -0,0 +1,235 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.util.stats.EWMA;
+import org.apache.solr.util.stats.ExponentiallyDecayingSample;
+
+/**
+ * Keeps track of how fast the replicas answer shard requests, for
+ * {@link HttpShardHandlerFactory} to send requests to the replicas that are likely to
+ * answer first, and to decide when a request to a slow replica should be hedged by a
+ * second request to another replica of the same shard.
+ * <p>
+ * Each replica is scored by the moving average of its latency multiplied by the
+ * number of requests it is currently serving plus one, so that a replica that
+ * stalls (in a GC pause for instance) stops receiving new requests as soon as
+ * they pile up on it, before its average latency catches up.
+ *
+ * @lucene.internal
+ */
+public class ReplicaLatencyTracker {
+
+  // weight of each new latency in the moving average of a replica
+  private static final double ALPHA = 0.2;
+  // reservoir of the latencies of each shard, biased towards the last few minutes
+  private static final int SAMPLE_SIZE = 1028;
+  private static final double SAMPLE_ALPHA = 0.015;
+  // how often the hedging delay of a shard is computed from its latencies
+  private static final long HEDGE_DELAY_REFRESH_NS = TimeUnit.SECONDS.toNanos(1);
+  // the latency in milliseconds recorded for a replica when a request to it fails
+  static final long FAILURE_PENALTY = 1000;
+
+  private final ConcurrentMap<String,ReplicaLoad> replicas = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String,ShardLatencies> shards = new ConcurrentHashMap<>();
+
+  private final float hedgeQuantile;
+  private final int hedgeMinSamples;
+  private final long hedgeMinDelay;
+
+  /**
+   * @param hedgeQuantile the quantile of the latencies of a shard after which a request
+   *                      to this shard is hedged, or 0 to never hedge requests
+   * @param hedgeMinSamples the number of latencies recorded for a shard before its
+   *                      requests may be hedged
+   * @param hedgeMinDelay the minimum time in milliseconds before hedging a request
+   */
+  public ReplicaLatencyTracker(float hedgeQuantile, int hedgeMinSamples, long hedgeMinDelay) {
+    if (hedgeQuantile < 0 || hedgeQuantile >= 1) {
+      throw new IllegalArgumentException("hedgeQuantile must be in [0, 1): " + hedgeQuantile);
+    }
+    this.hedgeQuantile = hedgeQuantile;
+    this.hedgeMinSamples = hedgeMinSamples;
+    this.hedgeMinDelay = hedgeMinDelay;
+  }
+
+  private static class ReplicaLoad {
+    // a moving average of the latencies, ticked on each of them
+    final EWMA latency = new EWMA(ALPHA, 1, TimeUnit.NANOSECONDS);
+    final AtomicInteger outstanding = new AtomicInteger();
+    volatile boolean measured;
+
+    void update(long elapsed) {
+      synchronized (latency) {
+        latency.update(elapsed);
+        latency.tick();
+      }
+      measured = true;
+    }
+
+    double score() {
+      // replicas that were never measured come first, so that they get measured
+      return measured ? latency.getRate(TimeUnit.NANOSECONDS) * (outstanding.get() + 1) : 0;
+    }
+  }
+
+  private static class ShardLatencies {
+    final ExponentiallyDecayingSample sample = new ExponentiallyDecayingSample(SAMPLE_SIZE, SAMPLE_ALPHA);
+    final AtomicLong count = new AtomicLong();
+    volatile long hedgeDelay = -1;
+    volatile long hedgeDelayTime;
+  }
+
+  private ReplicaLoad getReplicaLoad(String url) {
+    ReplicaLoad load = replicas.get(url);
+    if (load == null) {
+      load = new ReplicaLoad();
+      ReplicaLoad previous = replicas.putIfAbsent(url, load);
+      if (previous != null) {
+        load = previous;
+      }
+    }
+    return load;
+  }
+
+  private ShardLatencies getShardLatencies(String shard) {
+    ShardLatencies latencies = shards.get(shard);
+    if (latencies == null) {
+      latencies = new ShardLatencies();
+      ShardLatencies previous = shards.putIfAbsent(shard, latencies);
+      if (previous != null) {
+        latencies = previous;
+      }
+    }
+    return latencies;
+  }
+
+  /**
+   * Sorts the URLs of the replicas of a shard by increasing expected latency.  The sort
+   * is stable, so replicas with the same score keep the order they were given in.
+   */
+  public void sort(List<String> urls) {
+    if (urls.size() <= 1) {
+      return;
+    }
+    final double[] scores = new double[urls.size()];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = getReplicaLoad(urls.get(i)).score();
+    }
+    final List<String> unsorted = new ArrayList<>(urls);
+    Integer[] order = new Integer[scores.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Double.compare(scores[a], scores[b]);
+      }
+    });
+    for (int i = 0; i < order.length; i++) {
+      urls.set(i, unsorted.get(order[i]));
+    }
+  }
+
+  /** Records that a request to the given replica started. */
+  public void requestStarted(String url) {
+    getReplicaLoad(url).outstanding.incrementAndGet();
+  }
+
+  /**
+   * Records that a replica answered a request.
+   *
+   * @param url the replica the request was sent to
+   * @param shard the shard the request was for
+   * @param elapsed the time the request took in milliseconds
+   */
+  public void requestEnded(String url, String shard, long elapsed) {
+    ReplicaLoad load = getReplicaLoad(url);
+    load.outstanding.decrementAndGet();
+    load.update(elapsed);
+    if (hedgeQuantile > 0) {
+      ShardLatencies latencies = getShardLatencies(shard);
+      latencies.sample.update(elapsed);
+      latencies.count.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records that a request to a replica failed, so that the replica is tried after the
+   * others for a while: its latency counts as at least {@link #FAILURE_PENALTY}.
+   *
+   * @param url the replica the request was sent to
+   * @param elapsed the time the request took in milliseconds
+   */
+  public void requestFailed(String url, long elapsed) {
+    ReplicaLoad load = getReplicaLoad(url);
+    load.outstanding.decrementAndGet();
+    load.update(Math.max(elapsed, FAILURE_PENALTY));
+  }
+
+  /**
+   * Records that a request to a replica was aborted before it answered, because another
+   * replica answered first.  The time it took counts as its latency, which is at least that.
+   *
+   * @param url the replica the request was sent to
+   * @param elapsed the time the request took in milliseconds
+   */
+  public void requestAborted(String url, long elapsed) {
+    ReplicaLoad load = getReplicaLoad(url);
+    load.outstanding.decrementAndGet();
+    load.update(elapsed);
+  }
+
+  /**
+   * Returns how long to wait in milliseconds for a response from a replica of the given
+   * shard before sending the same request to another replica, or -1 if requests to this
+   * shard should not be hedged.
+   */
+  public long getHedgeDelay(String shard) {
+    if (hedgeQuantile == 0) {
+      return -1;
+    }
+    ShardLatencies latencies = getShardLatencies(shard);
+    if (latencies.count.get() < hedgeMinSamples) {
+      return -1;
+    }
+    long now = System.nanoTime();
+    if (latencies.hedgeDelay == -1 || now - latencies.hedgeDelayTime > HEDGE_DELAY_REFRESH_NS) {
+      double quantile = latencies.sample.getSnapshot().getValue(hedgeQuantile);
+      latencies.hedgeDelay = Math.max(hedgeMinDelay, (long) Math.ceil(quantile));
+      latencies.hedgeDelayTime = now;
+    }
+    return latencies.hedgeDelay;
+  }
+
+  /** Returns the expected latency of the given replica, as used to sort them. */
+  double getScore(String url) {
+    return getReplicaLoad(url).score();
+  }
+}
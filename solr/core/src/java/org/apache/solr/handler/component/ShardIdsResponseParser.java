@@ -0,0 +1,184 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
+import org.apache.solr.common.util.DataInputInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Parses the responses to the requests of the top ids of the shards, without building a
+ * {@link SolrDocument} for each of the returned documents: the documents are read as they
+ * are decoded, and only their unique key and score are kept in an {@link IdList}, which
+ * is all that is needed to merge the ids of the shards.  String ids are not even decoded,
+ * but kept as {@link ByteArrayUtf8CharSequence}s, since only those of the documents that
+ * make it to the merged results need to be.
+ *
+ * @lucene.internal
+ */
+public class ShardIdsResponseParser extends BinaryResponseParser {
+  private final String uniqueKeyField;
+
+  public ShardIdsResponseParser(String uniqueKeyField, JavaBinCodec.StringCache stringCache) {
+    super(stringCache);
+    this.uniqueKeyField = uniqueKeyField;
+  }
+
+  /**
+   * The documents of a shard response, as parallel lists of their unique keys and scores.
+   * The list itself stays empty.
+   */
+  public static class IdList extends SolrDocumentList {
+    private final List<Object> ids = new ArrayList<>();
+    private final List<Object> scores = new ArrayList<>();
+
+    public List<Object> getIds() {
+      return ids;
+    }
+
+    /** the scores of the documents, null where the shard didn't return one */
+    public List<Object> getScores() {
+      return scores;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public NamedList<Object> processResponse(InputStream body, String encoding) {
+    try {
+      return (NamedList<Object>) new IdListCodec().unmarshal(body);
+    } catch (IOException e) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
+    }
+  }
+
+  private class IdListCodec extends JavaBinCodec {
+    IdListCodec() {
+      super(null, stringCache);
+    }
+
+    // the list the documents being read go to, if reading the documents of the response
+    private IdList idList;
+    // > 0 while reading the fields of a document
+    private int depth;
+    // the nesting level of the named lists being read, and the name of the value being read
+    // in the top level one: only the "response" document list is read as an IdList
+    private int level;
+    private String topLevelName;
+
+    @Override
+    public NamedList<Object> readNamedList(DataInputInputStream dis) throws IOException {
+      return readNamedList(dis, new NamedList<>());
+    }
+
+    @Override
+    public SimpleOrderedMap<Object> readOrderedMap(DataInputInputStream dis) throws IOException {
+      return readNamedList(dis, new SimpleOrderedMap<>());
+    }
+
+    private <T extends NamedList<Object>> T readNamedList(DataInputInputStream dis, T nl) throws IOException {
+      int sz = readSize(dis);
+      level++;
+      try {
+        for (int i = 0; i < sz; i++) {
+          String name = (String) readVal(dis);
+          if (level == 1) {
+            topLevelName = name;
+          }
+          nl.add(name, readVal(dis));
+        }
+      } finally {
+        level--;
+        if (level == 0) {
+          topLevelName = null;
+        }
+      }
+      return nl;
+    }
+
+    @Override
+    public SolrDocumentList readSolrDocumentList(DataInputInputStream dis) throws IOException {
+      if (idList != null || depth > 0 || level != 1 || !"response".equals(topLevelName)) {
+        return super.readSolrDocumentList(dis);
+      }
+      IdList docs = new IdList();
+      List list = (List) readVal(dis);
+      docs.setNumFound((Long) list.get(0));
+      docs.setStart((Long) list.get(1));
+      docs.setMaxScore((Float) list.get(2));
+
+      tagByte = dis.readByte();
+      if ((tagByte >>> 5) != (ARR >>> 5)) {
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "doclist must have an array");
+      }
+      int sz = readSize(dis);
+      idList = docs;
+      try {
+        for (int i = 0; i < sz; i++) {
+          readVal(dis); // a document, read by readSolrDocument
+        }
+      } finally {
+        idList = null;
+      }
+      return docs;
+    }
+
+    @Override
+    public SolrDocument readSolrDocument(DataInputInputStream dis) throws IOException {
+      if (idList == null || depth > 0) {
+        return super.readSolrDocument(dis);
+      }
+      tagByte = dis.readByte();
+      int size = readSize(dis);
+      Object id = null;
+      Object score = null;
+      depth++;
+      try {
+        for (int i = 0; i < size; i++) {
+          Object obj = readVal(dis); // could be a field name, or a child document
+          if (obj instanceof SolrDocument) {
+            continue;
+          }
+          if (uniqueKeyField.equals(obj)) {
+            id = readValUtf8(dis);
+          } else if ("score".equals(obj)) {
+            score = readVal(dis);
+          } else {
+            readVal(dis);
+          }
+        }
+      } finally {
+        depth--;
+      }
+      idList.ids.add(id);
+      idList.scores.add(score);
+      return null;
+    }
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.solr.handler.component;
 
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.common.params.ModifiableSolrParams;
 
 import java.util.ArrayList;
@@ -60,6 +61,9 @@ public class ShardRequest {
   /** may be null */
   public String nodeName;
 
+  /** the javabin parser of the responses, may be null to use the default one */
+  public ResponseParser responseParser;
+
   // TODO: one could store a list of numbers to correlate where returned docs
   // go in the top-level response rather than looking up by id...
   // this would work well if we ever transitioned to using internal ids and
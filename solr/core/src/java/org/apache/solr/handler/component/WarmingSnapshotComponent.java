@@ -0,0 +1,443 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.EventParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.servlet.SolrRequestParsers;
+import org.apache.solr.util.DefaultSolrThreadFactory;
+import org.apache.solr.util.plugin.SolrCoreAware;
+import org.noggit.JSONUtil;
+import org.noggit.ObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the most frequently executed queries and filter queries seen
+ * by the local searcher, periodically persists the top entries to a snapshot
+ * file in the core's data directory, and replays them in parallel on the
+ * firstSearcher event so that the filterCache and queryResultCache do not start
+ * cold after a restart or a core reload.
+ * <p>
+ * The snapshot is written in the background every <code>persistIntervalSecs</code>
+ * and when the core is closed.
+ * Requests issued by searcher event listeners (such as
+ * {@link org.apache.solr.core.QuerySenderListener}) are not tracked.
+ * <p>
+ * Add it to a requestHandler in solrconfig.xml like this:
+ * <pre class="prettyprint">
+ * &lt;searchComponent name="warmingSnapshot" class="solr.WarmingSnapshotComponent"&gt;
+ *   &lt;str name="snapshotFile"&gt;warming_snapshot.json&lt;/str&gt;
+ *   &lt;int name="size"&gt;64&lt;/int&gt;
+ *   &lt;int name="threads"&gt;4&lt;/int&gt;
+ * &lt;/searchComponent&gt;
+ *
+ * &lt;requestHandler name="/select" class="solr.SearchHandler"&gt;
+ *   &lt;arr name="last-components"&gt;
+ *     &lt;str&gt;warmingSnapshot&lt;/str&gt;
+ *   &lt;/arr&gt;
+ * &lt;/requestHandler&gt;</pre>
+ */
+public class WarmingSnapshotComponent extends SearchComponent implements SolrCoreAware {
+  private static final Logger LOG = LoggerFactory.getLogger(WarmingSnapshotComponent.class);
+
+  public static final String COMPONENT_NAME = "warmingSnapshot";
+
+  /** Name of the snapshot file; relative paths are resolved against the core's data dir */
+  public static final String SNAPSHOT_FILE = "snapshotFile";
+  /** Number of queries and filters that are persisted and replayed */
+  public static final String SIZE = "size";
+  /** Maximum number of distinct queries and filters tracked in memory */
+  public static final String MAX_TRACKED = "maxTracked";
+  /** Number of threads used to replay the snapshot on the firstSearcher event */
+  public static final String THREADS = "threads";
+  /** Number of seconds between two snapshots written in the background; 0 only writes it on close */
+  public static final String PERSIST_INTERVAL_SECS = "persistIntervalSecs";
+  /** Request handler the snapshot is replayed through; the default handler if not specified */
+  public static final String HANDLER = "handler";
+
+  static final String QUERIES = "queries";
+  static final String FILTERS = "filters";
+
+  /** Request parameters that make up the queryResultCache key of a tracked query */
+  private static final String[] QUERY_KEY_PARAMS = {
+      CommonParams.Q, "defType", CommonParams.DF, "q.op", CommonParams.SORT, CommonParams.FQ
+  };
+
+  private String snapshotFileName = "warming_snapshot.json";
+  private int size = 64;
+  private int maxTracked = 1024;
+  private int threads = 4;
+  private long persistIntervalSecs = 300L;
+  private String handlerName;
+
+  private File snapshotFile;
+  private final ConcurrentHashMap<String,AtomicLong> queryHits = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String,AtomicLong> filterHits = new ConcurrentHashMap<>();
+  // runs the periodic snapshot writes and the replays of the core's lifetime
+  private ScheduledThreadPoolExecutor executor;
+
+  @Override
+  public void init(NamedList args) {
+    super.init(args);
+    SolrParams initArgs = SolrParams.toSolrParams(args);
+    snapshotFileName = initArgs.get(SNAPSHOT_FILE, snapshotFileName);
+    size = initArgs.getInt(SIZE, size);
+    maxTracked = Math.max(size, initArgs.getInt(MAX_TRACKED, Math.max(maxTracked, size * 4)));
+    threads = Math.max(1, initArgs.getInt(THREADS, threads));
+    persistIntervalSecs = initArgs.getLong(PERSIST_INTERVAL_SECS, persistIntervalSecs);
+    handlerName = initArgs.get(HANDLER);
+  }
+
+  @Override
+  public void inform(SolrCore core) {
+    snapshotFile = new File(snapshotFileName);
+    if (!snapshotFile.isAbsolute()) {
+      snapshotFile = new File(core.getDataDir(), snapshotFileName);
+    }
+    load();
+
+    executor = new ScheduledThreadPoolExecutor(threads, new DefaultSolrThreadFactory("warmingSnapshotExecutor"));
+    if (persistIntervalSecs > 0) {
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          persist();
+        }
+      }, persistIntervalSecs, persistIntervalSecs, TimeUnit.SECONDS);
+    }
+
+    SnapshotListener listener = new SnapshotListener(core);
+    core.registerFirstSearcherListener(listener);
+    core.addCloseHook(new CloseHook() {
+      @Override
+      public void preClose(SolrCore core) {
+        // stops the periodic writes and waits for a running replay before the last write
+        ExecutorUtil.shutdownAndAwaitTermination(executor);
+        persist();
+      }
+
+      @Override
+      public void postClose(SolrCore core) {
+      }
+    });
+  }
+
+  @Override
+  public void prepare(ResponseBuilder rb) throws IOException {
+    SolrParams params = rb.req.getParams();
+    // only track the requests that actually populate this core's caches
+    if (rb.isDistrib || params.get(EventParams.EVENT) != null || params.get(ShardParams.IDS) != null) {
+      return;
+    }
+
+    String q = params.get(CommonParams.Q);
+    if (q != null) {
+      ModifiableSolrParams key = new ModifiableSolrParams();
+      for (String name : QUERY_KEY_PARAMS) {
+        String[] vals = params.getParams(name);
+        if (vals != null) {
+          key.set(name, vals);
+        }
+      }
+      track(queryHits, key.toString());
+    }
+
+    String[] fqs = params.getParams(CommonParams.FQ);
+    if (fqs != null) {
+      for (String fq : fqs) {
+        if (fq != null && fq.trim().length() > 0) {
+          track(filterHits, fq);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void process(ResponseBuilder rb) throws IOException {
+  }
+
+  private void track(ConcurrentHashMap<String,AtomicLong> hits, String key) {
+    AtomicLong count = hits.get(key);
+    if (count == null) {
+      if (hits.size() >= maxTracked) {
+        prune(hits);
+      }
+      AtomicLong newCount = new AtomicLong();
+      count = hits.putIfAbsent(key, newCount);
+      if (count == null) count = newCount;
+    }
+    count.incrementAndGet();
+  }
+
+  /** Drops the least frequently used half of the tracked entries */
+  private void prune(Map<String,AtomicLong> hits) {
+    synchronized (hits) {
+      if (hits.size() < maxTracked) return;
+      List<Map.Entry<String,Long>> sorted = top(hits, Integer.MAX_VALUE);
+      for (int i = maxTracked / 2; i < sorted.size(); i++) {
+        hits.remove(sorted.get(i).getKey());
+      }
+    }
+  }
+
+  private static List<Map.Entry<String,Long>> top(Map<String,AtomicLong> hits, int n) {
+    List<Map.Entry<String,Long>> entries = new ArrayList<>(hits.size());
+    for (Map.Entry<String,AtomicLong> e : hits.entrySet()) {
+      entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().get()));
+    }
+    Collections.sort(entries, new Comparator<Map.Entry<String,Long>>() {
+      @Override
+      public int compare(Map.Entry<String,Long> a, Map.Entry<String,Long> b) {
+        return Long.compare(b.getValue(), a.getValue());
+      }
+    });
+    return entries.size() > n ? entries.subList(0, n) : entries;
+  }
+
+  /**
+   * Writes the current top entries to the snapshot file.  The file is written
+   * to a temporary file first and then renamed so a crash never leaves a
+   * truncated snapshot behind.
+   */
+  public synchronized void persist() {
+    if (snapshotFile == null) return;
+
+    Map<String,Object> snapshot = new LinkedHashMap<>();
+    snapshot.put(QUERIES, toMap(top(queryHits, size)));
+    snapshot.put(FILTERS, toMap(top(filterHits, size)));
+
+    File tmp = new File(snapshotFile.getPath() + ".tmp");
+    Writer writer = null;
+    try {
+      File parent = snapshotFile.getParentFile();
+      if (parent != null && !parent.exists()) {
+        parent.mkdirs();
+      }
+      writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8);
+      writer.write(JSONUtil.toJSON(snapshot));
+      writer.close();
+      writer = null;
+      if (!tmp.renameTo(snapshotFile)) {
+        // renameTo does not replace an existing file on every platform
+        snapshotFile.delete();
+        if (!tmp.renameTo(snapshotFile)) {
+          LOG.warn("Could not rename " + tmp + " to " + snapshotFile);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not write warming snapshot " + snapshotFile, e);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+  private static Map<String,Long> toMap(List<Map.Entry<String,Long>> entries) {
+    Map<String,Long> map = new LinkedHashMap<>();
+    for (Map.Entry<String,Long> e : entries) {
+      map.put(e.getKey(), e.getValue());
+    }
+    return map;
+  }
+
+  /** Seeds the hit counts from an existing snapshot so the ranking survives restarts */
+  @SuppressWarnings("unchecked")
+  private void load() {
+    if (!snapshotFile.exists()) return;
+    InputStream is = null;
+    try {
+      is = new FileInputStream(snapshotFile);
+      Object o = ObjectBuilder.fromJSON(IOUtils.toString(is, StandardCharsets.UTF_8));
+      if (!(o instanceof Map)) return;
+      Map<String,Object> snapshot = (Map<String,Object>) o;
+      seed(queryHits, snapshot.get(QUERIES));
+      seed(filterHits, snapshot.get(FILTERS));
+      LOG.info("Loaded warming snapshot {} with {} queries and {} filters",
+          snapshotFile, queryHits.size(), filterHits.size());
+    } catch (Exception e) {
+      LOG.warn("Ignoring unreadable warming snapshot " + snapshotFile, e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void seed(Map<String,AtomicLong> hits, Object entries) {
+    if (!(entries instanceof Map)) return;
+    for (Map.Entry<String,Object> e : ((Map<String,Object>) entries).entrySet()) {
+      if (e.getValue() instanceof Number) {
+        hits.put(e.getKey(), new AtomicLong(((Number) e.getValue()).longValue()));
+      }
+    }
+  }
+
+  /** Executes the top tracked queries and filters against <code>newSearcher</code> */
+  void replay(SolrCore core, SolrIndexSearcher newSearcher) {
+    List<SolrParams> requests = new ArrayList<>();
+    for (Map.Entry<String,Long> e : top(queryHits, size)) {
+      requests.add(SolrRequestParsers.parseQueryString(e.getKey()));
+    }
+    for (Map.Entry<String,Long> e : top(filterHits, size)) {
+      ModifiableSolrParams params = new ModifiableSolrParams();
+      params.set(CommonParams.Q, "*:*");
+      params.set(CommonParams.FQ, e.getKey());
+      params.set(CommonParams.ROWS, 0);
+      requests.add(params);
+    }
+    if (requests.isEmpty()) return;
+
+    LOG.info("Replaying {} warming snapshot requests against {}", requests.size(), newSearcher);
+    long start = System.nanoTime();
+    List<Future<?>> futures = new ArrayList<>(requests.size());
+    try {
+      for (SolrParams params : requests) {
+        futures.add(executor.submit(new ReplayTask(core, newSearcher, params, handlerName)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (RejectedExecutionException e) {
+      // the core is being closed
+      LOG.warn("Warming snapshot replay cancelled");
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } catch (ExecutionException e) {
+      // ReplayTask logs its own failures
+      LOG.warn("Warming snapshot request failed", e.getCause());
+    }
+    LOG.info("Warming snapshot replay done in {}ms", (System.nanoTime() - start) / 1000000);
+  }
+
+  private static class ReplayTask implements Runnable {
+    private final SolrCore core;
+    private final SolrIndexSearcher searcher;
+    private final SolrParams params;
+    private final String handlerName;
+
+    ReplayTask(SolrCore core, SolrIndexSearcher searcher, SolrParams params, String handlerName) {
+      this.core = core;
+      this.searcher = searcher;
+      this.params = params;
+      this.handlerName = handlerName;
+    }
+
+    @Override
+    public void run() {
+      ModifiableSolrParams replayParams = new ModifiableSolrParams(params);
+      replayParams.set(EventParams.EVENT, EventParams.FIRST_SEARCHER);
+      replayParams.set(CommonParams.DISTRIB, false);
+      SolrQueryRequest req = new LocalSolrQueryRequest(core, replayParams) {
+        @Override public SolrIndexSearcher getSearcher() { return searcher; }
+        @Override public void close() { }
+      };
+      try {
+        SolrQueryResponse rsp = new SolrQueryResponse();
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+        core.execute(core.getRequestHandler(handlerName), req, rsp);
+      } catch (Exception e) {
+        // keep going with the other requests; a failing entry only means a colder cache
+        LOG.warn("Warming snapshot request failed: " + params, e);
+      } finally {
+        req.close();
+        SolrRequestInfo.clearRequestInfo();
+      }
+    }
+  }
+
+  private class SnapshotListener implements SolrEventListener {
+    private final SolrCore core;
+
+    SnapshotListener(SolrCore core) {
+      this.core = core;
+    }
+
+    @Override
+    public void init(NamedList args) {
+    }
+
+    @Override
+    public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+      if (currentSearcher == null) {
+        // firstSearcher event
+        replay(core, newSearcher);
+      }
+    }
+
+    @Override
+    public void postCommit() {
+    }
+
+    @Override
+    public void postSoftCommit() {
+    }
+  }
+
+  @Override
+  public NamedList getStatistics() {
+    NamedList<Object> stats = new SimpleOrderedMap<>();
+    stats.add("trackedQueries", queryHits.size());
+    stats.add("trackedFilters", filterHits.size());
+    stats.add("snapshotFile", String.valueOf(snapshotFile));
+    return stats;
+  }
+
+  @Override
+  public String getDescription() {
+    return "A component that persists the most frequent queries and replays them to warm the caches of the first searcher";
+  }
+}
@@ -25,6 +25,7 @@ import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.UpdateParams;
 import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.common.util.FastInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.handler.RequestHandlerUtils;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
@@ -49,6 +50,10 @@ import java.util.Set;
  */
 public class JavabinLoader extends ContentStreamLoader {
   public static Logger log = LoggerFactory.getLogger(JavabinLoader.class);
+
+  // the field names of the documents, shared by all the requests since they
+  // usually repeat from one request to the other
+  private static final JavaBinCodec.StringCache FIELD_NAMES = new JavaBinCodec.StringCache(10000, 0);
   
   @Override
   public void load(SolrQueryRequest req, SolrQueryResponse rsp, ContentStream stream, UpdateRequestProcessor processor) throws Exception {
@@ -103,7 +108,7 @@ public class JavabinLoader extends ContentStreamLoader {
     FastInputStream in = FastInputStream.wrap(stream);
     for (; ; ) {
       try {
-        update = new JavaBinUpdateRequestCodec().unmarshal(in, handler);
+        update = new JavaBinUpdateRequestCodec(FIELD_NAMES).unmarshal(in, handler);
       } catch (EOFException e) {
         break; // this is expected
       }
@@ -36,11 +36,11 @@ import org.apache.solr.common.params.UpdateParams;
 import org.apache.solr.common.util.JsonRecordReader;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.util.RecordingJSONParser;
+import org.noggit.CharArr;
 import org.noggit.JSONParser;
 import org.noggit.ObjectBuilder;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
-import org.apache.solr.common.SolrInputField;
 import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.handler.RequestHandlerUtils;
 import org.apache.solr.handler.UpdateRequestHandler;
@@ -83,6 +83,11 @@ public class JsonLoader extends ContentStreamLoader {
     protected final int commitWithin;
     protected final boolean overwrite;
 
+    // the field names read so far, in an open addressing table, so that the keys of
+    // every document don't each allocate a new String
+    private final String[] fieldNames = new String[256];
+    private int numFieldNames;
+
     public SingleThreadedJsonLoader(SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor processor) {
       this.processor = processor;
       this.req = req;
@@ -536,7 +541,7 @@ public class JsonLoader extends ContentStreamLoader {
         if (ev == JSONParser.OBJECT_END) {
           return sdoc;
         }
-        String fieldName = parser.getString();
+        String fieldName = getFieldName();
 
         if(fieldName.equals(JsonLoader.CHILD_DOC_KEY)) {
           ev = parser.nextEvent();
@@ -547,29 +552,53 @@ public class JsonLoader extends ContentStreamLoader {
             sdoc.addChildDocument(parseDoc(ev));
           }
         } else {
-          SolrInputField sif = new SolrInputField(fieldName);
-          parseFieldValue(sif);
-          // pulling out the pieces may seem weird, but it's because
-          // SolrInputDocument.addField will do the right thing
-          // if the doc already has another value for this field
-          // (ie: repeating fieldname keys)
-          sdoc.addField(sif.getName(), sif.getValue(), sif.getBoost());
+          parseFieldValue(sdoc, fieldName);
         }
 
       }
     }
 
-    private void parseFieldValue(SolrInputField sif) throws IOException {
+    /** Returns the key just read, as the same String for every document of the request. */
+    private String getFieldName() throws IOException {
+      CharArr chars = parser.getStringChars();
+      char[] arr = chars.getArray();
+      int start = chars.getStart();
+      int len = chars.size();
+      // the same hash as String.hashCode(), so that the cached names can be compared with it
+      int hash = 0;
+      for (int i = start; i < start + len; i++) {
+        hash = 31 * hash + arr[i];
+      }
+
+      int mask = fieldNames.length - 1;
+      int slot = hash & mask;
+      for (String name; (name = fieldNames[slot]) != null; slot = (slot + 1) & mask) {
+        if (name.hashCode() == hash && name.length() == len && name.contentEquals(chars)) {
+          return name;
+        }
+      }
+      String name = new String(arr, start, len);
+      // only half of the table is filled, and requests with more distinct keys just allocate the others
+      if (numFieldNames < fieldNames.length / 2) {
+        fieldNames[slot] = name;
+        numFieldNames++;
+      }
+      return name;
+    }
+
+    // SolrInputDocument.addField will do the right thing if the doc already
+    // has another value for this field (ie: repeating fieldname keys)
+    private void parseFieldValue(SolrInputDocument sdoc, String fieldName) throws IOException {
       int ev = parser.nextEvent();
       if (ev == JSONParser.OBJECT_START) {
-        parseExtendedFieldValue(sif, ev);
+        parseExtendedFieldValue(sdoc, fieldName, ev);
       } else {
-        Object val = parseNormalFieldValue(ev, sif.getName());
-        sif.setValue(val, 1.0f);
+        Object val = parseNormalFieldValue(ev, fieldName);
+        sdoc.addField(fieldName, val, 1.0f);
       }
     }
 
-    private void parseExtendedFieldValue(SolrInputField sif, int ev)  throws IOException {
+    private void parseExtendedFieldValue(SolrInputDocument sdoc, String fieldName, int ev)  throws IOException {
       assert ev == JSONParser.OBJECT_START;
 
       float boost = 1.0f;
@@ -587,12 +616,12 @@ public class JsonLoader extends ContentStreamLoader {
                   ev != JSONParser.LONG &&
                   ev != JSONParser.BIGNUMBER ) {
                 throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Boost should have number. "
-                    + "Unexpected "+JSONParser.getEventString(ev)+" at ["+parser.getPosition()+"], field="+sif.getName() );
+                    + "Unexpected "+JSONParser.getEventString(ev)+" at ["+parser.getPosition()+"], field="+fieldName );
               }
 
               boost = (float)parser.getDouble();
             } else if ("value".equals(label)) {
-              normalFieldValue = parseNormalFieldValue(parser.nextEvent(), sif.getName());
+              normalFieldValue = parseNormalFieldValue(parser.nextEvent(), fieldName);
             } else {
               // If we encounter other unknown map keys, then use a map
               if (extendedInfo == null) {
@@ -600,7 +629,7 @@ public class JsonLoader extends ContentStreamLoader {
               }
               // for now, the only extended info will be field values
               // we could either store this as an Object or a SolrInputField
-              Object val = parseNormalFieldValue(parser.nextEvent(), sif.getName());
+              Object val = parseNormalFieldValue(parser.nextEvent(), fieldName);
               extendedInfo.put(label, val);
             }
             break;
@@ -610,15 +639,15 @@ public class JsonLoader extends ContentStreamLoader {
               if (normalFieldValue != null) {
                 extendedInfo.put("value",normalFieldValue);
               }
-              sif.setValue(extendedInfo, boost);
+              sdoc.addField(fieldName, extendedInfo, boost);
             } else {
-              sif.setValue(normalFieldValue, boost);
+              sdoc.addField(fieldName, normalFieldValue, boost);
             }
             return;
 
           default:
             throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Error parsing JSON extended field value. "
-                + "Unexpected "+JSONParser.getEventString(ev)+" at ["+parser.getPosition()+"], field="+sif.getName() );
+                + "Unexpected "+JSONParser.getEventString(ev)+" at ["+parser.getPosition()+"], field="+fieldName );
         }
       }
     }
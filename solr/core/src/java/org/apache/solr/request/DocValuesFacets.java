@@ -18,8 +18,19 @@ package org.apache.solr.request;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
 
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.MultiDocValues.MultiSortedDocValues;
@@ -27,6 +38,7 @@ import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
 import org.apache.lucene.index.MultiDocValues.OrdinalMap;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
@@ -35,12 +47,14 @@ import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.FacetParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.CountMinSketch;
 import org.apache.solr.util.LongPriorityQueue;
 
 /**
@@ -54,71 +68,52 @@ import org.apache.solr.util.LongPriorityQueue;
  * This means the ordinal map is created per-reopen: O(nterms), but this may
  * perform better than PerSegmentSingleValuedFaceting which has to merge O(nterms)
  * per query. Additionally it works for multi-valued fields.
+ * <p>
+ * Several fields sharing the same base DocSet can also be counted together,
+ * reading the matching documents only once (see {@link FacetParams#FACET_SINGLE_PASS}).
  */
 public class DocValuesFacets {
   private DocValuesFacets() {}
   
   public static NamedList<Integer> getCounts(SolrIndexSearcher searcher, DocSet docs, String fieldName, int offset, int limit, int mincount, boolean missing, String sort, String prefix) throws IOException {
-    SchemaField schemaField = searcher.getSchema().getField(fieldName);
-    FieldType ft = schemaField.getType();
-    NamedList<Integer> res = new NamedList<>();
-    
-    // TODO: remove multiValuedFieldCache(), check dv type / uninversion type?
-    final boolean multiValued = schemaField.multiValued() || ft.multiValuedFieldCache();
-
-    final SortedSetDocValues si; // for term lookups only
-    OrdinalMap ordinalMap = null; // for mapping per-segment ords to global ones
-    if (multiValued) {
-      si = searcher.getLeafReader().getSortedSetDocValues(fieldName);
-      if (si instanceof MultiSortedSetDocValues) {
-        ordinalMap = ((MultiSortedSetDocValues)si).mapping;
-      }
-    } else {
-      SortedDocValues single = searcher.getLeafReader().getSortedDocValues(fieldName);
-      si = single == null ? null : DocValues.singleton(single);
-      if (single instanceof MultiSortedDocValues) {
-        ordinalMap = ((MultiSortedDocValues)single).mapping;
-      }
-    }
-    if (si == null) {
-      return finalize(res, searcher, schemaField, docs, -1, missing);
-    }
-    if (si.getValueCount() >= Integer.MAX_VALUE) {
-      throw new UnsupportedOperationException("Currently this faceting method is limited to " + Integer.MAX_VALUE + " unique terms");
-    }
+    return getCounts(searcher, docs, fieldName, offset, limit, mincount, missing, sort, prefix, null, 0);
+  }
 
-    final BytesRefBuilder prefixRef;
-    if (prefix == null) {
-      prefixRef = null;
-    } else if (prefix.length()==0) {
-      prefix = null;
-      prefixRef = null;
-    } else {
-      prefixRef = new BytesRefBuilder();
-      prefixRef.copyChars(prefix);
-    }
-
-    int startTermIndex, endTermIndex;
-    if (prefix!=null) {
-      startTermIndex = (int) si.lookupTerm(prefixRef.get());
-      if (startTermIndex<0) startTermIndex=-startTermIndex-1;
-      prefixRef.append(UnicodeUtil.BIG_TERM);
-      endTermIndex = (int) si.lookupTerm(prefixRef.get());
-      assert endTermIndex < 0;
-      endTermIndex = -endTermIndex-1;
-    } else {
-      startTermIndex=-1;
-      endTermIndex=(int) si.getValueCount();
-    }
+  /**
+   * Computes term facets for a docvalues field, counting the segments concurrently on
+   * <code>executor</code> when the index has more than one segment.
+   * <p>
+   * Each segment is counted in its own ordinal space by a separate task, and the calling
+   * thread folds the per-segment counts into global ordinal space through the OrdinalMap
+   * as the tasks complete.  Segments with many unique values compared to their number of
+   * matching documents are counted by the calling thread itself, mapping ordinals on the fly.
+   *
+   * @param executor the executor to run the per-segment tasks on, or null to count serially
+   * @param threads the maximum number of segments counted at the same time; a negative
+   *        value means no limit and 0 means serial counting
+   */
+  public static NamedList<Integer> getCounts(SolrIndexSearcher searcher, DocSet docs, String fieldName, int offset, int limit, int mincount, boolean missing, String sort, String prefix,
+                                             Executor executor, int threads) throws IOException {
+    FieldAccumulator acc = new FieldAccumulator(searcher, fieldName, offset, limit, mincount, missing, sort, prefix);
+    return getCounts(searcher, docs, acc, executor, threads);
+  }
 
-    final int nTerms=endTermIndex-startTermIndex;
-    int missingCount = -1; 
-    final CharsRefBuilder charsRef = new CharsRefBuilder();
-    if (nTerms>0 && docs.size() >= mincount) {
+  /**
+   * Computes term facets for the docvalues field of <code>acc</code>.
+   *
+   * @see #getCounts(SolrIndexSearcher, DocSet, String, int, int, int, boolean, String, String, Executor, int)
+   */
+  public static NamedList<Integer> getCounts(SolrIndexSearcher searcher, DocSet docs, FieldAccumulator acc, Executor executor, int threads) throws IOException {
+    final String fieldName = acc.fieldName;
+    if (acc.startCounting(docs)) {
+      if (executor != null && threads != 0 && acc.ordinalMap != null) {
+        accumParallel(searcher, docs, acc, executor, threads);
+        return acc.getResult(searcher, docs);
+      }
 
-      // count collection array only needs to be as big as the number of terms we are
-      // going to collect counts for.
-      final int[] counts = new int[nTerms];
+      final int[] counts = acc.counts;
+      final int startTermIndex = acc.startTermIndex;
+      final OrdinalMap ordinalMap = acc.ordinalMap;
 
       Filter filter = docs.getTopFilter();
       List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
@@ -130,7 +125,7 @@ public class DocValuesFacets {
           disi = dis.iterator();
         }
         if (disi != null) {
-          if (multiValued) {
+          if (acc.multiValued) {
             SortedSetDocValues sub = leaf.reader().getSortedSetDocValues(fieldName);
             if (sub == null) {
               sub = DocValues.emptySortedSet();
@@ -151,11 +146,472 @@ public class DocValuesFacets {
           }
         }
       }
+    }
+
+    return acc.getResult(searcher, docs);
+  }
+
+  /**
+   * Computes term facets for several docvalues fields that share the same base
+   * DocSet.  Instead of iterating over <code>docs</code> once per field, the
+   * matching documents of each segment are read only once, in blocks, and the
+   * counts of all fields are accumulated from each block.
+   *
+   * @return the facet counts, in the same order as <code>fields</code>
+   */
+  public static List<NamedList<Integer>> getCounts(SolrIndexSearcher searcher, DocSet docs, List<FieldAccumulator> fields) throws IOException {
+    List<FieldAccumulator> counting = new ArrayList<>(fields.size());
+    for (FieldAccumulator acc : fields) {
+      if (acc.startCounting(docs)) {
+        counting.add(acc);
+      }
+    }
+
+    if (!counting.isEmpty()) {
+      final int[] docBuffer = new int[BLOCK_SIZE];
+      Filter filter = docs.getTopFilter();
+      List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+      for (int subIndex = 0; subIndex < leaves.size(); subIndex++) {
+        LeafReaderContext leaf = leaves.get(subIndex);
+        DocIdSet dis = filter.getDocIdSet(leaf, null); // solr docsets already exclude any deleted docs
+        DocIdSetIterator disi = dis == null ? null : dis.iterator();
+        if (disi == null) {
+          continue;
+        }
+
+        for (FieldAccumulator acc : counting) {
+          acc.setNextReader(leaf, subIndex, disi.cost());
+        }
+        int doc = disi.nextDoc();
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+          int numDocs = 0;
+          do {
+            docBuffer[numDocs++] = doc;
+            doc = disi.nextDoc();
+          } while (numDocs < docBuffer.length && doc != DocIdSetIterator.NO_MORE_DOCS);
+
+          for (FieldAccumulator acc : counting) {
+            acc.collect(docBuffer, numDocs);
+          }
+        }
+        for (FieldAccumulator acc : counting) {
+          acc.finishSegment();
+        }
+      }
+    }
+
+    List<NamedList<Integer>> results = new ArrayList<>(fields.size());
+    for (FieldAccumulator acc : fields) {
+      results.add(acc.getResult(searcher, docs));
+    }
+    return results;
+  }
+
+  /** counts the segments of <code>docs</code> concurrently, see {@link #getCounts(SolrIndexSearcher, DocSet, String, int, int, int, boolean, String, String, Executor, int)} */
+  private static void accumParallel(SolrIndexSearcher searcher, DocSet docs, FieldAccumulator acc, Executor executor, int threads) throws IOException {
+    final int[] counts = acc.counts;
+    final String fieldName = acc.fieldName;
+    final boolean multiValued = acc.multiValued;
+    final OrdinalMap ordinalMap = acc.ordinalMap;
+
+    CompletionService<SegCounts> completionService = new ExecutorCompletionService<>(executor);
+    // tasks that aren't immediately submitted because of the threads limit
+    LinkedList<Callable<SegCounts>> pending = new LinkedList<>();
+    int available = threads < 0 ? Integer.MAX_VALUE : threads;
+    int submitted = 0;
+
+    final Filter filter = docs.getTopFilter();
+    List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    List<LeafReaderContext> generic = new ArrayList<>();
+    for (int subIndex = 0; subIndex < leaves.size(); subIndex++) {
+      final LeafReaderContext leaf = leaves.get(subIndex);
+      DocIdSet dis = filter.getDocIdSet(leaf, null); // solr docsets already exclude any deleted docs
+      final DocIdSetIterator disi = dis == null ? null : dis.iterator();
+      if (disi == null) {
+        continue;
+      }
+      final long valueCount = multiValued ? getSortedSetValues(leaf, fieldName).getValueCount() : getSortedValues(leaf, fieldName).getValueCount();
+      if (valueCount >= disi.cost()*10) {
+        // few matching docs wrt unique values (lucene/facets heuristic): a segment-sized
+        // count array isn't worth it, collect+map on the fly in this thread
+        generic.add(leaf);
+        continue;
+      }
+
+      final int segIndex = subIndex;
+      Callable<SegCounts> task = new Callable<SegCounts>() {
+        @Override
+        public SegCounts call() throws Exception {
+          final int[] segCounts = new int[1+(int)valueCount];
+          if (multiValued) {
+            SortedSetDocValues sub = getSortedSetValues(leaf, fieldName);
+            final SortedDocValues singleton = DocValues.unwrapSingleton(sub);
+            if (singleton != null) {
+              accumSingleSeg(segCounts, singleton, disi, segIndex, null);
+            } else {
+              accumMultiSeg(segCounts, sub, disi, segIndex, null);
+            }
+          } else {
+            accumSingleSeg(segCounts, getSortedValues(leaf, fieldName), disi, segIndex, null);
+          }
+          return new SegCounts(segIndex, segCounts);
+        }
+      };
+      if (--available >= 0) {
+        completionService.submit(task);
+      } else {
+        pending.add(task);
+      }
+      submitted++;
+    }
+
+    // count the remaining segments while the tasks are running
+    for (LeafReaderContext leaf : generic) {
+      DocIdSetIterator disi = filter.getDocIdSet(leaf, null).iterator();
+      if (multiValued) {
+        SortedSetDocValues sub = getSortedSetValues(leaf, fieldName);
+        final SortedDocValues singleton = DocValues.unwrapSingleton(sub);
+        if (singleton != null) {
+          accumSingleGeneric(counts, acc.startTermIndex, singleton, disi, leaf.ord, ordinalMap);
+        } else {
+          accumMultiGeneric(counts, acc.startTermIndex, sub, disi, leaf.ord, ordinalMap);
+        }
+      } else {
+        accumSingleGeneric(counts, acc.startTermIndex, getSortedValues(leaf, fieldName), disi, leaf.ord, ordinalMap);
+      }
+    }
+
+    // merge the per-segment counts as they come in
+    for (int i = 0; i < submitted; i++) {
+      SegCounts seg;
+      try {
+        seg = completionService.take().get();
+        if (!pending.isEmpty()) {
+          completionService.submit(pending.removeFirst());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else {
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Error in per-segment faceting on field: " + fieldName, cause);
+        }
+      }
+      migrateGlobal(counts, seg.counts, seg.subIndex, ordinalMap, acc.startTermIndex);
+    }
+  }
+
+  /** counts of one segment, in segment ordinal space (slot 0 holds the missing count) */
+  private static class SegCounts {
+    final int subIndex;
+    final int[] counts;
+
+    SegCounts(int subIndex, int[] counts) {
+      this.subIndex = subIndex;
+      this.counts = counts;
+    }
+  }
+
+  private static SortedSetDocValues getSortedSetValues(LeafReaderContext leaf, String fieldName) throws IOException {
+    SortedSetDocValues sub = leaf.reader().getSortedSetDocValues(fieldName);
+    return sub == null ? DocValues.emptySortedSet() : sub;
+  }
+
+  private static SortedDocValues getSortedValues(LeafReaderContext leaf, String fieldName) throws IOException {
+    SortedDocValues sub = leaf.reader().getSortedDocValues(fieldName);
+    return sub == null ? DocValues.emptySorted() : sub;
+  }
+
+  /** number of documents read from the base DocSet before they are handed to the fields being counted */
+  private static final int BLOCK_SIZE = 1024;
+
+  // the sketch hashes of the terms of the fields by ordinal, for each open index reader, so
+  // that the counts of all the terms of a field are sketched without looking up the terms.
+  // Like the entries of the FieldCache, the hashes of a reader are dropped when it is closed.
+  static final Map<Object,Map<String,long[]>> termHashes = new HashMap<>();
+
+  private static final IndexReader.ReaderClosedListener purgeTermHashes = new IndexReader.ReaderClosedListener() {
+    @Override
+    public void onClose(IndexReader reader) {
+      synchronized (termHashes) {
+        termHashes.remove(reader.getCoreCacheKey());
+      }
+    }
+  };
+
+  /** Returns the {@link CountMinSketch#hash} of each term of the field, by ordinal. */
+  static long[] getTermHashes(SolrIndexSearcher searcher, String fieldName, SortedSetDocValues si) throws IOException {
+    Map<String,long[]> readerHashes;
+    // the searchers of the same index share its raw reader, which is closed with the last of them
+    IndexReader reader = searcher.getRawReader();
+    synchronized (termHashes) {
+      Object key = reader.getCoreCacheKey();
+      readerHashes = termHashes.get(key);
+      if (readerHashes == null) {
+        readerHashes = new ConcurrentHashMap<>();
+        // the searcher keeps the reader open, so it is not closed before its hashes are added
+        reader.addReaderClosedListener(purgeTermHashes);
+        termHashes.put(key, readerHashes);
+      }
+    }
+    long[] hashes = readerHashes.get(fieldName);
+    if (hashes == null) {
+      // enumerating the terms in order is cheaper than looking them up one by one
+      hashes = new long[(int) si.getValueCount()];
+      TermsEnum te = si.termsEnum();
+      int ord = 0;
+      for (BytesRef term = te.next(); term != null; term = te.next()) {
+        hashes[ord++] = CountMinSketch.hash(term);
+      }
+      readerHashes.put(fieldName, hashes);
+    }
+    return hashes;
+  }
+
+  /**
+   * Holds the options and the global ordinal counts for faceting on one docvalues field.
+   * <p>
+   * Counts can be accumulated either by the single field loops of this class or, for
+   * single-pass faceting over several fields, segment by segment via
+   * {@link #setNextReader}, {@link #collect} and {@link #finishSegment}.
+   */
+  public static class FieldAccumulator {
+    final String fieldName;
+    final SchemaField schemaField;
+    final FieldType ft;
+    final int offset;
+    final int limit;
+    final int mincount;
+    final boolean missing;
+    final String sort;
+    // TODO: remove multiValuedFieldCache(), check dv type / uninversion type?
+    final boolean multiValued;
+    private final SolrIndexSearcher searcher;
+    private final String prefix;
+
+    SortedSetDocValues si; // for term lookups only
+    OrdinalMap ordinalMap; // for mapping per-segment ords to global ones
+    int startTermIndex = -1;
+    int nTerms;
+    int[] counts;
+    CountMinSketch sketch;
+
+    // state for the current segment when counting in a single pass
+    private int subIndex;
+    private SortedDocValues segSingle;
+    private SortedSetDocValues segMulti;
+    private int[] segCounts;
+    private LongValues segOrdMap;
+
+    public FieldAccumulator(SolrIndexSearcher searcher, String fieldName, int offset, int limit, int mincount, boolean missing, String sort, String prefix) throws IOException {
+      this.fieldName = fieldName;
+      this.schemaField = searcher.getSchema().getField(fieldName);
+      this.ft = schemaField.getType();
+      this.offset = offset;
+      this.limit = limit;
+      this.mincount = mincount;
+      this.missing = missing;
+      this.sort = sort;
+      this.multiValued = schemaField.multiValued() || ft.multiValuedFieldCache();
+      this.searcher = searcher;
+      this.prefix = prefix;
+    }
+
+    /**
+     * Looks up the docvalues of the field and the range of ordinals to count.  This is not
+     * done by the constructor since the docvalues must be consumed by the thread that
+     * acquired them, which may not be the one creating the accumulator.
+     */
+    private void init() throws IOException {
+      String prefix = this.prefix;
+      if (multiValued) {
+        si = searcher.getLeafReader().getSortedSetDocValues(fieldName);
+        if (si instanceof MultiSortedSetDocValues) {
+          ordinalMap = ((MultiSortedSetDocValues)si).mapping;
+        }
+      } else {
+        SortedDocValues single = searcher.getLeafReader().getSortedDocValues(fieldName);
+        si = single == null ? null : DocValues.singleton(single);
+        if (single instanceof MultiSortedDocValues) {
+          ordinalMap = ((MultiSortedDocValues)single).mapping;
+        }
+      }
+      if (si == null) {
+        return;
+      }
+      if (si.getValueCount() >= Integer.MAX_VALUE) {
+        throw new UnsupportedOperationException("Currently this faceting method is limited to " + Integer.MAX_VALUE + " unique terms");
+      }
+
+      final BytesRefBuilder prefixRef;
+      if (prefix == null) {
+        prefixRef = null;
+      } else if (prefix.length()==0) {
+        prefix = null;
+        prefixRef = null;
+      } else {
+        prefixRef = new BytesRefBuilder();
+        prefixRef.copyChars(prefix);
+      }
+
+      int endTermIndex;
+      if (prefix!=null) {
+        startTermIndex = (int) si.lookupTerm(prefixRef.get());
+        if (startTermIndex<0) startTermIndex=-startTermIndex-1;
+        prefixRef.append(UnicodeUtil.BIG_TERM);
+        endTermIndex = (int) si.lookupTerm(prefixRef.get());
+        assert endTermIndex < 0;
+        endTermIndex = -endTermIndex-1;
+      } else {
+        startTermIndex=-1;
+        endTermIndex=(int) si.getValueCount();
+      }
+
+      nTerms=endTermIndex-startTermIndex;
+    }
+
+    /**
+     * Sets a sketch to add the counts of all the terms to, not only the ones
+     * that make it into the result.
+     */
+    public void setSketch(CountMinSketch sketch) {
+      this.sketch = sketch;
+    }
+
+    public CountMinSketch getSketch() {
+      return sketch;
+    }
+
+    /**
+     * Allocates the count array if there is anything to count for <code>docs</code>.
+     * @return false if counting can be skipped altogether
+     */
+    boolean startCounting(DocSet docs) throws IOException {
+      init();
+      if (si != null && nTerms>0 && docs.size() >= mincount) {
+        // count collection array only needs to be as big as the number of terms we are
+        // going to collect counts for.
+        counts = new int[nTerms];
+        return true;
+      }
+      return false;
+    }
+
+    /** prepares to count the documents of a new segment, <code>cost</code> being the number of matching docs */
+    void setNextReader(LeafReaderContext leaf, int subIndex, long cost) throws IOException {
+      this.subIndex = subIndex;
+      segSingle = null;
+      segMulti = null;
+      final long valueCount;
+      if (multiValued) {
+        SortedSetDocValues sub = leaf.reader().getSortedSetDocValues(fieldName);
+        if (sub == null) {
+          sub = DocValues.emptySortedSet();
+        }
+        // some codecs may optimize SORTED_SET storage for single-valued fields
+        segSingle = DocValues.unwrapSingleton(sub);
+        if (segSingle == null) {
+          segMulti = sub;
+        }
+        valueCount = sub.getValueCount();
+      } else {
+        segSingle = leaf.reader().getSortedDocValues(fieldName);
+        if (segSingle == null) {
+          segSingle = DocValues.emptySorted();
+        }
+        valueCount = segSingle.getValueCount();
+      }
+
+      // same heuristic as accumSingle/accumMulti
+      if (startTermIndex == -1 && (ordinalMap == null || valueCount < cost*10)) {
+        segCounts = ordinalMap == null ? counts : new int[1+(int)valueCount];
+        segOrdMap = null;
+      } else {
+        segCounts = null;
+        segOrdMap = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subIndex);
+      }
+    }
+
+    /** accumulates the counts of the first <code>numDocs</code> documents of <code>docs</code> */
+    void collect(int[] docs, int numDocs) {
+      if (segSingle != null) {
+        if (segCounts != null) {
+          for (int i = 0; i < numDocs; i++) {
+            segCounts[1+segSingle.getOrd(docs[i])]++;
+          }
+        } else {
+          for (int i = 0; i < numDocs; i++) {
+            int term = segSingle.getOrd(docs[i]);
+            if (segOrdMap != null && term >= 0) {
+              term = (int) segOrdMap.get(term);
+            }
+            int arrIdx = term-startTermIndex;
+            if (arrIdx>=0 && arrIdx<counts.length) counts[arrIdx]++;
+          }
+        }
+      } else {
+        for (int i = 0; i < numDocs; i++) {
+          segMulti.setDocument(docs[i]);
+          int term = (int) segMulti.nextOrd();
+          if (term < 0) {
+            if (startTermIndex == -1) {
+              counts[0]++; // missing count
+            }
+            continue;
+          }
+          do {
+            if (segCounts != null) {
+              segCounts[1+term]++;
+            } else {
+              if (segOrdMap != null) {
+                term = (int) segOrdMap.get(term);
+              }
+              int arrIdx = term-startTermIndex;
+              if (arrIdx>=0 && arrIdx<counts.length) counts[arrIdx]++;
+            }
+          } while ((term = (int) segMulti.nextOrd()) >= 0);
+        }
+      }
+    }
+
+    /** folds the counts of the current segment into global ordinal space (if necessary) */
+    void finishSegment() {
+      if (segCounts != null && segCounts != counts) {
+        migrateGlobal(counts, segCounts, subIndex, ordinalMap);
+      }
+      segCounts = null;
+      segSingle = null;
+      segMulti = null;
+    }
 
+    /** sorts and pages the accumulated counts */
+    NamedList<Integer> getResult(SolrIndexSearcher searcher, DocSet docs) throws IOException {
+      NamedList<Integer> res = new NamedList<>();
+      int missingCount = -1;
+      if (counts == null) {
+        if (si != null && nTerms > 0 && docs.size() > 0) {
+          sketch = null; // skipped because of mincount, the counts are unknown
+        }
+        return DocValuesFacets.finalize(res, searcher, schemaField, docs, missingCount, missing);
+      }
+
+      final CharsRefBuilder charsRef = new CharsRefBuilder();
       if (startTermIndex == -1) {
         missingCount = counts[0];
       }
 
+      if (sketch != null) {
+        long[] hashes = getTermHashes(searcher, fieldName, si);
+        for (int i=(startTermIndex==-1)?1:0; i<nTerms; i++) {
+          if (counts[i] > 0) {
+            sketch.add(hashes[startTermIndex+i], counts[i]);
+          }
+        }
+      }
+
       // IDEA: we could also maintain a count of "other"... everything that fell outside
       // of the top 'N'
 
@@ -199,7 +655,7 @@ public class DocValuesFacets {
           ft.indexedToReadable(term, charsRef);
           res.add(charsRef.toString(), c);
         }
-      
+
       } else {
         // add results in index order
         int i=(startTermIndex==-1)?1:0;
@@ -210,7 +666,7 @@ public class DocValuesFacets {
           off=0;
         }
 
-        for (; i<nTerms; i++) {          
+        for (; i<nTerms; i++) {
           int c = counts[i];
           if (c<mincount || --off>=0) continue;
           if (--lim<0) break;
@@ -219,9 +675,9 @@ public class DocValuesFacets {
           res.add(charsRef.toString(), c);
         }
       }
+
+      return DocValuesFacets.finalize(res, searcher, schemaField, docs, missingCount, missing);
     }
-    
-    return finalize(res, searcher, schemaField, docs, missingCount, missing);
   }
   
   /** finalizes result: computes missing count if applicable */
@@ -363,4 +819,24 @@ public class DocValuesFacets {
       }
     }
   }
+  
+  /**
+   * folds counts in segment ordinal space (segCounts) into global ordinal space (counts),
+   * where counts only holds the global ordinals starting at startTermIndex (-1 if not prefixing)
+   */
+  static void migrateGlobal(int counts[], int segCounts[], int subIndex, OrdinalMap map, int startTermIndex) {
+    if (startTermIndex == -1) {
+      migrateGlobal(counts, segCounts, subIndex, map);
+      return;
+    }
+    final LongValues ordMap = map.getGlobalOrds(subIndex);
+    // no missing count when prefixing
+    for (int ord = 1; ord < segCounts.length; ord++) {
+      int count = segCounts[ord];
+      if (count != 0) {
+        int arrIdx = (int) ordMap.get(ord-1) - startTermIndex;
+        if (arrIdx>=0 && arrIdx<counts.length) counts[arrIdx] += count;
+      }
+    }
+  }
 }
@@ -19,12 +19,15 @@ package org.apache.solr.request;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -68,6 +71,7 @@ import org.apache.solr.common.params.FacetParams.FacetRangeInclude;
 import org.apache.solr.common.params.FacetParams.FacetRangeOther;
 import org.apache.solr.common.params.GroupParams;
 import org.apache.solr.common.params.RequiredSolrParams;
+import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
@@ -83,6 +87,7 @@ import org.apache.solr.schema.SchemaField;
 import org.apache.solr.schema.TrieDateField;
 import org.apache.solr.schema.TrieField;
 import org.apache.solr.search.BitDocSet;
+import org.apache.solr.search.DocIterator;
 import org.apache.solr.search.DocSet;
 import org.apache.solr.search.Grouping;
 import org.apache.solr.search.HashDocSet;
@@ -94,6 +99,7 @@ import org.apache.solr.search.SortedIntDocSet;
 import org.apache.solr.search.SyntaxError;
 import org.apache.solr.search.grouping.GroupingSpecification;
 import org.apache.solr.util.BoundedTreeSet;
+import org.apache.solr.util.CountMinSketch;
 import org.apache.solr.util.DateMathParser;
 import org.apache.solr.util.DefaultSolrThreadFactory;
 
@@ -116,6 +122,16 @@ public class SimpleFacets {
 
   protected SimpleOrderedMap<Object> facetResponse;
 
+  /** random samples of the base DocSets, see {@link FacetParams#FACET_SAMPLE_SIZE} */
+  private final Map<DocSet,DocSet> samples = Collections.synchronizedMap(new IdentityHashMap<DocSet,DocSet>());
+  /** how the facet.field counts that were estimated from a sample were computed, by key */
+  private final NamedList<Object> samplingInfo = new SimpleOrderedMap<>();
+  /** serialized sketches of the facet.field counts of a shard, by key, see {@link FacetParams#FACET_SKETCH} */
+  private final NamedList<Object> sketches = new SimpleOrderedMap<>();
+
+  static final int DEFAULT_SKETCH_WIDTH = 1024;
+  static final int DEFAULT_SKETCH_DEPTH = 3;
+
   // per-facet values
   protected SolrParams localParams; // localParams on this particular facet command
   protected SolrParams params;      // local+original
@@ -258,6 +274,12 @@ public class SimpleFacets {
     try {
       facetResponse.add("facet_queries", getFacetQueryCounts());
       facetResponse.add("facet_fields", getFacetFieldCounts());
+      if (samplingInfo.size() > 0) {
+        facetResponse.add("facet_sampling", samplingInfo);
+      }
+      if (sketches.size() > 0) {
+        facetResponse.add("facet_sketches", sketches);
+      }
       facetResponse.add("facet_dates", getFacetDateCounts());
       facetResponse.add("facet_ranges", getFacetRangeCounts());
       facetResponse.add("facet_intervals", getFacetIntervalCounts());
@@ -362,6 +384,150 @@ public class SimpleFacets {
     return getTermCounts(field, mincount, base);
   }
 
+  /**
+   * Term counts for a facet.field request.  When {@link FacetParams#FACET_SAMPLE_SIZE}
+   * applies, the counts are estimated from a random sample of <code>base</code> and
+   * details about the sampling are added to the response under <code>facet_sampling</code>.
+   */
+  private NamedList<Integer> getFieldTermCounts(String key, String field, DocSet base) throws IOException {
+    int sampleSize = getSampleSize(field, base);
+    if (sampleSize == 0) {
+      return getTermCounts(field, base);
+    }
+
+    DocSet sample = getSample(base, sampleSize);
+    // probability of a doc of base being part of the sample
+    double p = sample.size() / (double) base.size();
+    Integer mincount = params.getFieldInt(field, FacetParams.FACET_MINCOUNT);
+    if (mincount != null && mincount > 1) {
+      mincount = (int) Math.ceil(mincount * p);
+    }
+    NamedList<Integer> sampled = getTermCounts(field, mincount, sample);
+
+    int maxCount = 0;
+    for (Map.Entry<String,Integer> entry : sampled) {
+      maxCount = Math.max(maxCount, entry.getValue());
+    }
+
+    NamedList<Object> info = new SimpleOrderedMap<>();
+    info.add("numDocs", base.size());
+    info.add("sampleSize", sample.size());
+    // half-width of the 95% confidence interval of the largest estimated count; the
+    // intervals of the smaller counts are narrower
+    info.add("error", (int) Math.ceil(1.96 * Math.sqrt(maxCount * (1 - p)) / p));
+    synchronized (samplingInfo) {
+      samplingInfo.add(key, info);
+    }
+    return scaleSampledCounts(sampled, base.size(), p);
+  }
+
+  /**
+   * Term counts of the listed terms of a facet.field request, as sent by distributed requests
+   * to refine the counts.  They are estimated from the same sample as the counts of the first
+   * request when {@link FacetParams#FACET_SAMPLE_SIZE} applies, so that all the counts merged
+   * for a term are estimated the same way.
+   */
+  private NamedList<Integer> getFieldListedTermCounts(String field, DocSet base, List<String> terms) throws IOException {
+    int sampleSize = getSampleSize(field, base);
+    if (sampleSize == 0) {
+      return getListedTermCounts(field, base, terms);
+    }
+    DocSet sample = getSample(base, sampleSize);
+    return scaleSampledCounts(getListedTermCounts(field, sample, terms), base.size(), sample.size() / (double) base.size());
+  }
+
+  /** Scales the counts over a sample up to estimates of the counts over the <code>numDocs</code> it was taken from. */
+  private static NamedList<Integer> scaleSampledCounts(NamedList<Integer> sampled, int numDocs, double p) {
+    NamedList<Integer> res = new NamedList<>();
+    for (Map.Entry<String,Integer> entry : sampled) {
+      res.add(entry.getKey(), (int) Math.min(numDocs, Math.round(entry.getValue() / p)));
+    }
+    return res;
+  }
+
+  /**
+   * Returns the number of docs of <code>base</code> to count for <code>field</code>,
+   * or 0 if the counts should be exact.
+   */
+  private int getSampleSize(String field, DocSet base) {
+    int sampleSize = params.getFieldInt(field, FacetParams.FACET_SAMPLE_SIZE, 0);
+    if (sampleSize <= 0 || base.size() <= sampleSize
+        || base.size() < params.getFieldInt(field, FacetParams.FACET_SAMPLE_THRESHOLD, 0)
+        || params.getFieldBool(field, GroupParams.GROUP_FACET, false)) {
+      return 0;
+    }
+    return sampleSize;
+  }
+
+  /**
+   * Returns a random sample of <code>sampleSize</code> docs of <code>base</code>, which must
+   * be larger.  Like lucene/facet's RandomSamplingFacetsCollector, the docs of base are split
+   * into sampleSize consecutive bins and one doc is picked at random from each bin.
+   */
+  private DocSet getSample(DocSet base, int sampleSize) {
+    DocSet sample = samples.get(base);
+    if (sample != null && sample.size() == sampleSize) {
+      return sample;
+    }
+
+    // the positions in base of the picked docs, in increasing order
+    Random random = new Random(params.getLong(FacetParams.FACET_SAMPLE_SEED, 0L));
+    final long numDocs = base.size();
+    final int[] picks = new int[sampleSize];
+    long binStart = 0;
+    for (int bin = 0; bin < sampleSize; bin++) {
+      long binEnd = (bin + 1) * numDocs / sampleSize;
+      picks[bin] = (int) (binStart + random.nextInt((int) (binEnd - binStart)));
+      binStart = binEnd;
+    }
+
+    sample = new SortedIntDocSet(getDocsAt(base, picks));
+    samples.put(base, sample);
+    return sample;
+  }
+
+  /**
+   * Returns the docs of <code>base</code> at the given increasing positions, in order.  The
+   * docs of sorted int sets are read directly and bit sets only count the bits of the words
+   * before each position, so that only the other sets are iterated doc by doc.
+   */
+  private static int[] getDocsAt(DocSet base, int[] positions) {
+    final int[] docs = new int[positions.length];
+    if (base instanceof SortedIntDocSet) {
+      int[] baseDocs = ((SortedIntDocSet) base).getDocs();
+      for (int i = 0; i < positions.length; i++) {
+        docs[i] = baseDocs[positions[i]];
+      }
+    } else if (base instanceof BitDocSet) {
+      long[] words = ((BitDocSet) base).getBits().getBits();
+      int word = 0;
+      int bitsBefore = 0; // set bits in the words before word
+      for (int i = 0; i < positions.length; i++) {
+        int wordBits;
+        while (positions[i] - bitsBefore >= (wordBits = Long.bitCount(words[word]))) {
+          bitsBefore += wordBits;
+          word++;
+        }
+        long bits = words[word];
+        for (int skip = positions[i] - bitsBefore; skip > 0; skip--) {
+          bits &= bits - 1; // clears the lowest set bit
+        }
+        docs[i] = (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    } else {
+      DocIterator iter = base.iterator();
+      int i = 0;
+      for (int pos = 0; i < positions.length; pos++) {
+        int doc = iter.nextDoc();
+        if (pos == positions[i]) {
+          docs[i++] = doc;
+        }
+      }
+      Arrays.sort(docs); // not all DocSets iterate in order
+    }
+    return docs;
+  }
+
   /**
    * Term counts for use in field faceting that resepcts the specified mincount - 
    * if mincount is null, the "zeros" param is consulted for the appropriate backcompat 
@@ -370,27 +536,71 @@ public class SimpleFacets {
    * @see FacetParams#FACET_ZEROS
    */
   private NamedList<Integer> getTermCounts(String field, Integer mincount, DocSet base) throws IOException {
-    int offset = params.getFieldInt(field, FacetParams.FACET_OFFSET, 0);
-    int limit = params.getFieldInt(field, FacetParams.FACET_LIMIT, 100);
-    if (limit == 0) return new NamedList<>();
-    if (mincount==null) {
-      Boolean zeros = params.getFieldBool(field, FacetParams.FACET_ZEROS);
-      // mincount = (zeros!=null && zeros) ? 0 : 1;
-      mincount = (zeros!=null && !zeros) ? 1 : 0;
-      // current default is to include zeros.
-    }
-    boolean missing = params.getFieldBool(field, FacetParams.FACET_MISSING, false);
-    // default to sorting if there is a limit.
-    String sort = params.getFieldParam(field, FacetParams.FACET_SORT, limit>0 ? FacetParams.FACET_SORT_COUNT : FacetParams.FACET_SORT_INDEX);
-    String prefix = params.getFieldParam(field,FacetParams.FACET_PREFIX);
+    FieldFacetParams fp = new FieldFacetParams(params, field, mincount);
+    if (fp.limit == 0) return new NamedList<>();
+    int offset = fp.offset;
+    int limit = fp.limit;
+    mincount = fp.mincount;
+    boolean missing = fp.missing;
+    String sort = fp.sort;
+    String prefix = fp.prefix;
 
 
     NamedList<Integer> counts;
     SchemaField sf = searcher.getSchema().getField(field);
     FieldType ft = sf.getType();
+    final boolean multiToken = sf.multiValued() || ft.multiValuedFieldCache();
+    FacetMethod method = getFacetMethod(sf, params.getFieldParam(field, FacetParams.FACET_METHOD));
+
+    if (params.getFieldBool(field, GroupParams.GROUP_FACET, false)) {
+      counts = getGroupedCounts(searcher, base, field, multiToken, offset,limit, mincount, missing, sort, prefix);
+    } else {
+      assert method != null;
+      switch (method) {
+        case ENUM:
+          assert TrieField.getMainValuePrefix(ft) == null;
+          counts = getFacetTermEnumCounts(searcher, base, field, offset, limit, mincount,missing,sort,prefix);
+          break;
+        case FCS:
+          assert !multiToken;
+          if (ft.getNumericType() != null && !sf.multiValued()) {
+            // force numeric faceting
+            if (prefix != null && !prefix.isEmpty()) {
+              throw new SolrException(ErrorCode.BAD_REQUEST, FacetParams.FACET_PREFIX + " is not supported on numeric types");
+            }
+            counts = NumericFacets.getCounts(searcher, base, field, offset, limit, mincount, missing, sort);
+          } else {
+            PerSegmentSingleValuedFaceting ps = new PerSegmentSingleValuedFaceting(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
+            Executor executor = threads == 0 ? directExecutor : facetExecutor;
+            ps.setNumThreads(threads);
+            counts = ps.getFacetCounts(executor);
+          }
+          break;
+        case FC:
+          if (localParams != null && localParams.get(CommonParams.THREADS) != null) {
+            // count the segments concurrently, unlike fcs this is only done when asked for
+            Executor executor = threads == 0 ? null : facetExecutor;
+            counts = DocValuesFacets.getCounts(searcher, base, field, offset,limit, mincount, missing, sort, prefix, executor, threads);
+          } else {
+            counts = DocValuesFacets.getCounts(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
+          }
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+
+    return counts;
+  }
+
+  /**
+   * Determines the faceting method to use for a field, starting from the requested
+   * <code>facet.method</code> and falling back to a method the field supports.
+   */
+  private FacetMethod getFacetMethod(SchemaField sf, String methodStr) {
+    FieldType ft = sf.getType();
 
     // determine what type of faceting method to use
-    final String methodStr = params.getFieldParam(field, FacetParams.FACET_METHOD);
     FacetMethod method = null;
     if (FacetParams.FACET_METHOD_enum.equals(methodStr)) {
       method = FacetMethod.ENUM;
@@ -433,40 +643,7 @@ public class SimpleFacets {
       // only fc can handle docvalues types
       method = FacetMethod.FC;
     }
-
-    if (params.getFieldBool(field, GroupParams.GROUP_FACET, false)) {
-      counts = getGroupedCounts(searcher, base, field, multiToken, offset,limit, mincount, missing, sort, prefix);
-    } else {
-      assert method != null;
-      switch (method) {
-        case ENUM:
-          assert TrieField.getMainValuePrefix(ft) == null;
-          counts = getFacetTermEnumCounts(searcher, base, field, offset, limit, mincount,missing,sort,prefix);
-          break;
-        case FCS:
-          assert !multiToken;
-          if (ft.getNumericType() != null && !sf.multiValued()) {
-            // force numeric faceting
-            if (prefix != null && !prefix.isEmpty()) {
-              throw new SolrException(ErrorCode.BAD_REQUEST, FacetParams.FACET_PREFIX + " is not supported on numeric types");
-            }
-            counts = NumericFacets.getCounts(searcher, base, field, offset, limit, mincount, missing, sort);
-          } else {
-            PerSegmentSingleValuedFaceting ps = new PerSegmentSingleValuedFaceting(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
-            Executor executor = threads == 0 ? directExecutor : facetExecutor;
-            ps.setNumThreads(threads);
-            counts = ps.getFacetCounts(executor);
-          }
-          break;
-        case FC:
-          counts = DocValuesFacets.getCounts(searcher, base, field, offset,limit, mincount, missing, sort, prefix);
-          break;
-        default:
-          throw new AssertionError();
-      }
-    }
-
-    return counts;
+    return method;
   }
 
   public NamedList<Integer> getGroupedCounts(SolrIndexSearcher searcher,
@@ -572,14 +749,39 @@ public class SimpleFacets {
     final Semaphore semaphore = new Semaphore((maxThreads <= 0) ? Integer.MAX_VALUE : maxThreads);
     List<Future<NamedList>> futures = new ArrayList<>(facetFs.length);
 
+    // with facet.singlePass, fc fields sharing the same base DocSet are counted together;
+    // their slot in futures stays null and the counts end up in singlePassCounts instead
+    final boolean singlePass = req.getParams().getBool(FacetParams.FACET_SINGLE_PASS, false);
+    Map<DocSet,SinglePassGroup> singlePassGroups = new IdentityHashMap<>();
+    final String[] singlePassKeys = new String[facetFs.length];
+    final NamedList[] singlePassCounts = new NamedList[facetFs.length];
+
     try {
       //Loop over fields; submit to executor, keeping the future
       for (String f : facetFs) {
         parseParams(FacetParams.FACET_FIELD, f);
         final String termList = localParams == null ? null : localParams.get(CommonParams.TERMS);
+        DocValuesFacets.FieldAccumulator acc = null;
+        if (termList == null && (singlePass || isSketchRequested(facetValue))) {
+          acc = getFieldAccumulator(facetValue);
+        }
+        if (singlePass && acc != null) {
+          SinglePassGroup group = singlePassGroups.get(this.docs);
+          if (group == null) {
+            group = new SinglePassGroup(this.docs);
+            singlePassGroups.put(this.docs, group);
+          }
+          group.slots.add(futures.size());
+          group.fields.add(acc);
+          singlePassKeys[futures.size()] = key;
+          futures.add(null);
+          continue;
+        }
+
         final String workerKey = key;
         final String workerFacetValue = facetValue;
         final DocSet workerBase = this.docs;
+        final DocValuesFacets.FieldAccumulator workerAcc = acc;
         Callable<NamedList> callable = new Callable<NamedList>() {
           @Override
           public NamedList call() throws Exception {
@@ -587,9 +789,12 @@ public class SimpleFacets {
               NamedList<Object> result = new SimpleOrderedMap<>();
               if(termList != null) {
                 List<String> terms = StrUtils.splitSmart(termList, ",", true);
-                result.add(workerKey, getListedTermCounts(workerFacetValue, workerBase, terms));
+                result.add(workerKey, getFieldListedTermCounts(workerFacetValue, workerBase, terms));
+              } else if (workerAcc != null) {
+                result.add(workerKey, DocValuesFacets.getCounts(searcher, workerBase, workerAcc, null, 0));
+                addSketch(workerKey, workerAcc);
               } else {
-                result.add(workerKey, getTermCounts(workerFacetValue, workerBase));
+                result.add(workerKey, getFieldTermCounts(workerKey, workerFacetValue, workerBase));
               }
               return result;
             } catch (SolrException se) {
@@ -609,9 +814,46 @@ public class SimpleFacets {
         futures.add(runnableFuture);
       }//facetFs loop
 
+      List<Future<NamedList>> singlePassFutures = new ArrayList<>(singlePassGroups.size());
+      for (final SinglePassGroup group : singlePassGroups.values()) {
+        Callable<NamedList> callable = new Callable<NamedList>() {
+          @Override
+          public NamedList call() throws Exception {
+            try {
+              List<NamedList<Integer>> counts = DocValuesFacets.getCounts(searcher, group.base, group.fields);
+              for (int i = 0; i < counts.size(); i++) {
+                singlePassCounts[group.slots.get(i)] = counts.get(i);
+                addSketch(singlePassKeys[group.slots.get(i)], group.fields.get(i));
+              }
+              return null;
+            } catch (SolrException se) {
+              throw se;
+            } catch (Exception e) {
+              throw new SolrException(ErrorCode.SERVER_ERROR,
+                                      "Exception during single pass facet.field counting", e);
+            } finally {
+              semaphore.release();
+            }
+          }
+        };
+
+        RunnableFuture<NamedList> runnableFuture = new FutureTask<>(callable);
+        semaphore.acquire();//may block and/or interrupt
+        executor.execute(runnableFuture);//releases semaphore when done
+        singlePassFutures.add(runnableFuture);
+      }
+      for (Future<NamedList> future : singlePassFutures) {
+        future.get();
+      }
+
       //Loop over futures to get the values. The order is the same as facetFs but shouldn't matter.
-      for (Future<NamedList> future : futures) {
-        res.addAll(future.get());
+      for (int i = 0; i < futures.size(); i++) {
+        Future<NamedList> future = futures.get(i);
+        if (future == null) {
+          res.add(singlePassKeys[i], singlePassCounts[i]);
+        } else {
+          res.addAll(future.get());
+        }
       }
       assert semaphore.availablePermits() >= maxThreads;
     } catch (InterruptedException e) {
@@ -630,6 +872,96 @@ public class SimpleFacets {
   }
 
 
+  /** The parameters of the term counts of a facet.field, with their defaults */
+  private static class FieldFacetParams {
+    final int offset;
+    final int limit;
+    final int mincount;
+    final boolean missing;
+    final String sort;
+    final String prefix;
+
+    /**
+     * @param mincount the mincount to use, or null to use the backcompat default of the "zeros" param
+     */
+    FieldFacetParams(SolrParams params, String field, Integer mincount) {
+      offset = params.getFieldInt(field, FacetParams.FACET_OFFSET, 0);
+      limit = params.getFieldInt(field, FacetParams.FACET_LIMIT, 100);
+      if (mincount == null) {
+        Boolean zeros = params.getFieldBool(field, FacetParams.FACET_ZEROS);
+        // mincount = (zeros!=null && zeros) ? 0 : 1;
+        mincount = (zeros!=null && !zeros) ? 1 : 0;
+        // current default is to include zeros.
+      }
+      this.mincount = mincount;
+      missing = params.getFieldBool(field, FacetParams.FACET_MISSING, false);
+      // default to sorting if there is a limit.
+      sort = params.getFieldParam(field, FacetParams.FACET_SORT, limit>0 ? FacetParams.FACET_SORT_COUNT : FacetParams.FACET_SORT_INDEX);
+      prefix = params.getFieldParam(field,FacetParams.FACET_PREFIX);
+    }
+  }
+
+  /** facet.field requests that are counted together in a single pass over their base DocSet */
+  private static class SinglePassGroup {
+    final DocSet base;
+    final List<Integer> slots = new ArrayList<>();
+    final List<DocValuesFacets.FieldAccumulator> fields = new ArrayList<>();
+
+    SinglePassGroup(DocSet base) {
+      this.base = base;
+    }
+  }
+
+  /**
+   * Returns true if this is a shard request asking for a sketch of the counts of <code>field</code>.
+   */
+  private boolean isSketchRequested(String field) {
+    return req.getParams().getBool(ShardParams.IS_SHARD, false)
+        && params.getFieldBool(field, FacetParams.FACET_SKETCH, false);
+  }
+
+  /** adds the sketch of <code>acc</code> to the response, if any */
+  private void addSketch(String key, DocValuesFacets.FieldAccumulator acc) {
+    CountMinSketch sketch = acc.getSketch();
+    if (sketch != null) {
+      synchronized (sketches) {
+        sketches.add(key, sketch.toBytes());
+      }
+    }
+  }
+
+  /**
+   * Returns an accumulator to count <code>field</code> outside of {@link #getTermCounts},
+   * to count it together with other fields in a single pass or to sketch its counts,
+   * or null if the field does not use {@link FacetMethod#FC} or needs to be faceted on
+   * its own for another reason.
+   */
+  private DocValuesFacets.FieldAccumulator getFieldAccumulator(String field) throws IOException {
+    if (params.getFieldBool(field, GroupParams.GROUP_FACET, false)) {
+      return null;
+    }
+    if (getSampleSize(field, docs) > 0) {
+      return null; // counted over a sample of docs instead
+    }
+    if (localParams != null && localParams.get(CommonParams.THREADS) != null) {
+      return null; // counted segment by segment on several threads instead
+    }
+    SchemaField sf = searcher.getSchema().getField(field);
+    if (getFacetMethod(sf, params.getFieldParam(field, FacetParams.FACET_METHOD)) != FacetMethod.FC) {
+      return null;
+    }
+    FieldFacetParams fp = new FieldFacetParams(params, field, params.getFieldInt(field, FacetParams.FACET_MINCOUNT));
+    if (fp.limit == 0) {
+      return null;
+    }
+    DocValuesFacets.FieldAccumulator acc = new DocValuesFacets.FieldAccumulator(searcher, field, fp.offset, fp.limit, fp.mincount, fp.missing, fp.sort, fp.prefix);
+    if (isSketchRequested(field)) {
+      acc.setSketch(new CountMinSketch(params.getFieldInt(field, FacetParams.FACET_SKETCH_DEPTH, DEFAULT_SKETCH_DEPTH),
+                                       params.getFieldInt(field, FacetParams.FACET_SKETCH_WIDTH, DEFAULT_SKETCH_WIDTH)));
+    }
+    return acc;
+  }
+
   /**
    * Computes the term-&gt;count counts for the specified termList relative to the 
    * @param field the name of the field to compute term counts against
@@ -23,6 +23,8 @@ import org.apache.lucene.index.StorableField;
 import org.apache.lucene.index.StoredDocument;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleStream;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.util.JavaBinCodec;
@@ -94,6 +96,10 @@ public class BinaryResponseWriter implements BinaryQueryResponseWriter {
         writeResults(ctx, codec);
         return null; // null means we completely handled it
       }
+      if (o instanceof TupleStream) {
+        writeTupleStream((TupleStream) o, codec);
+        return null; // null means we completely handled it
+      }
       if( o instanceof StorableField ) {
         if(schema == null) schema = solrQueryRequest.getSchema(); 
         
@@ -123,6 +129,29 @@ public class BinaryResponseWriter implements BinaryQueryResponseWriter {
       return o;
     }
 
+    /**
+     * Writes the tuples as an iterator of maps under a "docs" key, each tuple being
+     * written as soon as it is read, up to and including the EOF tuple.
+     */
+    protected void writeTupleStream(TupleStream tupleStream, JavaBinCodec codec) throws IOException {
+      codec.writeTag(JavaBinCodec.MAP, 1);
+      codec.writeExternString("docs");
+      codec.writeTag(JavaBinCodec.ITERATOR);
+      tupleStream.open();
+      try {
+        while (true) {
+          Tuple tuple = tupleStream.read();
+          codec.writeMap(tuple.fields);
+          if (tuple.EOF) {
+            break;
+          }
+        }
+      } finally {
+        tupleStream.close();
+      }
+      codec.writeTag(JavaBinCodec.END);
+    }
+
     protected void writeResultsBody( ResultContext res, JavaBinCodec codec ) throws IOException 
     {
       DocList ids = res.docs;
@@ -18,10 +18,15 @@
 package org.apache.solr.response;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
@@ -33,11 +38,16 @@ import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRefBuilder;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LongValues;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.FastOutputStream;
+import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestInfo;
@@ -52,11 +62,25 @@ import org.apache.solr.schema.TrieLongField;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.SortSpec;
 import org.apache.solr.search.SyntaxError;
+import org.apache.solr.util.FastWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-
-public class SortingResponseWriter implements QueryResponseWriter {
+/**
+ * Writes all the documents matching an export request, sorted, from their docValues.
+ * <p>
+ * The documents are written as JSON, or with the javabin format if the client asked for
+ * it with wt=javabin.  Since the /export handler sets wt=xsort to select this writer, the
+ * format asked by the client is read from the original params of the request.
+ * <p>
+ * With the rollup param, the documents are rolled up by the values of the sort fields, which
+ * must be the fields of this param.  One document is written per bucket, with the values of the
+ * bucket fields and the values of the metrics of the rollup.metrics param over the documents of
+ * the bucket: sum:field, min:field, max:field, mean:field and count.  Each metric is written as
+ * the fields name.key, such as mean:price.sum and mean:price.count, holding the values a client
+ * needs to merge the buckets of several shards.
+ */
+public class SortingResponseWriter implements BinaryQueryResponseWriter {
 
   private final static Logger logger = LoggerFactory.getLogger(SortingResponseWriter.class);
 
@@ -65,7 +89,22 @@ public class SortingResponseWriter implements QueryResponseWriter {
   }
 
   public String getContentType(SolrQueryRequest req, SolrQueryResponse res) {
-    return "application/json";
+    return isJavabin(req, res) ? BinaryResponseParser.BINARY_CONTENT_TYPE : "application/json";
+  }
+
+  private boolean isJavabin(SolrQueryRequest req, SolrQueryResponse res) {
+    // errors are always written as text
+    return res.getException() == null && "javabin".equals(req.getOriginalParams().get(CommonParams.WT));
+  }
+
+  public void write(OutputStream out, SolrQueryRequest req, SolrQueryResponse res) throws IOException {
+    if(isJavabin(req, res)) {
+      export(req, new JavabinDocsWriter(out));
+    } else {
+      Writer writer = new FastWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      write(writer, req, res);
+      writer.flush();
+    }
   }
 
   public void write(Writer writer, SolrQueryRequest req, SolrQueryResponse res) throws IOException {
@@ -76,6 +115,11 @@ public class SortingResponseWriter implements QueryResponseWriter {
       }
       return;
     }
+    export(req, new JsonDocsWriter(writer));
+  }
+
+  private void export(SolrQueryRequest req, ResponseDocsWriter responseWriter) throws IOException {
+    DocsWriter docsWriter = responseWriter;
     SolrRequestInfo info = SolrRequestInfo.getRequestInfo();
     SortSpec sortSpec = info.getResponseBuilder().getSortSpec();
 
@@ -104,8 +148,11 @@ public class SortingResponseWriter implements QueryResponseWriter {
     int totalHits = th.intValue();
     SolrParams params = req.getParams();
     String fl = params.get("fl");
+    String rollup = params.get("rollup");
 
-    if(fl == null) {
+    if(rollup != null) {
+      fl = rollup;
+    } else if(fl == null) {
       throw new IOException(new SyntaxError("export field list (fl) must be specified."));
     }
 
@@ -118,7 +165,19 @@ public class SortingResponseWriter implements QueryResponseWriter {
     }
 
     FieldWriter[] fieldWriters = getFieldWriters(fields, req.getSearcher());
-    writer.write("{\"responseHeader\": {\"status\": 0}, \"response\":{\"numFound\":"+totalHits+", \"docs\":[");
+    if(rollup != null) {
+      SortField[] sortFields = sort.getSort();
+      boolean sortedByBuckets = sortFields.length == fields.length;
+      for(int i=0; sortedByBuckets && i<fields.length; i++) {
+        sortedByBuckets = fields[i].trim().equals(sortFields[i].getField());
+      }
+      if(!sortedByBuckets) {
+        throw new IOException(new SyntaxError("The rollup fields must be the sort fields, in the same order."));
+      }
+      RollupMetric[] metrics = getRollupMetrics(params.get("rollup.metrics", ""), req.getSearcher());
+      docsWriter = new RollupDocsWriter(responseWriter, metrics);
+    }
+    docsWriter.start(totalHits);
 
     //Write the data.
     List<LeafReaderContext> leaves = req.getSearcher().getTopReaderContext().leaves();
@@ -128,7 +187,6 @@ public class SortingResponseWriter implements QueryResponseWriter {
     SortQueue queue = new SortQueue(queueSize, sortDoc);
     SortDoc[] outDocs = new SortDoc[queueSize];
 
-    boolean commaNeeded = false;
     while(count < totalHits) {
       //long begin = System.nanoTime();
       queue.reset();
@@ -162,11 +220,7 @@ public class SortingResponseWriter implements QueryResponseWriter {
       try {
         for(int i=outDocsIndex; i>=0; --i) {
           SortDoc s = outDocs[i];
-          if(commaNeeded){writer.write(',');}
-          writer.write('{');
-          writeDoc(s, leaves, fieldWriters, sets, writer);
-          writer.write('}');
-          commaNeeded = true;
+          docsWriter.writeDoc(s, leaves, fieldWriters, sets);
           s.reset();
         }
       } catch(Throwable e) {
@@ -188,8 +242,333 @@ public class SortingResponseWriter implements QueryResponseWriter {
     }
 
     //System.out.println("Sort Time 2:"+Long.toString(total/1000000));
-    writer.write("]}}");
-    writer.flush();
+    docsWriter.finish();
+  }
+
+  /** Writes the sorted documents between the start and the end of the response. */
+  private abstract class DocsWriter {
+    public abstract void start(int totalHits) throws IOException;
+    public abstract void writeDoc(SortDoc sortDoc, List<LeafReaderContext> leaves, FieldWriter[] fieldWriters, FixedBitSet[] sets) throws IOException;
+    public abstract void finish() throws IOException;
+  }
+
+  /** Writes the response around the documents in the format of the response, along with the rolled up buckets. */
+  private abstract class ResponseDocsWriter extends DocsWriter {
+    /** Writes the fields of a document followed by the given values, a null value being written as null. */
+    public abstract void writeBucket(int docId, LeafReader reader, FieldWriter[] fieldWriters, String[] names, Number[] values) throws IOException;
+  }
+
+  private class JsonDocsWriter extends ResponseDocsWriter {
+    private final Writer writer;
+    private boolean commaNeeded;
+
+    public JsonDocsWriter(Writer writer) {
+      this.writer = writer;
+    }
+
+    public void start(int totalHits) throws IOException {
+      writer.write("{\"responseHeader\": {\"status\": 0}, \"response\":{\"numFound\":"+totalHits+", \"docs\":[");
+    }
+
+    public void writeDoc(SortDoc sortDoc, List<LeafReaderContext> leaves, FieldWriter[] fieldWriters, FixedBitSet[] sets) throws IOException {
+      if(commaNeeded){writer.write(',');}
+      writer.write('{');
+      SortingResponseWriter.this.writeDoc(sortDoc, leaves, fieldWriters, sets, writer);
+      writer.write('}');
+      commaNeeded = true;
+    }
+
+    public void writeBucket(int docId, LeafReader reader, FieldWriter[] fieldWriters, String[] names, Number[] values) throws IOException {
+      if(commaNeeded){writer.write(',');}
+      writer.write('{');
+      boolean needsComma = false;
+      for(FieldWriter fieldWriter : fieldWriters) {
+        if(needsComma) {
+          writer.write(',');
+        }
+        fieldWriter.write(docId, reader, writer);
+        needsComma = true;
+      }
+      for(int i=0; i<names.length; i++) {
+        if(needsComma) {
+          writer.write(',');
+        }
+        writer.write('"');
+        writer.write(names[i]);
+        writer.write('"');
+        writer.write(':');
+        writer.write(String.valueOf(values[i]));
+        needsComma = true;
+      }
+      writer.write('}');
+      commaNeeded = true;
+    }
+
+    public void finish() throws IOException {
+      writer.write("]}}");
+      writer.flush();
+    }
+  }
+
+  /**
+   * Writes the same response as the JSON one with the javabin format, the documents being
+   * an iterator of maps, so that they can be read one at a time as they are sent.
+   */
+  private class JavabinDocsWriter extends ResponseDocsWriter {
+    private final FastOutputStream out;
+    private final JavaBinCodec codec = new JavaBinCodec();
+
+    public JavabinDocsWriter(OutputStream out) {
+      this.out = FastOutputStream.wrap(out);
+    }
+
+    public void start(int totalHits) throws IOException {
+      codec.initWrite(out);
+      codec.writeTag(JavaBinCodec.ORDERED_MAP, 2);
+      codec.writeExternString("responseHeader");
+      codec.writeTag(JavaBinCodec.ORDERED_MAP, 1);
+      codec.writeExternString("status");
+      codec.writeInt(0);
+      codec.writeExternString("response");
+      codec.writeTag(JavaBinCodec.ORDERED_MAP, 2);
+      codec.writeExternString("numFound");
+      codec.writeInt(totalHits);
+      codec.writeExternString("docs");
+      codec.writeTag(JavaBinCodec.ITERATOR);
+    }
+
+    public void writeDoc(SortDoc sortDoc, List<LeafReaderContext> leaves, FieldWriter[] fieldWriters, FixedBitSet[] sets) throws IOException {
+      SortingResponseWriter.this.writeDoc(sortDoc, leaves, fieldWriters, sets, codec);
+    }
+
+    public void writeBucket(int docId, LeafReader reader, FieldWriter[] fieldWriters, String[] names, Number[] values) throws IOException {
+      codec.writeTag(JavaBinCodec.MAP, fieldWriters.length + names.length);
+      for(FieldWriter fieldWriter : fieldWriters) {
+        fieldWriter.write(docId, reader, codec);
+      }
+      for(int i=0; i<names.length; i++) {
+        codec.writeExternString(names[i]);
+        codec.writeVal(values[i]);
+      }
+    }
+
+    public void finish() throws IOException {
+      codec.writeTag(JavaBinCodec.END);
+      out.flushBuffer();
+    }
+  }
+
+  /**
+   * Rolls up the sorted documents by the values of their sort fields, and writes a document
+   * per bucket with the writer it wraps.
+   */
+  private class RollupDocsWriter extends DocsWriter {
+    private final ResponseDocsWriter docsWriter;
+    private final RollupMetric[] metrics;
+    private final String[] names;
+    private final Number[] values;
+    private FieldWriter[] fieldWriters;
+    // the sort values of the current bucket, and its first document
+    private SortDoc bucket;
+    private int bucketDocId = -1;
+    private LeafReader bucketReader;
+
+    public RollupDocsWriter(ResponseDocsWriter docsWriter, RollupMetric[] metrics) {
+      this.docsWriter = docsWriter;
+      this.metrics = metrics;
+      List<String> names = new ArrayList<>();
+      for(RollupMetric metric : metrics) {
+        for(String key : metric.keys()) {
+          names.add(metric.name + "." + key);
+        }
+      }
+      this.names = names.toArray(new String[names.size()]);
+      this.values = new Number[this.names.length];
+    }
+
+    public void start(int totalHits) throws IOException {
+      docsWriter.start(totalHits);
+    }
+
+    public void writeDoc(SortDoc sortDoc, List<LeafReaderContext> leaves, FieldWriter[] fieldWriters, FixedBitSet[] sets) throws IOException {
+      sets[sortDoc.ord].clear(sortDoc.docId);
+      LeafReader reader = leaves.get(sortDoc.ord).reader();
+      if(bucket == null || bucket.compareTo(sortDoc) != 0) {
+        flush();
+        if(bucket == null) {
+          bucket = sortDoc.copy();
+        }
+        bucket.setValues(sortDoc);
+        bucketDocId = sortDoc.docId;
+        bucketReader = reader;
+        this.fieldWriters = fieldWriters;
+        for(RollupMetric metric : metrics) {
+          metric.reset();
+        }
+      }
+      for(RollupMetric metric : metrics) {
+        metric.update(sortDoc.docId, reader);
+      }
+    }
+
+    private void flush() throws IOException {
+      if(bucketReader != null) {
+        int i = 0;
+        for(RollupMetric metric : metrics) {
+          i = metric.values(values, i);
+        }
+        docsWriter.writeBucket(bucketDocId, bucketReader, fieldWriters, names, values);
+        bucketReader = null;
+      }
+    }
+
+    public void finish() throws IOException {
+      flush();
+      docsWriter.finish();
+    }
+  }
+
+  protected RollupMetric[] getRollupMetrics(String spec, SolrIndexSearcher searcher) throws IOException {
+    IndexSchema schema = searcher.getSchema();
+    List<RollupMetric> metrics = new ArrayList<>();
+    for(String name : spec.split(",")) {
+      name = name.trim();
+      if(name.isEmpty()) {
+        continue;
+      }
+      if(name.equals("count")) {
+        metrics.add(new RollupMetric(name, name, null, false));
+        continue;
+      }
+      int colon = name.indexOf(':');
+      String type = colon == -1 ? name : name.substring(0, colon);
+      if(colon == -1 || !(type.equals("sum") || type.equals("min") || type.equals("max") || type.equals("mean"))) {
+        throw new IOException(new SyntaxError("Rollup metrics must be one of the following: sum:field,min:field,max:field,mean:field,count"));
+      }
+      String field = name.substring(colon + 1);
+      SchemaField schemaField = schema.getField(field);
+      FieldType fieldType = schemaField.getType();
+      if(!schemaField.hasDocValues() || schemaField.multiValued()) {
+        throw new IOException(field+" must have single valued DocValues to use this feature.");
+      }
+      if(fieldType instanceof TrieIntField || fieldType instanceof TrieLongField) {
+        metrics.add(new RollupMetric(name, type, field, false));
+      } else if(fieldType instanceof TrieFloatField) {
+        metrics.add(new FloatRollupMetric(name, type, field));
+      } else if(fieldType instanceof TrieDoubleField) {
+        metrics.add(new RollupMetric(name, type, field, true));
+      } else {
+        throw new IOException("Rollup metric fields must be one of the following types: int,float,long,double");
+      }
+    }
+    return metrics.toArray(new RollupMetric[metrics.size()]);
+  }
+
+  /**
+   * A metric over the documents of a bucket.  The values are summed as longs or as doubles
+   * like the client side metrics do, and written as the values these metrics merge.  The documents
+   * without a value of the field are skipped, except by the count of the documents of the bucket.
+   */
+  class RollupMetric {
+    protected final String name;
+    protected final String type;
+    protected final String field;
+    protected final boolean isDouble;
+    protected long count;
+    protected long longValue;
+    protected double doubleValue;
+    // the doc values of the segment of the last updated document
+    private LeafReader reader;
+    private NumericDocValues docValues;
+    private Bits docsWithField;
+
+    public RollupMetric(String name, String type, String field, boolean isDouble) {
+      this.name = name;
+      this.type = type;
+      this.field = field;
+      this.isDouble = isDouble;
+    }
+
+    public String[] keys() {
+      switch(type) {
+        case "count": return new String[] {"count"};
+        case "mean": return new String[] {"sum", "count"};
+        default: return new String[] {type};
+      }
+    }
+
+    public void reset() {
+      count = 0;
+      longValue = type.equals("min") ? Long.MAX_VALUE : type.equals("max") ? Long.MIN_VALUE : 0;
+      doubleValue = type.equals("min") ? Double.MAX_VALUE : type.equals("max") ? -Double.MAX_VALUE : 0;
+    }
+
+    public void update(int docId, LeafReader reader) throws IOException {
+      if(field == null) {
+        ++count;
+        return;
+      }
+      if(reader != this.reader) {
+        this.reader = reader;
+        docValues = DocValues.getNumeric(reader, field);
+        docsWithField = DocValues.getDocsWithField(reader, field);
+      }
+      if(!docsWithField.get(docId)) {
+        return;
+      }
+      ++count;
+      long bits = docValues.get(docId);
+      if(isDouble) {
+        update(toDouble(bits));
+      } else {
+        switch(type) {
+          case "min": longValue = Math.min(longValue, bits); break;
+          case "max": longValue = Math.max(longValue, bits); break;
+          default: longValue += bits;
+        }
+      }
+    }
+
+    protected double toDouble(long bits) {
+      return Double.longBitsToDouble(bits);
+    }
+
+    private void update(double value) {
+      switch(type) {
+        case "min": doubleValue = Math.min(doubleValue, value); break;
+        case "max": doubleValue = Math.max(doubleValue, value); break;
+        default: doubleValue += value;
+      }
+    }
+
+    /**
+     * Sets the values of the metric from the index i of the array, and returns the next index.  The min and max
+     * of a bucket without values are null.
+     */
+    public int values(Number[] values, int i) {
+      if(!type.equals("count")) {
+        if(count == 0 && (type.equals("min") || type.equals("max"))) {
+          values[i++] = null;
+        } else {
+          values[i++] = isDouble ? (Number)doubleValue : (Number)longValue;
+        }
+      }
+      if(type.equals("count") || type.equals("mean")) {
+        values[i++] = count;
+      }
+      return i;
+    }
+  }
+
+  class FloatRollupMetric extends RollupMetric {
+
+    public FloatRollupMetric(String name, String type, String field) {
+      super(name, type, field, true);
+    }
+
+    protected double toDouble(long bits) {
+      return Float.intBitsToFloat((int)bits);
+    }
   }
 
   public static class IgnoreException extends IOException {
@@ -224,6 +603,22 @@ public class SortingResponseWriter implements QueryResponseWriter {
     }
   }
 
+  protected void writeDoc(SortDoc sortDoc,
+                          List<LeafReaderContext> leaves,
+                          FieldWriter[] fieldWriters,
+                          FixedBitSet[] sets,
+                          JavaBinCodec codec) throws IOException{
+
+    int ord = sortDoc.ord;
+    FixedBitSet set = sets[ord];
+    set.clear(sortDoc.docId);
+    LeafReaderContext context = leaves.get(ord);
+    codec.writeTag(JavaBinCodec.MAP, fieldWriters.length);
+    for(FieldWriter fieldWriter : fieldWriters) {
+      fieldWriter.write(sortDoc.docId, context.reader(), codec);
+    }
+  }
+
   protected FieldWriter[] getFieldWriters(String[] fields, SolrIndexSearcher searcher) throws IOException {
     IndexSchema schema = searcher.getSchema();
     FieldWriter[] writers = new FieldWriter[fields.length];
@@ -239,31 +634,31 @@ public class SortingResponseWriter implements QueryResponseWriter {
       FieldType fieldType = schemaField.getType();
       if(fieldType instanceof TrieIntField) {
         if(multiValued) {
-          writers[i] = new MultiFieldWriter(field, fieldType, true);
+          writers[i] = new MultiFieldWriter(schemaField, true);
         } else {
           writers[i] = new IntFieldWriter(field);
         }
       } else if (fieldType instanceof TrieLongField) {
         if(multiValued) {
-          writers[i] = new MultiFieldWriter(field, fieldType, true);
+          writers[i] = new MultiFieldWriter(schemaField, true);
         } else {
           writers[i] = new LongFieldWriter(field);
         }
       } else if (fieldType instanceof TrieFloatField) {
         if(multiValued) {
-          writers[i] = new MultiFieldWriter(field, fieldType, true);
+          writers[i] = new MultiFieldWriter(schemaField, true);
         } else {
           writers[i] = new FloatFieldWriter(field);
         }
       } else if(fieldType instanceof TrieDoubleField) {
         if(multiValued) {
-          writers[i] = new MultiFieldWriter(field, fieldType, true);
+          writers[i] = new MultiFieldWriter(schemaField, true);
         } else {
           writers[i] = new DoubleFieldWriter(field);
         }
       } else if(fieldType instanceof StrField) {
         if(multiValued) {
-          writers[i] = new MultiFieldWriter(field, fieldType, false);
+          writers[i] = new MultiFieldWriter(schemaField, false);
         } else {
           writers[i] = new StringFieldWriter(field, fieldType);
         }
@@ -424,6 +819,19 @@ public class SortingResponseWriter implements QueryResponseWriter {
       return new SortDoc(svs);
     }
 
+    /** Compares the sort values of the documents. */
+    public int compareTo(Object o) {
+      SortDoc sd = (SortDoc)o;
+      SortValue[] sortValues1 = sd.sortValues;
+      for(int i=0; i<sortValues.length; i++) {
+        int comp = sortValues[i].compareTo(sortValues1[i]);
+        if(comp != 0) {
+          return comp;
+        }
+      }
+      return 0;
+    }
+
     public boolean lessThan(Object o) {
       if(docId == -1) {
         return true;
@@ -1150,6 +1558,7 @@ public class SortingResponseWriter implements QueryResponseWriter {
 
   protected abstract class FieldWriter {
     public abstract void write(int docId, LeafReader reader, Writer out) throws IOException;
+    public abstract void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException;
   }
 
   class IntFieldWriter extends FieldWriter {
@@ -1168,17 +1577,25 @@ public class SortingResponseWriter implements QueryResponseWriter {
        out.write(':');
        out.write(Integer.toString(val));
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      NumericDocValues vals = reader.getNumericDocValues(this.field);
+      codec.writeExternString(this.field);
+      codec.writeInt((int)vals.get(docId));
+    }
   }
 
   class MultiFieldWriter extends FieldWriter {
     private String field;
+    private SchemaField schemaField;
     private FieldType fieldType;
     private boolean numeric;
     private CharsRefBuilder cref = new CharsRefBuilder();
 
-    public MultiFieldWriter(String field, FieldType fieldType, boolean numeric) {
-      this.field = field;
-      this.fieldType = fieldType;
+    public MultiFieldWriter(SchemaField schemaField, boolean numeric) {
+      this.field = schemaField.getName();
+      this.schemaField = schemaField;
+      this.fieldType = schemaField.getType();
       this.numeric = numeric;
     }
 
@@ -1212,6 +1629,23 @@ public class SortingResponseWriter implements QueryResponseWriter {
       }
       out.write("]");
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      SortedSetDocValues vals = reader.getSortedSetDocValues(this.field);
+      vals.setDocument(docId);
+      codec.writeExternString(this.field);
+      codec.writeTag(JavaBinCodec.ITERATOR);
+      long ord = -1;
+      while((ord = vals.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+        BytesRef ref = vals.lookupOrd(ord);
+        if(numeric) {
+          codec.writeVal(fieldType.toObject(schemaField, ref));
+        } else {
+          codec.writeUTF8Str(ref.bytes, ref.offset, ref.length);
+        }
+      }
+      codec.writeTag(JavaBinCodec.END);
+    }
   }
 
   class LongFieldWriter extends FieldWriter {
@@ -1230,6 +1664,12 @@ public class SortingResponseWriter implements QueryResponseWriter {
       out.write(':');
       out.write(Long.toString(val));
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      NumericDocValues vals = reader.getNumericDocValues(this.field);
+      codec.writeExternString(this.field);
+      codec.writeLong(vals.get(docId));
+    }
   }
 
   class FloatFieldWriter extends FieldWriter {
@@ -1248,6 +1688,12 @@ public class SortingResponseWriter implements QueryResponseWriter {
       out.write(':');
       out.write(Float.toString(Float.intBitsToFloat(val)));
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      NumericDocValues vals = reader.getNumericDocValues(this.field);
+      codec.writeExternString(this.field);
+      codec.writeFloat(Float.intBitsToFloat((int)vals.get(docId)));
+    }
   }
 
   class DoubleFieldWriter extends FieldWriter {
@@ -1266,6 +1712,12 @@ public class SortingResponseWriter implements QueryResponseWriter {
       out.write(':');
       out.write(Double.toString(Double.longBitsToDouble(val)));
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      NumericDocValues vals = reader.getNumericDocValues(this.field);
+      codec.writeExternString(this.field);
+      codec.writeDouble(Double.longBitsToDouble(vals.get(docId)));
+    }
   }
 
   class StringFieldWriter extends FieldWriter {
@@ -1290,6 +1742,14 @@ public class SortingResponseWriter implements QueryResponseWriter {
       out.write(cref.toString());
       out.write('"');
     }
+
+    public void write(int docId, LeafReader reader, JavaBinCodec codec) throws IOException {
+      SortedDocValues vals = reader.getSortedDocValues(this.field);
+      BytesRef ref = vals.get(docId);
+      codec.writeExternString(this.field);
+      // the readable form of a StrField is its indexed bytes, written without decoding them
+      codec.writeUTF8Str(ref.bytes, ref.offset, ref.length);
+    }
   }
 
   public abstract class PriorityQueue<T> {
@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.Tokenizer;
@@ -94,6 +95,8 @@ public abstract class FieldType extends FieldProperties {
   protected int properties;
   private boolean isExplicitQueryAnalyzer;
   private boolean isExplicitAnalyzer;
+  /** the Lucene field types of the fields built by {@link #createField(SchemaField, Object, float)}, by the properties of the schema field */
+  private final Map<Integer,org.apache.lucene.document.FieldType> luceneTypes = new ConcurrentHashMap<>();
 
   /** Returns true if fields of this type should be tokenized */
   public boolean isTokenized() {
@@ -260,14 +263,20 @@ public abstract class FieldType extends FieldProperties {
     }
     if (val==null) return null;
 
-    org.apache.lucene.document.FieldType newType = new org.apache.lucene.document.FieldType();
-    newType.setTokenized(field.isTokenized());
-    newType.setStored(field.stored());
-    newType.setOmitNorms(field.omitNorms());
-    newType.setIndexOptions(field.indexed() ? getIndexOptions(field, val) : IndexOptions.NONE);
-    newType.setStoreTermVectors(field.storeTermVector());
-    newType.setStoreTermVectorOffsets(field.storeTermOffsets());
-    newType.setStoreTermVectorPositions(field.storeTermPositions());
+    // the type only depends on the properties of the field, so it is shared by all its values
+    org.apache.lucene.document.FieldType newType = luceneTypes.get(field.properties);
+    if (newType == null) {
+      newType = new org.apache.lucene.document.FieldType();
+      newType.setTokenized(field.isTokenized());
+      newType.setStored(field.stored());
+      newType.setOmitNorms(field.omitNorms());
+      newType.setIndexOptions(field.indexed() ? getIndexOptions(field, val) : IndexOptions.NONE);
+      newType.setStoreTermVectors(field.storeTermVector());
+      newType.setStoreTermVectorOffsets(field.storeTermOffsets());
+      newType.setStoreTermVectorPositions(field.storeTermPositions());
+      newType.freeze();
+      luceneTypes.put(field.properties, newType);
+    }
 
     return createField(field.getName(), val, newType, boost);
   }
@@ -308,6 +317,10 @@ public abstract class FieldType extends FieldProperties {
     return f==null ? Collections.<StorableField>emptyList() : Collections.singletonList(f);
   }
 
+  /**
+   * The index options of the Lucene fields of a schema field.  The Lucene field types are built once
+   * per field properties, so the options should not depend on the value.
+   */
   protected IndexOptions getIndexOptions(SchemaField field, String internalVal) {
 
     IndexOptions options = IndexOptions.DOCS_AND_FREQS_AND_POSITIONS;
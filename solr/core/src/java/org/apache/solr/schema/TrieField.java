@@ -23,6 +23,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.FieldType;
@@ -82,6 +83,8 @@ public class TrieField extends PrimitiveFieldType {
   protected int precisionStep;     // normalized
   protected TrieTypes type;
   protected Object missingValue;
+  // the Lucene field types of the created fields, by the properties of the schema field
+  private final Map<Integer, FieldType> fieldTypes = new ConcurrentHashMap<>();
 
   
   /**
@@ -597,32 +600,37 @@ public class TrieField extends PrimitiveFieldType {
       return null;
     }
     
-    FieldType ft = new FieldType();
-    ft.setStored(stored);
-    ft.setTokenized(true);
-    ft.setOmitNorms(field.omitNorms());
-    ft.setIndexOptions(indexed ? getIndexOptions(field, value.toString()) : IndexOptions.NONE);
+    FieldType ft = fieldTypes.get(field.properties);
+    if (ft == null) {
+      ft = new FieldType();
+      ft.setStored(stored);
+      ft.setTokenized(true);
+      ft.setOmitNorms(field.omitNorms());
+      ft.setIndexOptions(indexed ? getIndexOptions(field, value.toString()) : IndexOptions.NONE);
 
-    switch (type) {
-      case INTEGER:
-        ft.setNumericType(NumericType.INT);
-        break;
-      case FLOAT:
-        ft.setNumericType(NumericType.FLOAT);
-        break;
-      case LONG:
-        ft.setNumericType(NumericType.LONG);
-        break;
-      case DOUBLE:
-        ft.setNumericType(NumericType.DOUBLE);
-        break;
-      case DATE:
-        ft.setNumericType(NumericType.LONG);
-        break;
-      default:
-        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Unknown type for trie field: " + type);
+      switch (type) {
+        case INTEGER:
+          ft.setNumericType(NumericType.INT);
+          break;
+        case FLOAT:
+          ft.setNumericType(NumericType.FLOAT);
+          break;
+        case LONG:
+          ft.setNumericType(NumericType.LONG);
+          break;
+        case DOUBLE:
+          ft.setNumericType(NumericType.DOUBLE);
+          break;
+        case DATE:
+          ft.setNumericType(NumericType.LONG);
+          break;
+        default:
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Unknown type for trie field: " + type);
+      }
+      ft.setNumericPrecisionStep(precisionStep);
+      ft.freeze();
+      fieldTypes.put(field.properties, ft);
     }
-    ft.setNumericPrecisionStep(precisionStep);
 
     final org.apache.lucene.document.Field f;
 
@@ -22,7 +22,10 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DocValuesType;
 import org.apache.lucene.index.IndexDocument;
+import org.apache.lucene.index.StorableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
@@ -50,6 +53,12 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<IndexDoc
    public Term updateTerm;
 
    public int commitWithin = -1;
+
+   /** The document only holds new values of docValues fields, to update in place without reindexing the document */
+   public boolean isInPlaceUpdate;
+
+   /** The version of the document that the update in place applies to, or -1 if it isn't an update in place */
+   public long prevVersion = -1;
    
    public AddUpdateCommand(SolrQueryRequest req) {
      super(req);
@@ -65,6 +74,8 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<IndexDoc
      solrDoc = null;
      indexedId = null;
      updateTerm = null;
+     isInPlaceUpdate = false;
+     prevVersion = -1;
      version = 0;
    }
 
@@ -79,6 +90,25 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<IndexDoc
      return DocumentBuilder.toDocument(getSolrInputDocument(), req.getSchema());
    }
 
+  /** Creates and returns the docValues fields of an in place update, other than the uniqueKey field.
+   * @see #isInPlaceUpdate
+   */
+   public Field[] getDocValuesUpdates() {
+     IndexSchema schema = req.getSchema();
+     SchemaField uniq = schema.getUniqueKeyField();
+     List<Field> fields = new ArrayList<>();
+     for (SolrInputField sif : getSolrInputDocument()) {
+       SchemaField sf = schema.getField(sif.getName());
+       if (sf.equals(uniq)) continue;
+       for (StorableField f : sf.getType().createFields(sf, sif.getFirstValue(), 1.0f)) {
+         if (f != null && f.fieldType().docValuesType() == DocValuesType.NUMERIC) {
+           fields.add((Field) f);
+         }
+       }
+     }
+     return fields.toArray(new Field[fields.size()]);
+   }
+
   /** Returns the indexed ID for this document.  The returned BytesRef is retained across multiple calls, and should not be modified. */
    public BytesRef getIndexedId() {
      if (indexedId == null) {
@@ -216,6 +246,7 @@ public class AddUpdateCommand extends UpdateCommand implements Iterable<IndexDoc
      StringBuilder sb = new StringBuilder(super.toString());
      sb.append(",id=").append(getPrintableId());
      if (!overwrite) sb.append(",overwrite=").append(overwrite);
+     if (isInPlaceUpdate) sb.append(",inPlace=").append(isInPlaceUpdate).append(",prevVersion=").append(prevVersion);
      if (commitWithin != -1) sb.append(",commitWithin=").append(commitWithin);
      sb.append('}');
      return sb.toString();
@@ -35,6 +35,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Helper class for tracking autoCommit state.
+ * <p>
+ * An adaptive tracker measures how long its commits take, which includes opening and
+ * warming the new searcher.  It starts the time-triggered commits that much earlier, so
+ * that the documents are still visible within maxTime (or commitWithin), but never starts
+ * a commit before the last searcher was in use for as long as it took to open it.  Bursts
+ * of updates then can't make it open searchers faster than they are warmed.
  * 
  * Note: This is purely an implementation detail of autoCommit and will
  * definitely change in the future, so the interface should not be relied-upon
@@ -67,9 +73,20 @@ public final class CommitTracker implements Runnable {
   private boolean openSearcher;
   private final boolean waitSearcher = true;
 
+  private final boolean adaptive;
+  // the average duration of the commits, in ms
+  private volatile long commitTime;
+  // the time before which no commit should start, in ms of System.nanoTime()
+  private volatile long nextCommitTime;
+
   private String name;
   
   public CommitTracker(String name, SolrCore core, int docsUpperBound, int timeUpperBound, boolean openSearcher, boolean softCommit) {
+    this(name, core, docsUpperBound, timeUpperBound, openSearcher, softCommit, false);
+  }
+
+  public CommitTracker(String name, SolrCore core, int docsUpperBound, int timeUpperBound, boolean openSearcher, boolean softCommit,
+                       boolean adaptive) {
     this.core = core;
     this.name = name;
     pending = null;
@@ -79,6 +96,7 @@ public final class CommitTracker implements Runnable {
     
     this.softCommit = softCommit;
     this.openSearcher = openSearcher;
+    this.adaptive = adaptive;
 
     SolrCore.log.info(name + " AutoCommit: " + this);
   }
@@ -121,6 +139,9 @@ public final class CommitTracker implements Runnable {
 
   private void _scheduleCommitWithin(long commitMaxTime) {
     if (commitMaxTime <= 0) return;
+    if (adaptive) {
+      commitMaxTime = adaptCommitDelay(commitMaxTime);
+    }
     synchronized (this) {
       if (pending != null && pending.getDelay(TimeUnit.MILLISECONDS) <= commitMaxTime) {
         // There is already a pending commit that will happen first, so
@@ -151,6 +172,13 @@ public final class CommitTracker implements Runnable {
     }
   }
   
+  /** The delay before a commit that should make the documents visible within commitMaxTime */
+  long adaptCommitDelay(long commitMaxTime) {
+    long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    long delay = Math.max(commitMaxTime - commitTime, DOC_COMMIT_DELAY_MS);
+    return Math.max(delay, nextCommitTime - now);
+  }
+
   /**
    * Indicate that documents have been added
    */
@@ -199,6 +227,12 @@ public final class CommitTracker implements Runnable {
       pending = null;  // allow a new commit to be scheduled
     }
 
+    long start = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    if (adaptive) {
+      // the commits scheduled meanwhile start once this one is done and its searcher was used for a while
+      nextCommitTime = start + 2 * commitTime;
+    }
+
     SolrQueryRequest req = new LocalSolrQueryRequest(core,
         new ModifiableSolrParams());
     try {
@@ -214,6 +248,13 @@ public final class CommitTracker implements Runnable {
       autoCommitCount.incrementAndGet();
 
       core.getUpdateHandler().commit(command);
+
+      if (adaptive) {
+        long end = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        long time = end - start;
+        commitTime = commitTime == 0 ? time : (3 * commitTime + time) / 4;
+        nextCommitTime = end + commitTime;
+      }
     } catch (Exception e) {
       SolrException.log(log, "auto commit error...", e);
     } finally {
@@ -233,13 +274,23 @@ public final class CommitTracker implements Runnable {
       return (timeUpperBound > 0 ? ("if uncommited for " + timeUpperBound + "ms; ")
           : "")
           + (docsUpperBound > 0 ? ("if " + docsUpperBound + " uncommited docs ")
-              : "");
+              : "")
+          + (adaptive ? "adaptive " : "");
       
     } else {
       return "disabled";
     }
   }
 
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /** The average time taken by the commits of an adaptive tracker, in ms */
+  public long getCommitTime() {
+    return commitTime;
+  }
+
   public long getTimeUpperBound() {
     return timeUpperBound;
   }
@@ -108,7 +108,8 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
     
     int softCommitDocsUpperBound = updateHandlerInfo.autoSoftCommmitMaxDocs; // getInt("updateHandler/autoSoftCommit/maxDocs", -1);
     int softCommitTimeUpperBound = updateHandlerInfo.autoSoftCommmitMaxTime; // getInt("updateHandler/autoSoftCommit/maxTime", -1);
-    softCommitTracker = new CommitTracker("Soft", core, softCommitDocsUpperBound, softCommitTimeUpperBound, true, true);
+    softCommitTracker = new CommitTracker("Soft", core, softCommitDocsUpperBound, softCommitTimeUpperBound, true, true,
+        updateHandlerInfo.autoSoftCommitAdaptive);
     
     commitWithinSoftCommit = updateHandlerInfo.commitWithinSoftCommit;
     indexWriterCloseWaitsForMerges = updateHandlerInfo.indexWriterCloseWaitsForMerges;
@@ -128,7 +129,8 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
     
     int softCommitDocsUpperBound = updateHandlerInfo.autoSoftCommmitMaxDocs; // getInt("updateHandler/autoSoftCommit/maxDocs", -1);
     int softCommitTimeUpperBound = updateHandlerInfo.autoSoftCommmitMaxTime; // getInt("updateHandler/autoSoftCommit/maxTime", -1);
-    softCommitTracker = new CommitTracker("Soft", core, softCommitDocsUpperBound, softCommitTimeUpperBound, updateHandlerInfo.openSearcher, true);
+    softCommitTracker = new CommitTracker("Soft", core, softCommitDocsUpperBound, softCommitTimeUpperBound, updateHandlerInfo.openSearcher, true,
+        updateHandlerInfo.autoSoftCommitAdaptive);
     
     commitWithinSoftCommit = updateHandlerInfo.commitWithinSoftCommit;
     indexWriterCloseWaitsForMerges = updateHandlerInfo.indexWriterCloseWaitsForMerges;
@@ -231,7 +233,10 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
               updateTerm = cmd.updateTerm;
             }
 
-            if (cmd.isBlock()) {
+            if (cmd.isInPlaceUpdate) {
+              // only the docValues of the document are updated, without reindexing it
+              writer.updateDocValues(idTerm, cmd.getDocValuesUpdates());
+            } else if (cmd.isBlock()) {
               writer.updateDocuments(updateTerm, cmd);
             } else {
               Document luceneDocument = cmd.getLuceneDocument();
@@ -431,7 +436,7 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
   /** Add a document execute the deletes as atomically as possible */
   private void addAndDelete(AddUpdateCommand cmd, List<Query> dbqList)
       throws IOException {
-    Document luceneDocument = cmd.getLuceneDocument();
+    Document luceneDocument = cmd.isInPlaceUpdate ? null : cmd.getLuceneDocument();
     Term idTerm = new Term(idField.getName(), cmd.getIndexedId());
     
     // see comment in deleteByQuery
@@ -439,7 +444,11 @@ public class DirectUpdateHandler2 extends UpdateHandler implements SolrCoreState
       RefCounted<IndexWriter> iw = solrCoreState.getIndexWriter(core);
       try {
         IndexWriter writer = iw.get();
-        writer.updateDocument(idTerm, luceneDocument);
+        if (cmd.isInPlaceUpdate) {
+          writer.updateDocValues(idTerm, cmd.getDocValuesUpdates());
+        } else {
+          writer.updateDocument(idTerm, luceneDocument);
+        }
         
         for (Query q : dbqList) {
           writer.deleteDocuments(new DeleteByQueryWrapper(q, core.getLatestSchema()));
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+
+/**
+ * A map from the indexed ids of the updates in a transaction log to their position in the log
+ * and their version.  The ids are stored in the byte blocks of a {@link BytesRefHash}, and the
+ * positions and versions in arrays indexed by the ordinal of the id, so that the entries of the
+ * uncommitted updates don't cost the garbage collector several objects each.
+ * <p>
+ * This class is not thread safe: {@link UpdateLog} synchronizes the accesses to its maps.
+ *
+ * @lucene.internal
+ */
+public class LogPtrMap {
+  private final BytesRefHash ids = new BytesRefHash();
+  private long[] pointers = new long[16];
+  private long[] versions = new long[16];
+
+  /** Maps the id to the position and the version of its latest update, replacing any previous one. */
+  public void put(BytesRef id, long pointer, long version) {
+    if (id == null) {
+      return;  // a document added without a uniqueKey, which can't be looked up
+    }
+    int ord = ids.add(id);
+    if (ord < 0) {
+      ord = -ord - 1;
+    } else if (ord >= pointers.length) {
+      pointers = ArrayUtil.grow(pointers, ord + 1);
+      versions = ArrayUtil.grow(versions, ord + 1);
+    }
+    pointers[ord] = pointer;
+    versions[ord] = version;
+  }
+
+  /** Returns the position and the version of the latest update of the id, or null if there is none. */
+  public UpdateLog.LogPtr get(BytesRef id) {
+    int ord = ids.find(id);
+    return ord < 0 ? null : new UpdateLog.LogPtr(pointers[ord], versions[ord]);
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public void clear() {
+    ids.clear();
+    ids.reinit();
+  }
+}
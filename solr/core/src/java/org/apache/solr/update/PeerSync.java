@@ -486,12 +486,17 @@ public class PeerSync  {
 
         switch (oper) {
           case UpdateLog.ADD:
+          case UpdateLog.UPDATE_INPLACE:
           {
             // byte[] idBytes = (byte[]) entry.get(2);
             SolrInputDocument sdoc = (SolrInputDocument)entry.get(entry.size()-1);
             AddUpdateCommand cmd = new AddUpdateCommand(req);
             // cmd.setIndexedId(new BytesRef(idBytes));
             cmd.solrDoc = sdoc;
+            if (oper == UpdateLog.UPDATE_INPLACE) {
+              cmd.isInPlaceUpdate = true;
+              cmd.prevVersion = (Long) entry.get(2);
+            }
             cmd.setVersion(version);
             cmd.setFlags(UpdateCommand.PEER_SYNC | UpdateCommand.IGNORE_AUTOCOMMIT);
             if (debug) {
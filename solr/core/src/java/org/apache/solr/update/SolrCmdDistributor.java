@@ -41,7 +41,9 @@ import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -65,6 +67,10 @@ public class SolrCmdDistributor {
   
   private final CompletionService<Object> completionService;
   private final Set<Future<Object>> pending = new HashSet<>();
+
+  // the adds buffered for each node, by url and queue, until they fill a batch or another command is sent
+  private final int batchSize;
+  private final Map<String, Req> batches = new LinkedHashMap<>();
   
   public static interface AbortCheck {
     public boolean abortCheck();
@@ -74,6 +80,7 @@ public class SolrCmdDistributor {
     this.clients = new StreamingSolrClients(updateShardHandler);
     this.updateExecutor = updateShardHandler.getUpdateExecutor();
     this.completionService = new ExecutorCompletionService<>(updateExecutor);
+    this.batchSize = clients.getBatchSize();
   }
   
   public SolrCmdDistributor(StreamingSolrClients clients, int maxRetriesOnForward, int retryPause) {
@@ -82,6 +89,7 @@ public class SolrCmdDistributor {
     this.retryPause = retryPause;
     this.updateExecutor = clients.getUpdateExecutor();
     completionService = new ExecutorCompletionService<>(updateExecutor);
+    this.batchSize = clients.getBatchSize();
   }
   
   public void finish() {    
@@ -172,7 +180,14 @@ public class SolrCmdDistributor {
   }
   
   public void distribDelete(DeleteUpdateCommand cmd, List<Node> nodes, ModifiableSolrParams params, boolean sync) throws IOException {
-    
+    // the buffered adds are sent first, so that each node receives the commands in order
+    submitBatches();
+    if (!cmd.isDeleteById() && clients.getQueueCount() > 1) {
+      // the adds streamed on the other queues are received before the delete by query
+      clients.blockUntilFinished();
+    }
+    int queue = cmd.isDeleteById() ? clients.getQueue(cmd.getId()) : 0;
+
     for (Node node : nodes) {
       UpdateRequest uReq = new UpdateRequest();
       uReq.setParams(params);
@@ -183,7 +198,9 @@ public class SolrCmdDistributor {
         uReq.deleteByQuery(cmd.query);
       }
       
-      submit(new Req(cmd.toString(), node, uReq, sync), false);
+      Req req = new Req(cmd.toString(), node, uReq, sync);
+      req.queue = queue;
+      submit(req, false);
     }
   }
   
@@ -196,16 +213,63 @@ public class SolrCmdDistributor {
   }
   
   public void distribAdd(AddUpdateCommand cmd, List<Node> nodes, ModifiableSolrParams params, boolean synchronous, RequestReplicationTracker rrt) throws IOException {  
+    int queue = clients.getQueueCount() > 1 ? clients.getQueue(cmd.getHashableId()) : 0;
 
     for (Node node : nodes) {
+      // the adds tracking the achieved replication factor of their own request are sent alone
+      if (batchSize > 1 && !synchronous && rrt == null) {
+        addToBatch(cmd, node, params, queue);
+        continue;
+      }
       UpdateRequest uReq = new UpdateRequest();
       uReq.setParams(params);
       uReq.add(cmd.solrDoc, cmd.commitWithin, cmd.overwrite);
-      submit(new Req(cmd.toString(), node, uReq, synchronous, rrt), false);
+      Req req = new Req(cmd.toString(), node, uReq, synchronous, rrt);
+      req.queue = queue;
+      submit(req, false);
     }
     
   }
 
+  /**
+   * Buffers the add in the batch of the node and queue, so that the documents are forwarded in a single update
+   * request, written as a single javabin message, once batchSize of them are buffered.
+   */
+  private void addToBatch(AddUpdateCommand cmd, Node node, ModifiableSolrParams params, int queue) {
+    String key = queue == 0 ? node.getUrl() : node.getUrl() + "#" + queue;
+    Req batch = batches.get(key);
+    if (batch != null && !batch.uReq.getParams().toNamedList().equals(params.toNamedList())) {
+      submitBatch(batches.remove(key));
+      batch = null;
+    }
+    if (batch == null) {
+      UpdateRequest uReq = new UpdateRequest();
+      uReq.setParams(params);
+      batch = new Req(cmd.toString(), node, uReq, false);
+      batch.queue = queue;
+      batches.put(key, batch);
+    }
+    batch.uReq.add(cmd.solrDoc, cmd.commitWithin, cmd.overwrite);
+    if (batch.uReq.getDocumentsMap().size() >= batchSize) {
+      submitBatch(batches.remove(key));
+    }
+  }
+
+  private void submitBatches() {
+    for (Req batch : batches.values()) {
+      submitBatch(batch);
+    }
+    batches.clear();
+  }
+
+  private void submitBatch(Req batch) {
+    int numDocs = batch.uReq.getDocumentsMap().size();
+    if (numDocs > 1) {
+      batch.cmdString += " and " + (numDocs - 1) + " more docs";
+    }
+    submit(batch, false);
+  }
+
   public void distribCommit(CommitUpdateCommand cmd, List<Node> nodes,
       ModifiableSolrParams params) throws IOException {
     
@@ -226,6 +290,7 @@ public class SolrCmdDistributor {
   }
 
   private void blockAndDoRetries() {
+    submitBatches();
     clients.blockUntilFinished();
     
     // wait for any async commits to complete
@@ -310,6 +375,8 @@ public class SolrCmdDistributor {
     public boolean synchronous;
     public String cmdString;
     public RequestReplicationTracker rfTracker;
+    // the queue the request is streamed on to the node, the same for all the updates of an id
+    public int queue;
 
     public Req(String cmdString, Node node, UpdateRequest uReq, boolean synchronous) {
       this(cmdString, node, uReq, synchronous, null);
@@ -49,8 +49,14 @@ public class StreamingSolrClients {
 
   private ExecutorService updateExecutor;
 
+  private final int batchSize;
+
+  private final int queueCount;
+
   public StreamingSolrClients(UpdateShardHandler updateShardHandler) {
     this.updateExecutor = updateShardHandler.getUpdateExecutor();
+    this.batchSize = updateShardHandler.getDistribUpdateBatchSize();
+    this.queueCount = updateShardHandler.getDistribUpdateThreads();
     
     httpClient = updateShardHandler.getHttpClient();
   }
@@ -65,7 +71,9 @@ public class StreamingSolrClients {
 
   public synchronized SolrClient getSolrClient(final SolrCmdDistributor.Req req) {
     String url = getFullUrl(req.node.getUrl());
-    ConcurrentUpdateSolrClient client = solrClients.get(url);
+    // each queue streams its requests to the node with a single runner, so that they are received in order
+    String key = req.queue == 0 ? url : url + "#" + req.queue;
+    ConcurrentUpdateSolrClient client = solrClients.get(key);
     if (client == null) {
       client = new ConcurrentUpdateSolrClient(url, httpClient, 100, 1, updateExecutor, true) {
         @Override
@@ -92,7 +100,7 @@ public class StreamingSolrClients {
       queryParams.add(DistributedUpdateProcessor.DISTRIB_FROM);
       queryParams.add(DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM);
       client.setQueryParams(queryParams);
-      solrClients.put(url, client);
+      solrClients.put(key, client);
     }
 
     return client;
@@ -127,4 +135,22 @@ public class StreamingSolrClients {
   public ExecutorService getUpdateExecutor() {
     return updateExecutor;
   }
+
+  /** The number of queues that stream the update requests to each node concurrently. */
+  public int getQueueCount() {
+    return queueCount;
+  }
+
+  /**
+   * Returns the queue the updates of the id are streamed on to a node, so that the updates of an id are always
+   * received in the order they were sent, while the updates of other ids can be in flight on the other queues.
+   */
+  public int getQueue(String id) {
+    return queueCount <= 1 || id == null ? 0 : (id.hashCode() & Integer.MAX_VALUE) % queueCount;
+  }
+
+  /** The number of documents to forward to a node in a single update request. */
+  public int getBatchSize() {
+    return batchSize;
+  }
 }
@@ -74,6 +74,8 @@ public class TransactionLog {
   FileChannel channel;
   OutputStream os;
   FastOutputStream fos;    // all accesses to this stream should be synchronized on "this" (The TransactionLog)
+  // the size of the log when its buffer was last flushed: the records before it can be read without synchronizing
+  volatile long flushedPos;
   int numRecords;
   
   protected volatile boolean deleteOnClose = true;  // we can delete old tlogs since they are currently only used for real-time-get (and in the future, recovery)
@@ -84,6 +86,14 @@ public class TransactionLog {
 
   long snapshot_size;
   int snapshot_numRecords;
+
+  // group commit of fsyncs: the position up to which the log is known to be synced,
+  // whether a thread is currently syncing it, and the number of rollbacks, which
+  // invalidate the syncs in progress.  All are guarded by syncLock.
+  private final Object syncLock = new Object();
+  private long syncedPos;
+  private boolean syncing;
+  private int rollbacks;
   
   // write a BytesRef as a byte array
   JavaBinCodec.ObjectResolver resolver = new JavaBinCodec.ObjectResolver() {
@@ -246,8 +256,14 @@ public class TransactionLog {
       raf.setLength(pos);
       fos.setWritten(pos);
       assert fos.size() == pos;
+      flushedPos = Math.min(flushedPos, pos);
       numRecords = snapshot_numRecords;
     }
+    synchronized (syncLock) {
+      // a sync in progress may have measured the log before it was truncated
+      syncedPos = Math.min(syncedPos, pos);
+      rollbacks++;
+    }
   }
 
 
@@ -352,9 +368,17 @@ public class TransactionLog {
 
       MemOutputStream out = new MemOutputStream(new byte[bufSize]);
       codec.init(out);
-      codec.writeTag(JavaBinCodec.ARR, 3);
-      codec.writeInt(UpdateLog.ADD | flags);  // should just take one byte
-      codec.writeLong(cmd.getVersion());
+      if (cmd.isInPlaceUpdate) {
+        // the version the update applies to is logged so that the replays can check it
+        codec.writeTag(JavaBinCodec.ARR, 4);
+        codec.writeInt(UpdateLog.UPDATE_INPLACE | flags);  // should just take one byte
+        codec.writeLong(cmd.getVersion());
+        codec.writeLong(cmd.prevVersion);
+      } else {
+        codec.writeTag(JavaBinCodec.ARR, 3);
+        codec.writeInt(UpdateLog.ADD | flags);  // should just take one byte
+        codec.writeLong(cmd.getVersion());
+      }
       codec.writeSolrInputDocument(cmd.getSolrInputDocument());
       lastAddSize = (int)out.size();
 
@@ -456,6 +480,7 @@ public class TransactionLog {
         endRecord(pos);
         
         fos.flush();  // flush since this will be the last record in a log fill
+        flushedPos = fos.size();
         assert fos.size() == channel.size();
 
         return pos;
@@ -473,16 +498,18 @@ public class TransactionLog {
     if (pos < 0) return null;
 
     try {
-      // make sure any unflushed buffer has been flushed
-      synchronized (this) {
-        // TODO: optimize this by keeping track of what we have flushed up to
-        fos.flushBuffer();
-        /***
-         System.out.println("###flushBuffer to " + fos.size() + " raf.length()=" + raf.length() + " pos="+pos);
-        if (fos.size() != raf.length() || pos >= fos.size() ) {
-          throw new RuntimeException("ERROR" + "###flushBuffer to " + fos.size() + " raf.length()=" + raf.length() + " pos="+pos);
+      // make sure any unflushed buffer has been flushed.  A record starting before flushedPos
+      // was written to the file as a whole, so most lookups don't contend with the writers.
+      if (pos >= flushedPos) {
+        synchronized (this) {
+          flushBuffer();
+          /***
+           System.out.println("###flushBuffer to " + fos.size() + " raf.length()=" + raf.length() + " pos="+pos);
+          if (fos.size() != raf.length() || pos >= fos.size() ) {
+            throw new RuntimeException("ERROR" + "###flushBuffer to " + fos.size() + " raf.length()=" + raf.length() + " pos="+pos);
+          }
+          ***/
         }
-        ***/
       }
 
       ChannelFastInputStream fis = new ChannelFastInputStream(channel, pos);
@@ -510,6 +537,12 @@ public class TransactionLog {
     }
   }
 
+  // must be synchronized on this
+  private void flushBuffer() throws IOException {
+    fos.flushBuffer();
+    flushedPos = fos.size();
+  }
+
   /** returns the current position in the log file */
   public long position() {
     synchronized (this) {
@@ -520,15 +553,17 @@ public class TransactionLog {
   public void finish(UpdateLog.SyncLevel syncLevel) {
     if (syncLevel == UpdateLog.SyncLevel.NONE) return;
     try {
+      long pos;
       synchronized (this) {
-        fos.flushBuffer();
+        flushBuffer();
+        pos = fos.size();
       }
 
       if (syncLevel == UpdateLog.SyncLevel.FSYNC) {
         // Since fsync is outside of synchronized block, we can end up with a partial
         // last record on power failure (which is OK, and does not represent an error...
         // we just need to be aware of it when reading).
-        raf.getFD().sync();
+        sync(pos);
       }
 
     } catch (IOException e) {
@@ -536,6 +571,47 @@ public class TransactionLog {
     }
   }
 
+  /**
+   * Syncs the log to disk at least up to pos.  Concurrent callers share their fsyncs: while one
+   * thread syncs, the others wait for it, and the next sync covers everything flushed until then,
+   * so that a single fsync commits the records of all of the requests that finished meanwhile.
+   */
+  private void sync(long pos) throws IOException {
+    int rollbacksAtStart;
+    synchronized (syncLock) {
+      while (syncedPos < pos && syncing) {
+        try {
+          syncLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Interrupted waiting for a sync of " + this, e);
+        }
+      }
+      if (syncedPos >= pos) return;
+      syncing = true;
+      rollbacksAtStart = rollbacks;
+    }
+
+    long end = pos;
+    boolean synced = false;
+    try {
+      synchronized (this) {
+        flushBuffer();
+        end = fos.size();
+      }
+      raf.getFD().sync();
+      synced = true;
+    } finally {
+      synchronized (syncLock) {
+        syncing = false;
+        if (synced && rollbacks == rollbacksAtStart) {
+          syncedPos = Math.max(syncedPos, end);
+        }
+        syncLock.notifyAll();
+      }
+    }
+  }
+
   protected void close() {
     try {
       if (debug) {
@@ -624,7 +700,7 @@ public class TransactionLog {
           return null;
         }
 
-        fos.flushBuffer();
+        flushBuffer();
       }
 
       if (pos == 0) {
@@ -713,7 +789,7 @@ public class TransactionLog {
 
       long sz;
       synchronized (TransactionLog.this) {
-        fos.flushBuffer();
+        flushBuffer();
         sz = fos.size();
         assert sz == channel.size();
       }
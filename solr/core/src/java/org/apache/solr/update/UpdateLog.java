@@ -101,6 +101,9 @@ public class UpdateLog implements PluginInfoInitialized {
   public static final int DELETE = 0x02;
   public static final int DELETE_BY_QUERY = 0x03;
   public static final int COMMIT = 0x04;
+  // An add of the new values of docValues fields, updated in place.  The document of the entry only holds
+  // the uniqueKey, the _version_ and the docValues fields updated in place since the document was indexed.
+  public static final int UPDATE_INPLACE = 0x08;
   // Flag indicating that this is a buffered operation, and that a gap exists before buffering started.
   // for example, if full index replication starts and we are buffering updates, then this flag should
   // be set to indicate that replaying the log would not bring us into sync (i.e. peersync should
@@ -134,9 +137,9 @@ public class UpdateLog implements PluginInfoInitialized {
   protected LinkedList<TransactionLog> newestLogsOnStartup = new LinkedList<>();
   protected int numOldRecords;  // number of records in the recent logs
 
-  protected Map<BytesRef,LogPtr> map = new HashMap<>();
-  protected Map<BytesRef,LogPtr> prevMap;  // used while committing/reopening is happening
-  protected Map<BytesRef,LogPtr> prevMap2;  // used while committing/reopening is happening
+  protected LogPtrMap map = new LogPtrMap();
+  protected LogPtrMap prevMap;  // used while committing/reopening is happening
+  protected LogPtrMap prevMap2;  // used while committing/reopening is happening
   protected TransactionLog prevMapLog;  // the transaction log used to look up entries found in prevMap
   protected TransactionLog prevMapLog2;  // the transaction log used to look up entries found in prevMap
 
@@ -418,15 +421,13 @@ public class UpdateLog implements PluginInfoInitialized {
       if (!clearCaches) {
         // TODO: in the future we could support a real position for a REPLAY update.
         // Only currently would be useful for RTG while in recovery mode though.
-        LogPtr ptr = new LogPtr(pos, cmd.getVersion());
-
         // only update our map if we're not buffering
         if ((cmd.getFlags() & UpdateCommand.BUFFERING) == 0) {
-          map.put(cmd.getIndexedId(), ptr);
+          map.put(cmd.getIndexedId(), pos, cmd.getVersion());
         }
 
         if (trace) {
-          log.trace("TLOG: added id " + cmd.getPrintableId() + " to " + tlog + " " + ptr + " map=" + System.identityHashCode(map));
+          log.trace("TLOG: added id " + cmd.getPrintableId() + " to " + tlog + " LogPtr(" + pos + ") map=" + System.identityHashCode(map));
         }
 
       } else {
@@ -470,7 +471,7 @@ public class UpdateLog implements PluginInfoInitialized {
 
       // only update our map if we're not buffering
       if ((cmd.getFlags() & UpdateCommand.BUFFERING) == 0) {
-        map.put(br, ptr);
+        map.put(br, pos, cmd.version);
 
         oldDeletes.put(br, ptr);
       }
@@ -600,7 +601,7 @@ public class UpdateLog implements PluginInfoInitialized {
     prevMap = map;
     prevMapLog = tlog;
 
-    map = new HashMap<>();
+    map = new LogPtrMap();
   }
 
   private void clearOldMaps() {
@@ -674,7 +675,7 @@ public class UpdateLog implements PluginInfoInitialized {
       // any added documents will make it into this commit or not.
       // But we do know that any updates already added will definitely
       // show up in the latest reader after the commit succeeds.
-      map = new HashMap<>();
+      map = new LogPtrMap();
 
       if (debug) {
         log.debug("TLOG: preSoftCommit: prevMap="+ System.identityHashCode(prevMap) + " new map=" + System.identityHashCode(map));
@@ -991,6 +992,7 @@ public class UpdateLog implements PluginInfoInitialized {
 
               switch (oper) {
                 case UpdateLog.ADD:
+                case UpdateLog.UPDATE_INPLACE:
                 case UpdateLog.DELETE:
                 case UpdateLog.DELETE_BY_QUERY:
                   Update update = new Update();
@@ -1341,6 +1343,7 @@ public class UpdateLog implements PluginInfoInitialized {
 
             switch (oper) {
               case UpdateLog.ADD:
+              case UpdateLog.UPDATE_INPLACE:
               {
                 recoveryInfo.adds++;
                 // byte[] idBytes = (byte[]) entry.get(2);
@@ -1348,6 +1351,10 @@ public class UpdateLog implements PluginInfoInitialized {
                 AddUpdateCommand cmd = new AddUpdateCommand(req);
                 // cmd.setIndexedId(new BytesRef(idBytes));
                 cmd.solrDoc = sdoc;
+                if (oper == UpdateLog.UPDATE_INPLACE) {
+                  cmd.isInPlaceUpdate = true;
+                  cmd.prevVersion = (Long) entry.get(2);
+                }
                 cmd.setVersion(version);
                 cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                 if (debug) log.debug("add " +  cmd);
@@ -46,6 +46,10 @@ public class UpdateShardHandler {
   
   private final CloseableHttpClient client;
 
+  private final int distribUpdateBatchSize;
+
+  private final int distribUpdateThreads;
+
   @Deprecated
   public UpdateShardHandler(NodeConfig cfg) {
     this(cfg.getUpdateShardHandlerConfig());
@@ -72,6 +76,12 @@ public class UpdateShardHandler {
     params.set(HttpClientUtil.PROP_USE_RETRY, true);
     log.info("Creating UpdateShardHandler HTTP client with params: {}", params);
     client = HttpClientUtil.createClient(params, clientConnectionManager);
+
+    if (cfg == null) {
+      cfg = UpdateShardHandlerConfig.DEFAULT;
+    }
+    distribUpdateBatchSize = cfg.getDistributedUpdateBatchSize();
+    distribUpdateThreads = cfg.getDistributedUpdateThreads();
   }
   
   
@@ -87,6 +97,14 @@ public class UpdateShardHandler {
     return updateExecutor;
   }
 
+  public int getDistribUpdateBatchSize() {
+    return distribUpdateBatchSize;
+  }
+
+  public int getDistribUpdateThreads() {
+    return distribUpdateThreads;
+  }
+
   public void close() {
     try {
       ExecutorUtil.shutdownAndAwaitTermination(updateExecutor);
@@ -23,6 +23,8 @@ public class UpdateShardHandlerConfig {
   public static final int DEFAULT_DISTRIBUPDATESOTIMEOUT = 600000;
   public static final int DEFAULT_MAXUPDATECONNECTIONS = 10000;
   public static final int DEFAULT_MAXUPDATECONNECTIONSPERHOST = 100;
+  public static final int DEFAULT_DISTRIBUPDATEBATCHSIZE = 1;
+  public static final int DEFAULT_DISTRIBUPDATETHREADS = 1;
 
   public static final UpdateShardHandlerConfig DEFAULT
       = new UpdateShardHandlerConfig(DEFAULT_MAXUPDATECONNECTIONS, DEFAULT_MAXUPDATECONNECTIONSPERHOST,
@@ -36,11 +38,23 @@ public class UpdateShardHandlerConfig {
 
   private final int distributedConnectionTimeout;
 
+  private final int distributedUpdateBatchSize;
+
+  private final int distributedUpdateThreads;
+
   public UpdateShardHandlerConfig(int maxUpdateConnections, int maxUpdateConnectionsPerHost, int distributedSocketTimeout, int distributedConnectionTimeout) {
+    this(maxUpdateConnections, maxUpdateConnectionsPerHost, distributedSocketTimeout, distributedConnectionTimeout,
+         DEFAULT_DISTRIBUPDATEBATCHSIZE, DEFAULT_DISTRIBUPDATETHREADS);
+  }
+
+  public UpdateShardHandlerConfig(int maxUpdateConnections, int maxUpdateConnectionsPerHost, int distributedSocketTimeout, int distributedConnectionTimeout,
+                                  int distributedUpdateBatchSize, int distributedUpdateThreads) {
     this.maxUpdateConnections = maxUpdateConnections;
     this.maxUpdateConnectionsPerHost = maxUpdateConnectionsPerHost;
     this.distributedSocketTimeout = distributedSocketTimeout;
     this.distributedConnectionTimeout = distributedConnectionTimeout;
+    this.distributedUpdateBatchSize = distributedUpdateBatchSize;
+    this.distributedUpdateThreads = distributedUpdateThreads;
   }
 
   public int getMaxUpdateConnectionsPerHost() {
@@ -58,4 +72,17 @@ public class UpdateShardHandlerConfig {
   public int getDistributedConnectionTimeout() {
     return distributedConnectionTimeout;
   }
+
+  /** The number of documents forwarded to a replica in a single update request. */
+  public int getDistributedUpdateBatchSize() {
+    return distributedUpdateBatchSize;
+  }
+
+  /**
+   * The number of update requests that may be in flight to a replica at once.  The updates of an id are
+   * always sent on the same connection, so that they are received in order.
+   */
+  public int getDistributedUpdateThreads() {
+    return distributedUpdateThreads;
+  }
 }
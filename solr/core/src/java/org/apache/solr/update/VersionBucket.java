@@ -17,17 +17,83 @@
 
 package org.apache.solr.update;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrException;
+
 // TODO: make inner?
 // TODO: store the highest possible in the index on a commit (but how to not block adds?)
 // TODO: could also store highest possible in the transaction log after a commit.
 // Or on a new index, just scan "version" for the max?
-/** @lucene.internal */
+/**
+ * The versions of the updates of the ids hashing to this bucket are assigned while synchronized on it.
+ * The updates are then applied to the index outside of the monitor, so that the ids of a bucket are
+ * indexed concurrently: {@link #startUpdate} and {@link #endUpdate} mark the ids being applied, and
+ * {@link #awaitUpdate} keeps the updates of a single id in the order of their versions.
+ *
+ * @lucene.internal
+ */
 public class VersionBucket {
   public long highest;
 
+  // the ids whose update is being applied to the index, guarded by this bucket
+  private final Set<BytesRef> updating = new HashSet<>();
+  private int waiting;
+
   public void updateHighest(long val) {
     if (highest != 0) {
       highest = Math.max(highest, Math.abs(val));
     }
   }
+
+  /**
+   * Waits until no other update of the id is being applied to the index.
+   * Must be called while synchronized on this bucket, whose monitor is released while waiting.
+   */
+  public void awaitUpdate(BytesRef id) {
+    while (updating.contains(id)) {
+      waiting++;
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Interrupted waiting for an update of the same id", e);
+      } finally {
+        waiting--;
+      }
+    }
+  }
+
+  /**
+   * Waits until the update of an id of this bucket is applied to the index, or until the timeout elapses.
+   * Must be called while synchronized on this bucket, whose monitor is released while waiting.
+   */
+  public void awaitNextUpdate(long timeoutMs) {
+    waiting++;
+    try {
+      wait(timeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Interrupted waiting for an update", e);
+    } finally {
+      waiting--;
+    }
+  }
+
+  /**
+   * Marks the id as being applied to the index, once its version is assigned.
+   * Must be called while synchronized on this bucket, and followed by {@link #endUpdate}.
+   */
+  public void startUpdate(BytesRef id) {
+    updating.add(BytesRef.deepCopyOf(id));
+  }
+
+  public synchronized void endUpdate(BytesRef id) {
+    updating.remove(id);
+    if (waiting > 0) {
+      notifyAll();
+    }
+  }
 }
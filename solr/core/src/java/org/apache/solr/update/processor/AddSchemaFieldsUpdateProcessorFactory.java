@@ -304,6 +304,13 @@ public class AddSchemaFieldsUpdateProcessorFactory extends UpdateRequestProcesso
         // Need to hold the lock during the entire attempt to ensure that
         // the schema on the request is the latest
         synchronized (oldSchema.getSchemaUpdateLock()) {
+          if (oldSchema != core.getLatestSchema()) {
+            // another request, or another update thread of this request, changed the schema
+            // meanwhile; adding the fields to the old schema would drop its fields
+            oldSchema = core.getLatestSchema();
+            cmd.getReq().updateSchemaToLatest();
+            continue;
+          }
           try {
             IndexSchema newSchema = oldSchema.addFields(newFields);
             if (null != newSchema) {
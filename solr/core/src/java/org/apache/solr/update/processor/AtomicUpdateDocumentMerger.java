@@ -18,6 +18,7 @@ package org.apache.solr.update.processor;
  */
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -33,7 +34,9 @@ import org.apache.solr.common.SolrInputField;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.TrieField;
 import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.VersionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +46,9 @@ import org.slf4j.LoggerFactory;
 public class AtomicUpdateDocumentMerger {
   
   private final static Logger log = LoggerFactory.getLogger(AtomicUpdateDocumentMerger.class);
+
+  /** The field of the updates in place forwarded to the replicas that holds the version they apply to */
+  public static final String PREV_VERSION_FIELD = "_prev_version_";
   
   protected final IndexSchema schema;
   protected final SchemaField idField;
@@ -67,6 +73,97 @@ public class AtomicUpdateDocumentMerger {
     return false;
   }
   
+  /**
+   * Returns true if the atomic update of the command only sets or increments the values of fields that can be
+   * updated in place, without reindexing the document: single valued numeric docValues fields, that are neither
+   * indexed nor stored, nor the source or the target of a copyField.  The {@link VersionInfo#VERSION_FIELD}
+   * must also have docValues, which are updated with them.
+   * <p>
+   * The indexed and stored values of the {@link VersionInfo#VERSION_FIELD} are not updated in place: they keep
+   * the version the document was last reindexed with, and the version of an update in place can only be read
+   * from the docValues, which {@link VersionInfo#getVersionFromIndex} and the realtime get do.
+   */
+  public boolean isInPlaceUpdate(final AddUpdateCommand cmd) {
+    SolrInputDocument sdoc = cmd.getSolrInputDocument();
+    SchemaField versionField = schema.getFieldOrNull(VersionInfo.VERSION_FIELD);
+    if (!cmd.overwrite || cmd.updateTerm != null || sdoc.hasChildDocuments()
+        || versionField == null || !versionField.hasDocValues()) {
+      return false;
+    }
+
+    for (SolrInputField sif : sdoc.values()) {
+      String name = sif.getName();
+      if (name.equals(idField.getName()) || name.equals(VersionInfo.VERSION_FIELD)) {
+        continue;
+      }
+      Object val = sif.getValue();
+      if (!(val instanceof Map) || ((Map<String,Object>) val).size() != 1) {
+        return false;
+      }
+      Entry<String,Object> entry = ((Map<String,Object>) val).entrySet().iterator().next();
+      if (!"set".equals(entry.getKey()) && !"inc".equals(entry.getKey())) {
+        return false;
+      }
+      if (entry.getValue() == null || entry.getValue() instanceof Collection) {
+        return false;
+      }
+      SchemaField sf = schema.getFieldOrNull(name);
+      if (sf == null || !isInPlaceUpdatable(sf)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isInPlaceUpdatable(SchemaField sf) {
+    return sf.hasDocValues() && !sf.indexed() && !sf.stored() && !sf.multiValued()
+        && sf.getType() instanceof TrieField && ((TrieField) sf.getType()).getType() != TrieField.TrieTypes.DATE
+        && !schema.isCopyFieldTarget(sf) && schema.getCopyFieldsList(sf.getName()).isEmpty();
+  }
+
+  /**
+   * Returns the document of an update in place, as forwarded to the replicas: the values of the docValues
+   * fields are sent as "set" operations, so that the replicas update them in place too, along with the
+   * version of the document the update was applied to in the {@link #PREV_VERSION_FIELD}.
+   *
+   * @see #fromInPlaceUpdate
+   */
+  public SolrInputDocument toInPlaceUpdate(final SolrInputDocument doc, long prevVersion) {
+    for (SolrInputField sif : doc.values()) {
+      String name = sif.getName();
+      if (!name.equals(idField.getName()) && !name.equals(VersionInfo.VERSION_FIELD)) {
+        sif.setValue(Collections.singletonMap("set", sif.getValue()), sif.getBoost());
+      }
+    }
+    doc.setField(PREV_VERSION_FIELD, prevVersion);
+    return doc;
+  }
+
+  /**
+   * Turns the "set" operations of an update in place forwarded by the leader back into the values
+   * of the command, and marks it as an update in place of the version in the {@link #PREV_VERSION_FIELD}.
+   *
+   * @see #toInPlaceUpdate
+   */
+  public void fromInPlaceUpdate(final AddUpdateCommand cmd) {
+    SolrInputField prevVersion = cmd.getSolrInputDocument().removeField(PREV_VERSION_FIELD);
+    if (prevVersion == null || !(prevVersion.getValue() instanceof Number)) {
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Update in place without the version it applies to: " + cmd.getPrintableId());
+    }
+    cmd.prevVersion = ((Number) prevVersion.getValue()).longValue();
+    for (SolrInputField sif : cmd.getSolrInputDocument().values()) {
+      Object val = sif.getValue();
+      if (val instanceof Map) {
+        Map<String,Object> ops = (Map<String,Object>) val;
+        if (ops.size() != 1 || !ops.containsKey("set")) {
+          throw new SolrException(ErrorCode.SERVER_ERROR, "Invalid update in place of field: " + sif);
+        }
+        sif.setValue(ops.get("set"), sif.getBoost());
+      }
+    }
+    cmd.isInPlaceUpdate = true;
+  }
+
   /**
    * Merges the fromDoc into the toDoc using the atomic update syntax.
    * 
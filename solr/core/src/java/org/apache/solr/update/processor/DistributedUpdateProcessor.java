@@ -222,6 +222,9 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
   
   public static final String COMMIT_END_POINT = "commit_end_point";
   public static final String LOG_REPLAY = "log_replay";
+
+  /** How long a replica waits for the version of a document that an update in place forwarded by the leader applies to */
+  static final long IN_PLACE_UPDATE_TIMEOUT_MS = 5000;
   
   private final SolrQueryRequest req;
   private final SolrQueryResponse rsp;
@@ -933,12 +936,12 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
   }
 
  
-  // must be synchronized by bucket
+  // must be between VersionBucket.startUpdate and endUpdate
   private void doLocalAdd(AddUpdateCommand cmd) throws IOException {
     super.processAdd(cmd);
   }
 
-  // must be synchronized by bucket
+  // must be between VersionBucket.startUpdate and endUpdate
   private void doLocalDelete(DeleteUpdateCommand cmd) throws IOException {
     super.processDelete(cmd);
   }
@@ -994,15 +997,26 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
 
     VersionBucket bucket = vinfo.bucket(bucketHash);
 
+    if (versionsStored && !leaderLogic && AtomicUpdateDocumentMerger.isAtomicUpdate(cmd)) {
+      // the leader only forwards the new values of the documents updated in place
+      docMerger.fromInPlaceUpdate(cmd);
+      if (!isReplayOrPeersync && ulog.getState() == UpdateLog.State.ACTIVE) {
+        awaitPrevVersion(bucket, cmd, versionOnUpdate);
+      }
+    }
+
     vinfo.lockForUpdate();
     try {
       synchronized (bucket) {
-        // we obtain the version when synchronized and then do the add so we can ensure that
-        // if version1 < version2 then version1 is actually added before version2.
+        // we obtain the version when synchronized, after any other update of this id has been added,
+        // and mark the id as updating so that if version1 < version2 then version1 is actually added
+        // before version2.  The add itself is done outside of the monitor, so that the other ids of
+        // the bucket are not blocked behind the analysis and indexing of this document.
 
         // even if we don't store the version field, synchronizing on the bucket
         // will enable us to know what version happened first, and thus enable
         // realtime-get to work reliably.
+        bucket.awaitUpdate(idBytes);
         // TODO: if versions aren't stored, do we need to set on the cmd anyway for some reason?
         // there may be other reasons in the future for a version on the commands
 
@@ -1078,9 +1092,21 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
               // also need to re-apply newer deleteByQuery commands
               checkDeleteByQueries = true;
             }
+
+            if (cmd.isInPlaceUpdate) {
+              if (!checkPrevVersion(cmd)) {
+                // a newer version of the document was applied while waiting
+                return true;
+              }
+              resolveInPlaceUpdate(cmd);
+            }
           }
         }
-        
+
+        bucket.startUpdate(idBytes);
+      }  // end synchronized (bucket)
+
+      try {
         boolean willDistrib = isLeader && nodes != null && nodes.size() > 0;
         
         SolrInputDocument clonedDoc = null;
@@ -1092,10 +1118,11 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
         doLocalAdd(cmd);
         
         if (willDistrib) {
-          cmd.solrDoc = clonedDoc;
+          cmd.solrDoc = cmd.isInPlaceUpdate ? docMerger.toInPlaceUpdate(clonedDoc, cmd.prevVersion) : clonedDoc;
         }
-
-      }  // end synchronized (bucket)
+      } finally {
+        bucket.endUpdate(idBytes);
+      }
     } finally {
       vinfo.unlockForUpdate();
     }
@@ -1109,6 +1136,19 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
 
     SolrInputDocument sdoc = cmd.getSolrInputDocument();
     BytesRef id = cmd.getIndexedId();
+
+    if (docMerger.isInPlaceUpdate(cmd)) {
+      SolrInputDocument oldValues = RealTimeGetComponent.getInPlaceUpdatableValues(cmd.getReq().getCore(), id, sdoc.getFieldNames());
+      Long prevVersion = oldValues == null ? null : vinfo.lookupVersion(id);
+      if (prevVersion != null && prevVersion > 0) {
+        // only the values of the docValues fields are logged and updated
+        cmd.solrDoc = docMerger.merge(sdoc, oldValues);
+        cmd.isInPlaceUpdate = true;
+        cmd.prevVersion = prevVersion;
+        return true;
+      }
+    }
+
     SolrInputDocument oldDoc = RealTimeGetComponent.getInputDocument(cmd.getReq().getCore(), id);
 
     if (oldDoc == null) {
@@ -1128,6 +1168,71 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
     return true;
   }
 
+  /**
+   * Waits until a replica has applied the version of the document that the leader applied the update in place to,
+   * since the update in place only holds the new values of some fields of the document, or until a newer version
+   * was applied or {@link #IN_PLACE_UPDATE_TIMEOUT_MS} elapsed.  This is done before taking the
+   * {@link VersionInfo#lockForUpdate} lock: a deleteByQuery or the buffering of the update log waiting for the
+   * write lock would otherwise keep the update of the awaited version from being applied.
+   */
+  private void awaitPrevVersion(VersionBucket bucket, AddUpdateCommand cmd, long version) {
+    BytesRef id = cmd.getIndexedId();
+    long timeoutAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(IN_PLACE_UPDATE_TIMEOUT_MS);
+    synchronized (bucket) {
+      for (;;) {
+        Long lastVersion = vinfo.lookupVersion(id);
+        if (lastVersion != null && (lastVersion == cmd.prevVersion || Math.abs(lastVersion) >= version)) {
+          return;
+        }
+        long remaining = timeoutAt - System.nanoTime();
+        if (remaining <= 0) {
+          // checkPrevVersion fails the update
+          return;
+        }
+        bucket.awaitNextUpdate(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+      }
+    }
+  }
+
+  /**
+   * Checks that a replica has applied the version of the document that the leader applied the update in place to.
+   * Must be called while synchronized on the bucket of the id, once the other updates of the id are applied.
+   *
+   * @return false if a newer version of the document was applied, so the update in place must be dropped
+   * @throws SolrException if the version isn't applied, so that the replica recovers the updates it missed
+   */
+  private boolean checkPrevVersion(AddUpdateCommand cmd) {
+    Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
+    if (lastVersion != null && Math.abs(lastVersion) >= cmd.getVersion()) {
+      return false;
+    }
+    if (lastVersion != null && lastVersion == cmd.prevVersion) {
+      return true;
+    }
+    // the buffered updates that can't be replayed fail the recovery, which starts over
+    ErrorCode code = ulog.getState() == UpdateLog.State.APPLYING_BUFFERED ? ErrorCode.SERVICE_UNAVAILABLE : ErrorCode.SERVER_ERROR;
+    throw new SolrException(code, "Missing version " + cmd.prevVersion + " of the document updated in place: "
+        + cmd.getPrintableId() + " version=" + cmd.getVersion() + " found=" + lastVersion);
+  }
+
+  /**
+   * A document of a replica that was added since the latest realtime searcher was opened is reindexed with the
+   * new values of the update in place, so that the stored fields of the documents updated in place can always be
+   * read from the latest index.
+   */
+  private void resolveInPlaceUpdate(AddUpdateCommand cmd) {
+    Object o = ulog.lookup(cmd.getIndexedId());
+    if (o != null && ((Integer) ((List) o).get(0) & UpdateLog.OPERATION_MASK) == UpdateLog.ADD) {
+      SolrInputDocument doc = ((SolrInputDocument) ((List) o).get(((List) o).size() - 1)).deepCopy();
+      for (SolrInputField sif : cmd.getSolrInputDocument().values()) {
+        doc.setField(sif.getName(), sif.getValue(), sif.getBoost());
+      }
+      cmd.solrDoc = doc;
+      cmd.isInPlaceUpdate = false;
+      cmd.prevVersion = -1;
+    }
+  }
+
   @Override
   public void processDelete(DeleteUpdateCommand cmd) throws IOException {
     updateCommand = cmd;
@@ -1502,6 +1607,9 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
     try {
 
       synchronized (bucket) {
+        // as for adds, the version is assigned when synchronized and the delete is done outside of the monitor
+        bucket.awaitUpdate(idBytes);
+
         if (versionsStored) {
           long bucketVersion = bucket.highest;
 
@@ -1565,10 +1673,16 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
           }
         }
 
-        doLocalDelete(cmd);
-        return false;
+        bucket.startUpdate(idBytes);
       }  // end synchronized (bucket)
 
+      try {
+        doLocalDelete(cmd);
+      } finally {
+        bucket.endUpdate(idBytes);
+      }
+      return false;
+
     } finally {
       vinfo.unlockForUpdate();
     }
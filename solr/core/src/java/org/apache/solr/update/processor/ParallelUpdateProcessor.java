@@ -0,0 +1,484 @@
+package org.apache.solr.update.processor;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequestBase;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.CommitUpdateCommand;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.MergeIndexesCommand;
+import org.apache.solr.update.RollbackUpdateCommand;
+
+/**
+ * Processes the documents of a single update request with several instances of an
+ * update processor chain, each run by its own thread of the update executor.
+ * <p>
+ * The adds and the deletes by id are queued to the instance chosen by the hash of
+ * their uniqueKey, so that the updates of a document are still applied in the order of
+ * the request.  The adds of documents without a uniqueKey are spread round robin.
+ * The other commands (commits, rollbacks, deletes by query and merges) first wait
+ * for all the queued updates, and are then processed by the first instance.
+ * <p>
+ * Each instance has its own copy of the request, with the same parameters and a copy of
+ * its context, and writes to its own response; the responses are merged into the response
+ * of the request once the instances are finished.  The commands queued to an instance are
+ * copies on its request, so that the processors that update the schema of the request of a
+ * command, or otherwise use it, do not share the request between threads.
+ * <p>
+ * When an update fails, the updates before it in the request are still applied and the
+ * updates after it that are not applied yet are dropped, as they are when the request is
+ * processed by a single thread.  The error of the first update that failed is thrown to the
+ * caller, and the ids of the documents after it that other threads applied already are
+ * listed under {@link #APPLIED_AFTER_ERROR} in the response.
+ *
+ * @see org.apache.solr.common.params.UpdateParams#UPDATE_THREADS
+ */
+public class ParallelUpdateProcessor extends UpdateRequestProcessor {
+  public static final int DEFAULT_QUEUE_SIZE = 100;
+
+  /** The ids of the updates applied after the update that failed, in the response of a failed request */
+  public static final String APPLIED_AFTER_ERROR = "appliedAfterError";
+
+  // queued to make the workers finish their processors and stop
+  private static final Object FINISH = new Object();
+
+  private final SolrQueryResponse rsp;
+  private final SchemaField uniqueKeyField;
+  private final Worker[] workers;
+  private final int queueSize;
+  private final CountDownLatch finished;
+  private int nextWorker;
+  // the position in the request of the next update
+  private long seq;
+
+  // the error of the first update that failed in the order of the request, and its position
+  private Throwable error;
+  private volatile long errorSeq = Long.MAX_VALUE;
+  private volatile boolean failed;
+
+  public ParallelUpdateProcessor(UpdateRequestProcessorChain chain, SolrQueryRequest req, SolrQueryResponse rsp,
+                                 int threads, int queueSize) {
+    super(null);
+    this.rsp = rsp;
+    this.uniqueKeyField = req.getSchema().getUniqueKeyField();
+    this.workers = new Worker[threads];
+    this.queueSize = queueSize;
+    this.finished = new CountDownLatch(threads);
+
+    ExecutorService executor = req.getCore().getCoreDescriptor().getCoreContainer()
+        .getUpdateShardHandler().getUpdateExecutor();
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Worker(chain, req, queueSize);
+    }
+    for (Worker worker : workers) {
+      executor.execute(worker);
+    }
+  }
+
+  @Override
+  public void processAdd(AddUpdateCommand cmd) throws IOException {
+    SolrInputDocument doc = cmd.getSolrInputDocument();
+    BytesRef id = null;
+    if (uniqueKeyField != null && doc != null && doc.getField(uniqueKeyField.getName()) != null) {
+      id = cmd.getIndexedId();
+    }
+    Worker worker = getWorker(id);
+    enqueue(worker, new Update(seq++, copy(cmd, worker.req, id), cmd.getPrintableId()));
+  }
+
+  @Override
+  public void processDelete(DeleteUpdateCommand cmd) throws IOException {
+    if (cmd.isDeleteById()) {
+      Worker worker = getWorker(cmd.getIndexedId());
+      enqueue(worker, new Update(seq++, copy(cmd, worker.req), cmd.getId()));
+    } else {
+      awaitWorkers().processDelete(cmd);
+    }
+  }
+
+  @Override
+  public void processMergeIndexes(MergeIndexesCommand cmd) throws IOException {
+    awaitWorkers().processMergeIndexes(cmd);
+  }
+
+  @Override
+  public void processCommit(CommitUpdateCommand cmd) throws IOException {
+    awaitWorkers().processCommit(cmd);
+  }
+
+  @Override
+  public void processRollback(RollbackUpdateCommand cmd) throws IOException {
+    awaitWorkers().processRollback(cmd);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    try {
+      // the workers are finished even if the request failed
+      for (Worker worker : workers) {
+        while (!worker.stopped && !worker.queue.offer(FINISH, 100, TimeUnit.MILLISECONDS)) {
+          // an interrupted worker stops without taking its commands
+        }
+      }
+      finished.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Interrupted while waiting for the update threads", e);
+    }
+
+    for (Worker worker : workers) {
+      merge(worker.rsp.getValues(), rsp.getValues());
+      merge(worker.rsp.getToLog(), rsp.getToLog());
+      if (rsp.getException() == null && worker.rsp.getException() != null) {
+        rsp.setException(worker.rsp.getException());
+      }
+    }
+    if (failed && errorSeq != Long.MAX_VALUE) {
+      rsp.add(APPLIED_AFTER_ERROR, getAppliedAfterError());
+    }
+    checkError();
+  }
+
+  /** The ids of the updates after the one that failed that were applied, in the order of the request. */
+  private List<String> getAppliedAfterError() {
+    List<Applied> applied = new ArrayList<>();
+    for (Worker worker : workers) {
+      for (Applied a : worker.applied) {
+        if (a.seq > errorSeq) {
+          applied.add(a);
+        }
+      }
+    }
+    Collections.sort(applied, new Comparator<Applied>() {
+      @Override
+      public int compare(Applied a, Applied b) {
+        return Long.compare(a.seq, b.seq);
+      }
+    });
+    List<String> ids = new ArrayList<>(applied.size());
+    for (Applied a : applied) {
+      ids.add(a.id);
+    }
+    return ids;
+  }
+
+  private Worker getWorker(BytesRef id) {
+    if (id == null) {
+      nextWorker = (nextWorker + 1) % workers.length;
+      return workers[nextWorker];
+    }
+    return workers[(id.hashCode() & Integer.MAX_VALUE) % workers.length];
+  }
+
+  /** Waits for the updates queued so far, and returns the processor of the first worker, which is then idle. */
+  private UpdateRequestProcessor awaitWorkers() throws IOException {
+    CountDownLatch processed = new CountDownLatch(workers.length);
+    for (Worker worker : workers) {
+      enqueue(worker, processed);
+    }
+    try {
+      // a worker that was interrupted won't count down
+      while (!processed.await(100, TimeUnit.MILLISECONDS)) {
+        checkError();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Interrupted while waiting for the update threads", e);
+    }
+    checkError();
+    return workers[0].processor;
+  }
+
+  private void enqueue(Worker worker, Object cmd) throws IOException {
+    checkError();
+    try {
+      // a worker that was interrupted doesn't take its commands anymore
+      while (!worker.queue.offer(cmd, 100, TimeUnit.MILLISECONDS)) {
+        checkError();
+      }
+      if (cmd instanceof Update && seq % queueSize == 0) {
+        // lets the workers forget the updates they applied before this point
+        Mark mark = new Mark(seq);
+        for (Worker w : workers) {
+          while (!w.queue.offer(mark, 100, TimeUnit.MILLISECONDS)) {
+            checkError();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrException(ErrorCode.SERVER_ERROR, "Interrupted while queuing " + cmd, e);
+    }
+  }
+
+  /** Records the error of an update, unless an update before it failed already. */
+  private synchronized void fail(long updateSeq, Throwable t) {
+    if (error == null || updateSeq < errorSeq) {
+      error = t;
+      errorSeq = updateSeq;
+    }
+    failed = true;
+  }
+
+  private void checkError() throws IOException {
+    if (!failed) {
+      return;
+    }
+    Throwable t;
+    synchronized (this) {
+      t = error;
+    }
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new SolrException(ErrorCode.SERVER_ERROR, t);
+  }
+
+  /** The lowest position in the request before which all the updates were processed. */
+  private long getProcessedSeq() {
+    long processed = Long.MAX_VALUE;
+    for (Worker worker : workers) {
+      processed = Math.min(processed, worker.markSeq);
+    }
+    return processed;
+  }
+
+  /**
+   * A copy of an add on the request of the worker it is queued to, since the loaders may reuse
+   * their command for the next document and the processors use the request of the command.
+   */
+  private static AddUpdateCommand copy(AddUpdateCommand cmd, SolrQueryRequest req, BytesRef id) {
+    AddUpdateCommand copy = new AddUpdateCommand(req);
+    copy.solrDoc = cmd.solrDoc;
+    if (id != null) {
+      copy.setIndexedId(id);
+    }
+    copy.overwrite = cmd.overwrite;
+    copy.updateTerm = cmd.updateTerm;
+    copy.commitWithin = cmd.commitWithin;
+    copy.isInPlaceUpdate = cmd.isInPlaceUpdate;
+    copy.prevVersion = cmd.prevVersion;
+    copy.setVersion(cmd.getVersion());
+    copy.setRoute(cmd.getRoute());
+    copy.setFlags(cmd.getFlags());
+    return copy;
+  }
+
+  /** A copy of a delete by id on the request of the worker it is queued to. */
+  private static DeleteUpdateCommand copy(DeleteUpdateCommand cmd, SolrQueryRequest req) {
+    DeleteUpdateCommand copy = new DeleteUpdateCommand(req);
+    copy.id = cmd.id;
+    copy.query = cmd.query;
+    copy.indexedId = cmd.indexedId;
+    copy.commitWithin = cmd.commitWithin;
+    copy.setVersion(cmd.getVersion());
+    copy.setRoute(cmd.getRoute());
+    copy.setFlags(cmd.getFlags());
+    return copy;
+  }
+
+  /** Adds the values of a worker's response to the response of the request. */
+  private static void merge(NamedList from, NamedList to) {
+    for (int i = 0; i < from.size(); i++) {
+      String name = from.getName(i);
+      Object value = from.getVal(i);
+      Object existing = to.get(name);
+      if (existing instanceof NamedList && value instanceof NamedList) {
+        if (existing != value) {
+          merge((NamedList) value, (NamedList) existing);
+        }
+      } else if (existing instanceof List && value instanceof List) {
+        ((List) existing).addAll((List) value);
+      } else if (existing instanceof Integer && value instanceof Integer) {
+        // the replication factor achieved by the request is the lowest one of the workers
+        if ((Integer) value < (Integer) existing) {
+          to.setVal(to.indexOf(name, 0), value);
+        }
+      } else if (existing == null) {
+        to.add(name, value);
+      }
+    }
+  }
+
+  /** An add or a delete by id, and its position in the request. */
+  private static class Update {
+    final long seq;
+    final Object cmd;
+    final String id;
+
+    Update(long seq, Object cmd, String id) {
+      this.seq = seq;
+      this.cmd = cmd;
+      this.id = id;
+    }
+
+    @Override
+    public String toString() {
+      return cmd.toString();
+    }
+  }
+
+  /** Queued to all the workers once every queueSize updates; the updates before it were queued before it. */
+  private static class Mark {
+    final long seq;
+
+    Mark(long seq) {
+      this.seq = seq;
+    }
+  }
+
+  private static class Applied {
+    final long seq;
+    final String id;
+
+    Applied(long seq, String id) {
+      this.seq = seq;
+      this.id = id;
+    }
+  }
+
+  /**
+   * The request of a worker: the core, parameters, schema and content streams of the update
+   * request, with its own context and searcher, since a request is not thread safe.
+   */
+  private static class WorkerRequest extends SolrQueryRequestBase {
+    private final long requestStartTime;
+
+    WorkerRequest(SolrQueryRequest req) {
+      super(req.getCore(), req.getOriginalParams());
+      this.params = req.getParams();
+      this.schema = req.getSchema();
+      this.streams = req.getContentStreams();
+      this.context = new HashMap<>(req.getContext());
+      this.requestStartTime = req.getStartTime();
+    }
+
+    @Override
+    public long getStartTime() {
+      return requestStartTime;
+    }
+  }
+
+  private class Worker implements Runnable {
+    final WorkerRequest req;
+    final UpdateRequestProcessor processor;
+    final SolrQueryResponse rsp = new SolrQueryResponse();
+    final BlockingQueue<Object> queue;
+    // the updates this worker applied after the last mark all the workers passed
+    final ArrayDeque<Applied> applied = new ArrayDeque<>();
+    volatile long markSeq;
+    volatile boolean stopped;
+
+    Worker(UpdateRequestProcessorChain chain, SolrQueryRequest request, int queueSize) {
+      req = new WorkerRequest(request);
+      rsp.add("responseHeader", new SimpleOrderedMap<>());
+      processor = chain.createProcessor(req, rsp);
+      queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @Override
+    public void run() {
+      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+      try {
+        while (true) {
+          Object cmd = queue.take();
+          if (cmd == FINISH) {
+            try {
+              processor.finish();
+            } catch (Throwable t) {
+              fail(Long.MAX_VALUE, t);
+            }
+            break;
+          } else if (cmd instanceof CountDownLatch) {
+            ((CountDownLatch) cmd).countDown();
+          } else if (cmd instanceof Mark) {
+            markSeq = ((Mark) cmd).seq;
+            forgetApplied();
+          } else {
+            process((Update) cmd);
+          }
+        }
+      } catch (InterruptedException e) {
+        fail(Long.MAX_VALUE, e);
+      } finally {
+        SolrRequestInfo.clearRequestInfo();
+        req.close();
+        stopped = true;
+        finished.countDown();
+      }
+    }
+
+    private void process(Update update) {
+      if (update.seq > errorSeq) {
+        // an update before this one failed, so this one is dropped
+        return;
+      }
+      try {
+        if (update.cmd instanceof AddUpdateCommand) {
+          processor.processAdd((AddUpdateCommand) update.cmd);
+        } else {
+          processor.processDelete((DeleteUpdateCommand) update.cmd);
+        }
+      } catch (Throwable t) {
+        // the next updates of this worker come after this one, so they are all dropped
+        fail(update.seq, t);
+        return;
+      }
+      applied.add(new Applied(update.seq, update.id));
+    }
+
+    /** Drops the applied updates that no update failing from now on can come before. */
+    private void forgetApplied() {
+      long processed = getProcessedSeq();
+      // the worker of an update that failed records the error before it passes the next mark
+      if (failed) {
+        return;
+      }
+      while (!applied.isEmpty() && applied.peekFirst().seq < processed) {
+        applied.pollFirst();
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.apache.solr.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * A count-min sketch of term counts: <code>depth</code> rows of <code>width</code>
+ * counters, each term being added to one counter per row, picked by a different
+ * combination of two hashes of its bytes (see {@link #hash}).  {@link #estimate} never underestimates the count of a term, and
+ * returns 0 for terms that were never added unless all their counters collide with
+ * other terms.
+ * <p>
+ * Sketches with the same dimensions can be built on different nodes and compared,
+ * since the hashes only depend on the bytes of the terms.
+ *
+ * @lucene.internal
+ */
+public class CountMinSketch {
+  private final int depth;
+  private final int width;
+  private final int[] counts;
+
+  public CountMinSketch(int depth, int width) {
+    if (depth <= 0 || width <= 0) {
+      throw new IllegalArgumentException("depth and width must be positive: depth=" + depth + " width=" + width);
+    }
+    this.depth = depth;
+    this.width = width;
+    this.counts = new int[depth * width];
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  /** adds <code>count</code> occurrences of <code>term</code> */
+  public void add(BytesRef term, int count) {
+    add(hash(term), count);
+  }
+
+  /** adds <code>count</code> occurrences of the term with the given {@link #hash} */
+  public void add(long hash, int count) {
+    for (int row = 0; row < depth; row++) {
+      counts[row * width + slot(hash, row)] += count;
+    }
+  }
+
+  /** returns an upper bound of the number of occurrences of <code>term</code> that were added */
+  public int estimate(BytesRef term) {
+    long hash = hash(term);
+    int min = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      min = Math.min(min, counts[row * width + slot(hash, row)]);
+    }
+    return min;
+  }
+
+  /**
+   * Returns the hash of a term that the counters of its rows are derived from, so that
+   * the hashes of terms that are added often can be computed once.
+   */
+  public static long hash(BytesRef term) {
+    return ((long) StringHelper.murmurhash3_x86_32(term, 0) << 32)
+        | (StringHelper.murmurhash3_x86_32(term, 1) & 0xFFFFFFFFL);
+  }
+
+  private int slot(long hash, int row) {
+    int h1 = (int) (hash >>> 32);
+    int h2 = (int) hash;
+    return ((h1 + row * h2) & Integer.MAX_VALUE) % width;
+  }
+
+  /** serializes this sketch, with the counters as vints since most of them are usually small */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(counts.length + 8);
+    OutputStreamDataOutput out = new OutputStreamDataOutput(bytes);
+    try {
+      out.writeVInt(depth);
+      out.writeVInt(width);
+      for (int count : counts) {
+        out.writeVInt(count);
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e); // can't happen with a ByteArrayOutputStream
+    }
+    return bytes.toByteArray();
+  }
+
+  /** reads a sketch serialized by {@link #toBytes} */
+  public static CountMinSketch fromBytes(byte[] bytes) {
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes);
+    CountMinSketch sketch = new CountMinSketch(in.readVInt(), in.readVInt());
+    for (int i = 0; i < sketch.counts.length; i++) {
+      sketch.counts[i] = in.readVInt();
+    }
+    return sketch;
+  }
+}
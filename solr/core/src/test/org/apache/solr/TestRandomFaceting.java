@@ -194,6 +194,10 @@ public class TestRandomFaceting extends SolrTestCaseJ4 {
         params.add("facet.missing", "true");
       }
 
+      if (rand.nextBoolean()) {
+        params.add("facet.singlePass", "true");
+      }
+
       // TODO: randomly add other facet params
       String key = ftype.fname;
       String facet_field = ftype.fname;
@@ -86,6 +86,8 @@ public class TestSolrXml extends SolrTestCaseJ4 {
     assertEquals("distrib socket timeout", 33, ucfg.getDistributedSocketTimeout());
     assertEquals("max update conn", 3, ucfg.getMaxUpdateConnections());
     assertEquals("max update conn/host", 37, ucfg.getMaxUpdateConnectionsPerHost());
+    assertEquals("distrib update batch size", 38, ucfg.getDistributedUpdateBatchSize());
+    assertEquals("distrib update threads", 4, ucfg.getDistributedUpdateThreads());
     assertEquals("host", "testHost", ccfg.getHost());
     assertEquals("zk host context", "testHostContext", ccfg.getSolrHostContext());
     assertEquals("solr host port", 44, ccfg.getSolrHostPort());
@@ -0,0 +1,92 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+/**
+ * Checks that distributed facet.field requests using sampling
+ * (see {@link FacetParams#FACET_SAMPLE_SIZE}) refine the counts from the same samples as
+ * the first request and merge the sampling details of the shards.
+ */
+public class DistributedFacetSamplingTest extends BaseDistributedSearchTestCase {
+
+  private int docNumber = 0;
+
+  @Test
+  @ShardsFixed(num = 3)
+  public void test() throws Exception {
+    // many terms with a different order on each shard, so that refinement is needed
+    for (int shard = 0; shard < 3; shard++) {
+      for (int j = 0; j < 40; j++) {
+        int count = 5 + ((j + shard * 7) % 40);
+        for (int i = 0; i < count; i++) {
+          index_specific(shard, "id", ++docNumber, "foo_s", "t" + j);
+        }
+      }
+    }
+    commit();
+
+    ModifiableSolrParams params = params("q", "*:*", "rows", "0", "facet", "true",
+        "facet.field", "foo_s", FacetParams.FACET_SAMPLE_SIZE, "200", FacetParams.FACET_SAMPLE_SEED, "7");
+
+    // the sum of the estimates of each shard
+    Map<String,Integer> expected = new HashMap<>();
+    long numDocs = 0;
+    long sampleSize = 0;
+    for (int shard = 0; shard < 3; shard++) {
+      ModifiableSolrParams shardParams = new ModifiableSolrParams(params);
+      shardParams.set("facet.limit", -1);
+      NamedList response = clients.get(shard).query(shardParams).getResponse();
+      NamedList<Integer> counts = (NamedList<Integer>) response.findRecursive("facet_counts", "facet_fields", "foo_s");
+      for (Map.Entry<String,Integer> entry : counts) {
+        Integer sum = expected.get(entry.getKey());
+        expected.put(entry.getKey(), (sum == null ? 0 : sum) + entry.getValue());
+      }
+      NamedList info = (NamedList) response.findRecursive("facet_counts", "facet_sampling", "foo_s");
+      numDocs += ((Number) info.get("numDocs")).longValue();
+      sampleSize += ((Number) info.get("sampleSize")).longValue();
+    }
+
+    for (String limit : new String[] {"1", "3", "5"}) {
+      ModifiableSolrParams distribParams = new ModifiableSolrParams(params);
+      distribParams.set("facet.limit", limit);
+      distribParams.set("shards", shards);
+      QueryResponse rsp = queryServer(distribParams);
+      NamedList<Integer> counts = (NamedList<Integer>) rsp.getResponse().findRecursive("facet_counts", "facet_fields", "foo_s");
+      assertEquals(Integer.parseInt(limit), counts.size());
+      for (Map.Entry<String,Integer> entry : counts) {
+        assertEquals(entry.getKey(), expected.get(entry.getKey()), entry.getValue());
+      }
+
+      NamedList info = (NamedList) rsp.getResponse().findRecursive("facet_counts", "facet_sampling", "foo_s");
+      assertNotNull(info);
+      assertEquals(numDocs, ((Number) info.get("numDocs")).longValue());
+      assertEquals(sampleSize, ((Number) info.get("sampleSize")).longValue());
+      assertTrue(((Number) info.get("error")).longValue() > 0);
+    }
+  }
+}
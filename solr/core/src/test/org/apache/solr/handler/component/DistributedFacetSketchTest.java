@@ -0,0 +1,95 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+/**
+ * Checks that distributed facet.field requests using shard sketches
+ * (see {@link FacetParams#FACET_SKETCH}) return the same counts as a single node.
+ */
+public class DistributedFacetSketchTest extends BaseDistributedSearchTestCase {
+
+  private int docNumber = 0;
+
+  @Test
+  @ShardsFixed(num = 3)
+  public void test() throws Exception {
+    handle.clear();
+    handle.put("QTime", SKIPVAL);
+    handle.put("timestamp", SKIPVAL);
+    handle.put("maxScore", SKIPVAL);
+    handle.put("_version_", SKIPVAL);
+
+    // the top terms are spread over all shards, with a different order on each
+    for (int shard = 0; shard < 3; shard++) {
+      for (int j = 0; j < 8; j++) {
+        int count = 10 + ((j + shard * 3) % 8) * 2;
+        for (int i = 0; i < count; i++) {
+          index_specific(shard, "id", ++docNumber, "foo_s", "top" + j, "bar_s", "b" + (i % 5));
+        }
+      }
+      // a long tail of terms that only exist on one shard
+      for (int i = 0; i < 60; i++) {
+        index_specific(shard, "id", ++docNumber, "foo_s", "tail" + shard + "_" + i, "bar_s", "b" + (i % 7));
+      }
+      // and terms that are only frequent enough on one shard to be returned by it
+      for (int i = 0; i < 25; i++) {
+        index_specific(shard, "id", ++docNumber, "foo_s", "local" + shard);
+      }
+    }
+    for (int shard = 0; shard < 3; shard++) {
+      for (int other = 0; other < 3; other++) {
+        if (other != shard) {
+          index_specific(shard, "id", ++docNumber, "foo_s", "local" + other);
+        }
+      }
+    }
+    commit();
+
+    for (String limit : new String[] {"1", "3", "5", "10"}) {
+      query("q", "*:*", "rows", "0", "facet", "true", "facet.method", "fc",
+          "facet.field", "foo_s", "facet.field", "bar_s", "facet.limit", limit,
+          FacetParams.FACET_SKETCH, "true");
+      query("q", "*:*", "rows", "0", "facet", "true", "facet.method", "fc",
+          "facet.field", "foo_s", "facet.limit", limit, "facet.offset", "2", "facet.mincount", "2",
+          FacetParams.FACET_SKETCH, "true", FacetParams.FACET_SKETCH_WIDTH, "16");
+      query("q", "-bar_s:b1", "rows", "0", "facet", "true", "facet.method", "fc",
+          "facet.field", "{!key=foo}foo_s", "facet.limit", limit, "facet.prefix", "t",
+          FacetParams.FACET_SKETCH, "true", FacetParams.FACET_SINGLE_PASS, "true");
+      query("q", "*:*", "rows", "0", "facet", "true",
+          "facet.field", "foo_s", "facet.limit", limit, "facet.sort", "index", "facet.mincount", "20",
+          FacetParams.FACET_SKETCH, "true");
+    }
+
+    // shards only return sketches when asked by another node
+    QueryResponse rsp = clients.get(0).query(params("q", "*:*", "rows", "0", "facet", "true",
+        "facet.field", "foo_s", FacetParams.FACET_SKETCH, "true", ShardParams.IS_SHARD, "true"));
+    NamedList sketches = (NamedList) rsp.getResponse().findRecursive("facet_counts", "facet_sketches");
+    assertNotNull(sketches);
+    assertNotNull(sketches.get("foo_s"));
+    rsp = clients.get(0).query(params("q", "*:*", "rows", "0", "facet", "true",
+        "facet.field", "foo_s", FacetParams.FACET_SKETCH, "true"));
+    assertNull(rsp.getResponse().findRecursive("facet_counts", "facet_sketches"));
+  }
+}
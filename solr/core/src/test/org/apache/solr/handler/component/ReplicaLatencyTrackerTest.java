@@ -0,0 +1,161 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.PluginInfo;
+import org.junit.Test;
+
+public class ReplicaLatencyTrackerTest extends LuceneTestCase {
+
+  @Test
+  public void testSortByLatency() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(0f, 0, 0);
+    List<String> urls = new ArrayList<>(Arrays.asList("a", "b", "c"));
+    tracker.sort(urls);
+    assertEquals("unmeasured replicas keep their order", Arrays.asList("a", "b", "c"), urls);
+
+    for (String url : urls) {
+      tracker.requestStarted(url);
+    }
+    tracker.requestEnded("a", "s", 100);
+    tracker.requestEnded("b", "s", 10);
+    tracker.requestEnded("c", "s", 50);
+    tracker.sort(urls);
+    assertEquals(Arrays.asList("b", "c", "a"), urls);
+
+    // requests piling up on the fastest replica make it less attractive
+    for (int i = 0; i < 10; i++) {
+      tracker.requestStarted("b");
+    }
+    tracker.sort(urls);
+    assertEquals(Arrays.asList("c", "a", "b"), urls);
+    for (int i = 0; i < 10; i++) {
+      tracker.requestEnded("b", "s", 10);
+    }
+    tracker.sort(urls);
+    assertEquals(Arrays.asList("b", "c", "a"), urls);
+
+    // a failure counts as a slow response
+    tracker.requestStarted("b");
+    tracker.requestFailed("b", 1);
+    tracker.sort(urls);
+    assertEquals(Arrays.asList("c", "a", "b"), urls);
+  }
+
+  @Test
+  public void testHedgeDelay() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(0.9f, 10, 5);
+    assertEquals(-1, tracker.getHedgeDelay("s"));
+    for (int i = 1; i <= 100; i++) {
+      tracker.requestStarted("a");
+      tracker.requestEnded("a", "s", i);
+      if (i < 10) {
+        assertEquals("not enough latencies yet", -1, tracker.getHedgeDelay("s"));
+      }
+    }
+    long delay = tracker.getHedgeDelay("s");
+    assertTrue("delay=" + delay, delay >= 85 && delay <= 95);
+    assertEquals(-1, tracker.getHedgeDelay("other"));
+
+    assertEquals(-1, new ReplicaLatencyTracker(0f, 0, 0).getHedgeDelay("s"));
+  }
+
+  @Test
+  public void testHedgedRequest() throws Exception {
+    final AtomicBoolean slowAborted = new AtomicBoolean();
+    HttpShardHandlerFactory factory = new HttpShardHandlerFactory() {
+      @Override
+      protected NamedList<Object> makeReplicaRequest(QueryRequest req, ReplicaRequest replica)
+          throws SolrServerException, IOException {
+        if ("slow".equals(replica.getUrl())) {
+          long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+          while (!replica.isAborted() && System.nanoTime() < deadline) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              throw new SolrServerException(e);
+            }
+          }
+          slowAborted.set(replica.isAborted());
+          throw new SolrServerException(new IOException("aborted"));
+        }
+        return new NamedList<>();
+      }
+    };
+    NamedList<Object> args = new NamedList<>();
+    args.add(HttpShardHandlerFactory.INIT_HEDGE_QUANTILE, 0.5f);
+    args.add(HttpShardHandlerFactory.INIT_HEDGE_MIN_SAMPLES, 5);
+    args.add(HttpShardHandlerFactory.INIT_HEDGE_MIN_DELAY, 20);
+    factory.init(new PluginInfo("shardHandlerFactory", Collections.<String,String>emptyMap(), args, null));
+    try {
+      QueryRequest req = new QueryRequest(new ModifiableSolrParams());
+      String shard = "slow|fast";
+      for (int i = 0; i < 5; i++) {
+        assertEquals("fast", factory.makeLoadBalancedRequest(req, Arrays.asList("fast", "slow"), shard).getServer());
+      }
+      long start = System.nanoTime();
+      assertEquals("fast", factory.makeLoadBalancedRequest(req, Arrays.asList("slow", "fast"), shard).getServer());
+      assertTrue("the slow replica was waited for", System.nanoTime() - start < 20000000000L);
+      assertTrue("the request to the slow replica was not aborted", slowAborted.get());
+    } finally {
+      factory.close();
+    }
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    HttpShardHandlerFactory factory = new HttpShardHandlerFactory() {
+      @Override
+      protected NamedList<Object> makeReplicaRequest(QueryRequest req, ReplicaRequest replica)
+          throws SolrServerException, IOException {
+        if ("http://down".equals(replica.getUrl())) {
+          throw new SolrServerException(new ConnectException("down"));
+        }
+        return new NamedList<>();
+      }
+    };
+    NamedList<Object> args = new NamedList<>();
+    args.add(HttpShardHandlerFactory.INIT_REPLICA_SELECTION, HttpShardHandlerFactory.REPLICA_SELECTION_LATENCY);
+    factory.init(new PluginInfo("shardHandlerFactory", Collections.<String,String>emptyMap(), args, null));
+    try {
+      QueryRequest req = new QueryRequest(new ModifiableSolrParams());
+      String shard = "http://down|http://up";
+      assertEquals("http://up", factory.makeLoadBalancedRequest(req, Arrays.asList("http://down", "http://up"), shard).getServer());
+      // the replica that failed comes last
+      for (int i = 0; i < 10; i++) {
+        assertEquals(Arrays.asList("http://up", "http://down"), factory.makeURLList(shard));
+      }
+    } finally {
+      factory.close();
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.ByteArrayUtf8CharSequence;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class ShardIdsResponseParserTest extends LuceneTestCase {
+
+  @Test
+  public void testIdsAndScores() throws Exception {
+    SolrDocumentList docs = new SolrDocumentList();
+    docs.setNumFound(42);
+    docs.setStart(0);
+    docs.setMaxScore(2.5f);
+    SolrDocument doc = new SolrDocument();
+    doc.setField("id", "a");
+    doc.setField("score", 2.5f);
+    docs.add(doc);
+    doc = new SolrDocument();
+    doc.setField("other", Arrays.asList(1, 2));
+    doc.setField("id", "b");
+    SolrDocument child = new SolrDocument();
+    child.setField("id", "child");
+    doc.addChildDocument(child);
+    docs.add(doc);
+    doc = new SolrDocument();
+    doc.setField("score", 1f);
+    doc.setField("id", "c");
+    docs.add(doc);
+
+    NamedList<Object> sortValues = new SimpleOrderedMap<>();
+    sortValues.add("field", Arrays.asList("x", "y", "z"));
+    // the other document lists of the response are read as usual
+    SolrDocumentList expandedDocs = new SolrDocumentList();
+    doc = new SolrDocument();
+    doc.setField("id", "d");
+    doc.setField("other", "value");
+    expandedDocs.add(doc);
+    NamedList<Object> expanded = new SimpleOrderedMap<>();
+    expanded.add("group", expandedDocs);
+    NamedList<Object> response = new NamedList<>();
+    response.add("responseHeader", new SimpleOrderedMap<>());
+    response.add("response", docs);
+    response.add("sort_values", sortValues);
+    response.add("expanded", expanded);
+    response.add("other_docs", expandedDocs);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new JavaBinCodec().marshal(response, bytes);
+    NamedList<Object> parsed = new ShardIdsResponseParser("id", null).processResponse(
+        new ByteArrayInputStream(bytes.toByteArray()), null);
+
+    ShardIdsResponseParser.IdList idList = (ShardIdsResponseParser.IdList) parsed.get("response");
+    assertEquals(42, idList.getNumFound());
+    assertEquals(2.5f, idList.getMaxScore(), 0f);
+    assertEquals(0, idList.size());
+    assertEquals(3, idList.getIds().size());
+    assertEquals("a", idList.getIds().get(0).toString());
+    assertEquals("b", idList.getIds().get(1).toString());
+    assertEquals("c", idList.getIds().get(2).toString());
+    assertEquals(idList.getIds().get(0), new ByteArrayUtf8CharSequence("xa".getBytes(StandardCharsets.UTF_8), 1, 1));
+    assertEquals(Arrays.<Object>asList(2.5f, null, 1f), idList.getScores());
+    assertEquals(sortValues, parsed.get("sort_values"));
+    assertNotNull(parsed.get("responseHeader"));
+
+    for (Object other : Arrays.asList(((NamedList) parsed.get("expanded")).get("group"), parsed.get("other_docs"))) {
+      assertFalse(other instanceof ShardIdsResponseParser.IdList);
+      SolrDocumentList otherDocs = (SolrDocumentList) other;
+      assertEquals(1, otherDocs.size());
+      assertEquals("value", otherDocs.get(0).getFieldValue("other"));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package org.apache.solr.handler.component;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.noggit.ObjectBuilder;
+
+public class WarmingSnapshotComponentTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeTest() throws Exception {
+    initCore("solrconfig-warmingsnapshot.xml", "schema12.xml");
+    assertU(adoc("id", "1", "subject", "aa", "val_s", "x"));
+    assertU(adoc("id", "2", "subject", "aa", "val_s", "y"));
+    assertU(adoc("id", "3", "subject", "bb", "val_s", "x"));
+    assertU(commit());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSnapshotIsPersistedAndReplayed() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      assertQ(req("q", "subject:aa", "fq", "val_s:x"), "//result[@numFound='1']");
+    }
+    assertQ(req("q", "subject:bb", "fq", "val_s:y"), "//result[@numFound='0']");
+    // requests issued by searcher listeners must not be tracked
+    assertQ(req("q", "subject:zz", "fq", "val_s:z", "event", "firstSearcher"), "//result[@numFound='0']");
+
+    WarmingSnapshotComponent component =
+        (WarmingSnapshotComponent) h.getCore().getSearchComponent("warmingSnapshot");
+    component.persist();
+
+    File snapshotFile = new File(h.getCore().getDataDir(), "warming_snapshot.json");
+    assertTrue(snapshotFile.exists());
+    Map<String,Object> snapshot = (Map<String,Object>) ObjectBuilder.fromJSON(
+        FileUtils.readFileToString(snapshotFile, StandardCharsets.UTF_8));
+    Map<String,Object> filters = (Map<String,Object>) snapshot.get(WarmingSnapshotComponent.FILTERS);
+    Map<String,Object> queries = (Map<String,Object>) snapshot.get(WarmingSnapshotComponent.QUERIES);
+    assertEquals(3L, filters.get("val_s:x"));
+    assertEquals(1L, filters.get("val_s:y"));
+    assertFalse(filters.containsKey("val_s:z"));
+    assertEquals(2, queries.size());
+    assertEquals("most frequent query first", "q=subject%3Aaa&fq=val_s%3Ax", queries.keySet().iterator().next());
+
+    h.reload();
+
+    // wait for the first searcher of the reloaded core, which replays the snapshot
+    SolrCore core = h.getCore();
+    RefCounted<SolrIndexSearcher> searcher = core.getSearcher();
+    searcher.decref();
+
+    // both tracked filters are replayed on the first searcher of the reloaded core
+    SolrCache filterCache = (SolrCache) core.getInfoRegistry().get("filterCache");
+    SolrCache queryResultCache = (SolrCache) core.getInfoRegistry().get("queryResultCache");
+    assertEquals(2, filterCache.size());
+    assertTrue(queryResultCache.size() >= 2);
+  }
+
+  @Test
+  public void testSnapshotIsPersistedPeriodically() throws Exception {
+    assertQ(req("q", "subject:bb", "fq", "val_s:x"), "//result[@numFound='1']");
+
+    // the test config writes the snapshot every second
+    File snapshotFile = new File(h.getCore().getDataDir(), "warming_snapshot.json");
+    snapshotFile.delete();
+    long timeout = System.nanoTime() + 30L * 1000000000L;
+    while (!snapshotFile.exists() && System.nanoTime() < timeout) {
+      Thread.sleep(100);
+    }
+    assertTrue("snapshot was not written in the background", snapshotFile.exists());
+  }
+}
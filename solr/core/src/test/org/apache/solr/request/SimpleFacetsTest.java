@@ -1875,6 +1875,9 @@ public class SimpleFacetsTest extends SolrTestCaseJ4 {
     doFacetPrefix("t_s", null, "facet.method", "enum", "facet.enum.cache.minDf", "3");
     doFacetPrefix("t_s", null, "facet.method", "enum", "facet.enum.cache.minDf", "100");
     doFacetPrefix("t_s", null, "facet.method", "fc");
+    doFacetPrefix("t_s", "{!threads=0}", "facet.method", "fc");   // direct execution
+    doFacetPrefix("t_s", "{!threads=-1}", "facet.method", "fc");  // unlimited threads
+    doFacetPrefix("t_s", "{!threads=2}", "facet.method", "fc");   // specific number of threads
   }
 
   static void indexFacetPrefixSingleValued() {
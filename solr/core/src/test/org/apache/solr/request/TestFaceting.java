@@ -18,6 +18,8 @@
 package org.apache.solr.request;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Random;
@@ -30,6 +32,8 @@ import org.apache.lucene.uninverting.DocTermOrds;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.util.RefCounted;
 import org.junit.After;
@@ -915,5 +919,168 @@ public class TestFaceting extends SolrTestCaseJ4 {
       currentSearcherRef.decref();
     }
   }
+
+  @Test
+  public void testSinglePassFacets() throws Exception {
+    add50ocs();
+    // a second segment with new and existing values, so segment ords have to be mapped to global ords
+    assertU(adoc("id", "100", "f0_ws", "zero_2 zero_3", "f1_ws", "one_3"));
+    assertU(adoc("id", "101", "f0_ws", "zero_4", "f2_ws", "two_1"));
+    assertU(commit());
+
+    String[][] variants = {
+        {},
+        {"facet.threads", "3"},
+        {"facet.sort", "index", "facet.mincount", "2"},
+        {"facet.missing", "true", "facet.limit", "2", "facet.offset", "1"},
+        {"f.f0_ws.facet.prefix", "zero_", "f.f2_ws.facet.method", "enum", "facet.mincount", "0"},
+        {"fq", "{!tag=t}f3_ws:three_1"},
+    };
+    for (String[] variant : variants) {
+      List<String> params = new ArrayList<>();
+      Collections.addAll(params, "q", "id:*", "rows", "0", "facet", "true",
+          "facet.field", "f0_ws", "facet.field", "f1_ws", "facet.field", "f2_ws",
+          "facet.field", "{!ex=t key=f3_all}f3_ws", "facet.field", "{!ex=t key=f4_all}f4_ws",
+          "facet.field", "f4_ws", "facet.field", "{!terms=one_1}f1_ws");
+      Collections.addAll(params, variant);
+
+      params.add(FacetParams.FACET_SINGLE_PASS);
+      params.add("false");
+      String expected = getFacetFields(params);
+      params.set(params.size() - 1, "true");
+      assertEquals("single pass counts differ for " + Arrays.toString(variant), expected, getFacetFields(params));
+    }
+  }
+
+  @Test
+  public void testSegmentParallelFacets() throws Exception {
+    add50ocs();
+    // more segments with multi-valued fields, some of them with values unknown to the others
+    for (int seg = 0; seg < 4; seg++) {
+      for (int i = 0; i < 20; i++) {
+        assertU(adoc("id", Integer.toString(1000 + seg * 100 + i), "t0_ss", "t0_" + (i % 3), "t0_ss", "t0_seg" + seg,
+            "t1_ss", "t1_" + seg + "_" + i));
+      }
+      assertU(commit());
+    }
+
+    String[][] variants = {
+        {},
+        {"facet.sort", "index", "facet.mincount", "2"},
+        {"facet.missing", "true", "facet.limit", "3", "facet.offset", "1"},
+        {"facet.prefix", "t0_seg"},
+        {"facet.prefix", "t1_2", "facet.limit", "-1"},
+        {"fq", "id:[1100 TO 1199]"},
+    };
+    for (String[] variant : variants) {
+      for (String threads : new String[] {"0", "1", "2", "-1"}) {
+        List<String> params = new ArrayList<>();
+        Collections.addAll(params, "q", "id:*", "rows", "0", "facet", "true", "facet.method", "fc");
+        Collections.addAll(params, variant);
+        params.add("facet.field");
+        params.add("t0_ss");
+        params.add("facet.field");
+        params.add("t1_ss");
+        String expected = getFacetFields(params);
+
+        params.set(params.size() - 3, "{!threads=" + threads + "}t0_ss");
+        params.set(params.size() - 1, "{!threads=" + threads + "}t1_ss");
+        assertEquals("per-segment counts differ for " + Arrays.toString(variant) + " threads=" + threads,
+            expected, getFacetFields(params));
+      }
+    }
+  }
+
+  @Test
+  public void testSampledFacets() throws Exception {
+    for (int i = 0; i < 200; i++) {
+      assertU(adoc("id", Integer.toString(i), "all_s", "all", "mod_s", "m" + (i % 4), "rare_s", i < 2 ? "rare" : "common"));
+      if (i == 100) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+
+    String[] facetParams = {"q", "*:*", "rows", "0", "facet", "true",
+        "facet.field", "all_s", "facet.field", "mod_s", "facet.field", "{!key=rare}rare_s",
+        "facet.sample.size", "40", "facet.mincount", "2"};
+
+    // every doc has all_s, so its estimate is exact; mod_s values hold 50 docs each
+    assertQ(req(facetParams)
+        , "//lst[@name='facet_fields']/lst[@name='all_s']/int[@name='all'][.='200']"
+        , "count(//lst[@name='facet_fields']/lst[@name='mod_s']/int)=4"
+        , "//lst[@name='facet_sampling']/lst[@name='mod_s']/int[@name='numDocs'][.='200']"
+        , "//lst[@name='facet_sampling']/lst[@name='mod_s']/int[@name='sampleSize'][.='40']"
+        , "//lst[@name='facet_sampling']/lst[@name='rare']/int[@name='sampleSize'][.='40']"
+        );
+
+    // the same seed gives the same estimates
+    assertEquals(getFacetFields(Arrays.asList(facetParams)), getFacetFields(Arrays.asList(facetParams)));
+
+    // exact counts below the threshold, or with a sample bigger than the docs
+    assertQ(req(facetParams, "facet.sample.threshold", "1000")
+        , "//lst[@name='facet_fields']/lst[@name='mod_s']/int[@name='m0'][.='50']"
+        , "//lst[@name='facet_fields']/lst[@name='rare']/int[@name='rare'][.='2']"
+        , "count(//lst[@name='facet_sampling'])=0"
+        );
+    assertQ(req(facetParams, "fq", "mod_s:(m0 OR m1)")
+        , "count(//lst[@name='facet_sampling']/lst)=3"
+        , "//lst[@name='facet_sampling']/lst[@name='mod_s']/int[@name='numDocs'][.='100']"
+        );
+    assertQ(req(facetParams, "fq", "rare_s:rare")
+        , "//lst[@name='facet_fields']/lst[@name='rare']/int[@name='rare'][.='2']"
+        , "count(//lst[@name='facet_sampling'])=0"
+        );
+  }
+
+  @Test
+  public void testSketchTermHashesAreDroppedOnClose() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "sketch_s", "s" + (i % 5)));
+    }
+    assertU(commit());
+
+    // the term hashes are computed for the sketch of a shard request
+    assertQ(req("q", "*:*", "rows", "0", "facet", "true", "facet.method", "fc", "facet.field", "sketch_s",
+        "facet.sketch", "true", "isShard", "true")
+        , "//lst[@name='facet_sketches']/*[@name='sketch_s']"
+        );
+    Object key;
+    RefCounted<SolrIndexSearcher> searcher = h.getCore().getSearcher();
+    try {
+      key = searcher.get().getRawReader().getCoreCacheKey();
+    } finally {
+      searcher.decref();
+    }
+    synchronized (DocValuesFacets.termHashes) {
+      assertNotNull(DocValuesFacets.termHashes.get(key));
+    }
+
+    // and dropped once the reader is closed
+    assertU(adoc("id", "20", "sketch_s", "s0"));
+    assertU(commit());
+    for (int i = 0; i < 100; i++) {
+      synchronized (DocValuesFacets.termHashes) {
+        if (!DocValuesFacets.termHashes.containsKey(key)) {
+          break;
+        }
+      }
+      Thread.sleep(50);
+    }
+    synchronized (DocValuesFacets.termHashes) {
+      assertFalse(DocValuesFacets.termHashes.containsKey(key));
+    }
+  }
+
+  private String getFacetFields(List<String> params) throws Exception {
+    SolrQueryRequest req = req(params.toArray(new String[params.size()]));
+    try {
+      SolrQueryResponse rsp = h.queryAndResponse(null, req);
+      NamedList facetCounts = (NamedList) rsp.getValues().get("facet_counts");
+      return facetCounts.get("facet_fields").toString();
+    } finally {
+      req.close();
+    }
+  }
 }
 
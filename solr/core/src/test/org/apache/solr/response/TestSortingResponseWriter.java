@@ -17,7 +17,20 @@
 
 package org.apache.solr.response;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.client.solrj.io.JSONTupleStream;
+import org.apache.solr.client.solrj.io.JavabinTupleStream;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
 import org.junit.*;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 
@@ -80,6 +93,8 @@ public class TestSortingResponseWriter extends SolrTestCaseJ4 {
         "stringdv_m", "manchester city",
         "stringdv_m", "liverpool",
         "stringdv_m", "everton"));
+    // a document without the numeric fields, skipped by their rollup metrics
+    assertU(adoc("id","8", "stringdv", "hello world"));
     assertU(commit());
 
 
@@ -143,4 +158,127 @@ public class TestSortingResponseWriter extends SolrTestCaseJ4 {
     assertEquals(s, "{\"responseHeader\": {\"status\": 0}, \"response\":{\"numFound\":3, \"docs\":[{\"intdv\":3},{\"intdv\":1},{\"intdv\":2}]}}");
 
   }
+
+  @Test
+  public void testJavabinOutput() throws Exception {
+    String fl = "floatdv,intdv,stringdv,longdv,doubledv,intdv_m,floatdv_m,doubledv_m,longdv_m,stringdv_m";
+    byte[] bytes = queryBinary(req("q", "id:(1 7)", "qt", "/export", "wt", "javabin", "fl", fl, "sort", "intdv asc"));
+    JavabinTupleStream stream = new JavabinTupleStream(new ByteArrayInputStream(bytes));
+
+    Map<Object,Object> fields = new HashMap<>();
+    assertTrue(stream.next(fields));
+    assertEquals(1L, fields.get("intdv"));
+    assertEquals(2.1d, fields.get("floatdv"));
+    assertEquals("hello world", fields.get("stringdv"));
+    assertEquals(323223232323L, fields.get("longdv"));
+    assertEquals(2344.345d, fields.get("doubledv"));
+    assertEquals(Arrays.asList(100L, 250L), fields.get("intdv_m"));
+    assertEquals(Arrays.asList(123.321d, 345.123d), fields.get("floatdv_m"));
+    assertEquals(Arrays.asList(3444.222d, 23232.2d), fields.get("doubledv_m"));
+    assertEquals(Arrays.asList(343332L, 43434343434L), fields.get("longdv_m"));
+    assertEquals(Arrays.asList("Everton", "liverpool", "manchester city"), fields.get("stringdv_m"));
+
+    fields.clear();
+    assertTrue(stream.next(fields));
+    assertEquals(7L, fields.get("intdv"));
+    assertEquals("", fields.get("stringdv"));
+    assertEquals(Collections.emptyList(), fields.get("intdv_m"));
+    assertEquals(Collections.emptyList(), fields.get("stringdv_m"));
+    assertFalse(stream.next(fields));
+
+    // the tuples are the same as the ones parsed from the JSON output
+    String json = h.query(req("q", "id:(1 3 7)", "qt", "/export", "fl", fl, "sort", "intdv asc"));
+    JSONTupleStream jsonStream = new JSONTupleStream(new StringReader(json));
+    stream = new JavabinTupleStream(new ByteArrayInputStream(
+        queryBinary(req("q", "id:(1 3 7)", "qt", "/export", "wt", "javabin", "fl", fl, "sort", "intdv asc"))));
+    Map<String,Object> jsonFields;
+    int count = 0;
+    while ((jsonFields = jsonStream.next()) != null) {
+      fields.clear();
+      assertTrue(stream.next(fields));
+      assertEquals(jsonFields, fields);
+      count++;
+    }
+    assertEquals(3, count);
+    assertFalse(stream.next(fields));
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    String metrics = "sum:intdv,min:doubledv,max:intdv,mean:intdv,count";
+    String json = h.query(req("q", "*:*", "qt", "/export", "rollup", "stringdv", "rollup.metrics", metrics, "sort", "stringdv asc"));
+    JSONTupleStream jsonStream = new JSONTupleStream(new StringReader(json));
+
+    // the document without stringdv sorts first
+    Map<String,Object> bucket = jsonStream.next();
+    assertEquals("", bucket.get("stringdv"));
+    assertEquals(7L, bucket.get("sum:intdv.sum"));
+    assertEquals(2344.345d, bucket.get("min:doubledv.min"));
+    assertEquals(1L, bucket.get("count.count"));
+
+    bucket = jsonStream.next();
+    assertEquals("chello world", bucket.get("stringdv"));
+    assertEquals(3L, bucket.get("sum:intdv.sum"));
+    assertEquals(1L, bucket.get("count.count"));
+
+    // the long sums are written as longs, and the mean only counts the documents with a value
+    bucket = jsonStream.next();
+    assertEquals("hello world", bucket.get("stringdv"));
+    assertEquals(3L, bucket.get("sum:intdv.sum"));
+    assertEquals(2344.344d, bucket.get("min:doubledv.min"));
+    assertEquals(2L, bucket.get("max:intdv.max"));
+    assertEquals(3L, bucket.get("mean:intdv.sum"));
+    assertEquals(2L, bucket.get("mean:intdv.count"));
+    assertEquals(3L, bucket.get("count.count"));
+    assertEquals(7, bucket.size());
+    assertNull(jsonStream.next());
+
+    // the same buckets with javabin
+    JavabinTupleStream stream = new JavabinTupleStream(new ByteArrayInputStream(queryBinary(
+        req("q", "*:*", "qt", "/export", "wt", "javabin", "rollup", "stringdv", "rollup.metrics", metrics, "sort", "stringdv asc"))));
+    jsonStream = new JSONTupleStream(new StringReader(json));
+    Map<Object,Object> fields = new HashMap<>();
+    Map<String,Object> jsonFields;
+    while ((jsonFields = jsonStream.next()) != null) {
+      fields.clear();
+      assertTrue(stream.next(fields));
+      assertEquals(jsonFields, fields);
+    }
+    assertFalse(stream.next(fields));
+
+    // the min and max of a bucket without values are null
+    String emptyJson = h.query(req("q", "id:8", "qt", "/export", "rollup", "stringdv", "rollup.metrics", "min:doubledv,max:intdv,count", "sort", "stringdv asc"));
+    jsonStream = new JSONTupleStream(new StringReader(emptyJson));
+    bucket = jsonStream.next();
+    assertEquals("hello world", bucket.get("stringdv"));
+    assertNull(bucket.get("min:doubledv.min"));
+    assertNull(bucket.get("max:intdv.max"));
+    assertEquals(1L, bucket.get("count.count"));
+    assertNull(jsonStream.next());
+
+    // the buckets must be sorted by the rollup fields only
+    try {
+      h.query(req("q", "*:*", "qt", "/export", "rollup", "stringdv", "rollup.metrics", metrics, "sort", "stringdv asc,intdv asc"));
+      fail("Expected an error rolling up by a part of the sort fields");
+    } catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("The rollup fields must be the sort fields"));
+    }
+  }
+
+  private byte[] queryBinary(SolrQueryRequest req) throws Exception {
+    try {
+      SolrCore core = req.getCore();
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+      core.execute(core.getRequestHandler(req.getParams().get("qt")), req, rsp);
+      BinaryQueryResponseWriter writer = (BinaryQueryResponseWriter) core.getQueryResponseWriter(req);
+      assertEquals("application/octet-stream", writer.getContentType(req, rsp));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writer.write(out, req, rsp);
+      return out.toByteArray();
+    } finally {
+      req.close();
+      SolrRequestInfo.clearRequestInfo();
+    }
+  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the delays of the commits of an adaptive {@link CommitTracker}
+ */
+public class AdaptiveSoftCommitTest extends SolrTestCaseJ4 {
+
+  private static volatile long warmTime;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+    h.getCore().registerNewSearcherListener(new SlowWarmingListener());
+  }
+
+  @Test
+  public void testCommitDelay() throws Exception {
+    SolrCore core = h.getCore();
+    CommitTracker tracker = new CommitTracker("Adaptive", core, -1, 10000, true, true, true);
+    try {
+      // nothing to adapt to before the first commit
+      assertEquals(10000, tracker.adaptCommitDelay(10000));
+
+      warmTime = 500;
+      assertU(adoc("id", "1"));
+      tracker.run();
+      warmTime = 0;
+      assertJQ(req("q", "id:1"), "/response/numFound==1");
+      long commitTime = tracker.getCommitTime();
+      assertTrue("commit time: " + commitTime, commitTime >= 500);
+
+      // the commits start earlier, so that the documents are visible within maxTime
+      assertEquals(10000 - commitTime, tracker.adaptCommitDelay(10000));
+      // but not before the new searcher was used for as long as it took to open it
+      long delay = tracker.adaptCommitDelay(1);
+      assertTrue("delay: " + delay, delay > tracker.DOC_COMMIT_DELAY_MS && delay <= commitTime);
+    } finally {
+      warmTime = 0;
+      tracker.close();
+    }
+  }
+
+  static class SlowWarmingListener implements SolrEventListener {
+    @Override
+    public void init(NamedList args) {}
+
+    @Override
+    public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+      try {
+        if (warmTime > 0) {
+          Thread.sleep(warmTime);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void postCommit() {}
+
+    @Override
+    public void postSoftCommit() {}
+  }
+}
@@ -82,6 +82,37 @@ public class DocumentBuilderTest extends SolrTestCaseJ4 {
     assertNull( out.get( "name" ) );
   }
 
+  @Test
+  public void testSharedFieldTypes() 
+  {
+    SolrCore core = h.getCore();
+
+    // the values of a field share the same Lucene field type, which can't be modified
+    Document[] out = new Document[2];
+    for (int i = 0; i < out.length; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField( "id", String.valueOf(i) );
+      doc.addField( "name", "name " + i );
+      doc.addField( "a_s", "a " + i );
+      doc.addField( "a_l", i );
+      out[i] = DocumentBuilder.toDocument( doc, core.getLatestSchema() );
+    }
+    for (String name : new String[] {"name", "a_s", "a_l"}) {
+      IndexableField f0 = out[0].getField(name);
+      IndexableField f1 = out[1].getField(name);
+      assertSame( f0.fieldType(), f1.fieldType() );
+      try {
+        ((org.apache.lucene.document.FieldType) f0.fieldType()).setStored(false);
+        fail( "the shared field type of " + name + " is frozen" );
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+    assertEquals( "a 1", out[1].get( "a_s" ) );
+    assertEquals( 1L, out[1].getField( "a_l" ).numericValue() );
+    assertEquals( 0L, out[0].getField( "a_l" ).numericValue() );
+  }
+
   @Test
   public void testExceptions() 
   {
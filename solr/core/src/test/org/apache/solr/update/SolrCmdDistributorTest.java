@@ -36,6 +36,8 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.servlet.SolrDispatchFilter;
 import org.apache.solr.update.MockStreamingSolrClients.Exp;
@@ -319,6 +321,7 @@ public class SolrCmdDistributorTest extends BaseDistributedSearchTestCase {
     testOneRetry();
     testRetryNodeAgainstBadAddress();
     testRetryNodeWontRetrySocketError();
+    testBatches();
     
     testDistribOpenSearcher();
   }
@@ -507,6 +510,66 @@ public class SolrCmdDistributorTest extends BaseDistributedSearchTestCase {
     super.distribTearDown();
   }
 
+  private void testBatches() throws Exception {
+    UpdateShardHandler batchingShardHandler = new UpdateShardHandler(new UpdateShardHandlerConfig(
+        UpdateShardHandlerConfig.DEFAULT_MAXUPDATECONNECTIONS, UpdateShardHandlerConfig.DEFAULT_MAXUPDATECONNECTIONSPERHOST,
+        UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATESOTIMEOUT, UpdateShardHandlerConfig.DEFAULT_DISTRIBUPDATECONNTIMEOUT,
+        10, 2));
+    try {
+      List<Node> nodes = new ArrayList<>();
+      List<Long> numFoundBefore = new ArrayList<>();
+      for (SolrClient c : clients.subList(0, 2)) {
+        HttpSolrClient httpClient = (HttpSolrClient) c;
+        ZkNodeProps nodeProps = new ZkNodeProps(ZkStateReader.BASE_URL_PROP,
+            httpClient.getBaseURL(), ZkStateReader.CORE_NAME_PROP, "");
+        nodes.add(new StdNode(new ZkCoreNodeProps(nodeProps)));
+        numFoundBefore.add(c.query(new SolrQuery("*:*")).getResults().getNumFound());
+      }
+
+      CoreContainer cores = ((SolrDispatchFilter) jettys.get(0).getDispatchFilter().getFilter()).getCores();
+      SolrCore core = cores.getCore("collection1");
+      // the queue of an add is chosen by the hash of its id, read with the schema of the request
+      SolrQueryRequest req = new LocalSolrQueryRequest(core, new ModifiableSolrParams());
+      SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(batchingShardHandler);
+      int deletedId = 0;
+      int updatedId = id.incrementAndGet();
+      for (int i = 0; i < 25; i++) {
+        AddUpdateCommand cmd = new AddUpdateCommand(req);
+        cmd.solrDoc = sdoc("id", id.incrementAndGet());
+        cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+        // the updates of an id are received in order, whatever the queue of the other ids
+        cmd = new AddUpdateCommand(req);
+        cmd.solrDoc = sdoc("id", updatedId, "a_i", i);
+        cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+        if (i == 12) {
+          // the buffered adds are sent before the delete
+          deletedId = id.get();
+          DeleteUpdateCommand dcmd = new DeleteUpdateCommand(null);
+          dcmd.id = Integer.toString(deletedId);
+          cmdDistrib.distribDelete(dcmd, nodes, new ModifiableSolrParams());
+        }
+      }
+
+      ModifiableSolrParams params = new ModifiableSolrParams();
+      params.set(DistributedUpdateProcessor.COMMIT_END_POINT, true);
+      cmdDistrib.distribCommit(new CommitUpdateCommand(null, false), nodes, params);
+      cmdDistrib.finish();
+      assertEquals(cmdDistrib.getErrors().toString(), 0, cmdDistrib.getErrors().size());
+
+      req.close();
+      core.close();
+
+      for (int i = 0; i < 2; i++) {
+        SolrClient c = clients.get(i);
+        assertEquals(numFoundBefore.get(i) + 25, c.query(new SolrQuery("*:*")).getResults().getNumFound());
+        assertEquals(0, c.query(new SolrQuery("id:" + deletedId)).getResults().getNumFound());
+        assertEquals(1, c.query(new SolrQuery("id:" + updatedId + " AND a_i:24")).getResults().getNumFound());
+      }
+    } finally {
+      batchingShardHandler.close();
+    }
+  }
+
   private void testDistribOpenSearcher() {
     SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(updateShardHandler);
     UpdateRequest updateRequest = new UpdateRequest();
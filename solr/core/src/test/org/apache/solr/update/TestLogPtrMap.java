@@ -0,0 +1,57 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.Test;
+
+public class TestLogPtrMap extends SolrTestCaseJ4 {
+
+  @Test
+  public void testPutGet() throws Exception {
+    LogPtrMap map = new LogPtrMap();
+    Map<String, Long> expected = new HashMap<>();
+    int numUpdates = atLeast(1000);
+    for (int i = 0; i < numUpdates; i++) {
+      // some ids are updated several times
+      String id = TestUtil.randomSimpleString(random(), 1, 3);
+      map.put(new BytesRef(id), i * 10L, i + 1);
+      expected.put(id, (long) i);
+    }
+    map.put(null, 0, 0);
+
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<String, Long> entry : expected.entrySet()) {
+      UpdateLog.LogPtr ptr = map.get(new BytesRef(entry.getKey()));
+      assertEquals(entry.getValue() * 10, ptr.pointer);
+      assertEquals(entry.getValue() + 1, ptr.version);
+    }
+    assertNull(map.get(new BytesRef("missing")));
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(new BytesRef(expected.keySet().iterator().next())));
+    map.put(new BytesRef("a"), 5, 6);
+    assertEquals(5, map.get(new BytesRef("a")).pointer);
+  }
+}
@@ -0,0 +1,105 @@
+package org.apache.solr.update;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.Test;
+
+public class TestTransactionLog extends SolrTestCaseJ4 {
+
+  @Test
+  public void testConcurrentFsync() throws Exception {
+    File file = new File(createTempDir().toFile(), TransactionLog.class.getSimpleName());
+    final TransactionLog tlog = new TransactionLog(file, null);
+    final int numThreads = 4;
+    final int numDeletes = 50;
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      final int thread = i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < numDeletes; j++) {
+            DeleteUpdateCommand cmd = new DeleteUpdateCommand(null);
+            cmd.setIndexedId(new BytesRef(thread + "-" + j));
+            cmd.setVersion(thread * numDeletes + j + 1);
+            tlog.writeDelete(cmd, 0);
+            tlog.finish(UpdateLog.SyncLevel.FSYNC);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every record written before a sync returned is in the file
+    assertEquals(tlog.position(), file.length());
+
+    Set<Long> versions = new HashSet<>();
+    TransactionLog.LogReader reader = tlog.getReader(0);
+    try {
+      Object o;
+      while ((o = reader.next()) != null) {
+        List entry = (List) o;
+        assertEquals(UpdateLog.DELETE, ((Integer) entry.get(0)) & UpdateLog.OPERATION_MASK);
+        versions.add((Long) entry.get(1));
+      }
+    } finally {
+      reader.close();
+    }
+    assertEquals(numThreads * numDeletes, versions.size());
+
+    tlog.decref();
+  }
+
+  @Test
+  public void testLookup() throws Exception {
+    File file = new File(createTempDir().toFile(), TransactionLog.class.getSimpleName());
+    TransactionLog tlog = new TransactionLog(file, null);
+    List<Long> positions = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      DeleteUpdateCommand cmd = new DeleteUpdateCommand(null);
+      cmd.setIndexedId(new BytesRef(Integer.toString(i)));
+      cmd.setVersion(i + 1);
+      positions.add(tlog.writeDelete(cmd, 0));
+      if (random().nextInt(10) == 0) {
+        tlog.finish(UpdateLog.SyncLevel.FLUSH);
+      }
+      // both the flushed records and the ones still buffered are found
+      int j = random().nextInt(positions.size());
+      assertEquals((long) (j + 1), ((List) tlog.lookup(positions.get(j))).get(1));
+    }
+    for (int i = 0; i < positions.size(); i++) {
+      assertEquals((long) (i + 1), ((List) tlog.lookup(positions.get(i))).get(1));
+    }
+    tlog.decref();
+  }
+}
@@ -18,10 +18,20 @@
 package org.apache.solr.update.processor;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Date;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.ContentStreamHandlerBase;
+import org.apache.solr.handler.UpdateRequestHandler;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.IndexSchema;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
@@ -211,6 +221,42 @@ public class AddSchemaFieldsUpdateProcessorFactoryTest extends UpdateProcessorTe
         ,"//arr[@name='" + fieldName4 + "']/date[.='" + field4Value1String + "']");
   }
   
+  public void testParallelUpdatesRoundTrip() throws Exception {
+    // the documents of the request are processed by several threads, each adding its own new fields
+    StringBuilder json = new StringBuilder("[");
+    for (int id = 0; id < 200; id++) {
+      json.append("{\"id\":\"").append(id).append("\",\"parfield").append(id % 20).append("\":").append(id).append("},");
+    }
+    json.setCharAt(json.length() - 1, ']');
+
+    UpdateRequestHandler handler = new UpdateRequestHandler();
+    NamedList<Object> args = new NamedList<>();
+    args.add(ContentStreamHandlerBase.MAX_UPDATE_THREADS, 4);
+    handler.init(args);
+    LocalSolrQueryRequest req = (LocalSolrQueryRequest) req(UpdateParams.UPDATE_CHAIN, "add-fields",
+        UpdateParams.UPDATE_THREADS, "4", UpdateParams.ASSUME_CONTENT_TYPE, "application/json");
+    req.setContentStreams(Collections.<ContentStream>singletonList(new ContentStreamBase.StringStream(json.toString())));
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      h.getCore().execute(handler, req, rsp);
+    } finally {
+      req.close();
+      SolrRequestInfo.clearRequestInfo();
+    }
+    assertNull(rsp.getException());
+
+    IndexSchema schema = h.getCore().getLatestSchema();
+    for (int i = 0; i < 20; i++) {
+      assertNotNull("parfield" + i, schema.getFieldOrNull("parfield" + i));
+      assertEquals("tlong", schema.getFieldType("parfield" + i).getTypeName());
+    }
+    assertU(commit());
+    assertQ(req("*:*"), "//result[@numFound='200']");
+    assertQ(req("parfield7:[* TO *]"), "//result[@numFound='10']");
+    assertQ(req("id:27"), "//arr[@name='parfield7']/long[.='27']");
+  }
+
   @After
   private void deleteCoreAndTempSolrHomeDirectory() throws Exception {
     deleteCore();
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update.processor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.update.UpdateLog;
+import org.apache.solr.update.processor.DistributedUpdateProcessor.DistribPhase;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.apache.solr.update.processor.DistributingUpdateProcessorFactory.DISTRIB_UPDATE_PARAM;
+
+/**
+ * Tests the atomic updates of docValues fields done in place, without reindexing the documents
+ */
+public class InPlaceUpdatesTest extends SolrTestCaseJ4 {
+
+  private static final String FROM_LEADER = DistribPhase.FROMLEADER.toString();
+  private static final String PREV_VERSION = AtomicUpdateDocumentMerger.PREV_VERSION_FIELD;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-tlog.xml", "schema-inplace-updates.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(commit());
+  }
+
+  @Test
+  public void testSetAndInc() throws Exception {
+    addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5, "inplace_f", 1.5f, "inplace_d", 10.5d), null);
+    addAndGetVersion(sdoc("id", "2", "inplace_l", 1), null);
+    assertU(commit());
+
+    long version = addAndGetVersion(sdoc("id", "1", "inplace_i", map("inc", 3), "inplace_l", map("set", 100)), null);
+    assertEquals(UpdateLog.UPDATE_INPLACE, getLoggedOperation("1"));
+    assertJQ(req("qt", "/get", "id", "1", "fl", "id,title_s,_version_"),
+        "=={'doc':{'id':'1','title_s':'first','_version_':" + version + "}}");
+
+    // the update is based on the values of the update log until the next commit
+    version = addAndGetVersion(sdoc("id", "1", "inplace_i", map("inc", 2), "inplace_d", map("inc", -0.5)), null);
+    assertEquals(UpdateLog.UPDATE_INPLACE, getLoggedOperation("1"));
+    assertU(commit());
+
+    // the docValues that were not updated are kept, unlike in a reindexed document
+    assertJQ(req("q", "id:1", "fl", "id,title_s,i:field(inplace_i),l:field(inplace_l),f:field(inplace_f),d:field(inplace_d)"),
+        "/response/docs/[0]=={'id':'1','title_s':'first','i':10,'l':100,'f':1.5,'d':10.0}");
+    assertJQ(req("qt", "/get", "id", "1", "fl", "_version_"), "=={'doc':{'_version_':" + version + "}}");
+
+    // optimistic concurrency uses the version of the update in place
+    addAndGetVersion(sdoc("id", "1", "_version_", version, "inplace_i", map("set", 0)), null);
+    try {
+      addAndGetVersion(sdoc("id", "1", "_version_", version, "inplace_i", map("set", 1)), null);
+      fail("Expected a version conflict");
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.CONFLICT.code, e.code());
+    }
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "i:field(inplace_i)"), "/response/docs/[0]=={'i':0}");
+  }
+
+  @Test
+  public void testReindexedUpdates() throws Exception {
+    addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5), null);
+    addAndGetVersion(sdoc("id", "2", "title_s", "second", "copied_i", 5), null);
+
+    // a document added since the last commit is not in the index yet
+    addAndGetVersion(sdoc("id", "1", "inplace_i", map("inc", 1)), null);
+    assertEquals(UpdateLog.ADD, getLoggedOperation("1"));
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "id,title_s,i:field(inplace_i)"), "/response/docs/[0]=={'id':'1','title_s':'first','i':6}");
+
+    // updates of stored fields, or of fields copied to others, reindex the document
+    addAndGetVersion(sdoc("id", "1", "title_s", map("set", "updated"), "inplace_i", map("set", 7)), null);
+    assertEquals(UpdateLog.ADD, getLoggedOperation("1"));
+    addAndGetVersion(sdoc("id", "2", "copied_i", map("set", 3)), null);
+    assertEquals(UpdateLog.ADD, getLoggedOperation("2"));
+
+    // as do the updates of missing documents, or of fields without docValues in the index
+    addAndGetVersion(sdoc("id", "3", "inplace_i", map("inc", 1)), null);
+    assertEquals(UpdateLog.ADD, getLoggedOperation("3"));
+    assertU(commit());
+    addAndGetVersion(sdoc("id", "3", "inplace_l", map("set", 1)), null);
+    assertEquals(UpdateLog.ADD, getLoggedOperation("3"));
+    assertU(commit());
+
+    assertJQ(req("q", "id:1", "fl", "id,title_s,i:field(inplace_i)"), "/response/docs/[0]=={'id':'1','title_s':'updated','i':7}");
+    assertJQ(req("q", "stored_i:3", "fl", "id"), "/response/docs/[0]=={'id':'2'}");
+    assertJQ(req("q", "id:3", "fl", "id,l:field(inplace_l)"), "/response/docs/[0]=={'id':'3','l':1}");
+  }
+
+  @Test
+  public void testUpdateFromLeader() throws Exception {
+    long version = addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5), null);
+    assertU(commit());
+
+    // the leader forwards the new values as atomic sets, with the version they apply to
+    updateFromLeader(sdoc("id", "1", "_version_", version + 1, PREV_VERSION, version, "inplace_i", map("set", 6)));
+    assertEquals(UpdateLog.UPDATE_INPLACE, getLoggedOperation("1"));
+    assertJQ(req("qt", "/get", "id", "1", "fl", "id,title_s,_version_"),
+        "=={'doc':{'id':'1','title_s':'first','_version_':" + (version + 1) + "}}");
+
+    // a reordered update is dropped
+    updateFromLeader(sdoc("id", "1", "_version_", version + 1, PREV_VERSION, version, "inplace_i", map("set", 1)));
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "i:field(inplace_i)"), "/response/docs/[0]=={'i':6}");
+
+    // a document added since the last commit is reindexed with the new values
+    version = addAndGetVersion(sdoc("id", "2", "title_s", "second", "inplace_i", 5), null);
+    updateFromLeader(sdoc("id", "2", "_version_", version + 1, PREV_VERSION, version, "inplace_i", map("set", 6)));
+    assertEquals(UpdateLog.ADD, getLoggedOperation("2"));
+    assertU(commit());
+    assertJQ(req("q", "id:2", "fl", "id,title_s,i:field(inplace_i)"), "/response/docs/[0]=={'id':'2','title_s':'second','i':6}");
+
+    // the version of the document updated in place by the leader must be applied
+    try {
+      updateFromLeader(sdoc("id", "3", "_version_", version + 3, PREV_VERSION, version + 2, "inplace_i", map("set", 6)));
+      fail("Expected the update in place of a missing document to fail");
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.SERVER_ERROR.code, e.code());
+    }
+  }
+
+  @Test
+  public void testReorderedUpdateFromLeader() throws Exception {
+    long version = addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5), null);
+    assertU(commit());
+
+    // the update in place of version + 2 waits for the update of version + 1 it applies to
+    AtomicReference<Exception> error = new AtomicReference<>();
+    Thread inPlace = new Thread(() -> {
+      try {
+        updateFromLeader(sdoc("id", "1", "_version_", version + 2, PREV_VERSION, version + 1, "inplace_i", map("set", 7)));
+      } catch (Exception e) {
+        error.set(e);
+      }
+    });
+    inPlace.start();
+    Thread.sleep(100);
+    updateFromLeader(sdoc("id", "1", "_version_", version + 1, PREV_VERSION, version, "inplace_i", map("set", 6)));
+    inPlace.join();
+    assertNull(error.get());
+
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "id,title_s,i:field(inplace_i)"), "/response/docs/[0]=={'id':'1','title_s':'first','i':7}");
+    assertJQ(req("qt", "/get", "id", "1", "fl", "_version_"), "=={'doc':{'_version_':" + (version + 2) + "}}");
+  }
+
+  @Test
+  public void testReorderedUpdateWithDeleteByQuery() throws Exception {
+    addAndGetVersion(sdoc("id", "2", "title_s", "second"), null);
+    long version = addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5), null);
+    assertU(commit());
+
+    // the update in place of version + 2 waits for the update of version + 1 it applies to, while a
+    // deleteByQuery, which blocks the updates, is applied in between
+    AtomicReference<Exception> error = new AtomicReference<>();
+    Thread inPlace = new Thread(() -> {
+      try {
+        updateFromLeader(sdoc("id", "1", "_version_", version + 2, PREV_VERSION, version + 1, "inplace_i", map("set", 7)));
+      } catch (Exception e) {
+        error.set(e);
+      }
+    });
+    inPlace.start();
+    Thread.sleep(100);
+    Thread deleteByQuery = new Thread(() -> {
+      try {
+        updateJ(jsonDelQ("id:2"), params(DISTRIB_UPDATE_PARAM, FROM_LEADER, "_version_", Long.toString(-(version + 3))));
+      } catch (Exception e) {
+        error.set(e);
+      }
+    });
+    deleteByQuery.start();
+    Thread.sleep(100);
+    updateFromLeader(sdoc("id", "1", "_version_", version + 1, PREV_VERSION, version, "inplace_i", map("set", 6)));
+    deleteByQuery.join();
+    inPlace.join();
+    assertNull(error.get());
+
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "id,title_s,i:field(inplace_i)"), "/response/docs/[0]=={'id':'1','title_s':'first','i':7}");
+    assertJQ(req("q", "id:2"), "/response/numFound==0");
+  }
+
+  @Test
+  public void testVersionAfterReload() throws Exception {
+    addAndGetVersion(sdoc("id", "1", "title_s", "first", "inplace_i", 5), null);
+    assertU(commit());
+    long version = addAndGetVersion(sdoc("id", "1", "inplace_i", map("inc", 1)), null);
+    assertEquals(UpdateLog.UPDATE_INPLACE, getLoggedOperation("1"));
+    assertU(commit());
+    h.reload();
+
+    // only the docValues hold the version of the update in place, the stored and indexed values are stale
+    assertEquals(version, (long) h.getCore().getUpdateHandler().getUpdateLog().lookupVersion(new BytesRef("1")));
+    assertJQ(req("qt", "/get", "id", "1", "fl", "id,_version_"), "=={'doc':{'id':'1','_version_':" + version + "}}");
+    assertJQ(req("q", "id:1", "fl", "v:field(_version_)"), "/response/docs/[0]=={'v':" + version + "}");
+    assertJQ(req("q", "_version_:" + version, "fl", "id"), "/response/numFound==0");
+
+    // so the next updates are checked against the version of the update in place
+    addAndGetVersion(sdoc("id", "1", "_version_", version, "inplace_i", map("inc", 1)), null);
+    assertU(commit());
+    assertJQ(req("q", "id:1", "fl", "i:field(inplace_i)"), "/response/docs/[0]=={'i':7}");
+  }
+
+  private static void updateFromLeader(SolrInputDocument doc) throws Exception {
+    updateJ(jsonAdd(doc), params(DISTRIB_UPDATE_PARAM, FROM_LEADER));
+  }
+
+  private static int getLoggedOperation(String id) {
+    UpdateLog ulog = h.getCore().getUpdateHandler().getUpdateLog();
+    List entry = (List) ulog.lookup(new BytesRef(id));
+    return (Integer) entry.get(0) & UpdateLog.OPERATION_MASK;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update.processor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.handler.ContentStreamHandlerBase;
+import org.apache.solr.handler.UpdateRequestHandler;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the updates of a request processed by several threads, see {@link ParallelUpdateProcessor}
+ */
+public class ParallelUpdateProcessorTest extends SolrTestCaseJ4 {
+
+  private static UpdateRequestHandler handler;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+    // the number of threads is capped by the number of CPUs by default
+    handler = new UpdateRequestHandler();
+    NamedList<Object> args = new NamedList<>();
+    args.add(ContentStreamHandlerBase.MAX_UPDATE_THREADS, 4);
+    handler.init(args);
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    handler = null;
+  }
+
+  private static SolrQueryResponse update(String json, int threads) {
+    LocalSolrQueryRequest req = (LocalSolrQueryRequest) req(UpdateParams.UPDATE_THREADS, Integer.toString(threads),
+        UpdateParams.ASSUME_CONTENT_TYPE, "application/json");
+    req.setContentStreams(Collections.<ContentStream>singletonList(new ContentStreamBase.StringStream(json)));
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      h.getCore().execute(handler, req, rsp);
+    } finally {
+      req.close();
+      SolrRequestInfo.clearRequestInfo();
+    }
+    return rsp;
+  }
+
+  private static void updateOrFail(String json, int threads) throws Exception {
+    SolrQueryResponse rsp = update(json, threads);
+    if (rsp.getException() != null) {
+      throw rsp.getException();
+    }
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(commit());
+  }
+
+  @Test
+  public void testOrderOfUpdates() throws Exception {
+    // each document is updated several times, and the last update must win
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 10; i++) {
+      for (int id = 0; id < 50; id++) {
+        json.append("{\"id\":\"").append(id).append("\",\"val_i\":").append(i).append("},");
+      }
+    }
+    json.setCharAt(json.length() - 1, ']');
+    updateOrFail(json.toString(), 4);
+    assertU(commit());
+
+    assertJQ(req("q", "*:*"), "/response/numFound==50");
+    assertJQ(req("q", "val_i:9"), "/response/numFound==50");
+  }
+
+  @Test
+  public void testDeleteByQuery() throws Exception {
+    // the delete by query waits for the adds before it, and the adds after it wait for the delete
+    StringBuilder json = new StringBuilder("{");
+    for (int id = 0; id < 100; id++) {
+      json.append("\"add\":{\"doc\":{\"id\":\"").append(id).append("\",\"val_i\":1}},");
+    }
+    json.append("\"delete\":{\"query\":\"val_i:1\"},");
+    for (int id = 100; id < 130; id++) {
+      json.append("\"add\":{\"doc\":{\"id\":\"").append(id).append("\",\"val_i\":1}},");
+    }
+    json.append("\"delete\":{\"id\":\"129\"},");
+    json.append("\"commit\":{}}");
+    updateOrFail(json.toString(), 3);
+
+    assertJQ(req("q", "*:*"), "/response/numFound==29");
+  }
+
+  @Test
+  public void testError() throws Exception {
+    StringBuilder json = new StringBuilder("[");
+    for (int id = 0; id < 500; id++) {
+      json.append("{\"id\":\"").append(id).append("\",\"val_i\":").append(id == 250 ? "\"NaN\"" : id).append("},");
+    }
+    json.setCharAt(json.length() - 1, ']');
+    SolrQueryResponse rsp = update(json.toString(), 4);
+    assertNotNull("Expected the error of the invalid document", rsp.getException());
+    assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, ((SolrException) rsp.getException()).code());
+    List<String> appliedAfterError = (List<String>) rsp.getValues().get(ParallelUpdateProcessor.APPLIED_AFTER_ERROR);
+    assertNotNull(appliedAfterError);
+    assertU(commit());
+
+    // as with a single thread, the documents before the invalid one are all applied, and
+    // the ones after it are applied only if they are reported
+    assertJQ(req("q", "id:[0 TO 249]", "rows", "0"), "/response/numFound==250");
+    Set<String> applied = new HashSet<>(appliedAfterError);
+    for (int id = 250; id < 500; id++) {
+      String expected = applied.contains(Integer.toString(id)) ? "1" : "0";
+      assertJQ(req("q", "id:" + id, "rows", "0"), "/response/numFound==" + expected);
+    }
+
+    // the threads of the failed request were released
+    updateOrFail("[{\"id\":\"1000\"}]", 4);
+    assertU(commit());
+    assertJQ(req("q", "id:1000"), "/response/numFound==1");
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.update.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.Hash;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.update.DeleteUpdateCommand;
+import org.apache.solr.update.UpdateLog;
+import org.apache.solr.update.VersionBucket;
+import org.apache.solr.update.VersionInfo;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the order of the updates of the ids of a {@link VersionBucket}, which are applied to the index
+ * outside of the bucket's monitor by {@link DistributedUpdateProcessor}.
+ */
+public class VersionBucketUpdatesTest extends SolrTestCaseJ4 {
+
+  private static final int ADD = 0;
+  private static final int INC = 1;
+  private static final int DELETE = 2;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-tlog.xml", "schema15.xml");
+  }
+
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clearIndex();
+    assertU(commit());
+  }
+
+  /** An update of an id, and the version it was given. */
+  private static class Update {
+    final String id;
+    final int op;
+    final long version;
+
+    Update(String id, int op, long version) {
+      this.id = id;
+      this.op = op;
+      this.version = version;
+    }
+  }
+
+  @Test
+  public void testConcurrentUpdatesOfOneBucket() throws Exception {
+    final List<String> ids = getIdsOfOneBucket(4);
+    final UpdateLog ulog = h.getCore().getUpdateHandler().getUpdateLog();
+    final List<Update> updates = Collections.synchronizedList(new ArrayList<Update>());
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final AtomicBoolean done = new AtomicBoolean();
+
+    // several threads add, increment and delete the ids concurrently
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      final Random rand = new Random(random().nextLong());
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 100; i++) {
+              String id = ids.get(rand.nextInt(ids.size()));
+              int op = rand.nextInt(3);
+              long version;
+              if (op == ADD) {
+                version = addAndGetVersion(sdoc("id", id, "cnt_l", 0), null);
+              } else if (op == INC) {
+                version = addAndGetVersion(sdoc("id", id, "cnt_l", map("inc", 1)), null);
+              } else {
+                version = deleteAndGetVersion(id, null);
+              }
+              updates.add(new Update(id, op, version));
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+
+    // the versions of an id only ever increase, as its updates are applied in the order of their versions
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        Map<String,Long> lastVersions = new HashMap<>();
+        while (!done.get()) {
+          for (String id : ids) {
+            Long version = ulog.lookupVersion(new BytesRef(id));
+            Long last = lastVersions.get(id);
+            if (version != null) {
+              if (last != null && Math.abs(version) < Math.abs(last)) {
+                error.compareAndSet(null, new AssertionError("version of " + id + " went from " + last + " to " + version));
+              }
+              lastVersions.put(id, version);
+            }
+          }
+        }
+      }
+    };
+
+    reader.start();
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    done.set(true);
+    reader.join();
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+
+    // the last version of each id is the one of its last update, whose outcome is the one of its updates
+    // applied in the order of their versions
+    Collections.sort(updates, new Comparator<Update>() {
+      @Override
+      public int compare(Update a, Update b) {
+        return Long.compare(Math.abs(a.version), Math.abs(b.version));
+      }
+    });
+    for (String id : ids) {
+      Update last = null;
+      Long count = null;
+      for (Update update : updates) {
+        if (!update.id.equals(id)) continue;
+        if (last != null) {
+          assertTrue("versions of " + id + " are not unique", Math.abs(update.version) > Math.abs(last.version));
+        }
+        if (update.op == ADD) {
+          count = 0L;
+        } else if (update.op == INC) {
+          count = count == null ? 1L : count + 1;
+        } else {
+          count = null;
+        }
+        last = update;
+      }
+      if (last == null) continue;
+
+      assertEquals(id, last.version, (long) ulog.lookupVersion(new BytesRef(id)));
+      if (count == null) {
+        assertTrue(last.version < 0);
+        assertJQ(req("qt", "/get", "id", id), "=={'doc':null}");
+      } else {
+        assertJQ(req("qt", "/get", "id", id, "fl", "id,cnt_l,_version_"),
+            "=={'doc':{'id':'" + id + "','cnt_l':" + count + ",'_version_':" + last.version + "}}");
+      }
+    }
+
+    assertU(commit());
+    for (String id : ids) {
+      assertJQ(req("q", "id:" + id, "fl", "id"), "/response/numFound==" + (ulog.lookupVersion(new BytesRef(id)) > 0 ? 1 : 0));
+    }
+  }
+
+  @Test
+  public void testFailedUpdatesEndTheirUpdate() throws Exception {
+    List<String> ids = getIdsOfOneBucket(2);
+    final String id = ids.get(0);
+    UpdateLog ulog = h.getCore().getUpdateHandler().getUpdateLog();
+    long version = addAndGetVersion(sdoc("id", id, "cnt_l", 1), null);
+
+    // an add that fails once its version is assigned
+    try {
+      addAndGetVersion(sdoc("id", id, "cnt_l", "NaN"), null);
+      fail("Expected the add of an invalid document to fail");
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+    }
+    assertEquals(version, (long) ulog.lookupVersion(new BytesRef(id)));
+
+    // a delete that fails once its version is assigned
+    UpdateRequestProcessorChain chain = new UpdateRequestProcessorChain(new UpdateRequestProcessorFactory[] {
+        new DistributedUpdateProcessorFactory(),
+        new UpdateRequestProcessorFactory() {
+          @Override
+          public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+            return new UpdateRequestProcessor(next) {
+              @Override
+              public void processDelete(DeleteUpdateCommand cmd) throws IOException {
+                throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Failing delete of " + cmd.getId());
+              }
+            };
+          }
+        },
+        new RunUpdateProcessorFactory()
+    }, h.getCore());
+    SolrQueryRequest req = req();
+    try {
+      UpdateRequestProcessor processor = chain.createProcessor(req, new SolrQueryResponse());
+      DeleteUpdateCommand cmd = new DeleteUpdateCommand(req);
+      cmd.setId(id);
+      processor.processDelete(cmd);
+      fail("Expected the delete to fail");
+    } catch (SolrException e) {
+      assertEquals(SolrException.ErrorCode.SERVER_ERROR.code, e.code());
+    } finally {
+      req.close();
+    }
+    assertEquals(version, (long) ulog.lookupVersion(new BytesRef(id)));
+
+    // the next updates of the id and of the other ids of the bucket are not blocked by the failed ones
+    final AtomicReference<Exception> error = new AtomicReference<>();
+    final String otherId = ids.get(1);
+    Thread updater = new Thread() {
+      @Override
+      public void run() {
+        try {
+          addAndGetVersion(sdoc("id", otherId, "cnt_l", 1), null);
+          addAndGetVersion(sdoc("id", id, "cnt_l", map("inc", 1)), null);
+          deleteAndGetVersion(otherId, null);
+        } catch (Exception e) {
+          error.set(e);
+        }
+      }
+    };
+    updater.start();
+    updater.join(30000);
+    assertFalse("updates blocked by a failed update of the same id", updater.isAlive());
+    assertNull(error.get());
+    assertJQ(req("qt", "/get", "id", id, "fl", "cnt_l"), "=={'doc':{'cnt_l':2}}");
+    assertJQ(req("qt", "/get", "id", otherId), "=={'doc':null}");
+  }
+
+  /** Returns ids whose updates are all synchronized on the same version bucket. */
+  private static List<String> getIdsOfOneBucket(int n) {
+    VersionInfo vinfo = h.getCore().getUpdateHandler().getUpdateLog().getVersionInfo();
+    List<String> ids = new ArrayList<>(n);
+    VersionBucket bucket = null;
+    for (int i = 0; ids.size() < n; i++) {
+      BytesRef id = new BytesRef("doc" + i);
+      VersionBucket b = vinfo.bucket(Hash.murmurhash3_x86_32(id.bytes, id.offset, id.length, 0));
+      if (bucket == null) {
+        bucket = b;
+      }
+      if (b == bucket) {
+        ids.add(id.utf8ToString());
+      }
+    }
+    return ids;
+  }
+}
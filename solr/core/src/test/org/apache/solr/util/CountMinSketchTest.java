@@ -0,0 +1,58 @@
+package org.apache.solr.util;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class CountMinSketchTest extends LuceneTestCase {
+
+  public void testEstimatesAreUpperBounds() {
+    CountMinSketch sketch = new CountMinSketch(TestUtil.nextInt(random(), 1, 4), TestUtil.nextInt(random(), 1, 200));
+    Map<BytesRef,Integer> counts = new HashMap<>();
+    for (int i = 0; i < 500; i++) {
+      BytesRef term = new BytesRef(TestUtil.randomSimpleString(random(), 1, 3));
+      int count = TestUtil.nextInt(random(), 1, 20);
+      sketch.add(term, count);
+      Integer old = counts.get(term);
+      counts.put(term, old == null ? count : old + count);
+    }
+
+    CountMinSketch copy = CountMinSketch.fromBytes(sketch.toBytes());
+    assertEquals(sketch.getDepth(), copy.getDepth());
+    assertEquals(sketch.getWidth(), copy.getWidth());
+    for (Map.Entry<BytesRef,Integer> entry : counts.entrySet()) {
+      int estimate = sketch.estimate(entry.getKey());
+      assertTrue(entry + " estimated as " + estimate, estimate >= entry.getValue());
+      assertEquals(estimate, copy.estimate(entry.getKey()));
+    }
+  }
+
+  public void testExactWithoutCollisions() {
+    CountMinSketch sketch = new CountMinSketch(3, 1 << 16);
+    sketch.add(new BytesRef("a"), 3);
+    sketch.add(new BytesRef("b"), 5);
+    sketch.add(CountMinSketch.hash(new BytesRef("a")), 1);
+    assertEquals(4, sketch.estimate(new BytesRef("a")));
+    assertEquals(5, sketch.estimate(new BytesRef("b")));
+    assertEquals(0, sketch.estimate(new BytesRef("c")));
+  }
+}
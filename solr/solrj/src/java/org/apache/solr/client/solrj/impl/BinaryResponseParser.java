@@ -31,7 +31,21 @@ import java.io.Reader;
  */
 public class BinaryResponseParser extends ResponseParser {
   public static final String BINARY_CONTENT_TYPE = "application/octet-stream";
-  
+
+  protected final JavaBinCodec.StringCache stringCache;
+
+  public BinaryResponseParser() {
+    this(null);
+  }
+
+  /**
+   * @param stringCache the cache the strings of the responses are looked up in,
+   *                    may be null
+   */
+  public BinaryResponseParser(JavaBinCodec.StringCache stringCache) {
+    this.stringCache = stringCache;
+  }
+
   @Override
   public String getWriterType() {
     return "javabin";
@@ -40,7 +54,7 @@ public class BinaryResponseParser extends ResponseParser {
   @Override
   public NamedList<Object> processResponse(InputStream body, String encoding) {
     try {
-      return (NamedList<Object>) new JavaBinCodec().unmarshal(body);
+      return (NamedList<Object>) new JavaBinCodec(null, stringCache).unmarshal(body);
     } catch (IOException e) {
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
 
@@ -21,9 +21,10 @@ package org.apache.solr.client.solrj.io;
 * 
 */
 
+import java.io.IOException;
 import java.io.Serializable;
 
-public class Bucket implements Serializable {
+public class Bucket implements Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -37,7 +38,29 @@ public class Bucket implements Serializable {
     this.bucketKey = bucketKey;
   }
 
+  public Bucket(StreamExpression expression, StreamFactory factory) throws IOException {
+    if(!expression.getParameters().isEmpty()) {
+      this.bucketKey = expression.getString(0);
+    }
+  }
+
+  public String getBucketKey() {
+    return bucketKey;
+  }
+
   public String getBucketValue(Tuple tuple) {
     return tuple.get(bucketKey).toString();
   }
+
+  public String getBucketValue(TupleBatch batch, int row) {
+    return batch.get(bucketKey, row).toString();
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()));
+    if(bucketKey != null) {
+      expression.withParameter(bucketKey);
+    }
+    return expression;
+  }
 }
@@ -21,17 +21,17 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Comparator;
 import java.util.Random;
-import java.util.TreeSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
@@ -48,10 +48,12 @@ import org.apache.zookeeper.KeeperException;
 /**
 * Connects to Zookeeper to pick replicas from a specific collection to send the query to.
 * SolrStream instances are used to send the query to the replicas.
-* SolrStreams are opened using a Thread pool, but a single thread is used to iterate through each stream's tuples.* *
+* SolrStreams are opened and read using a Thread pool, each thread reading the tuples of its stream in batches queued ahead
+* of the merge, up to a bound so that a fast shard waits for the merge rather than fill the memory.  The heads of the streams
+* are merged with a loser tree, which takes log(shards) comparisons per tuple.
 **/
 
-public class CloudSolrStream extends TupleStream {
+public class CloudSolrStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -59,8 +61,13 @@ public class CloudSolrStream extends TupleStream {
   protected String collection;
   protected Map params;
   private Map<String, String> fieldMappings;
-  protected TreeSet<TupleWrapper> tuples;
+  // the tuples of each stream are queued in batches of BATCH_SIZE, at most QUEUED_BATCHES of them
+  private static final int BATCH_SIZE = 128;
+  private static final int QUEUED_BATCHES = 8;
+  // how long to wait for the threads reading ahead to stop, once their streams are closed
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
   protected Comparator<Tuple> comp;
+  private boolean customComp;
   protected List<TupleStream> solrStreams = new ArrayList();
   private int zkConnectTimeout = 10000;
   private int zkClientTimeout = 10000;
@@ -69,23 +76,115 @@ public class CloudSolrStream extends TupleStream {
   private int numWorkers;
   private int workerID;
   protected Map<String, Tuple> eofTuples = new HashMap();
+  private transient ExecutorService service;
+  // the loser tree: leaves[i] is the i-th stream, losers[n] the stream that lost at the inner
+  // node n, with the children of n at 2n and 2n+1 and leaf i at leaves.length+i. losers[0] is the winner.
+  private transient TupleWrapper[] leaves;
+  private transient int[] losers;
 
   public CloudSolrStream(String zkHost, String collection, Map params) {
     this.zkHost = zkHost;
     this.collection = collection;
     this.params = params;
-    this.tuples = new TreeSet();
     String sort = (String)params.get("sort");
     this.comp = parseComp(sort);
   }
 
+  public CloudSolrStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0), expression.getString(1), StreamFactory.toMap(expression.getExpression(2)));
+    StreamExpression mappings = expression.getExpression("fieldMappings");
+    if(mappings != null) {
+      this.fieldMappings = StreamFactory.toMap(mappings);
+    }
+    StreamExpression compExpression = expression.getExpression("comp");
+    if(compExpression != null) {
+      setComp(factory.constructComparator(compExpression));
+    }
+  }
+
   //Used by the ParallelStream
   protected CloudSolrStream() {
 
   }
 
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(zkHost)
+        .withParameter(collection)
+        .withParameter(StreamFactory.toExpression(params));
+    if(fieldMappings != null) {
+      expression.withParameter("fieldMappings", StreamFactory.toExpression(fieldMappings));
+    }
+    if(customComp) {
+      expression.withParameter("comp", factory.toExpression(comp));
+    }
+    return expression;
+  }
+
   public void setComp(Comparator<Tuple> comp) {
     this.comp = comp;
+    this.customComp = true;
+  }
+
+  /**
+   * Asks the shards to roll up their documents by the buckets, if the /export handler can do it:
+   * the stream must export its documents sorted by the bucket fields only, without field mappings,
+   * and the metrics must be the ones of this package.  The shards then send one tuple per bucket,
+   * with the values of the bucket fields and the values each metric merges, named after the metric
+   * such as sum:a_i.sum.
+   *
+   * @return false if the rollup can not be pushed down to the shards
+   */
+  public boolean pushDownRollup(Bucket[] buckets, Metric[] metrics) {
+    // a ParallelStream has no params of its own
+    if(params == null || !"/export".equals(params.get("qt")) || fieldMappings != null) {
+      return false;
+    }
+
+    String[] sorts = ((String)params.get("sort")).split(",");
+    if(sorts.length != buckets.length) {
+      return false;
+    }
+    StringBuilder rollup = new StringBuilder();
+    for(int i=0; i<sorts.length; i++) {
+      String field = sorts[i].trim().split(" ")[0];
+      if(!field.equals(buckets[i].getBucketKey())) {
+        return false;
+      }
+      if(i > 0) {
+        rollup.append(',');
+      }
+      rollup.append(field);
+    }
+
+    StringBuilder rollupMetrics = new StringBuilder();
+    for(Metric metric : metrics) {
+      Class c = metric.getClass();
+      if(c != SumMetric.class && c != MeanMetric.class && c != MinMetric.class && c != MaxMetric.class && c != CountMetric.class) {
+        return false;
+      }
+      if(rollupMetrics.length() > 0) {
+        rollupMetrics.append(',');
+      }
+      rollupMetrics.append(getRollupMetricName(metric));
+    }
+
+    // the params of the caller are left as they are
+    Map rollupParams = new HashMap(params);
+    rollupParams.put("rollup", rollup.toString());
+    rollupParams.put("rollup.metrics", rollupMetrics.toString());
+    params = rollupParams;
+    return true;
+  }
+
+  /**
+   * Returns the name of a metric in the rollup.metrics param, which prefixes the names of its values
+   * in the tuples of the buckets rolled up by the shards.
+   */
+  public static String getRollupMetricName(Metric metric) {
+    String name = metric.getName();
+    // MaxMetric names itself mix:column
+    return metric instanceof MaxMetric ? "max" + name.substring(name.indexOf(':')) : name;
   }
 
   public void setFieldMappings(Map<String, String> fieldMappings) {
@@ -172,31 +271,84 @@ public class CloudSolrStream extends TupleStream {
   }
 
   private void openStreams() throws IOException {
-    ExecutorService service = Executors.newCachedThreadPool(new SolrjNamedThreadFactory("CloudSolrStream"));
-    List<Future<TupleWrapper>> futures = new ArrayList();
-    for(TupleStream solrStream : solrStreams) {
-      StreamOpener so = new StreamOpener((SolrStream)solrStream, comp);
-      Future<TupleWrapper> future =  service.submit(so);
-      futures.add(future);
+    service = Executors.newCachedThreadPool(new SolrjNamedThreadFactory("CloudSolrStream"));
+    leaves = new TupleWrapper[solrStreams.size()];
+    for(int i=0; i<leaves.length; i++) {
+      leaves[i] = new TupleWrapper((SolrStream)solrStreams.get(i));
+      service.execute(leaves[i]);
     }
 
-    try {
-      for(Future<TupleWrapper> f : futures) {
-        TupleWrapper w = f.get();
-        if(w != null) {
-          tuples.add(w);
-        }
+    for(TupleWrapper w : leaves) {
+      w.next();
+    }
+
+    losers = new int[Math.max(1, leaves.length)];
+    if(leaves.length > 0) {
+      losers[0] = playTree(1);
+    }
+  }
+
+  /** Plays the matches of the subtree under the node n, and returns its winner. */
+  private int playTree(int n) {
+    if(n >= leaves.length) {
+      return n - leaves.length;
+    }
+    int a = playTree(2 * n);
+    int b = playTree(2 * n + 1);
+    if(beats(a, b)) {
+      losers[n] = b;
+      return a;
+    } else {
+      losers[n] = a;
+      return b;
+    }
+  }
+
+  /** Replays the matches from the leaf to the root, once the head of its stream changed. */
+  private void replay(int leaf) {
+    int winner = leaf;
+    for(int n = (leaf + leaves.length) >> 1; n > 0; n >>= 1) {
+      if(beats(losers[n], winner)) {
+        int loser = winner;
+        winner = losers[n];
+        losers[n] = loser;
       }
-    } catch (Exception e) {
-      throw new IOException(e);
     }
+    losers[0] = winner;
+  }
 
-    service.shutdown();
+  private boolean beats(int a, int b) {
+    Tuple ta = leaves[a].getTuple();
+    Tuple tb = leaves[b].getTuple();
+    if(ta == null) {
+      return false;
+    } else if(tb == null) {
+      return true;
+    }
+    int i = comp.compare(ta, tb);
+    return i < 0 || (i == 0 && a < b);
   }
 
   public void close() throws IOException {
-    for(TupleStream solrStream : solrStreams) {
-      solrStream.close();
+    if(service != null) {
+      // the interrupts wake up the threads waiting for room in their queue, and closing
+      // the streams the ones waiting for a shard to answer
+      service.shutdownNow();
+      for(TupleWrapper leaf : leaves) {
+        if(leaf != null) {
+          leaf.close();
+        }
+      }
+      try {
+        service.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    } else {
+      for(TupleStream solrStream : solrStreams) {
+        solrStream.close();
+      }
     }
 
     if(cache == null) {
@@ -209,81 +361,115 @@ public class CloudSolrStream extends TupleStream {
   }
 
   protected Tuple _read() throws IOException {
-    TupleWrapper tw = tuples.pollFirst();
-    if(tw != null) {
+    if(leaves.length > 0) {
+      int winner = losers[0];
+      TupleWrapper tw = leaves[winner];
       Tuple t = tw.getTuple();
-      if(tw.next()) {
-        tuples.add(tw);
+      if(t != null) {
+        tw.next();
+        replay(winner);
+        return t;
       }
-      return t;
-    } else {
-      Map m = new HashMap();
-      m.put("EOF", true);
-
-      return new Tuple(m);
     }
+
+    Map m = new HashMap();
+    m.put("EOF", true);
+
+    return new Tuple(m);
   }
 
-  protected class TupleWrapper implements Comparable<TupleWrapper> {
+  /**
+   * Reads the tuples of a SolrStream in a thread of its own, and queues them for the merge.
+   */
+  protected class TupleWrapper implements Runnable {
     private Tuple tuple;
     private SolrStream stream;
-    private Comparator comp;
-
-    public TupleWrapper(SolrStream stream, Comparator comp) {
+    // batches of tuples, the last one ending with the EOF tuple, or the error of the stream
+    private BlockingQueue<Object> queue = new ArrayBlockingQueue(QUEUED_BATCHES);
+    private List<Tuple> batch;
+    private int pos;
+    private boolean opened;
+    private boolean closed;
+
+    public TupleWrapper(SolrStream stream) {
       this.stream = stream;
-      this.comp = comp;
-    }
-
-    public int compareTo(TupleWrapper w) {
-      if(this == w) {
-        return 0;
-      }
-
-      int i = comp.compare(tuple, w.tuple);
-      if(i == 0) {
-        return 1;
-      } else {
-        return i;
-      }
-    }
-
-    public boolean equals(Object o) {
-      return this == o;
     }
 
+    /** The head of the stream, or null once the stream is exhausted. */
     public Tuple getTuple() {
       return tuple;
     }
 
     public boolean next() throws IOException {
-      this.tuple = stream.read();
+      if(batch == null || pos == batch.size()) {
+        Object o;
+        try {
+          o = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException(e);
+        }
+        if(o instanceof Throwable) {
+          throw new IOException((Throwable)o);
+        }
+        batch = (List<Tuple>)o;
+        pos = 0;
+      }
+
+      this.tuple = batch.get(pos++);
 
       if(tuple.EOF) {
         eofTuples.put(stream.getBaseUrl(), tuple);
+        tuple = null;
+        batch = null;
+        return false;
       }
 
-      return !tuple.EOF;
+      return true;
     }
-  }
-
-  protected class StreamOpener implements Callable<TupleWrapper> {
 
-    private SolrStream stream;
-    private Comparator<Tuple> comp;
-
-    public StreamOpener(SolrStream stream, Comparator<Tuple> comp) {
-      this.stream = stream;
-      this.comp = comp;
+    /** Closes the stream, or makes the thread reading ahead close it once it opened it. */
+    public void close() throws IOException {
+      synchronized (this) {
+        closed = true;
+        if(!opened) {
+          return;
+        }
+      }
+      stream.close();
     }
 
-    public TupleWrapper call() throws Exception {
-      stream.open();
-      TupleWrapper wrapper = new TupleWrapper(stream, comp);
-      if(wrapper.next()) {
-        return wrapper;
-      } else {
-        return null;
+    public void run() {
+      try {
+        stream.open();
+        synchronized (this) {
+          if(closed) {
+            stream.close();
+            return;
+          }
+          opened = true;
+        }
+        List<Tuple> tuples = new ArrayList(BATCH_SIZE);
+        while(true) {
+          Tuple t = stream.read();
+          tuples.add(t);
+          if(t.EOF) {
+            queue.put(tuples);
+            return;
+          } else if(tuples.size() == BATCH_SIZE) {
+            queue.put(tuples);
+            tuples = new ArrayList(BATCH_SIZE);
+          }
+        }
+      } catch (InterruptedException e) {
+        // the stream is being closed
+      } catch (Throwable e) {
+        try {
+          queue.put(e);
+        } catch (InterruptedException ie) {
+          // the stream is being closed
+        }
       }
     }
   }
-}
\ No newline at end of file
+}
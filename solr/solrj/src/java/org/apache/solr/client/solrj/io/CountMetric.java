@@ -17,17 +17,24 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.HashMap;
 
-public class CountMetric implements Metric, Serializable {
+public class CountMetric implements Metric, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
   public static final String COUNT = "count";
   private long count;
 
+  public CountMetric() {
+  }
+
+  public CountMetric(StreamExpression expression, StreamFactory factory) throws IOException {
+  }
+
   public String getName() {
     return "count";
   }
@@ -36,6 +43,10 @@ public class CountMetric implements Metric, Serializable {
    ++count;
   }
 
+  public void update(TupleBatch batch, int from, int to) {
+    count += to - from;
+  }
+
   public double getValue() {
     return count;
   }
@@ -55,4 +66,8 @@ public class CountMetric implements Metric, Serializable {
     double dcount = metricValues.get(COUNT);
     count+=(long)dcount;
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()));
+  }
+}
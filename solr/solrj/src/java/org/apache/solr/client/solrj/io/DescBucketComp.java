@@ -17,10 +17,11 @@ package org.apache.solr.client.solrj.io;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Comparator;
 
-public class DescBucketComp implements Comparator<BucketMetrics>, Serializable {
+public class DescBucketComp implements Comparator<BucketMetrics>, Serializable, Expressible {
 
   private int ord;
 
@@ -28,6 +29,10 @@ public class DescBucketComp implements Comparator<BucketMetrics>, Serializable {
     this.ord = ord;
   }
 
+  public DescBucketComp(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getInt(0));
+  }
+
   public int compare(BucketMetrics b1, BucketMetrics b2) {
     double d1 = b1.getMetrics()[ord].getValue();
     double d2 = b2.getMetrics()[ord].getValue();
@@ -39,4 +44,8 @@ public class DescBucketComp implements Comparator<BucketMetrics>, Serializable {
       return 0;
     }
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(ord);
+  }
+}
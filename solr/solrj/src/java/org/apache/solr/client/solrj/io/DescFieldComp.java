@@ -17,10 +17,11 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Comparator;
 
-public class DescFieldComp implements Comparator<Tuple>, Serializable {
+public class DescFieldComp implements Comparator<Tuple>, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -30,6 +31,10 @@ public class DescFieldComp implements Comparator<Tuple>, Serializable {
     this.field = field;
   }
 
+  public DescFieldComp(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0));
+  }
+
   public int compare(Tuple t1, Tuple t2) {
     Comparable o1 = (Comparable)t1.get(field);
     Comparable o2 = (Comparable)t2.get(field);
@@ -40,4 +45,8 @@ public class DescFieldComp implements Comparator<Tuple>, Serializable {
       return -i;
     }
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(field);
+  }
+}
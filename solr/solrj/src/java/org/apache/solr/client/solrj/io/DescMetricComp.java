@@ -17,11 +17,12 @@ package org.apache.solr.client.solrj.io;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.List;
 
-public class DescMetricComp implements Comparator<Tuple>, Serializable {
+public class DescMetricComp implements Comparator<Tuple>, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -31,9 +32,17 @@ public class DescMetricComp implements Comparator<Tuple>, Serializable {
     this.ord = ord;
   }
 
+  public DescMetricComp(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getInt(0));
+  }
+
   public int compare(Tuple t1, Tuple t2) {
     List<Double> values1 = (List<Double>)t1.get("metricValues");
     List<Double> values2 = (List<Double>)t2.get("metricValues");
     return values1.get(ord).compareTo(values2.get(ord))*-1;
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(ord);
+  }
+}
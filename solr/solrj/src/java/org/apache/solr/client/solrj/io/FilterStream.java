@@ -22,7 +22,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 
-public class FilterStream extends TupleStream {
+public class FilterStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -44,6 +44,19 @@ public class FilterStream extends TupleStream {
     this.comp = comp;
   }
 
+  public FilterStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         factory.constructStream(expression.getExpression(1)),
+         factory.constructComparator(expression.getExpression(2)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(streamA))
+        .withParameter(factory.toExpression(streamB))
+        .withParameter(factory.toExpression(comp));
+  }
+
   public void setStreamContext(StreamContext context) {
     this.streamA.setStreamContext(context);
     this.streamB.setStreamContext(context);
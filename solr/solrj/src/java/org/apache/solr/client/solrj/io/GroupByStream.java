@@ -28,7 +28,7 @@ import java.util.PriorityQueue;
  *  Iterates over a TupleStream Groups The TopN Tuples of a group.
  **/
 
-public class GroupByStream extends TupleStream {
+public class GroupByStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -50,6 +50,21 @@ public class GroupByStream extends TupleStream {
     this.size = size;
   }
 
+  public GroupByStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         factory.constructComparator(expression.getExpression(1)),
+         factory.constructComparator(expression.getExpression(2)),
+         expression.getInt(3));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(tupleStream))
+        .withParameter(factory.toExpression(interGroupComp))
+        .withParameter(factory.toExpression(intraGroupComp))
+        .withParameter(size);
+  }
+
   public void setStreamContext(StreamContext context) {
     this.tupleStream.setStreamContext(context);
   }
@@ -75,7 +90,8 @@ public class GroupByStream extends TupleStream {
       return currentTuple;
     }
 
-    PriorityQueue<Tuple> group = new PriorityQueue<>(size, reverseComp);
+    // The queue grows with the group, so that a large size can be used to keep whole groups.
+    PriorityQueue<Tuple> group = new PriorityQueue<>(Math.min(size, 16), reverseComp);
     group.add(currentTuple);
     while(true) {
       Tuple t = tupleStream.read();
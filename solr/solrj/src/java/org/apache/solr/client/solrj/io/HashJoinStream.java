@@ -22,25 +22,82 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  *
  *
  **/
 
-public class HashJoinStream extends TupleStream {
+/**
+ *  Joins streamA with streamB on the given keys, by hashing the tuples of streamB in memory.
+ *  <p>
+ *  If streamB has more than maxTuplesInMemory tuples, both streams are partitioned by the hash
+ *  of their keys to temporary files, and each pair of partitions is joined in turn the same way,
+ *  partitioning it again if needed.  The joined tuples are then grouped by partition, rather than
+ *  coming in the order of streamA.
+ **/
+
+public class HashJoinStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
+  private static final int PARTITIONS = 16;
+  // Past this depth the partitions are joined in memory, since they can't be split any further
+  // if all their tuples have the same keys.
+  private static final int MAX_LEVEL = 4;
+
   private PushBackStream streamA;
   private TupleStream streamB;
   private String[] keys;
+  private int maxTuplesInMemory;
+  private int level;
   private HashMap<HashKey, List<Tuple>> hashMap = new HashMap();
 
+  private transient SpillStream[] partitionsA;
+  private transient SpillStream[] partitionsB;
+  private transient int partition;
+  private transient HashJoinStream partitionJoin;
+
   public HashJoinStream(TupleStream streamA, TupleStream streamB, String[] keys) {
+    this(streamA, streamB, keys, Integer.MAX_VALUE);
+  }
+
+  public HashJoinStream(TupleStream streamA, TupleStream streamB, String[] keys, int maxTuplesInMemory) {
+    this(streamA, streamB, keys, maxTuplesInMemory, 0);
+  }
+
+  private HashJoinStream(TupleStream streamA, TupleStream streamB, String[] keys, int maxTuplesInMemory, int level) {
     this.streamA = new PushBackStream(streamA);
     this.streamB = streamB;
     this.keys = keys;
+    this.maxTuplesInMemory = maxTuplesInMemory;
+    this.level = level;
+  }
+
+  public HashJoinStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         factory.constructStream(expression.getExpression(1)),
+         expression.getString(2).split(","),
+         expression.getInt("maxTuplesInMemory", Integer.MAX_VALUE));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StringBuilder buf = new StringBuilder();
+    for(String key : keys) {
+      if(buf.length() > 0) {
+        buf.append(',');
+      }
+      buf.append(key);
+    }
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(streamA))
+        .withParameter(factory.toExpression(streamB))
+        .withParameter(buf.toString());
+    if(maxTuplesInMemory != Integer.MAX_VALUE) {
+      expression.withParameter("maxTuplesInMemory", maxTuplesInMemory);
+    }
+    return expression;
   }
 
   public void setStreamContext(StreamContext context) {
@@ -57,6 +114,7 @@ public class HashJoinStream extends TupleStream {
 
   public void open() throws IOException {
     streamB.open();
+    int count = 0;
     while(true) {
       Tuple t = streamB.read();
       if(t.EOF) {
@@ -64,7 +122,12 @@ public class HashJoinStream extends TupleStream {
       }
 
       HashKey hashKey = new HashKey(t, keys);
-      if(hashMap.containsKey(hashKey)) {
+      if(partitionsB != null) {
+        partitionsB[partition(hashKey)].write(t);
+      } else if(++count > maxTuplesInMemory && level < MAX_LEVEL) {
+        spill();
+        partitionsB[partition(hashKey)].write(t);
+      } else if(hashMap.containsKey(hashKey)) {
         List<Tuple> tuples = hashMap.get(hashKey);
         tuples.add(t);
       } else {
@@ -76,15 +139,121 @@ public class HashJoinStream extends TupleStream {
 
     streamB.close();
     streamA.open();
+
+    if(partitionsB != null) {
+      partitionsA = new SpillStream[PARTITIONS];
+      while(true) {
+        Tuple t = streamA.read();
+        if(t.EOF) {
+          break;
+        }
+        int p = partition(new HashKey(t, keys));
+        if(partitionsB[p].size() > 0) {
+          if(partitionsA[p] == null) {
+            partitionsA[p] = new SpillStream();
+          }
+          partitionsA[p].write(t);
+        }
+      }
+      partition = -1;
+      nextPartition();
+    }
+  }
+
+  /** Moves the hashed tuples to partitions on disk, where the rest of streamB will go. */
+  private void spill() throws IOException {
+    partitionsB = new SpillStream[PARTITIONS];
+    try {
+      for(int i=0; i<PARTITIONS; i++) {
+        partitionsB[i] = new SpillStream();
+      }
+    } catch (IOException e) {
+      closePartitions();
+      throw e;
+    }
+    for(Map.Entry<HashKey, List<Tuple>> entry : hashMap.entrySet()) {
+      SpillStream p = partitionsB[partition(entry.getKey())];
+      for(Tuple t : entry.getValue()) {
+        p.write(t);
+      }
+    }
+    hashMap.clear();
+  }
+
+  /** Opens the join of the next pair of partitions, returns false if there is none left. */
+  private boolean nextPartition() throws IOException {
+    if(partitionJoin != null) {
+      partitionJoin.close();
+      partitionJoin = null;
+    }
+    while(++partition < PARTITIONS) {
+      if(partitionsA[partition] != null) {
+        partitionJoin = new HashJoinStream(partitionsA[partition], partitionsB[partition], keys, maxTuplesInMemory, level+1);
+        partitionJoin.open();
+        return true;
+      }
+      partitionsB[partition].close();
+    }
+    return false;
+  }
+
+  private int partition(HashKey hashKey) {
+    // Each level hashes the keys differently, to split the partitions of the previous one.
+    int h = hashKey.hashCode() + level * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % PARTITIONS;
+  }
+
+  private void closePartitions() throws IOException {
+    for(SpillStream[] partitions : new SpillStream[][] {partitionsA, partitionsB}) {
+      if(partitions != null) {
+        for(SpillStream p : partitions) {
+          if(p != null) {
+            p.close();
+          }
+        }
+      }
+    }
+    partitionsA = null;
+    partitionsB = null;
   }
 
   public void close() throws IOException {
-    streamA.close();
+    try {
+      if(partitionJoin != null) {
+        partitionJoin.close();
+        partitionJoin = null;
+      }
+      closePartitions();
+    } finally {
+      streamA.close();
+    }
   }
 
   private LinkedList<Tuple> joinTuples = new LinkedList();
 
   public Tuple read() throws IOException {
+    if(partitionsB != null) {
+      while(true) {
+        Tuple tuple = partitionJoin == null ? null : partitionJoin.read();
+        if(tuple != null && !tuple.EOF) {
+          return tuple;
+        }
+        if(!nextPartition()) {
+          if(tuple == null) {
+            Map m = new HashMap();
+            m.put("EOF", true);
+            tuple = new Tuple(m);
+          }
+          return tuple;
+        }
+      }
+    }
+
     while(true) {
       Tuple tuple = streamA.read();
 
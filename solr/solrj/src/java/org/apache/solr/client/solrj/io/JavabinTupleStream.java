@@ -0,0 +1,289 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.InputStreamResponseParser;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.DateUtil;
+import org.apache.solr.common.util.FastInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * Queries a Solr instance with the javabin format, and reads the documents of the response
+ * as Tuples, one at a time as they are decoded.  The documents can either be written as an
+ * iterator of maps under a "docs" key, as by the /export and /stream handlers, or as a
+ * regular document list.
+ * <p>
+ * The values are converted like {@link JSONTupleStream} would parse them: ints and floats
+ * are read as longs and doubles, and dates as strings.
+ */
+public class JavabinTupleStream {
+  private static final int VERSION = 2;
+
+  private final InputStream stream;
+  private final FastInputStream dis;
+  private final TupleCodec codec = new TupleCodec();
+  private boolean atDocs;
+  private boolean finished;
+  // the number of documents left to read, or -1 if they are read until an END tag
+  private int remaining = -1;
+
+  public JavabinTupleStream(InputStream stream) {
+    this.stream = stream;
+    this.dis = FastInputStream.wrap(stream);
+  }
+
+  /**
+   * Sends the request asking for the javabin format, and returns the stream of the
+   * response, buffered so that {@link #isJavabin} can peek at its first byte.
+   */
+  public static InputStream request(SolrClient server, SolrParams requestParams) throws IOException, SolrServerException {
+    String p = requestParams.get("qt");
+    if(p != null) {
+      ModifiableSolrParams modifiableSolrParams = (ModifiableSolrParams) requestParams;
+      modifiableSolrParams.remove("qt");
+    }
+
+    QueryRequest query = new QueryRequest( requestParams );
+    query.setPath(p);
+    query.setResponseParser(new InputStreamResponseParser("javabin"));
+    query.setMethod(SolrRequest.METHOD.POST);
+    NamedList<Object> genericResponse = server.request(query);
+    InputStream stream = (InputStream)genericResponse.get("stream");
+    return new BufferedInputStream(stream);
+  }
+
+  /**
+   * Returns true if the stream starts with the javabin version byte, without consuming it.
+   * A handler may still answer with another format, if it forces wt through its invariants.
+   */
+  public static boolean isJavabin(InputStream stream) throws IOException {
+    stream.mark(1);
+    int version = stream.read();
+    stream.reset();
+    return version == VERSION;
+  }
+
+  /**
+   * Reads the fields of the next document into the given map.
+   *
+   * @return false if there are no more documents, in which case the map is left untouched
+   */
+  public boolean next(Map<Object,Object> fields) throws IOException {
+    byte tag = nextTag();
+    if (tag == JavaBinCodec.END) {
+      return false;
+    }
+    codec.readFields(tag, fields);
+    return true;
+  }
+
+  /**
+   * Reads the fields of the next document as a new row of the batch.  Numbers are set in the
+   * batch as primitives, without boxing them.
+   *
+   * @return false if there are no more documents, in which case the batch is left untouched
+   */
+  public boolean next(TupleBatch batch) throws IOException {
+    byte tag = nextTag();
+    if (tag == JavaBinCodec.END) {
+      return false;
+    }
+    codec.readRow(tag, batch);
+    return true;
+  }
+
+  /** Returns the tag of the next document, or END if there are no more documents. */
+  private byte nextTag() throws IOException {
+    if (!atDocs) {
+      atDocs = true;
+      finished = !codec.advanceToDocs();
+    }
+    if (finished || remaining == 0) {
+      finished = true;
+      return JavaBinCodec.END;
+    }
+    byte tag = dis.readByte();
+    if (tag == JavaBinCodec.END) {
+      finished = true;
+      return tag;
+    }
+    if (remaining > 0) {
+      remaining--;
+    }
+    return tag;
+  }
+
+  public void close() throws IOException {
+    stream.close();
+  }
+
+  private class TupleCodec extends JavaBinCodec {
+    private Calendar cal;
+
+    boolean advanceToDocs() throws IOException {
+      byte version = dis.readByte();
+      if (version != VERSION) {
+        throw new IOException("Invalid version (expected " + VERSION + ", but " + version + ") or the data in not in 'javabin' format");
+      }
+      return findDocs(null);
+    }
+
+    /**
+     * Reads the next value, looking for the documents in it.
+     *
+     * @return true if the documents were found, in which case the stream is positioned
+     * at the first of them
+     */
+    private boolean findDocs(Object key) throws IOException {
+      tagByte = dis.readByte();
+      switch (tagByte >>> 5) {
+        case ORDERED_MAP >>> 5:
+        case NAMED_LST >>> 5: {
+          int sz = readSize(dis);
+          for (int i = 0; i < sz; i++) {
+            if (findDocs(readVal(dis))) {
+              return true;
+            }
+          }
+          return false;
+        }
+        case ARR >>> 5:
+          if ("docs".equals(key)) {
+            remaining = readSize(dis);
+            return true;
+          }
+          readObject(dis);
+          return false;
+      }
+      switch (tagByte) {
+        case MAP: {
+          int sz = readVInt(dis);
+          for (int i = 0; i < sz; i++) {
+            if (findDocs(readVal(dis))) {
+              return true;
+            }
+          }
+          return false;
+        }
+        case ITERATOR:
+          if ("docs".equals(key)) {
+            remaining = -1;
+            return true;
+          }
+          readObject(dis);
+          return false;
+        case SOLRDOCLST:
+          readVal(dis); // numFound, start, maxScore
+          tagByte = dis.readByte();
+          if ((tagByte >>> 5) != (ARR >>> 5)) {
+            throw new IOException("doclist must have an array");
+          }
+          remaining = readSize(dis);
+          return true;
+        default:
+          readObject(dis);
+          return false;
+      }
+    }
+
+    private int readDocSize(byte tag) throws IOException {
+      if (tag == MAP) {
+        return readVInt(dis);
+      } else if (tag == SOLRDOC) {
+        tagByte = dis.readByte();
+        return readSize(dis);
+      } else {
+        throw new IOException("Expected a document, but got tag " + tag);
+      }
+    }
+
+    void readRow(byte tag, TupleBatch batch) throws IOException {
+      int sz = readDocSize(tag);
+      batch.addRow();
+      for (int i = 0; i < sz; i++) {
+        Object name = readVal(dis);
+        if (name instanceof SolrDocument) {
+          continue; // child documents
+        }
+        tagByte = dis.readByte();
+        if ((tagByte >>> 5) == (SINT >>> 5)) {
+          batch.setLong(name, readSmallInt(dis));
+        } else if ((tagByte >>> 5) == (SLONG >>> 5)) {
+          batch.setLong(name, readSmallLong(dis));
+        } else if (tagByte == LONG) {
+          batch.setLong(name, dis.readLong());
+        } else if (tagByte == INT) {
+          batch.setLong(name, dis.readInt());
+        } else if (tagByte == DOUBLE) {
+          batch.setDouble(name, dis.readDouble());
+        } else if (tagByte == FLOAT) {
+          batch.setDouble(name, Double.parseDouble(Float.toString(dis.readFloat())));
+        } else {
+          batch.set(name, convert(readObject(dis)));
+        }
+      }
+    }
+
+    void readFields(byte tag, Map<Object,Object> fields) throws IOException {
+      int sz = readDocSize(tag);
+      for (int i = 0; i < sz; i++) {
+        Object name = readVal(dis);
+        if (name instanceof SolrDocument) {
+          continue; // child documents
+        }
+        fields.put(name, convert(readVal(dis)));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object convert(Object val) throws IOException {
+      if (val instanceof Integer || val instanceof Short || val instanceof Byte) {
+        return ((Number) val).longValue();
+      } else if (val instanceof Float) {
+        // the closest double to the decimal representation, as parsed from JSON
+        return Double.valueOf(val.toString());
+      } else if (val instanceof Date) {
+        StringBuilder sb = new StringBuilder(24);
+        cal = DateUtil.formatDate((Date) val, cal, sb);
+        return sb.toString();
+      } else if (val instanceof List) {
+        List<Object> list = (List<Object>) val;
+        for (int i = 0; i < list.size(); i++) {
+          list.set(i, convert(list.get(i)));
+        }
+      }
+      return val;
+    }
+  }
+}
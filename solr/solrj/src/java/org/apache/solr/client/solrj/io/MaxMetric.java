@@ -17,11 +17,12 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.HashMap;
 
-public class MaxMetric implements Metric, Serializable {
+public class MaxMetric implements Metric, Serializable, Expressible {
 
   public static final String MAX = "max";
   private long longMax = -Long.MAX_VALUE;
@@ -34,6 +35,10 @@ public class MaxMetric implements Metric, Serializable {
     this.isDouble = isDouble;
   }
 
+  public MaxMetric(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0), Boolean.parseBoolean(expression.getString(1)));
+  }
+
   public String getName() {
     return "mix:"+column;
   }
@@ -60,6 +65,26 @@ public class MaxMetric implements Metric, Serializable {
     }
   }
 
+  public void update(TupleBatch batch, int from, int to) {
+    if(isDouble) {
+      double[] doubles = batch.getDoubles(column);
+      for(int i=from; i<to; i++) {
+        double d = doubles != null ? doubles[i] : (double)batch.get(column, i);
+        if(d > doubleMax) {
+          doubleMax = d;
+        }
+      }
+    } else {
+      long[] longs = batch.getLongs(column);
+      for(int i=from; i<to; i++) {
+        long l = longs != null ? longs[i] : (long)batch.get(column, i);
+        if(l > longMax) {
+          longMax = l;
+        }
+      }
+    }
+  }
+
   public Metric newInstance() {
     return new MaxMetric(column, isDouble);
   }
@@ -89,4 +114,8 @@ public class MaxMetric implements Metric, Serializable {
       }
     }
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(column).withParameter(isDouble);
+  }
+}
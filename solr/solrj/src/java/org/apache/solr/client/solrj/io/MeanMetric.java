@@ -17,11 +17,12 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.HashMap;
 
-public class MeanMetric implements Metric, Serializable {
+public class MeanMetric implements Metric, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -40,6 +41,10 @@ public class MeanMetric implements Metric, Serializable {
     this.isDouble = isDouble;
   }
 
+  public MeanMetric(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0), Boolean.parseBoolean(expression.getString(1)));
+  }
+
   public String getName() {
     return "mean:"+column;
   }
@@ -55,6 +60,34 @@ public class MeanMetric implements Metric, Serializable {
     }
   }
 
+  public void update(TupleBatch batch, int from, int to) {
+    count += to - from;
+    if(isDouble) {
+      double[] doubles = batch.getDoubles(column);
+      if(doubles != null) {
+        for(int i=from; i<to; i++) {
+          doubleSum += doubles[i];
+        }
+        return;
+      }
+    } else {
+      long[] longs = batch.getLongs(column);
+      if(longs != null) {
+        for(int i=from; i<to; i++) {
+          longSum += longs[i];
+        }
+        return;
+      }
+    }
+    for(int i=from; i<to; i++) {
+      if(isDouble) {
+        doubleSum += ((Double)batch.get(column, i)).doubleValue();
+      } else {
+        longSum += ((Long)batch.get(column, i)).longValue();
+      }
+    }
+  }
+
   public Metric newInstance() {
     return new MeanMetric(column, isDouble);
   }
@@ -101,4 +134,8 @@ public class MeanMetric implements Metric, Serializable {
       longSum+=(long)dsum;
     }
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(column).withParameter(isDouble);
+  }
+}
@@ -31,7 +31,7 @@ import java.util.Comparator;
  *
  **/
 
-public class MergeJoinStream extends TupleStream {
+public class MergeJoinStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -45,6 +45,19 @@ public class MergeJoinStream extends TupleStream {
     this.comp = comp;
   }
 
+  public MergeJoinStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         factory.constructStream(expression.getExpression(1)),
+         factory.constructComparator(expression.getExpression(2)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(streamA))
+        .withParameter(factory.toExpression(streamB))
+        .withParameter(factory.toExpression(comp));
+  }
+
   public void setStreamContext(StreamContext context) {
     this.streamA.setStreamContext(context);
     this.streamB.setStreamContext(context);
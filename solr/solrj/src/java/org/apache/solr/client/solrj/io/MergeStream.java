@@ -28,7 +28,7 @@ import java.util.ArrayList;
 **/
 
 
-public class MergeStream extends TupleStream {
+public class MergeStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -42,6 +42,19 @@ public class MergeStream extends TupleStream {
     this.comp = comp;
   }
 
+  public MergeStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         factory.constructStream(expression.getExpression(1)),
+         factory.constructComparator(expression.getExpression(2)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(streamA))
+        .withParameter(factory.toExpression(streamB))
+        .withParameter(factory.toExpression(comp));
+  }
+
   public void setStreamContext(StreamContext context) {
     this.streamA.setStreamContext(context);
     this.streamB.setStreamContext(context);
@@ -24,6 +24,14 @@ public interface Metric extends Serializable {
   public String getName();
   public double getValue();
   public void update(Tuple tuple);
+
+  /** Updates the metric with the rows from (inclusive) to (exclusive) of the batch. */
+  public default void update(TupleBatch batch, int from, int to) {
+    for(int i=from; i<to; i++) {
+      update(batch.getTuple(i));
+    }
+  }
+
   public Metric newInstance();
   public Map<String, Double> metricValues();
   public void update(Map<String, Double> metricValues);
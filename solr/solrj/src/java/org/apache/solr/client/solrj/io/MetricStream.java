@@ -35,7 +35,7 @@ BucketStream bucketStream = new BucketStream(stream,buckets,metrics,"my-metrics"
 bucketStream.get(
 */
 
-public class MetricStream extends TupleStream {
+public class MetricStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -75,6 +75,51 @@ public class MetricStream extends TupleStream {
     this.bucketMap = new HashMap();
   }
 
+  public MetricStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this.tupleStream = factory.constructStream(expression.getExpression(0));
+    this.outKey = expression.getString(1);
+    List<Bucket> bucketList = new ArrayList();
+    List<Metric> metricList = new ArrayList();
+    for(int i=2; i<expression.getParameters().size(); i++) {
+      Object o = factory.construct(expression.getExpression(i));
+      if(o instanceof Bucket) {
+        bucketList.add((Bucket)o);
+      } else if(o instanceof Metric) {
+        metricList.add((Metric)o);
+      } else if(o instanceof Comparator) {
+        this.comp = (Comparator<BucketMetrics>)o;
+        this.rcomp = new ReverseOrdComp(comp);
+      } else {
+        throw new IOException("Expected a bucket, a metric or a comparator as parameter " + i + " of " + expression);
+      }
+    }
+    if(comp != null) {
+      this.buckets = bucketList.toArray(new Bucket[bucketList.size()]);
+      this.topN = expression.getInt("topN", 0);
+    }
+    this.metrics = metricList.toArray(new Metric[metricList.size()]);
+    this.bucketMap = new HashMap();
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(tupleStream))
+        .withParameter(outKey);
+    if(buckets != null) {
+      for(Bucket bucket : buckets) {
+        expression.withParameter(factory.toExpression(bucket));
+      }
+    }
+    for(Metric metric : metrics) {
+      expression.withParameter(factory.toExpression(metric));
+    }
+    if(comp != null) {
+      expression.withParameter(factory.toExpression(comp));
+      expression.withParameter("topN", topN);
+    }
+    return expression;
+  }
+
   public String getOutKey() {
     return this.outKey;
   }
@@ -176,102 +221,151 @@ public class MetricStream extends TupleStream {
 
     Tuple tuple = tupleStream.read();
     if(tuple.EOF) {
-      Iterator<Map.Entry<HashKey,Metric[]>> it = bucketMap.entrySet().iterator();
-
-      if(comp == null) {
-        //Handle No bucket constructor
-        Map.Entry<HashKey, Metric[]> noBucket = it.next();
-        BucketMetrics bms = new BucketMetrics(noBucket.getKey(), noBucket.getValue());
-        this.bucketMetrics = new BucketMetrics[1];
-        this.bucketMetrics[0] = bms;
-        List<Map<String, Double>> outMetrics = new ArrayList();
-        List<String> outKeys = new ArrayList();
-        for(Metric metric : bms.getMetrics()) {
-          Map<String, Double> outMetricValues = metric.metricValues();
-          String outKey = metric.getName();
-          outMetrics.add(outMetricValues);
-          outKeys.add(outKey);
-        }
-        Map outMap = new HashMap();
-        outMap.put("buckets",outKeys);
-        outMap.put("metrics",outMetrics);
-        tuple.set(this.outKey, outMap);
-        return tuple;
-      }
-
-      PriorityQueue<BucketMetrics> priorityQueue = new PriorityQueue(topN, rcomp);
+      finish(tuple);
+      return tuple;
+    }
 
-      while(it.hasNext()) {
-        Map.Entry<HashKey, Metric[]> entry = it.next();
-        BucketMetrics bms = new BucketMetrics(entry.getKey(), entry.getValue());
-        if(priorityQueue.size() < topN) {
-          priorityQueue.add(bms);
-        } else {
-          BucketMetrics peek = priorityQueue.peek();
+    HashKey hashKey = null;
+    if(buckets != null) {
+      String[] bucketValues = new String[buckets.length];
+      for(int i=0; i<buckets.length; i++) {
+        bucketValues[i] = buckets[i].getBucketValue(tuple);
+      }
+      hashKey = new HashKey(bucketValues);
+    } else {
+      hashKey = metricsKey;
+    }
 
-          if(comp.compare(bms, peek) < 0) {
-            priorityQueue.poll();
-            priorityQueue.add(bms);
-          }
+    for(Metric bucketMetric : getMetrics(hashKey)) {
+      bucketMetric.update(tuple);
+    }
+    return tuple;
+  }
 
+  /**
+   * Reads a batch of the underlying stream, and updates the metrics over its columns.  Without
+   * buckets the metrics are updated over the whole batch at once, otherwise over each run of
+   * rows in the same bucket.
+   */
+  public TupleBatch readBatch(int size) throws IOException {
+    TupleBatch batch = tupleStream.readBatch(size);
+    if(buckets == null) {
+      for(Metric metric : getMetrics(metricsKey)) {
+        metric.update(batch, 0, batch.size());
+      }
+    } else {
+      int pos = 0;
+      while(pos < batch.size()) {
+        String[] bucketValues = new String[buckets.length];
+        for(int i=0; i<buckets.length; i++) {
+          bucketValues[i] = buckets[i].getBucketValue(batch, pos);
+        }
+        int end = pos + 1;
+        while(end < batch.size() && inBucket(batch, end, bucketValues)) {
+          ++end;
         }
+        for(Metric metric : getMetrics(new HashKey(bucketValues))) {
+          metric.update(batch, pos, end);
+        }
+        pos = end;
       }
+    }
 
-      int s = priorityQueue.size();
-      this.bucketMetrics = new BucketMetrics[s];
+    if(batch.getEOF() != null) {
+      finish(batch.getEOF());
+    }
+    return batch;
+  }
 
-      for(int i=bucketMetrics.length-1; i>=0; i--) {
-        BucketMetrics b = priorityQueue.poll();
-        this.bucketMetrics[i]= b;
+  private boolean inBucket(TupleBatch batch, int row, String[] bucketValues) {
+    for(int i=0; i<buckets.length; i++) {
+      if(!bucketValues[i].equals(buckets[i].getBucketValue(batch, row))) {
+        return false;
       }
+    }
+    return true;
+  }
 
-      List<List<Map<String, Double>>> outMetrics = new ArrayList();
-      List<String> outBuckets = new ArrayList();
-
-      for(BucketMetrics bms : this.bucketMetrics) {
-        List outBucketMetrics = new ArrayList();
-        for(Metric metric : bms.getMetrics()) {
-          Map<String, Double> outMetricValues = metric.metricValues();
-          outBucketMetrics.add(outMetricValues);
-        }
-        outBuckets.add(bms.getKey().toString());
-        outMetrics.add(outBucketMetrics);
+  private Metric[] getMetrics(HashKey hashKey) {
+    Metric[] bucketMetrics = bucketMap.get(hashKey);
+    if(bucketMetrics == null) {
+      bucketMetrics = new Metric[metrics.length];
+      for(int i=0; i<metrics.length; i++) {
+        bucketMetrics[i] = metrics[i].newInstance();
       }
+      bucketMap.put(hashKey, bucketMetrics);
+    }
+    return bucketMetrics;
+  }
 
+  /** Sets the metrics of the buckets in the EOF tuple. */
+  private void finish(Tuple tuple) {
+    Iterator<Map.Entry<HashKey,Metric[]>> it = bucketMap.entrySet().iterator();
+
+    if(comp == null) {
+      //Handle No bucket constructor
+      Map.Entry<HashKey, Metric[]> noBucket = it.next();
+      BucketMetrics bms = new BucketMetrics(noBucket.getKey(), noBucket.getValue());
+      this.bucketMetrics = new BucketMetrics[1];
+      this.bucketMetrics[0] = bms;
+      List<Map<String, Double>> outMetrics = new ArrayList();
+      List<String> outKeys = new ArrayList();
+      for(Metric metric : bms.getMetrics()) {
+        Map<String, Double> outMetricValues = metric.metricValues();
+        String outKey = metric.getName();
+        outMetrics.add(outMetricValues);
+        outKeys.add(outKey);
+      }
       Map outMap = new HashMap();
-      outMap.put("buckets",outBuckets);
+      outMap.put("buckets",outKeys);
       outMap.put("metrics",outMetrics);
       tuple.set(this.outKey, outMap);
-      return tuple;
+      return;
     }
 
-    HashKey hashKey = null;
-    if(buckets != null) {
-      String[] bucketValues = new String[buckets.length];
-      for(int i=0; i<buckets.length; i++) {
-        bucketValues[i] = buckets[i].getBucketValue(tuple);
+    PriorityQueue<BucketMetrics> priorityQueue = new PriorityQueue(topN, rcomp);
+
+    while(it.hasNext()) {
+      Map.Entry<HashKey, Metric[]> entry = it.next();
+      BucketMetrics bms = new BucketMetrics(entry.getKey(), entry.getValue());
+      if(priorityQueue.size() < topN) {
+        priorityQueue.add(bms);
+      } else {
+        BucketMetrics peek = priorityQueue.peek();
+
+        if(comp.compare(bms, peek) < 0) {
+          priorityQueue.poll();
+          priorityQueue.add(bms);
+        }
+
       }
-      hashKey = new HashKey(bucketValues);
-    } else {
-      hashKey = metricsKey;
     }
 
-    Metric[] bucketMetrics = bucketMap.get(hashKey);
-    if(bucketMetrics != null) {
-      for(Metric bucketMetric : bucketMetrics) {
-        bucketMetric.update(tuple);
-      }
-    } else {
-      bucketMetrics = new Metric[metrics.length];
+    int s = priorityQueue.size();
+    this.bucketMetrics = new BucketMetrics[s];
 
-      for(int i=0; i<metrics.length; i++) {
-        Metric bucketMetric = metrics[i].newInstance();
-        bucketMetric.update(tuple);
-        bucketMetrics[i]  = bucketMetric;
+    for(int i=bucketMetrics.length-1; i>=0; i--) {
+      BucketMetrics b = priorityQueue.poll();
+      this.bucketMetrics[i]= b;
+    }
+
+    List<List<Map<String, Double>>> outMetrics = new ArrayList();
+    List<String> outBuckets = new ArrayList();
+
+    for(BucketMetrics bms : this.bucketMetrics) {
+      List outBucketMetrics = new ArrayList();
+      for(Metric metric : bms.getMetrics()) {
+        Map<String, Double> outMetricValues = metric.metricValues();
+        outBucketMetrics.add(outMetricValues);
       }
-      bucketMap.put(hashKey, bucketMetrics);
+      outBuckets.add(bms.getKey().toString());
+      outMetrics.add(outBucketMetrics);
     }
-    return tuple;
+
+    Map outMap = new HashMap();
+    outMap.put("buckets",outBuckets);
+    outMap.put("metrics",outMetrics);
+    tuple.set(this.outKey, outMap);
   }
 
   public int getCost() {
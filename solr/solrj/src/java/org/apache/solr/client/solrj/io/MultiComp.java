@@ -17,10 +17,11 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Comparator;
 
-public class MultiComp implements Comparator<Tuple>, Serializable {
+public class MultiComp implements Comparator<Tuple>, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -30,6 +31,13 @@ public class MultiComp implements Comparator<Tuple>, Serializable {
     this.comps = comps;
   }
 
+  public MultiComp(StreamExpression expression, StreamFactory factory) throws IOException {
+    this.comps = new Comparator[expression.getParameters().size()];
+    for(int i=0; i<comps.length; i++) {
+      comps[i] = factory.constructComparator(expression.getExpression(i));
+    }
+  }
+
   public int compare(Tuple t1, Tuple t2) {
     for(Comparator<Tuple> comp : comps) {
       int i = comp.compare(t1, t2);
@@ -40,4 +48,12 @@ public class MultiComp implements Comparator<Tuple>, Serializable {
 
     return 0;
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()));
+    for(Comparator<Tuple> comp : comps) {
+      expression.withParameter(factory.toExpression(comp));
+    }
+    return expression;
+  }
+}
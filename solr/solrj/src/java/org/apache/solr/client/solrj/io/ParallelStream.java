@@ -29,7 +29,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.io.ByteArrayOutputStream;
 import java.util.Random;
-import java.util.TreeSet;
 import java.util.Iterator;
 
 import org.apache.solr.common.cloud.ClusterState;
@@ -46,10 +45,17 @@ import org.apache.solr.common.util.Base64;
  **/
 
 
+/**
+ *  Sends a TupleStream to workers which each run it over their partition of the tuples, and
+ *  merges the streams of tuples they return.  The stream is sent as a {@link StreamExpression},
+ *  or, if some part of it is not {@link Expressible}, as a Base64 encoded Java serialized object.
+ **/
+
 public class ParallelStream extends CloudSolrStream {
 
   private TupleStream tupleStream;
   private int workers;
+  private String expression;
   private String encoded;
 
 
@@ -63,13 +69,33 @@ public class ParallelStream extends CloudSolrStream {
     this.workers = workers;
     this.comp = comp;
     this.tupleStream = tupleStream;
-    ByteArrayOutputStream bout = new ByteArrayOutputStream();
-    ObjectOutputStream out = new ObjectOutputStream(bout);
-    out.writeObject(tupleStream);
-    byte[] bytes = bout.toByteArray();
-    this.encoded = Base64.byteArrayToBase64(bytes, 0, bytes.length);
-    this.encoded = URLEncoder.encode(this.encoded, "UTF-8");
-    this.tuples = new TreeSet();
+    try {
+      this.expression = new StreamFactory().toExpression(tupleStream).toString();
+    } catch (IOException e) {
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bout);
+      out.writeObject(tupleStream);
+      byte[] bytes = bout.toByteArray();
+      this.encoded = Base64.byteArrayToBase64(bytes, 0, bytes.length);
+      this.encoded = URLEncoder.encode(this.encoded, "UTF-8");
+    }
+  }
+
+  public ParallelStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0),
+         expression.getString(1),
+         factory.constructStream(expression.getExpression(2)),
+         expression.getInt(3),
+         factory.constructComparator(expression.getExpression(4)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(zkHost)
+        .withParameter(collection)
+        .withParameter(factory.toExpression(tupleStream))
+        .withParameter(workers)
+        .withParameter(factory.toExpression(comp));
   }
 
   public List<TupleStream> children() {
@@ -148,7 +174,11 @@ public class ParallelStream extends CloudSolrStream {
         params.put("distrib","false"); // We are the aggregator.
         params.put("numWorkers", workers);
         params.put("workerID", w);
-        params.put("stream", this.encoded);
+        if(this.expression != null) {
+          params.put("expr", this.expression);
+        } else {
+          params.put("stream", this.encoded);
+        }
         params.put("qt","/stream");
         Replica rep = shuffler.get(w);
         ZkCoreNodeProps zkProps = new ZkCoreNodeProps(rep);
@@ -22,7 +22,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 
-public class PushBackStream extends TupleStream {
+public class PushBackStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -39,6 +39,11 @@ public class PushBackStream extends TupleStream {
 
   }
 
+  /** A PushBackStream is only used internally, so it is described by the stream it wraps. */
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return factory.toExpression(stream);
+  }
+
   public void setStreamContext(StreamContext context) {
     this.stream.setStreamContext(context);
   }
@@ -71,6 +76,14 @@ public class PushBackStream extends TupleStream {
     }
   }
 
+  public TupleBatch readBatch(int size) throws IOException {
+    if(tuple != null) {
+      return super.readBatch(size);
+    } else {
+      return stream.readBatch(size);
+    }
+  }
+
   public int getCost() {
     return 0;
   }
@@ -30,7 +30,7 @@ import java.util.Comparator;
 *  Iterates over a TupleStream and Ranks the topN tuples based on a Comparator.
 **/
 
-public class RankStream extends TupleStream {
+public class RankStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -49,6 +49,19 @@ public class RankStream extends TupleStream {
     this.size = size;
   }
 
+  public RankStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)),
+         expression.getInt(1),
+         factory.constructComparator(expression.getExpression(2)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(tupleStream))
+        .withParameter(size)
+        .withParameter(factory.toExpression(comp));
+  }
+
   public void setStreamContext(StreamContext context) {
     this.tupleStream.setStreamContext(context);
   }
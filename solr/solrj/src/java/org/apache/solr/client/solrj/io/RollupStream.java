@@ -24,16 +24,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
 
-public class RollupStream extends TupleStream {
+public class RollupStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
+  // the number of tuples read at once, for the metrics to be updated over the columns of the batches
+  private static final int BATCH_SIZE = 1024;
+
   private PushBackStream tupleStream;
   private Bucket[] buckets;
   private Metric[] metrics;
   private HashKey currentKey = new HashKey("-");
   private Metric[] currentMetrics;
   private boolean finished = false;
+  private transient TupleBatch batch;
+  private transient int pos;
+  // the names of the values of each metric, if the rollup was pushed down to the shards
+  private transient String[][] metricValueNames;
 
   public RollupStream(TupleStream tupleStream,
                       Bucket[] buckets,
@@ -43,6 +50,36 @@ public class RollupStream extends TupleStream {
     this.metrics = metrics;
   }
 
+  public RollupStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this.tupleStream = new PushBackStream(factory.constructStream(expression.getExpression(0)));
+    List<Bucket> bucketList = new ArrayList();
+    List<Metric> metricList = new ArrayList();
+    for(int i=1; i<expression.getParameters().size(); i++) {
+      Object o = factory.construct(expression.getExpression(i));
+      if(o instanceof Bucket) {
+        bucketList.add((Bucket)o);
+      } else if(o instanceof Metric) {
+        metricList.add((Metric)o);
+      } else {
+        throw new IOException("Expected a bucket or a metric as parameter " + i + " of " + expression);
+      }
+    }
+    this.buckets = bucketList.toArray(new Bucket[bucketList.size()]);
+    this.metrics = metricList.toArray(new Metric[metricList.size()]);
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(tupleStream));
+    for(Bucket bucket : buckets) {
+      expression.withParameter(factory.toExpression(bucket));
+    }
+    for(Metric metric : metrics) {
+      expression.withParameter(factory.toExpression(metric));
+    }
+    return expression;
+  }
+
   public void setStreamContext(StreamContext context) {
     this.tupleStream.setStreamContext(context);
   }
@@ -54,6 +91,17 @@ public class RollupStream extends TupleStream {
   }
 
   public void open() throws IOException {
+    TupleStream stream = tupleStream.children().get(0);
+    if(stream instanceof CloudSolrStream && ((CloudSolrStream)stream).pushDownRollup(buckets, metrics)) {
+      metricValueNames = new String[metrics.length][];
+      for(int i=0; i<metrics.length; i++) {
+        List<String> names = new ArrayList();
+        for(String key : metrics[i].newInstance().metricValues().keySet()) {
+          names.add(CloudSolrStream.getRollupMetricName(metrics[i]) + "." + key);
+        }
+        metricValueNames[i] = names.toArray(new String[names.size()]);
+      }
+    }
     tupleStream.open();
   }
 
@@ -62,29 +110,73 @@ public class RollupStream extends TupleStream {
   }
 
   public Tuple read() throws IOException {
+    if(metricValueNames != null) {
+      return readRollups();
+    }
 
     while(true) {
-      Tuple tuple = tupleStream.read();
-      if(tuple.EOF) {
-        if(!finished) {
-          Map map = new HashMap();
-          if(currentMetrics != null) {
-            List<Double> metricValues = new ArrayList();
-            List<String> metricNames = new ArrayList();
-            for (Metric metric : currentMetrics) {
-              metricNames.add(metric.getName());
-              metricValues.add(metric.getValue());
-            }
-            map.put("buckets", currentKey.toString());
-            map.put("metricNames", metricNames);
-            map.put("metricValues", metricValues);
-            Tuple t = new Tuple(map);
-            tupleStream.pushBack(tuple);
+      if(batch == null || pos == batch.size()) {
+        if(batch != null && batch.getEOF() != null) {
+          if(!finished && currentMetrics != null) {
             finished = true;
-            return t;
+            return rollupTuple();
           } else {
-            return tuple;
+            return batch.getEOF();
           }
+        }
+        batch = tupleStream.readBatch(BATCH_SIZE);
+        pos = 0;
+        continue;
+      }
+
+      String[] bucketValues = new String[buckets.length];
+      for(int i=0; i<buckets.length; i++) {
+        bucketValues[i] = buckets[i].getBucketValue(batch, pos);
+      }
+
+      // the rows of the bucket in this batch, for the metrics to be updated over all of them at once
+      int end = pos + 1;
+      while(end < batch.size() && inBucket(end, bucketValues)) {
+        ++end;
+      }
+
+      HashKey hashKey = new HashKey(bucketValues);
+      Tuple t = null;
+      if(!hashKey.equals(currentKey)) {
+        if(currentMetrics != null) {
+          t = rollupTuple();
+        }
+
+        currentMetrics = new Metric[metrics.length];
+        currentKey = hashKey;
+        for(int i=0; i<metrics.length; i++) {
+          currentMetrics[i] = metrics[i].newInstance();
+        }
+      }
+
+      for(Metric bucketMetric : currentMetrics) {
+        bucketMetric.update(batch, pos, end);
+      }
+      pos = end;
+
+      if(t != null) {
+        return t;
+      }
+    }
+  }
+
+  /**
+   * Reads the tuples of the buckets rolled up by the shards, merging the metrics of the tuples
+   * of the same bucket.
+   */
+  private Tuple readRollups() throws IOException {
+    while(true) {
+      Tuple tuple = tupleStream.read();
+      if(tuple.EOF) {
+        if(!finished && currentMetrics != null) {
+          tupleStream.pushBack(tuple);
+          finished = true;
+          return rollupTuple();
         } else {
           return tuple;
         }
@@ -96,40 +188,63 @@ public class RollupStream extends TupleStream {
       }
 
       HashKey hashKey = new HashKey(bucketValues);
-
-      if(hashKey.equals(currentKey)) {
-        for(Metric bucketMetric : currentMetrics) {
-          bucketMetric.update(tuple);
-        }
-      } else {
-        Tuple t = null;
+      Tuple t = null;
+      if(!hashKey.equals(currentKey)) {
         if(currentMetrics != null) {
-          Map map = new HashMap();
-          List<Double> metricValues = new ArrayList();
-          List<String> metricNames = new ArrayList();
-          for(Metric metric : currentMetrics) {
-            metricNames.add(metric.getName());
-            metricValues.add(metric.getValue());
-          }
-          map.put("buckets", currentKey.toString());
-          map.put("metricNames", metricNames);
-          map.put("metricValues", metricValues);
-          t = new Tuple(map);
+          t = rollupTuple();
         }
 
         currentMetrics = new Metric[metrics.length];
         currentKey = hashKey;
         for(int i=0; i<metrics.length; i++) {
-          Metric bucketMetric = metrics[i].newInstance();
-          bucketMetric.update(tuple);
-          currentMetrics[i]  = bucketMetric;
+          currentMetrics[i] = metrics[i].newInstance();
         }
+      }
 
-        if(t != null) {
-          return t;
+      for(int i=0; i<currentMetrics.length; i++) {
+        Map<String, Double> metricValues = new HashMap();
+        boolean hasValues = true;
+        for(String name : metricValueNames[i]) {
+          Object value = tuple.get(name);
+          if(value != null) {
+            metricValues.put(name.substring(name.lastIndexOf('.') + 1), ((Number)value).doubleValue());
+          } else if(tuple.fields.containsKey(name)) {
+            // the min and max of a shard bucket without values are null
+            hasValues = false;
+          }
+        }
+        if(hasValues) {
+          currentMetrics[i].update(metricValues);
         }
       }
+
+      if(t != null) {
+        return t;
+      }
+    }
+  }
+
+  private boolean inBucket(int row, String[] bucketValues) {
+    for(int i=0; i<buckets.length; i++) {
+      if(!bucketValues[i].equals(buckets[i].getBucketValue(batch, row))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Tuple rollupTuple() {
+    Map map = new HashMap();
+    List<Double> metricValues = new ArrayList();
+    List<String> metricNames = new ArrayList();
+    for(Metric metric : currentMetrics) {
+      metricNames.add(metric.getName());
+      metricValues.add(metric.getValue());
     }
+    map.put("buckets", currentKey.toString());
+    map.put("metricNames", metricNames);
+    map.put("metricValues", metricValues);
+    return new Tuple(map);
   }
 
   public int getCost() {
@@ -18,7 +18,11 @@
 package org.apache.solr.client.solrj.io;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
@@ -30,9 +34,11 @@ import org.apache.solr.common.params.SolrParams;
 
 /**
 *  Queries a Solr instance, and maps SolrDocs to a Stream of Tuples.
+*  The documents are read with the javabin format, unless the json one is
+*  explicitly requested with wt=json, or forced by the handler.
 **/
 
-public class SolrStream extends TupleStream {
+public class SolrStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -42,6 +48,7 @@ public class SolrStream extends TupleStream {
   private int workerID;
   private Map<String, String> fieldMappings;
   private transient JSONTupleStream jsonTupleStream;
+  private transient JavabinTupleStream javabinTupleStream;
   private transient HttpSolrClient client;
   private transient SolrClientCache cache;
 
@@ -50,6 +57,24 @@ public class SolrStream extends TupleStream {
     this.params = params;
   }
 
+  public SolrStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0), StreamFactory.toMap(expression.getExpression(1)));
+    StreamExpression mappings = expression.getExpression("fieldMappings");
+    if(mappings != null) {
+      this.fieldMappings = StreamFactory.toMap(mappings);
+    }
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    StreamExpression expression = new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(baseUrl)
+        .withParameter(StreamFactory.toExpression(params));
+    if(fieldMappings != null) {
+      expression.withParameter("fieldMappings", StreamFactory.toExpression(fieldMappings));
+    }
+    return expression;
+  }
+
   public void setFieldMappings(Map<String, String> fieldMappings) {
     this.fieldMappings = fieldMappings;
   }
@@ -81,7 +106,17 @@ public class SolrStream extends TupleStream {
     }
 
     try {
-      jsonTupleStream = JSONTupleStream.create(client, loadParams(params));
+      SolrParams requestParams = loadParams(params);
+      if ("json".equals(requestParams.get("wt"))) {
+        jsonTupleStream = JSONTupleStream.create(client, requestParams);
+      } else {
+        InputStream stream = JavabinTupleStream.request(client, requestParams);
+        if (JavabinTupleStream.isJavabin(stream)) {
+          javabinTupleStream = new JavabinTupleStream(stream);
+        } else {
+          jsonTupleStream = new JSONTupleStream(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        }
+      }
     } catch (Exception e) {
       throw new IOException(e);
     }
@@ -117,7 +152,11 @@ public class SolrStream extends TupleStream {
   * */
 
   public void close() throws IOException {
-    jsonTupleStream.close();
+    if (jsonTupleStream != null) {
+      jsonTupleStream.close();
+    } else {
+      javabinTupleStream.close();
+    }
     if(cache == null) {
       client.close();
     }
@@ -128,6 +167,9 @@ public class SolrStream extends TupleStream {
   **/
 
   public Tuple read() throws IOException {
+    if (javabinTupleStream != null) {
+      return readJavabin();
+    }
     Map fields = jsonTupleStream.next();
     if(fields == null) {
       //Return the EOF tuple.
@@ -142,6 +184,55 @@ public class SolrStream extends TupleStream {
     }
   }
 
+  /**
+   * Reads the documents of a javabin response straight into the columns of the batch.
+   */
+  public TupleBatch readBatch(int size) throws IOException {
+    if (javabinTupleStream == null) {
+      return super.readBatch(size);
+    }
+    TupleBatch batch = new TupleBatch(size);
+    while (!batch.isFull()) {
+      if (!javabinTupleStream.next(batch)) {
+        Map m = new HashMap();
+        m.put("EOF", true);
+        batch.setEOF(new Tuple(m));
+        break;
+      } else if (batch.get("EOF", batch.size() - 1) != null) {
+        // the EOF tuple of a worker, which may hold fields of its own
+        Tuple tuple = batch.removeLastRow();
+        if (fieldMappings != null) {
+          mapFields(tuple.fields, fieldMappings);
+        }
+        batch.setEOF(tuple);
+        break;
+      }
+    }
+    if (fieldMappings != null) {
+      for (Map.Entry<String,String> entry : fieldMappings.entrySet()) {
+        batch.rename(entry.getKey(), entry.getValue());
+      }
+    }
+    return batch;
+  }
+
+  private Tuple readJavabin() throws IOException {
+    // the fields are read straight into the map of the tuple
+    Tuple tuple = new Tuple(Collections.EMPTY_MAP);
+    if (!javabinTupleStream.next(tuple.fields)) {
+      tuple.EOF = true;
+      tuple.fields.put("EOF", true);
+    } else {
+      if (tuple.fields.containsKey("EOF")) {
+        tuple.EOF = true;
+      }
+      if (fieldMappings != null) {
+        mapFields(tuple.fields, fieldMappings);
+      }
+    }
+    return tuple;
+  }
+
   private Map mapFields(Map fields, Map<String,String> mappings) {
 
     Iterator<Map.Entry<String,String>> it = mappings.entrySet().iterator();
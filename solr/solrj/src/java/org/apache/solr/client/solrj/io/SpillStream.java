@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.util.FastInputStream;
+import org.apache.solr.common.util.FastOutputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+
+/**
+ *  A TupleStream over a temporary file, for the streams that spill tuples to disk once
+ *  they hold too many of them in memory.  The tuples are first written to the file with
+ *  the javabin format, then read back in the same order once the stream is opened.
+ *  The file is deleted when the stream is closed.
+ **/
+
+class SpillStream extends TupleStream {
+
+  private static final long serialVersionUID = 1;
+
+  private transient File file;
+  private transient FastOutputStream out;
+  private transient JavaBinCodec codec;
+  private transient FastInputStream in;
+  private int size;
+  private int remaining;
+
+  public SpillStream() throws IOException {
+    file = File.createTempFile("tuples", ".spill");
+    try {
+      out = new FastOutputStream(new FileOutputStream(file));
+      codec = new JavaBinCodec();
+      codec.initWrite(out);
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  public void write(Tuple tuple) throws IOException {
+    codec.writeMap(tuple.fields);
+    size++;
+  }
+
+  /** The number of tuples written to this stream. */
+  public int size() {
+    return size;
+  }
+
+  /** Flushes the tuples written so far to the file, before the stream is opened. */
+  public void finish() throws IOException {
+    if(out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  public void setStreamContext(StreamContext context) {
+  }
+
+  public List<TupleStream> children() {
+    return new ArrayList();
+  }
+
+  public void open() throws IOException {
+    finish();
+    in = new FastInputStream(new FileInputStream(file));
+    in.readByte(); // javabin version
+    codec = new JavaBinCodec();
+    remaining = size;
+  }
+
+  public void close() throws IOException {
+    try {
+      finish();
+      if(in != null) {
+        in.close();
+        in = null;
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  public Tuple read() throws IOException {
+    if(remaining == 0) {
+      Map m = new HashMap();
+      m.put("EOF", true);
+      return new Tuple(m);
+    }
+    remaining--;
+    return new Tuple((Map)codec.readVal(in));
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  A declarative description of a TupleStream, or of one of its comparators or metrics:
+ *  a function name followed by its parameters in parenthesis, such as
+ *  <pre>unique(search(zkHost, collection1, map(q="*:*", fl="id,a_s", sort="a_s asc")), asc(a_s))</pre>
+ *  Each parameter is either a nested expression or a value, and may be named with name=value.
+ *  Values are quoted unless they only contain letters, digits and the characters '_', '.' and '-'.
+ *  <p>
+ *  Expressions are built from streams by {@link StreamFactory#toExpression}, and turned back
+ *  into streams by {@link StreamFactory#constructStream}.
+ **/
+
+public class StreamExpression {
+
+  private final String functionName;
+  private final List<Object> parameters = new ArrayList();
+  private final Map<String, Object> namedParameters = new LinkedHashMap();
+
+  public StreamExpression(String functionName) {
+    this.functionName = functionName;
+  }
+
+  public String getFunctionName() {
+    return functionName;
+  }
+
+  /** Adds a positional parameter, either a StreamExpression or a value. */
+  public StreamExpression withParameter(Object parameter) {
+    parameters.add(parameter instanceof StreamExpression ? parameter : parameter.toString());
+    return this;
+  }
+
+  /** Adds a named parameter, either a StreamExpression or a value. */
+  public StreamExpression withParameter(String name, Object parameter) {
+    namedParameters.put(name, parameter instanceof StreamExpression ? parameter : parameter.toString());
+    return this;
+  }
+
+  /** The positional parameters, which are either StreamExpressions or Strings. */
+  public List<Object> getParameters() {
+    return Collections.unmodifiableList(parameters);
+  }
+
+  /** The named parameters, which are either StreamExpressions or Strings. */
+  public Map<String, Object> getNamedParameters() {
+    return Collections.unmodifiableMap(namedParameters);
+  }
+
+  public Object getParameter(String name) {
+    return namedParameters.get(name);
+  }
+
+  public String getString(int i) throws IOException {
+    Object parameter = parameters.size() > i ? parameters.get(i) : null;
+    if(!(parameter instanceof String)) {
+      throw new IOException("Expected a value as parameter " + i + " of " + this);
+    }
+    return (String)parameter;
+  }
+
+  public int getInt(int i) throws IOException {
+    String value = getString(i);
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IOException("Expected an integer as parameter " + i + " of " + this);
+    }
+  }
+
+  public String getString(String name, String defaultValue) throws IOException {
+    Object parameter = namedParameters.get(name);
+    if(parameter == null) {
+      return defaultValue;
+    }
+    if(!(parameter instanceof String)) {
+      throw new IOException("Expected a value as parameter " + name + " of " + this);
+    }
+    return (String)parameter;
+  }
+
+  public int getInt(String name, int defaultValue) throws IOException {
+    String value = getString(name, null);
+    try {
+      return value == null ? defaultValue : Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IOException("Expected an integer as parameter " + name + " of " + this);
+    }
+  }
+
+  public StreamExpression getExpression(int i) throws IOException {
+    Object parameter = parameters.size() > i ? parameters.get(i) : null;
+    if(!(parameter instanceof StreamExpression)) {
+      throw new IOException("Expected an expression as parameter " + i + " of " + this);
+    }
+    return (StreamExpression)parameter;
+  }
+
+  /** Returns the named parameter, or null if there is none. */
+  public StreamExpression getExpression(String name) throws IOException {
+    Object parameter = namedParameters.get(name);
+    if(parameter != null && !(parameter instanceof StreamExpression)) {
+      throw new IOException("Expected an expression as parameter " + name + " of " + this);
+    }
+    return (StreamExpression)parameter;
+  }
+
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    write(buf);
+    return buf.toString();
+  }
+
+  private void write(StringBuilder buf) {
+    buf.append(functionName).append('(');
+    boolean first = true;
+    for(Object parameter : parameters) {
+      if(!first) {
+        buf.append(", ");
+      }
+      writeParameter(parameter, buf);
+      first = false;
+    }
+    for(Map.Entry<String, Object> entry : namedParameters.entrySet()) {
+      if(!first) {
+        buf.append(", ");
+      }
+      writeValue(entry.getKey(), buf);
+      buf.append('=');
+      writeParameter(entry.getValue(), buf);
+      first = false;
+    }
+    buf.append(')');
+  }
+
+  private static void writeParameter(Object parameter, StringBuilder buf) {
+    if(parameter instanceof StreamExpression) {
+      ((StreamExpression)parameter).write(buf);
+    } else {
+      writeValue((String)parameter, buf);
+    }
+  }
+
+  private static void writeValue(String value, StringBuilder buf) {
+    if(isBare(value)) {
+      buf.append(value);
+      return;
+    }
+    buf.append('"');
+    for(int i=0; i<value.length(); i++) {
+      char c = value.charAt(i);
+      if(c == '"' || c == '\\') {
+        buf.append('\\');
+      }
+      buf.append(c);
+    }
+    buf.append('"');
+  }
+
+  private static boolean isBare(String value) {
+    if(value.isEmpty()) {
+      return false;
+    }
+    for(int i=0; i<value.length(); i++) {
+      char c = value.charAt(i);
+      if(!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean equals(Object o) {
+    if(!(o instanceof StreamExpression)) {
+      return false;
+    }
+    StreamExpression e = (StreamExpression)o;
+    return functionName.equals(e.functionName) && parameters.equals(e.parameters) && namedParameters.equals(e.namedParameters);
+  }
+
+  public int hashCode() {
+    return functionName.hashCode() * 31 + parameters.hashCode() * 17 + namedParameters.hashCode();
+  }
+
+  /** Parses an expression written by {@link #toString}. */
+  public static StreamExpression parse(String expression) throws IOException {
+    Parser parser = new Parser(expression);
+    StreamExpression e = parser.parseExpression();
+    parser.skipWhitespace();
+    if(parser.pos != expression.length()) {
+      throw parser.error("Unexpected characters after the expression");
+    }
+    return e;
+  }
+
+  private static class Parser {
+    private final String s;
+    private int pos;
+
+    Parser(String s) {
+      this.s = s;
+    }
+
+    StreamExpression parseExpression() throws IOException {
+      skipWhitespace();
+      String name = parseBare();
+      StreamExpression e = new StreamExpression(name);
+      expect('(');
+      skipWhitespace();
+      if(peek() == ')') {
+        pos++;
+        return e;
+      }
+      while(true) {
+        skipWhitespace();
+        int start = pos;
+        Object parameter = parseParameter();
+        skipWhitespace();
+        if(peek() == '=') {
+          if(!(parameter instanceof String)) {
+            pos = start;
+            throw error("Expected a parameter name");
+          }
+          pos++;
+          skipWhitespace();
+          e.withParameter((String)parameter, parseParameter());
+          skipWhitespace();
+        } else {
+          e.withParameter(parameter);
+        }
+        char c = next();
+        if(c == ')') {
+          return e;
+        } else if(c != ',') {
+          pos--;
+          throw error("Expected ',' or ')'");
+        }
+      }
+    }
+
+    Object parseParameter() throws IOException {
+      if(peek() == '"') {
+        return parseQuoted();
+      }
+      int start = pos;
+      String value = parseBare();
+      skipWhitespace();
+      if(peek() == '(') {
+        pos = start;
+        return parseExpression();
+      }
+      return value;
+    }
+
+    String parseBare() throws IOException {
+      int start = pos;
+      while(pos < s.length()) {
+        char c = s.charAt(pos);
+        if(c == '(' || c == ')' || c == ',' || c == '=' || c == '"' || Character.isWhitespace(c)) {
+          break;
+        }
+        pos++;
+      }
+      if(pos == start) {
+        throw error("Expected a name or a value");
+      }
+      return s.substring(start, pos);
+    }
+
+    String parseQuoted() throws IOException {
+      expect('"');
+      StringBuilder buf = new StringBuilder();
+      while(true) {
+        char c = next();
+        if(c == '"') {
+          return buf.toString();
+        } else if(c == '\\') {
+          c = next();
+        }
+        buf.append(c);
+      }
+    }
+
+    void skipWhitespace() {
+      while(pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    char peek() {
+      return pos < s.length() ? s.charAt(pos) : 0;
+    }
+
+    char next() throws IOException {
+      if(pos >= s.length()) {
+        throw error("Unexpected end of expression");
+      }
+      return s.charAt(pos++);
+    }
+
+    void expect(char c) throws IOException {
+      if(next() != c) {
+        pos--;
+        throw error("Expected '" + c + "'");
+      }
+    }
+
+    IOException error(String message) {
+      return new IOException(message + " at position " + pos + " of expression: " + s);
+    }
+  }
+}
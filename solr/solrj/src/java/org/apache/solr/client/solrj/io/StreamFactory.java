@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  Maps the function names of {@link StreamExpression}s to the classes they describe, to build
+ *  TupleStreams from expressions and expressions from TupleStreams.  The streams, comparators,
+ *  metrics and buckets of this package are registered by default, other {@link Expressible}
+ *  classes can be added with {@link #withFunctionName}.
+ **/
+
+public class StreamFactory {
+
+  private final Map<String, Class> functions = new HashMap();
+  private final Map<Class, String> functionNames = new HashMap();
+  private final Map<Class, Constructor> constructors = new ConcurrentHashMap();
+
+  public StreamFactory() {
+    withFunctionName("search", CloudSolrStream.class);
+    withFunctionName("solr", SolrStream.class);
+    withFunctionName("parallel", ParallelStream.class);
+    withFunctionName("merge", MergeStream.class);
+    withFunctionName("mergeJoin", MergeJoinStream.class);
+    withFunctionName("hashJoin", HashJoinStream.class);
+    withFunctionName("filter", FilterStream.class);
+    withFunctionName("unique", UniqueStream.class);
+    withFunctionName("group", GroupByStream.class);
+    withFunctionName("top", RankStream.class);
+    withFunctionName("rollup", RollupStream.class);
+    withFunctionName("metrics", MetricStream.class);
+
+    withFunctionName("asc", AscFieldComp.class);
+    withFunctionName("desc", DescFieldComp.class);
+    withFunctionName("ascMetric", AscMetricComp.class);
+    withFunctionName("descMetric", DescMetricComp.class);
+    withFunctionName("ascBucket", AscBucketComp.class);
+    withFunctionName("descBucket", DescBucketComp.class);
+    withFunctionName("multi", MultiComp.class);
+
+    withFunctionName("bucket", Bucket.class);
+    withFunctionName("count", CountMetric.class);
+    withFunctionName("sum", SumMetric.class);
+    withFunctionName("min", MinMetric.class);
+    withFunctionName("max", MaxMetric.class);
+    withFunctionName("mean", MeanMetric.class);
+  }
+
+  /**
+   * Registers an {@link Expressible} class, which must have a public constructor taking a
+   * StreamExpression and a StreamFactory.
+   */
+  public StreamFactory withFunctionName(String functionName, Class<? extends Expressible> clazz) {
+    functions.put(functionName, clazz);
+    functionNames.put(clazz, functionName);
+    return this;
+  }
+
+  public String getFunctionName(Class clazz) throws IOException {
+    String functionName = functionNames.get(clazz);
+    if(functionName == null) {
+      throw new IOException(clazz.getName() + " is not registered in the StreamFactory");
+    }
+    return functionName;
+  }
+
+  /** Builds the stream, comparator, metric or bucket described by the expression. */
+  public Object construct(StreamExpression expression) throws IOException {
+    Class clazz = functions.get(expression.getFunctionName());
+    if(clazz == null) {
+      throw new IOException("Unknown function " + expression.getFunctionName() + " in expression: " + expression);
+    }
+    Constructor constructor = constructors.get(clazz);
+    if(constructor == null) {
+      try {
+        constructor = clazz.getConstructor(StreamExpression.class, StreamFactory.class);
+      } catch (NoSuchMethodException e) {
+        throw new IOException(clazz.getName() + " has no constructor taking a StreamExpression and a StreamFactory", e);
+      }
+      constructors.put(clazz, constructor);
+    }
+    try {
+      return constructor.newInstance(expression, this);
+    } catch (InvocationTargetException e) {
+      if(e.getCause() instanceof IOException) {
+        throw (IOException)e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new IOException(e);
+    }
+  }
+
+  public TupleStream constructStream(String expression) throws IOException {
+    return constructStream(StreamExpression.parse(expression));
+  }
+
+  public TupleStream constructStream(StreamExpression expression) throws IOException {
+    Object o = construct(expression);
+    if(!(o instanceof TupleStream)) {
+      throw new IOException("Expected a stream: " + expression);
+    }
+    return (TupleStream)o;
+  }
+
+  public Comparator constructComparator(StreamExpression expression) throws IOException {
+    Object o = construct(expression);
+    if(!(o instanceof Comparator)) {
+      throw new IOException("Expected a comparator: " + expression);
+    }
+    return (Comparator)o;
+  }
+
+  /**
+   * Describes a stream, comparator, metric or bucket, throwing an IOException if it, or
+   * any of the objects it is made of, is not {@link Expressible}.
+   */
+  public StreamExpression toExpression(Object o) throws IOException {
+    if(!(o instanceof Expressible)) {
+      throw new IOException(o.getClass().getName() + " can not be described by an expression");
+    }
+    return ((Expressible)o).toExpression(this);
+  }
+
+  /** Describes a map of parameters as map(name=value, ...). */
+  public static StreamExpression toExpression(Map<?, ?> map) {
+    StreamExpression expression = new StreamExpression("map");
+    for(Map.Entry<?, ?> entry : map.entrySet()) {
+      expression.withParameter(entry.getKey().toString(), entry.getValue());
+    }
+    return expression;
+  }
+
+  /** Reads back a map described by {@link #toExpression(Map)}. */
+  public static Map<String, String> toMap(StreamExpression expression) throws IOException {
+    if(!"map".equals(expression.getFunctionName()) || !expression.getParameters().isEmpty()) {
+      throw new IOException("Expected a map: " + expression);
+    }
+    Map<String, String> map = new HashMap();
+    for(Map.Entry<String, Object> entry : expression.getNamedParameters().entrySet()) {
+      if(!(entry.getValue() instanceof String)) {
+        throw new IOException("Expected a value for " + entry.getKey() + " in map: " + expression);
+      }
+      map.put(entry.getKey(), (String)entry.getValue());
+    }
+    return map;
+  }
+}
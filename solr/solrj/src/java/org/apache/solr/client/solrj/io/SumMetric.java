@@ -17,11 +17,12 @@
 
 package org.apache.solr.client.solrj.io;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.HashMap;
 
-public class SumMetric implements Metric, Serializable {
+public class SumMetric implements Metric, Serializable, Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -37,6 +38,10 @@ public class SumMetric implements Metric, Serializable {
     this.isDouble = isDouble;
   }
 
+  public SumMetric(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(expression.getString(0), Boolean.parseBoolean(expression.getString(1)));
+  }
+
   public String getName() {
     return "sum:"+column;
   }
@@ -51,6 +56,33 @@ public class SumMetric implements Metric, Serializable {
     }
   }
 
+  public void update(TupleBatch batch, int from, int to) {
+    if(isDouble) {
+      double[] doubles = batch.getDoubles(column);
+      if(doubles != null) {
+        for(int i=from; i<to; i++) {
+          doubleSum += doubles[i];
+        }
+        return;
+      }
+    } else {
+      long[] longs = batch.getLongs(column);
+      if(longs != null) {
+        for(int i=from; i<to; i++) {
+          longSum += longs[i];
+        }
+        return;
+      }
+    }
+    for(int i=from; i<to; i++) {
+      if(isDouble) {
+        doubleSum += ((Double)batch.get(column, i)).doubleValue();
+      } else {
+        longSum += ((Long)batch.get(column, i)).longValue();
+      }
+    }
+  }
+
   public Metric newInstance() {
     return new SumMetric(column, isDouble);
   }
@@ -85,4 +117,8 @@ public class SumMetric implements Metric, Serializable {
       longSum+=(long)dsum;
     }
   }
-}
\ No newline at end of file
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass())).withParameter(column).withParameter(isDouble);
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.client.solrj.io;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  A block of rows stored by column, as read by {@link TupleStream#readBatch}.  The values of a column
+ *  are held in a long[] or a double[] as long as they are all longs or all doubles and none of them is
+ *  missing, so that the metrics can be computed over them without boxing or map lookups.  The other
+ *  columns hold their values in an Object[], with null for the missing values.
+ *  <p>
+ *  Rows are added with {@link #addRow} followed by the values of the row, or with {@link #add(Tuple)}.
+ **/
+
+public class TupleBatch {
+
+  private final int capacity;
+  private final Map<Object, Column> columns = new LinkedHashMap();
+  private int size;
+  private Tuple eof;
+
+  public TupleBatch(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /** The number of rows in this batch. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * The EOF tuple of the stream, if the stream ended after the rows of this batch, or null.
+   * No batch should be read after it.
+   */
+  public Tuple getEOF() {
+    return eof;
+  }
+
+  public void setEOF(Tuple eof) {
+    this.eof = eof;
+  }
+
+  /** Starts a new row, whose values are then set with the set methods. */
+  public void addRow() {
+    if(size == capacity) {
+      throw new IllegalStateException("The batch is full");
+    }
+    size++;
+  }
+
+  /** Adds a row with the fields of the tuple. */
+  public void add(Tuple tuple) {
+    addRow();
+    for(Object o : tuple.fields.entrySet()) {
+      Map.Entry entry = (Map.Entry)o;
+      set(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /** Sets a value of the last row. */
+  public void set(Object key, Object value) {
+    if(value instanceof Long) {
+      setLong(key, (Long)value);
+    } else if(value instanceof Double) {
+      setDouble(key, (Double)value);
+    } else if(value != null) {
+      Column column = getColumn(key);
+      column.toValues(capacity)[size - 1] = value;
+      column.rows = size;
+    }
+  }
+
+  public void setLong(Object key, long value) {
+    Column column = getColumn(key);
+    int row = size - 1;
+    if(column.values == null && column.doubles == null && column.rows == row) {
+      if(column.longs == null) {
+        column.longs = new long[capacity];
+      }
+      column.longs[row] = value;
+    } else {
+      column.toValues(capacity)[row] = value;
+    }
+    column.rows = size;
+  }
+
+  public void setDouble(Object key, double value) {
+    Column column = getColumn(key);
+    int row = size - 1;
+    if(column.values == null && column.longs == null && column.rows == row) {
+      if(column.doubles == null) {
+        column.doubles = new double[capacity];
+      }
+      column.doubles[row] = value;
+    } else {
+      column.toValues(capacity)[row] = value;
+    }
+    column.rows = size;
+  }
+
+  /** Renames a column, replacing the column of the new name if there is one. */
+  public void rename(Object from, Object to) {
+    Column column = columns.remove(from);
+    if(column != null) {
+      columns.put(to, column);
+    } else {
+      columns.remove(to);
+    }
+  }
+
+  /**
+   * The values of a column, if they are all longs.  The array may be longer than the batch.
+   *
+   * @return the values of the rows, or null if the column is missing or holds other values
+   */
+  public long[] getLongs(Object key) {
+    Column column = columns.get(key);
+    return column != null && column.rows == size ? column.longs : null;
+  }
+
+  /**
+   * The values of a column, if they are all doubles.  The array may be longer than the batch.
+   *
+   * @return the values of the rows, or null if the column is missing or holds other values
+   */
+  public double[] getDoubles(Object key) {
+    Column column = columns.get(key);
+    return column != null && column.rows == size ? column.doubles : null;
+  }
+
+  public Object get(Object key, int row) {
+    Column column = columns.get(key);
+    return column != null ? column.get(row) : null;
+  }
+
+  /** Builds the tuple of a row. */
+  public Tuple getTuple(int row) {
+    Map fields = new HashMap();
+    for(Map.Entry<Object, Column> entry : columns.entrySet()) {
+      Object value = entry.getValue().get(row);
+      if(value != null) {
+        fields.put(entry.getKey(), value);
+      }
+    }
+    return new Tuple(fields);
+  }
+
+  /** Removes the last row, and returns it as a tuple. */
+  public Tuple removeLastRow() {
+    Tuple tuple = getTuple(size - 1);
+    size--;
+    for(Column column : columns.values()) {
+      if(column.rows > size) {
+        column.rows = size;
+        if(column.values != null) {
+          column.values[size] = null;
+        }
+      }
+    }
+    return tuple;
+  }
+
+  private Column getColumn(Object key) {
+    Column column = columns.get(key);
+    if(column == null) {
+      column = new Column();
+      columns.put(key, column);
+    }
+    return column;
+  }
+
+  private static class Column {
+    long[] longs;
+    double[] doubles;
+    Object[] values;
+    // the number of rows up to the last one with a value in this column
+    int rows;
+
+    Object get(int row) {
+      if(values != null) {
+        return values[row];
+      } else if(row >= rows) {
+        return null;
+      } else if(longs != null) {
+        return longs[row];
+      } else {
+        return doubles[row];
+      }
+    }
+
+    /** Boxes the values of the column, once it holds values of mixed types or misses some. */
+    Object[] toValues(int capacity) {
+      if(values == null) {
+        Object[] boxed = new Object[capacity];
+        for(int i=0; i<rows; i++) {
+          boxed[i] = get(i);
+        }
+        values = boxed;
+        longs = null;
+        doubles = null;
+      }
+      return values;
+    }
+  }
+}
@@ -45,6 +45,24 @@ public abstract class TupleStream implements Serializable {
 
   public abstract Tuple read() throws IOException;
 
+  /**
+   * Reads up to size tuples as a {@link TupleBatch}, for the streams that process their tuples by column.
+   * Once the stream is exhausted, the batch holds its EOF tuple.  Streams that can build the columns
+   * without building the tuples first override this method.
+   */
+  public TupleBatch readBatch(int size) throws IOException {
+    TupleBatch batch = new TupleBatch(size);
+    while(!batch.isFull()) {
+      Tuple tuple = read();
+      if(tuple.EOF) {
+        batch.setEOF(tuple);
+        break;
+      }
+      batch.add(tuple);
+    }
+    return batch;
+  }
+
   public int getCost() {
     return 0;
   }
@@ -22,7 +22,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 
-public class UniqueStream extends TupleStream {
+public class UniqueStream extends TupleStream implements Expressible {
 
   private static final long serialVersionUID = 1;
 
@@ -35,6 +35,16 @@ public class UniqueStream extends TupleStream {
     this.comp = comp;
   }
 
+  public UniqueStream(StreamExpression expression, StreamFactory factory) throws IOException {
+    this(factory.constructStream(expression.getExpression(0)), factory.constructComparator(expression.getExpression(1)));
+  }
+
+  public StreamExpression toExpression(StreamFactory factory) throws IOException {
+    return new StreamExpression(factory.getFunctionName(getClass()))
+        .withParameter(factory.toExpression(tupleStream))
+        .withParameter(factory.toExpression(comp));
+  }
+
   public void setStreamContext(StreamContext context) {
     this.tupleStream.setStreamContext(context);
   }
@@ -42,6 +42,19 @@ import org.apache.solr.common.util.NamedList;
  * @since solr 1.4
  */
 public class JavaBinUpdateRequestCodec {
+  private final JavaBinCodec.StringCache stringCache;
+
+  public JavaBinUpdateRequestCodec() {
+    this(null);
+  }
+
+  /**
+   * @param stringCache the cache the field names and values are looked up in when
+   *                    unmarshalling requests, may be null
+   */
+  public JavaBinUpdateRequestCodec(JavaBinCodec.StringCache stringCache) {
+    this.stringCache = stringCache;
+  }
 
   /**
    * Converts an UpdateRequest to a NamedList which can be serialized to the given OutputStream in the javabin format
@@ -102,7 +115,7 @@ public class JavaBinUpdateRequestCodec {
     Map<String,Map<String,Object>> delByIdMap;
     List<String> delByQ;
     final NamedList[] namedList = new NamedList[1];
-    JavaBinCodec codec = new JavaBinCodec() {
+    JavaBinCodec codec = new JavaBinCodec(null, stringCache) {
 
       // NOTE: this only works because this is an anonymous inner class 
       // which will only ever be used on a single stream -- if this class 
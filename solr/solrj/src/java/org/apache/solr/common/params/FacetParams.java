@@ -49,6 +49,7 @@ public interface FacetParams {
   /** Value for FACET_METHOD param to indicate that Solr should enumerate over documents
    * and count up terms by consulting an uninverted representation of the field values
    * (such as the FieldCache used for sorting).
+   * The segments are counted concurrently when a <code>threads</code> local param is given.
    */
   public static final String FACET_METHOD_fc = "fc";
 
@@ -56,6 +57,74 @@ public interface FacetParams {
    */
   public static final String FACET_METHOD_fcs = "fcs";
 
+  /**
+   * Boolean option indicating that all facet fields using {@link #FACET_METHOD_fc}
+   * and sharing the same base set of documents should be counted together,
+   * iterating over the matching documents of each segment only once.
+   */
+  public static final String FACET_SINGLE_PASS = FACET + ".singlePass";
+
+  /**
+   * Numeric option indicating the number of documents to sample when computing
+   * facet.field counts.  When the base set of documents is larger than this, the
+   * counts are computed over a random sample of it and scaled up to estimate the
+   * exact counts.  0 (the default) disables sampling.
+   * <p>
+   * In distributed requests, each shard samples its own documents and the counts of the
+   * refinement requests are estimated from the same sample as the first ones; the sampling
+   * details of the shards are merged in the <code>facet_sampling</code> section.
+   * <p>
+   * Can be overridden on a per field basis.
+   */
+  public static final String FACET_SAMPLE_SIZE = FACET + ".sample.size";
+
+  /**
+   * Numeric option indicating the minimum size of the base set of documents for which
+   * sampling (see {@link #FACET_SAMPLE_SIZE}) is used; smaller sets are counted exactly.
+   * <p>
+   * Can be overridden on a per field basis.
+   */
+  public static final String FACET_SAMPLE_THRESHOLD = FACET + ".sample.threshold";
+
+  /**
+   * Numeric seed of the random sampling (see {@link #FACET_SAMPLE_SIZE}).  The same seed
+   * always selects the same sample of a given set of documents, so paging through the
+   * estimated counts is consistent.
+   */
+  public static final String FACET_SAMPLE_SEED = FACET + ".sample.seed";
+
+  /**
+   * Boolean option for distributed facet.field requests: each shard
+   * returns a count-min sketch of the counts of all its terms along with its top terms,
+   * which bounds the count of the terms it did not return.  The refinement requests are
+   * then only sent to the shards that may have a term, and terms that can't make it into
+   * the top terms are not refined at all.
+   * <p>
+   * Shards only return sketches for fields using {@link #FACET_METHOD_fc}; the others
+   * are merged as usual.
+   * <p>
+   * Since the sketches bound the counts of the terms a shard did not return, the
+   * default {@link #FACET_OVERREQUEST_RATIO} is 1.0 instead of 1.5 with sketches.
+   * <p>
+   * Can be overridden on a per field basis.
+   */
+  public static final String FACET_SKETCH = FACET + ".sketch";
+
+  /**
+   * Numeric option indicating the number of counters per row of the sketches (see
+   * {@link #FACET_SKETCH}).  Wider sketches are more accurate but bigger.
+   * <p>
+   * Can be overridden on a per field basis.
+   */
+  public static final String FACET_SKETCH_WIDTH = FACET + ".sketch.width";
+
+  /**
+   * Numeric option indicating the number of rows of the sketches (see {@link #FACET_SKETCH}).
+   * <p>
+   * Can be overridden on a per field basis.
+   */
+  public static final String FACET_SKETCH_DEPTH = FACET + ".sketch.depth";
+
   /**
    * Any lucene formated queries the user would like to use for
    * Facet Constraint Counts (multi-value)
@@ -57,6 +57,9 @@ public interface UpdateParams
   /** Select the update processor chain to use.  A RequestHandler may or may not respect this parameter */
   public static final String UPDATE_CHAIN = "update.chain";
 
+  /** The number of threads processing the documents of a single update request, each with its own instance of the update processor chain **/
+  public static final String UPDATE_THREADS = "update.threads";
+
   /** Override the content type used for UpdateLoader **/
   public static final String ASSUME_CONTENT_TYPE = "update.contentType";
   
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.solr.common.util;
+
+import org.noggit.CharArr;
+
+/**
+ * A string held as its UTF-8 bytes, as read by {@link JavaBinCodec} when it is asked
+ * not to decode strings.  Equality and hash codes are computed on the bytes, so these
+ * can be compared and used as keys without decoding them; the string is only decoded,
+ * once, when its characters are needed.
+ */
+public final class ByteArrayUtf8CharSequence implements CharSequence {
+  private final byte[] buf;
+  private final int offset;
+  private final int size;
+  private int hash;
+  private String str;
+
+  public ByteArrayUtf8CharSequence(byte[] buf, int offset, int size) {
+    this.buf = buf;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  /** the array holding the UTF-8 bytes */
+  public byte[] getBuf() {
+    return buf;
+  }
+
+  /** the offset of the UTF-8 bytes in {@link #getBuf} */
+  public int getOffset() {
+    return offset;
+  }
+
+  /** the number of UTF-8 bytes */
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int length() {
+    return toString().length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    if (str == null) {
+      CharArr arr = new CharArr(size);
+      ByteUtils.UTF8toUTF16(buf, offset, size, arr);
+      str = arr.toString();
+    }
+    return str;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = hash = Hash.murmurhash3_x86_32(buf, offset, size, 0);
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ByteArrayUtf8CharSequence)) {
+      return false;
+    }
+    ByteArrayUtf8CharSequence other = (ByteArrayUtf8CharSequence) obj;
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (buf[offset + i] != other.buf[other.offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
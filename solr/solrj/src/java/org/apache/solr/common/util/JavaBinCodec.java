@@ -28,6 +28,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.nio.ByteBuffer;
 
 /**
@@ -80,6 +82,7 @@ public class JavaBinCodec {
 
   private static byte VERSION = 2;
   private ObjectResolver resolver;
+  private StringCache stringCache;
   protected FastOutputStream daos;
 
   public JavaBinCodec() {
@@ -89,6 +92,14 @@ public class JavaBinCodec {
     this.resolver = resolver;
   }
 
+  /**
+   * @param stringCache the cache the strings are looked up in when unmarshalling, may be null
+   */
+  public JavaBinCodec(ObjectResolver resolver, StringCache stringCache) {
+    this.resolver = resolver;
+    this.stringCache = stringCache;
+  }
+
   public void marshal(Object nl, OutputStream os) throws IOException {
     init(FastOutputStream.wrap(os));
     try {
@@ -99,6 +110,16 @@ public class JavaBinCodec {
     }
   }
 
+  /**
+   * Starts writing to the given stream, for values that are written one at a time with
+   * the write methods of this codec rather than with {@link #marshal}.  The caller must
+   * flush the stream once done.
+   */
+  public void initWrite(FastOutputStream os) throws IOException {
+    init(os);
+    daos.writeByte(VERSION);
+  }
+
   /** expert: sets a new output stream */
   public void init(FastOutputStream os) {
     daos = os;
@@ -170,7 +191,27 @@ public class JavaBinCodec {
 
   public Object readVal(DataInputInputStream dis) throws IOException {
     tagByte = dis.readByte();
+    return readObject(dis);
+  }
 
+  /**
+   * Reads a value like {@link #readVal}, except that a string is returned as a
+   * {@link ByteArrayUtf8CharSequence} holding its UTF-8 bytes instead of being decoded,
+   * for the values that are only compared or hashed.
+   */
+  public Object readValUtf8(DataInputInputStream dis) throws IOException {
+    tagByte = dis.readByte();
+    if ((tagByte >>> 5) == (STR >>> 5)) {
+      int sz = readSize(dis);
+      byte[] utf8 = new byte[sz];
+      dis.readFully(utf8, 0, sz);
+      return new ByteArrayUtf8CharSequence(utf8, 0, sz);
+    }
+    return readObject(dis);
+  }
+
+  /** reads the value of the tag that was just read */
+  protected Object readObject(DataInputInputStream dis) throws IOException {
     // if ((tagByte & 0xe0) == 0) {
     // if top 3 bits are clear, this is a normal tag
 
@@ -586,19 +627,75 @@ public class JavaBinCodec {
     daos.write(bytes, 0, sz);
   }
 
+  /**
+   * write a string already encoded in UTF-8, without decoding it
+   */
+  public void writeUTF8Str(byte[] utf8, int offset, int len) throws IOException {
+    writeTag(STR, len);
+    daos.write(utf8, offset, len);
+  }
+
   byte[] bytes;
   CharArr arr = new CharArr();
 
   public String readStr(DataInputInputStream dis) throws IOException {
+    return readStr(dis, false);
+  }
+
+  private String readStr(DataInputInputStream dis, boolean name) throws IOException {
     int sz = readSize(dis);
     if (bytes == null || bytes.length < sz) bytes = new byte[sz];
     dis.readFully(bytes, 0, sz);
 
+    if (stringCache != null && (name || sz <= stringCache.maxValueLength)) {
+      return stringCache.get(bytes, sz, arr);
+    }
     arr.reset();
     ByteUtils.UTF8toUTF16(bytes, 0, sz, arr);
     return arr.toString();
   }
 
+  /**
+   * A cache of decoded strings, that can be shared by the codecs unmarshalling similar
+   * messages so that the names and small values that most of them contain are not decoded
+   * into new strings by each of them: the strings that are written once per message as
+   * extern strings (such as field names), and the string values that are not longer than
+   * a given number of bytes.  The cache is cleared when it gets full.
+   */
+  public static class StringCache {
+    private final int maxSize;
+    private final int maxValueLength;
+    private final ConcurrentMap<ByteArrayUtf8CharSequence,String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize the maximum number of strings in the cache
+     * @param maxValueLength the maximum length in UTF-8 bytes of the string values to cache,
+     *                       0 to only cache extern strings
+     */
+    public StringCache(int maxSize, int maxValueLength) {
+      this.maxSize = maxSize;
+      this.maxValueLength = maxValueLength;
+    }
+
+    String get(byte[] utf8, int size, CharArr arr) {
+      String str = cache.get(new ByteArrayUtf8CharSequence(utf8, 0, size));
+      if (str == null) {
+        arr.reset();
+        ByteUtils.UTF8toUTF16(utf8, 0, size, arr);
+        str = arr.toString();
+        if (cache.size() >= maxSize) {
+          cache.clear();
+        }
+        cache.put(new ByteArrayUtf8CharSequence(Arrays.copyOf(utf8, size), 0, size), str);
+      }
+      return str;
+    }
+
+    public int size() {
+      return cache.size();
+    }
+  }
+
   public void writeInt(int val) throws IOException {
     if (val > 0) {
       int b = SINT | (val & 0x0f);
@@ -653,6 +750,11 @@ public class JavaBinCodec {
     daos.writeFloat(val);
   }
 
+  public void writeDouble(double val) throws IOException {
+    daos.writeByte(DOUBLE);
+    daos.writeDouble(val);
+  }
+
   public boolean writePrimitive(Object val) throws IOException {
     if (val == null) {
       daos.writeByte(NULL);
@@ -660,6 +762,10 @@ public class JavaBinCodec {
     } else if (val instanceof String) {
       writeStr((String) val);
       return true;
+    } else if (val instanceof ByteArrayUtf8CharSequence) {
+      ByteArrayUtf8CharSequence utf8 = (ByteArrayUtf8CharSequence) val;
+      writeUTF8Str(utf8.getBuf(), utf8.getOffset(), utf8.size());
+      return true;
     } else if (val instanceof Number) {
 
       if (val instanceof Integer) {
@@ -672,8 +778,7 @@ public class JavaBinCodec {
         writeFloat(((Float) val).floatValue());
         return true;
       } else if (val instanceof Double) {
-        daos.writeByte(DOUBLE);
-        daos.writeDouble(((Double) val).doubleValue());
+        writeDouble(((Double) val).doubleValue());
         return true;
       } else if (val instanceof Byte) {
         daos.writeByte(BYTE);
@@ -804,7 +909,8 @@ public class JavaBinCodec {
     if (idx != 0) {// idx != 0 is the index of the extern string
       return stringsList.get(idx - 1);
     } else {// idx == 0 means it has a string value
-      String s = (String) readVal(fis);
+      tagByte = fis.readByte();
+      String s = (tagByte >>> 5) == (STR >>> 5) ? readStr(fis, true) : (String) readObject(fis);
       if (stringsList == null) stringsList = new ArrayList<>();
       stringsList.add(s);
       return s;
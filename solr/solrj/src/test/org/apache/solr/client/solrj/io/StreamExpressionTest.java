@@ -0,0 +1,131 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ *  Unit tests of the parsing of stream expressions, and of the TupleStreams built from them.
+ **/
+
+public class StreamExpressionTest extends LuceneTestCase {
+
+  @Test
+  public void testParse() throws Exception {
+    StreamExpression expression = StreamExpression.parse(
+        " top( search(localhost:9983, collection1, map(q=\"*:*\", fl=\"id,a_s\")) , 10,asc(a_s), x = \"a \\\"b\\\\\" )");
+    assertEquals("top", expression.getFunctionName());
+    assertEquals(3, expression.getParameters().size());
+    assertEquals(10, expression.getInt(1));
+    assertEquals("a \"b\\", expression.getString("x", null));
+    assertEquals("asc", expression.getExpression(2).getFunctionName());
+
+    StreamExpression search = expression.getExpression(0);
+    assertEquals("localhost:9983", search.getString(0));
+    Map<String, String> params = StreamFactory.toMap(search.getExpression(2));
+    assertEquals("*:*", params.get("q"));
+    assertEquals("id,a_s", params.get("fl"));
+
+    assertEquals("top(search(\"localhost:9983\", collection1, map(q=\"*:*\", fl=\"id,a_s\")), 10, asc(a_s), x=\"a \\\"b\\\\\")",
+                 expression.toString());
+    assertEquals(expression, StreamExpression.parse(expression.toString()));
+  }
+
+  @Test
+  public void testParseErrors() throws Exception {
+    String[] invalid = {"", "top", "top(", "top(a", "top(a,)", "top(a) b", "top(\"a)", "top(f(a)=b)"};
+    for(String expression : invalid) {
+      try {
+        StreamExpression.parse(expression);
+        fail("Expected an error parsing: " + expression);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testStreams() throws Exception {
+    StreamFactory factory = new StreamFactory();
+    Map<String, String> params = new HashMap();
+    params.put("q", "*:*");
+    params.put("fl", "id,a_s,a_i,a_f");
+    params.put("sort", "a_s asc");
+    CloudSolrStream streamA = new CloudSolrStream("localhost:9983", "collection1", params);
+    CloudSolrStream streamB = new CloudSolrStream("localhost:9983", "collection1", params);
+    Map<String, String> fieldMappings = new HashMap();
+    fieldMappings.put("a_s", "s");
+    streamB.setFieldMappings(fieldMappings);
+
+    assertRoundTrip(factory, new UniqueStream(new MergeStream(streamA, streamB, new AscFieldComp("a_s")),
+                                              new AscFieldComp("a_s")));
+    assertRoundTrip(factory, new HashJoinStream(streamA, streamB, new String[] {"a_s", "a_i"}, 1000));
+    assertRoundTrip(factory, new RankStream(new GroupByStream(streamA, new AscFieldComp("a_s"),
+                                                              new MultiComp(new DescFieldComp("a_i"), new AscFieldComp("a_f")), 5),
+                                            10, new DescFieldComp("a_i")));
+
+    Bucket[] buckets = {new Bucket("a_s")};
+    Metric[] metrics = {new SumMetric("a_i", false), new MaxMetric("a_f", true), new CountMetric()};
+    assertRoundTrip(factory, new RollupStream(streamA, buckets, metrics));
+    assertRoundTrip(factory, new MetricStream(streamA, buckets, metrics, "metrics",
+                                              new DescBucketComp(0), 10));
+
+    String expression = factory.toExpression(new RollupStream(streamA, buckets, metrics)).toString();
+    assertEquals("rollup(search(\"localhost:9983\", collection1, map(" + mapExpression(params) + ")), "
+                 + "bucket(a_s), sum(a_i, false), max(a_f, true), count())", expression);
+  }
+
+  @Test
+  public void testNotExpressible() throws Exception {
+    StreamFactory factory = new StreamFactory();
+    Map<String, String> params = new HashMap();
+    params.put("q", "*:*");
+    params.put("sort", "a_s asc");
+    TupleStream stream = new FilterStream(new CloudSolrStream("localhost:9983", "collection1", params),
+                                          new CloudSolrStream("localhost:9983", "collection1", params),
+                                          new Comparator());
+    try {
+      factory.toExpression(stream);
+      fail("Expected an error describing a custom comparator");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private static String mapExpression(Map<?, ?> map) {
+    return StreamFactory.toExpression(map).toString().replaceFirst("^map\\(", "").replaceFirst("\\)$", "");
+  }
+
+  private static void assertRoundTrip(StreamFactory factory, TupleStream stream) throws IOException {
+    StreamExpression expression = factory.toExpression(stream);
+    TupleStream copy = factory.constructStream(expression.toString());
+    assertSame(stream.getClass(), copy.getClass());
+    assertEquals(expression, factory.toExpression(copy));
+  }
+
+  private static class Comparator implements java.util.Comparator<Tuple> {
+    public int compare(Tuple t1, Tuple t2) {
+      return 0;
+    }
+  }
+}
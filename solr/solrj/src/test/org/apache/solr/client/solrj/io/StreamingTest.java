@@ -19,7 +19,10 @@ package org.apache.solr.client.solrj.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -227,6 +230,44 @@ public class StreamingTest extends AbstractFullDistribZkTestBase {
     assertLong(tuples.get(2), "join_i", 1000);
     assertLong(tuples.get(3), "join_i", 2000);
 
+    //Test many-to-many spilling to disk, the keys of all the tuples being in the same partition
+
+    paramsA = mapParams("q","id:(0 7 1 3 4) ","fl","id,a_s,a_f", "sort", "a_s desc");
+    streamA = new CloudSolrStream(zkHost, "collection1", paramsA);
+
+    paramsB = mapParams("q","id:(6 2)","fl","id,a_s,a_f,join_i", "sort", "a_s desc");
+    streamB = new CloudSolrStream(zkHost, "collection1", paramsB);
+    streamB.setFieldMappings(fieldMappings);
+
+    fstream = new HashJoinStream(streamA, streamB, keys, 1);
+    tuples = getTuples(fstream);
+
+    assert(tuples.size() == 4);
+    assertOrder(tuples, 7,7,0,0);
+    assertLong(tuples.get(0), "join_i", 1000);
+    assertLong(tuples.get(1), "join_i", 2000);
+    assertLong(tuples.get(2), "join_i", 1000);
+    assertLong(tuples.get(3), "join_i", 2000);
+
+    //Test spilling to disk with keys in different partitions, the tuples being grouped by partition
+
+    paramsA = mapParams("q","id:(0 1 3 4) ","fl","id,a_s", "sort", "a_s desc");
+    streamA = new CloudSolrStream(zkHost, "collection1", paramsA);
+
+    paramsB = mapParams("q","*:*","fl","id,a_s,join_i", "sort", "a_s desc");
+    streamB = new CloudSolrStream(zkHost, "collection1", paramsB);
+    streamB.setFieldMappings(fieldMappings);
+
+    fstream = new HashJoinStream(streamA, streamB, new String[] {"a_s"}, 2);
+    tuples = getTuples(fstream);
+
+    assert(tuples.size() == 5);
+    Set<String> joined = new HashSet();
+    for(Tuple t : tuples) {
+      joined.add(t.get("id")+"-"+t.get("streamB.id"));
+    }
+    assertEquals(new HashSet(Arrays.asList("0-0", "1-1", "1-6", "3-3", "4-4")), joined);
+
     del("*:*");
     commit();
 
@@ -0,0 +1,283 @@
+package org.apache.solr.client.solrj.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.junit.Test;
+
+/**
+ *  Unit tests of the columns of TupleBatches, and of the metrics and streams computed over them.
+ **/
+
+public class TupleBatchTest extends LuceneTestCase {
+
+  @Test
+  public void testColumns() throws Exception {
+    TupleBatch batch = new TupleBatch(4);
+    batch.add(tuple("a_i", 1L, "a_f", 1.5d, "a_s", "a", "b_i", 1L));
+    batch.add(tuple("a_i", 2L, "a_f", 2.5d, "a_s", "b", "b_i", 2.0d));
+    batch.add(tuple("a_i", 3L, "a_f", 3.5d));
+    assertEquals(3, batch.size());
+    assertFalse(batch.isFull());
+
+    assertEquals(3L, batch.getLongs("a_i")[2]);
+    assertNull(batch.getDoubles("a_i"));
+    assertEquals(3.5d, batch.getDoubles("a_f")[2], 0d);
+    // mixed types, and missing values, are boxed
+    assertNull(batch.getLongs("b_i"));
+    assertEquals(2.0d, batch.get("b_i", 1));
+    assertNull(batch.get("b_i", 2));
+    assertNull(batch.get("a_s", 2));
+    assertEquals("b", batch.get("a_s", 1));
+
+    batch.add(tuple("a_f", 4.5d));
+    assertTrue(batch.isFull());
+    assertNull(batch.getLongs("a_i"));
+    assertEquals(4.5d, batch.getDoubles("a_f")[3], 0d);
+
+    Tuple last = batch.removeLastRow();
+    assertEquals(4.5d, last.getDouble("a_f"), 0d);
+    assertEquals(3, batch.size());
+    assertEquals(3.5d, batch.getDoubles("a_f")[2], 0d);
+
+    batch.rename("a_f", "f");
+    assertNull(batch.getDoubles("a_f"));
+    assertEquals(tuple("a_i", 2L, "f", 2.5d, "a_s", "b", "b_i", 2.0d).fields, batch.getTuple(1).fields);
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    TupleBatch batch = new TupleBatch(16);
+    List<Tuple> tuples = new ArrayList();
+    for(int i=0; i<16; i++) {
+      Tuple tuple = tuple("a_i", (long)random().nextInt(1000) - 500, "a_f", random().nextDouble());
+      batch.add(tuple);
+      tuples.add(tuple);
+    }
+    TupleBatch boxed = new TupleBatch(16);
+    for(Tuple tuple : tuples) {
+      // a missing value in another column forces the columns to be boxed
+      boxed.addRow();
+      boxed.set("a_i", tuple.get("a_i"));
+      boxed.set("a_f", tuple.get("a_f"));
+    }
+    boxed.set("a_s", "a");
+
+    Metric[] metrics = {new SumMetric("a_i", false), new SumMetric("a_f", true),
+                        new MeanMetric("a_i", false), new MeanMetric("a_f", true),
+                        new MinMetric("a_i", false), new MinMetric("a_f", true),
+                        new MaxMetric("a_i", false), new MaxMetric("a_f", true),
+                        new CountMetric()};
+    for(Metric metric : metrics) {
+      Metric expected = metric.newInstance();
+      for(Tuple tuple : tuples.subList(3, 11)) {
+        expected.update(tuple);
+      }
+      Metric actual = metric.newInstance();
+      actual.update(batch, 3, 11);
+      assertEquals(metric.getName(), expected.getValue(), actual.getValue(), 1e-9);
+      actual = metric.newInstance();
+      actual.update(boxed, 3, 11);
+      assertEquals(metric.getName(), expected.getValue(), actual.getValue(), 1e-9);
+    }
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    List<Tuple> tuples = new ArrayList();
+    String[] buckets = {"a", "b", "c", "d"};
+    Map<String, Long> sums = new LinkedHashMap();
+    for(String bucket : buckets) {
+      // buckets spanning several batches
+      int count = 1 + random().nextInt(3000);
+      for(int i=0; i<count; i++) {
+        long value = random().nextInt(100);
+        tuples.add(tuple("a_s", bucket, "a_i", value));
+        sums.put(bucket, (sums.containsKey(bucket) ? sums.get(bucket) : 0L) + value);
+      }
+    }
+
+    RollupStream stream = new RollupStream(new ListStream(tuples), new Bucket[] {new Bucket("a_s")},
+                                           new Metric[] {new SumMetric("a_i", false), new CountMetric()});
+    stream.open();
+    for(String bucket : buckets) {
+      Tuple tuple = stream.read();
+      assertEquals(bucket, tuple.get("buckets"));
+      List<Double> values = (List<Double>)tuple.get("metricValues");
+      assertEquals(sums.get(bucket).doubleValue(), values.get(0), 0d);
+    }
+    assertTrue(stream.read().EOF);
+    assertTrue(stream.read().EOF);
+    stream.close();
+  }
+
+  @Test
+  public void testRollupPushDown() throws Exception {
+    // the buckets rolled up by two shards, merged by the bucket field
+    List<Tuple> tuples = new ArrayList();
+    tuples.add(tuple("a_s", "a", "sum:a_i.sum", 3L, "mean:a_i.sum", 3L, "mean:a_i.count", 2L, "max:a_i.max", 2L, "count.count", 2L));
+    tuples.add(tuple("a_s", "a", "sum:a_i.sum", 4L, "mean:a_i.sum", 4L, "mean:a_i.count", 1L, "max:a_i.max", 4L, "count.count", 1L));
+    // a shard bucket without values of a_i has no max
+    tuples.add(tuple("a_s", "b", "sum:a_i.sum", 5L, "mean:a_i.sum", 5L, "mean:a_i.count", 1L, "max:a_i.max", 5L, "count.count", 1L));
+    tuples.add(tuple("a_s", "b", "sum:a_i.sum", 0L, "mean:a_i.sum", 0L, "mean:a_i.count", 0L, "max:a_i.max", null, "count.count", 1L));
+    Map params = new HashMap();
+    params.put("qt", "/export");
+    params.put("sort", "a_s asc");
+    ShardsStream shards = new ShardsStream(params, tuples);
+
+    Metric[] metrics = {new SumMetric("a_i", false), new MeanMetric("a_i", false), new MaxMetric("a_i", false), new CountMetric()};
+    RollupStream stream = new RollupStream(shards, new Bucket[] {new Bucket("a_s")}, metrics);
+    stream.open();
+    // the params of the stream are copied, not modified
+    assertNull(params.get("rollup"));
+    assertEquals("a_s", shards.params.get("rollup"));
+    assertEquals("sum:a_i,mean:a_i,max:a_i,count", shards.params.get("rollup.metrics"));
+
+    Tuple tuple = stream.read();
+    assertEquals("a", tuple.get("buckets"));
+    assertEquals(Arrays.asList(7d, 7d / 3, 4d, 3d), tuple.get("metricValues"));
+    tuple = stream.read();
+    assertEquals("b", tuple.get("buckets"));
+    assertEquals(Arrays.asList(5d, 5d, 5d, 2d), tuple.get("metricValues"));
+    assertTrue(stream.read().EOF);
+    stream.close();
+
+    // not pushed down when the buckets are not the sort fields
+    params = new HashMap();
+    params.put("qt", "/export");
+    params.put("sort", "a_s asc,a_i asc");
+    stream = new RollupStream(new ShardsStream(params, new ArrayList()), new Bucket[] {new Bucket("a_s")}, metrics);
+    stream.open();
+    assertNull(params.get("rollup"));
+    assertTrue(stream.read().EOF);
+    stream.close();
+  }
+
+  @Test
+  public void testJavabin() throws Exception {
+    List<Map> docs = new ArrayList();
+    for(int i=0; i<10; i++) {
+      Map doc = new LinkedHashMap();
+      doc.put("id", String.valueOf(i));
+      doc.put("a_i", i);
+      doc.put("a_l", (long)i << 40);
+      doc.put("a_f", i + 0.1f);
+      doc.put("a_d", i + 0.5d);
+      if(i % 2 == 0) {
+        doc.put("a_ss", Arrays.asList("x", "y"));
+      }
+      docs.add(doc);
+    }
+    Map eof = new HashMap();
+    eof.put("EOF", true);
+    eof.put("metrics", 10L);
+    docs.add(eof);
+    Map response = new HashMap();
+    response.put("docs", docs.iterator());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JavaBinCodec().marshal(response, out);
+
+    JavabinTupleStream rows = new JavabinTupleStream(new ByteArrayInputStream(out.toByteArray()));
+    JavabinTupleStream maps = new JavabinTupleStream(new ByteArrayInputStream(out.toByteArray()));
+    TupleBatch batch = new TupleBatch(16);
+    while(rows.next(batch)) {
+      Map fields = new HashMap();
+      assertTrue(maps.next(fields));
+      assertEquals(fields, batch.getTuple(batch.size() - 1).fields);
+    }
+    assertFalse(maps.next(new HashMap()));
+
+    assertEquals(11, batch.size());
+    // the EOF tuple misses the values of the other columns
+    assertNull(batch.getLongs("a_i"));
+    Tuple tuple = batch.removeLastRow();
+    assertTrue(tuple.EOF);
+    assertEquals(10L, tuple.get("metrics"));
+    assertEquals(9L, batch.getLongs("a_i")[9]);
+    assertEquals(9L << 40, batch.getLongs("a_l")[9]);
+    assertEquals(9.1d, batch.getDoubles("a_f")[9], 0d);
+    assertEquals(Arrays.asList("x", "y"), batch.get("a_ss", 8));
+  }
+
+  private static Tuple tuple(Object... keyValues) {
+    Map fields = new LinkedHashMap();
+    for(int i=0; i<keyValues.length; i+=2) {
+      fields.put(keyValues[i], keyValues[i + 1]);
+    }
+    return new Tuple(fields);
+  }
+
+  private static class ShardsStream extends CloudSolrStream {
+    private final ListStream tuples;
+
+    ShardsStream(Map params, List<Tuple> tuples) {
+      this.params = params;
+      this.tuples = new ListStream(tuples);
+    }
+
+    public void open() throws IOException {
+    }
+
+    public void close() throws IOException {
+    }
+
+    public Tuple read() throws IOException {
+      return tuples.read();
+    }
+  }
+
+  private static class ListStream extends TupleStream {
+    private final List<Tuple> tuples;
+    private int pos;
+
+    ListStream(List<Tuple> tuples) {
+      this.tuples = tuples;
+    }
+
+    public void setStreamContext(StreamContext context) {
+    }
+
+    public List<TupleStream> children() {
+      return new ArrayList();
+    }
+
+    public void open() throws IOException {
+    }
+
+    public void close() throws IOException {
+    }
+
+    public Tuple read() throws IOException {
+      if(pos < tuples.size()) {
+        return tuples.get(pos++);
+      }
+      return tuple("EOF", true);
+    }
+  }
+}
@@ -61,6 +61,56 @@ public class TestJavaBinCodec extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testStringCache() throws Exception {
+    JavaBinCodec.StringCache cache = new JavaBinCodec.StringCache(4, 8);
+    NamedList<Object> nl = new NamedList<>();
+    nl.add("field", "short");
+    nl.add("field", "a longer value");
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new JavaBinCodec().marshal(nl, os);
+
+    NamedList<Object> first = (NamedList<Object>) new JavaBinCodec(null, cache).unmarshal(new ByteArrayInputStream(os.toByteArray()));
+    NamedList<Object> second = (NamedList<Object>) new JavaBinCodec(null, cache).unmarshal(new ByteArrayInputStream(os.toByteArray()));
+    assertEquals(nl, first);
+    assertEquals(nl, second);
+    // the field name and the short value are shared, the long value isn't cached
+    assertSame(first.getName(0), second.getName(0));
+    assertSame(first.getVal(0), second.getVal(0));
+    assertNotSame(first.getVal(1), second.getVal(1));
+    assertEquals(2, cache.size());
+
+    // a full cache is cleared
+    for (int i = 0; i < 10; i++) {
+      os = new ByteArrayOutputStream();
+      new JavaBinCodec().marshal(Arrays.asList("v" + i), os);
+      assertEquals(Arrays.asList("v" + i), new JavaBinCodec(null, cache).unmarshal(new ByteArrayInputStream(os.toByteArray())));
+      assertTrue(cache.size() <= 4);
+    }
+  }
+
+  @Test
+  public void testReadValUtf8() throws Exception {
+    for (int i = 0; i < 100 * RANDOM_MULTIPLIER; i++) {
+      String s = TestUtil.randomUnicodeString(random());
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      new JavaBinCodec().marshal(s, os);
+      FastInputStream is = FastInputStream.wrap(new ByteArrayInputStream(os.toByteArray()));
+      is.readByte(); // version
+      ByteArrayUtf8CharSequence utf8 = (ByteArrayUtf8CharSequence) new JavaBinCodec().readValUtf8(is);
+      assertEquals(s, utf8.toString());
+
+      os = new ByteArrayOutputStream();
+      new JavaBinCodec().marshal(utf8, os);
+      is = FastInputStream.wrap(new ByteArrayInputStream(os.toByteArray()));
+      is.readByte();
+      ByteArrayUtf8CharSequence copy = (ByteArrayUtf8CharSequence) new JavaBinCodec().readValUtf8(is);
+      assertEquals(utf8, copy);
+      assertEquals(utf8.hashCode(), copy.hashCode());
+      assertEquals(s, new JavaBinCodec().unmarshal(new ByteArrayInputStream(os.toByteArray())));
+    }
+  }
+
   private SolrDocument generateSolrDocumentWithChildDocs() {
     SolrDocument parentDocument = new SolrDocument();
     parentDocument.addField("id", "1");